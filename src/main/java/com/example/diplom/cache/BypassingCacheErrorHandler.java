@@ -0,0 +1,48 @@
+package com.example.diplom.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cache.Cache;
+import org.springframework.cache.interceptor.CacheErrorHandler;
+
+/**
+ * Обработчик ошибок кэша для {@code @Cacheable}: ошибка кэша (например, нечитаемое значение)
+ * не превращается в ошибку API — чтение считается промахом, запись и удаление пропускаются.
+ * Недоступность Redis перехватывает раньше {@link CircuitBreakingCache}.
+ */
+public class BypassingCacheErrorHandler implements CacheErrorHandler {
+
+    private static final Logger logger = LoggerFactory.getLogger(BypassingCacheErrorHandler.class);
+
+    private final ObjectProvider<CacheMetrics> metrics;
+
+    public BypassingCacheErrorHandler(ObjectProvider<CacheMetrics> metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void handleCacheGetError(RuntimeException exception, Cache cache, Object key) {
+        handle("get", exception, cache, key);
+    }
+
+    @Override
+    public void handleCachePutError(RuntimeException exception, Cache cache, Object key, Object value) {
+        handle("put", exception, cache, key);
+    }
+
+    @Override
+    public void handleCacheEvictError(RuntimeException exception, Cache cache, Object key) {
+        handle("evict", exception, cache, key);
+    }
+
+    @Override
+    public void handleCacheClearError(RuntimeException exception, Cache cache) {
+        handle("clear", exception, cache, null);
+    }
+
+    private void handle(String operation, RuntimeException exception, Cache cache, Object key) {
+        logger.warn("Ошибка кэша {} при операции {} для ключа {}, кэш пропущен", cache.getName(), operation, key, exception);
+        metrics.ifAvailable(m -> m.recordError(cache.getName(), operation));
+    }
+}
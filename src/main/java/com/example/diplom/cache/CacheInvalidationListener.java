@@ -0,0 +1,117 @@
+package com.example.diplom.cache;
+
+import com.example.diplom.events.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Инвалидирует кэш по доменным событиям сервисов — только после фиксации транзакции,
+ * чтобы параллельный запрос не успел положить в кэш данные до коммита.
+ * Вне транзакции (fallbackExecution) событие обрабатывается сразу: запись в БД уже зафиксирована.
+ * Удаляются только затронутые записи: месяц и день календаря, медкарта пациента, конкретный визит.
+ */
+@Component
+public class CacheInvalidationListener {
+
+    private static final List<String> PATIENT_VISITS = List.of("getVisitsByPatient", "getVisitsByPatientPage");
+    /** Профиль пациента содержит ссылки на все его вложения. */
+    private static final List<String> PATIENT_ATTACHMENTS =
+            List.of("getVisitsByPatient", "getVisitsByPatientPage", "profileById");
+
+    private final CacheInvalidator invalidator;
+
+    @Autowired
+    public CacheInvalidationListener(CacheInvalidator invalidator) {
+        this.invalidator = invalidator;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onVisitCreated(VisitCreatedEvent event) {
+        List<String> selectors = calendar(event.visitDate());
+        selectors.add("getPatientMedicalCard:" + event.patientId());
+        evictDoctor(event.doctorId(), selectors);
+        evictPatient(event.patientId(), PATIENT_VISITS);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onVisitFinished(VisitFinishedEvent event) {
+        evictVisit(event.doctorId(), event.patientId(), event.visitId(), calendar(event.visitDate()));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onVisitCancelled(VisitCancelledEvent event) {
+        evictVisit(event.doctorId(), event.patientId(), event.visitId(), calendar(event.visitDate()));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onVisitRearranged(VisitRearrangedEvent event) {
+        List<String> selectors = calendar(event.previousDate());
+        selectors.addAll(calendar(event.visitDate()));
+        evictVisit(event.doctorId(), event.patientId(), event.visitId(), selectors);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onAttachmentAdded(AttachmentAddedEvent event) {
+        evictVisit(event.doctorId(), event.patientId(), event.visitId(), new ArrayList<>(), PATIENT_ATTACHMENTS);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onServiceCreated(ServiceCreatedEvent event) {
+        evictDoctor(event.doctorId(), List.of("getDoctorServices"));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onServicePriceChanged(ServicePriceChangedEvent event) {
+        // Текущая цена видна в незавершённых визитах любого пациента врача.
+        evictDoctor(event.doctorId(), List.of("getDoctorServices", "getFinishVisitData", "getPatientMedicalCard"));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPatientLinked(PatientLinkedEvent event) {
+        evictDoctor(event.doctorId(), List.of("getDoctorPatients"));
+        evictPatient(event.patientId(), List.of("getPatientDoctors"));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPatientDataChanged(PatientDataChangedEvent event) {
+        invalidator.evictPatient(event.patientId());
+    }
+
+    private void evictVisit(UUID doctorId, UUID patientId, UUID visitId, List<String> selectors) {
+        evictVisit(doctorId, patientId, visitId, selectors, PATIENT_VISITS);
+    }
+
+    private void evictVisit(UUID doctorId, UUID patientId, UUID visitId, List<String> selectors,
+                            List<String> patientSelectors) {
+        selectors.add("getPatientMedicalCard:" + patientId);
+        selectors.add("getFinishVisitData:" + visitId);
+        evictDoctor(doctorId, selectors);
+        evictPatient(patientId, patientSelectors);
+    }
+
+    private void evictDoctor(UUID doctorId, List<String> selectors) {
+        invalidator.evict(CacheInvalidator.DOCTOR_CACHE, doctorId.toString(), selectors);
+    }
+
+    private void evictPatient(UUID patientId, List<String> selectors) {
+        invalidator.evict(CacheInvalidator.PATIENT_CACHE, patientId.toString(), selectors);
+    }
+
+    /**
+     * Ключи календаря, в которые попадает дата визита: месяц, сводка месяца и день.
+     */
+    private static List<String> calendar(LocalDateTime visitDate) {
+        String month = visitDate.getMonthValue() + ":" + visitDate.getYear();
+        List<String> selectors = new ArrayList<>();
+        selectors.add("getDoctorVisitDates:" + month);
+        selectors.add("getDoctorVisitSummary:" + month);
+        selectors.add("getDoctorVisitDatesByDay:" + visitDate.toLocalDate());
+        return selectors;
+    }
+}
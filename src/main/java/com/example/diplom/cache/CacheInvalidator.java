@@ -0,0 +1,311 @@
+package com.example.diplom.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Supplier;
+
+/**
+ * Единая точка инвалидации кэшей врача и пациента.
+ * <p>
+ * Для каждого владельца (id врача или пациента) в Redis хранится множество ключей его
+ * записей — тег. Запись кэша добавляет свой ключ в тег, инвалидация удаляет ровно
+ * эти ключи одним Lua-скриптом, не сканируя всё пространство ключей через KEYS.
+ * Ключи записей и тега содержат hash tag {владелец}, поэтому в Redis Cluster
+ * попадают в один слот и удаляются атомарно.
+ * <p>
+ * Локальные (L1) кэши узлов подписываются через {@link #onLocalEvict}; о каждой
+ * инвалидации остальные узлы узнают из канала {@link #INVALIDATION_CHANNEL}.
+ * <p>
+ * Точечная инвалидация принимает селекторы — ключи без префикса владельца
+ * ("getDoctorVisitDates:3:2025"). Селектор удаляет запись с таким ключом и все записи,
+ * ключ которых продолжается после него через ':' (селектор "getVisitsByPatientPage" — все страницы).
+ * <p>
+ * Пока Redis недоступен ({@link RedisCircuitBreaker} разомкнут), чистится только локальный кэш,
+ * а инвалидация запоминается и повторяется, когда автомат снова замкнётся. Очередь ограничена
+ * {@link #MAX_MISSED} владельцами; при переполнении старейшая запись отбрасывается и учитывается в метриках.
+ */
+@Component
+public class CacheInvalidator {
+
+    public static final String DOCTOR_CACHE = "doctorCache";
+    public static final String PATIENT_CACHE = "patientCache";
+
+    public static final String INVALIDATION_CHANNEL = "cache-invalidation";
+
+    static final int MAX_MISSED = 10_000;
+
+    private static final Logger logger = LoggerFactory.getLogger(CacheInvalidator.class);
+
+    private static final String TAG_KEY_PREFIX = "cache-tags:";
+    private static final char MESSAGE_SEPARATOR = '|';
+
+    private static final RedisScript<Long> TAG_SCRIPT = new DefaultRedisScript<>(
+            "redis.call('SADD', KEYS[1], ARGV[1]) " +
+            "redis.call('PEXPIRE', KEYS[1], ARGV[2]) " +
+            "return 1", Long.class);
+
+    private static final RedisScript<Long> EVICT_SCRIPT = new DefaultRedisScript<>(
+            "local members = redis.call('SMEMBERS', KEYS[1]) " +
+            "for i = 1, #members, 500 do " +
+            "  redis.call('DEL', unpack(members, i, math.min(i + 499, #members))) " +
+            "end " +
+            "redis.call('DEL', KEYS[1]) " +
+            "return #members", Long.class);
+
+    private static final RedisScript<Long> EVICT_SELECTED_SCRIPT = new DefaultRedisScript<>(
+            "local removed = 0 " +
+            "for _, member in ipairs(redis.call('SMEMBERS', KEYS[1])) do " +
+            "  for i = 2, #ARGV do " +
+            "    local key = ARGV[1] .. ARGV[i] " +
+            "    if member == key or string.sub(member, 1, #key + 1) == key .. ':' then " +
+            "      redis.call('DEL', member) " +
+            "      redis.call('SREM', KEYS[1], member) " +
+            "      removed = removed + 1 " +
+            "      break " +
+            "    end " +
+            "  end " +
+            "end " +
+            "return removed", Long.class);
+
+    /**
+     * Подписчик локального кэша; пустые селекторы означают все записи владельца.
+     */
+    @FunctionalInterface
+    public interface LocalEvictionListener {
+        void evict(String cacheName, String owner, Collection<String> selectors);
+    }
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final CacheMetrics metrics;
+    private final RedisCircuitBreaker circuitBreaker;
+    private final List<LocalEvictionListener> localListeners = new CopyOnWriteArrayList<>();
+    /** Пропущенные инвалидации: "кэш|владелец" → селекторы (пустое множество — все записи). */
+    private final Map<String, Set<String>> missed = new LinkedHashMap<>();
+
+    @Autowired
+    public CacheInvalidator(StringRedisTemplate stringRedisTemplate, CacheMetrics metrics,
+                            RedisCircuitBreaker circuitBreaker) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.metrics = metrics;
+        this.circuitBreaker = circuitBreaker;
+        circuitBreaker.onClose(this::replayMissed);
+    }
+
+    public void evictDoctor(UUID doctorId) {
+        evict(DOCTOR_CACHE, doctorId.toString());
+    }
+
+    public void evictPatient(UUID patientId) {
+        evict(PATIENT_CACHE, patientId.toString());
+    }
+
+    /**
+     * Удаляет все записи кэша cacheName, принадлежащие owner. Возвращает число удалённых ключей.
+     */
+    public long evict(String cacheName, String owner) {
+        return invalidate(cacheName, owner, List.of(),
+                () -> stringRedisTemplate.execute(EVICT_SCRIPT, List.of(tagKey(cacheName, owner))));
+    }
+
+    /**
+     * Удаляет только записи владельца, подходящие под селекторы. Возвращает число удалённых ключей.
+     */
+    public long evict(String cacheName, String owner, Collection<String> selectors) {
+        if (selectors.isEmpty()) {
+            return 0;
+        }
+        List<String> args = new ArrayList<>(selectors.size() + 1);
+        args.add(cacheName + "::{" + owner + "}:");
+        args.addAll(selectors);
+        return invalidate(cacheName, owner, selectors,
+                () -> stringRedisTemplate.execute(EVICT_SELECTED_SCRIPT, List.of(tagKey(cacheName, owner)),
+                        args.toArray()));
+    }
+
+    private long invalidate(String cacheName, String owner, Collection<String> selectors, Supplier<Long> script) {
+        evictLocal(cacheName, owner, selectors);
+        if (!circuitBreaker.allowRequest()) {
+            remember(cacheName, owner, selectors);
+            return 0;
+        }
+        Long removed;
+        try {
+            removed = script.get();
+            broadcast(cacheName, owner, selectors);
+        } catch (DataAccessException e) {
+            circuitBreaker.recordFailure(e);
+            logger.warn("Не удалось инвалидировать кэш {} владельца {}, повторим после восстановления Redis",
+                    cacheName, owner, e);
+            remember(cacheName, owner, selectors);
+            return 0;
+        }
+        circuitBreaker.recordSuccess();
+        long count = removed != null ? removed : 0;
+        metrics.recordInvalidation(cacheName, count);
+        return count;
+    }
+
+    private synchronized void remember(String cacheName, String owner, Collection<String> selectors) {
+        metrics.recordMissedInvalidation(cacheName);
+        String key = cacheName + MESSAGE_SEPARATOR + owner;
+        Set<String> pending = missed.get(key);
+        if (pending == null) {
+            if (missed.size() >= MAX_MISSED) {
+                Iterator<Map.Entry<String, Set<String>>> eldest = missed.entrySet().iterator();
+                String dropped = eldest.next().getKey();
+                eldest.remove();
+                metrics.recordDroppedInvalidation(dropped.substring(0, dropped.indexOf(MESSAGE_SEPARATOR)));
+                logger.error("Очередь пропущенных инвалидаций переполнена, отброшена {}", dropped);
+            }
+            missed.put(key, new LinkedHashSet<>(selectors));
+        } else if (!pending.isEmpty()) {
+            // Пустое множество уже означает полную инвалидацию владельца — расширять некуда.
+            if (selectors.isEmpty()) {
+                pending.clear();
+            } else {
+                pending.addAll(selectors);
+            }
+        }
+    }
+
+    /**
+     * Повторяет инвалидации, пропущенные, пока Redis был недоступен.
+     * Вызывается при замыкании автомата; недоставленные снова попадают в очередь.
+     */
+    public void replayMissed() {
+        Map<String, Set<String>> pending;
+        synchronized (this) {
+            if (missed.isEmpty()) {
+                return;
+            }
+            pending = new LinkedHashMap<>(missed);
+            missed.clear();
+        }
+        logger.info("Повтор {} пропущенных инвалидаций кэша", pending.size());
+        pending.forEach((key, selectors) -> {
+            int separator = key.indexOf(MESSAGE_SEPARATOR);
+            String cacheName = key.substring(0, separator);
+            String owner = key.substring(separator + 1);
+            if (selectors.isEmpty()) {
+                evict(cacheName, owner);
+            } else {
+                evict(cacheName, owner, selectors);
+            }
+        });
+    }
+
+    synchronized int missedCount() {
+        return missed.size();
+    }
+
+    /**
+     * Регистрирует локальный кэш, который нужно чистить при инвалидации владельца.
+     */
+    public void onLocalEvict(LocalEvictionListener listener) {
+        localListeners.add(listener);
+    }
+
+    /**
+     * Сообщает остальным узлам, что локальные записи владельца устарели.
+     * Формат сообщения: "кэш|владелец" или "кэш|владелец|селектор|...".
+     */
+    void broadcast(String cacheName, String owner, Collection<String> selectors) {
+        StringBuilder message = new StringBuilder(cacheName).append(MESSAGE_SEPARATOR).append(owner);
+        selectors.forEach(selector -> message.append(MESSAGE_SEPARATOR).append(selector));
+        stringRedisTemplate.convertAndSend(INVALIDATION_CHANNEL, message.toString());
+    }
+
+    /**
+     * Обрабатывает сообщение из канала инвалидации, пришедшее от любого узла.
+     */
+    public void handleMessage(String message) {
+        String[] parts = message.split("\\" + MESSAGE_SEPARATOR);
+        if (parts.length >= 2 && !parts[0].isEmpty()) {
+            evictLocal(parts[0], parts[1], Arrays.asList(parts).subList(2, parts.length));
+        }
+    }
+
+    private void evictLocal(String cacheName, String owner, Collection<String> selectors) {
+        localListeners.forEach(listener -> listener.evict(cacheName, owner, selectors));
+    }
+
+    /**
+     * Подходит ли ключ кэша ("id:метод:...") владельца под один из селекторов; пустые селекторы — под любой.
+     */
+    static boolean matches(Object key, String owner, Collection<String> selectors) {
+        String value = String.valueOf(key);
+        String prefix = owner + ":";
+        if (selectors.isEmpty()) {
+            return value.equals(owner) || value.startsWith(prefix);
+        }
+        for (String selector : selectors) {
+            String selected = prefix + selector;
+            if (value.equals(selected) || value.startsWith(selected + ":")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Запоминает ключ записи в теге владельца. Тег живёт не дольше самих записей.
+     */
+    void tag(String cacheName, String owner, String redisKey, Duration ttl) {
+        stringRedisTemplate.execute(TAG_SCRIPT, List.of(tagKey(cacheName, owner)),
+                redisKey, String.valueOf(ttl.toMillis()));
+    }
+
+    /**
+     * Владелец записи — часть ключа до первого ':' (ключи имеют вид "id:метод:...").
+     */
+    static String ownerOf(Object key) {
+        String value = String.valueOf(key);
+        int separator = value.indexOf(':');
+        return separator >= 0 ? value.substring(0, separator) : value;
+    }
+
+    /**
+     * Имя кэшируемого метода — вторая часть ключа ("id:метод:...") или null.
+     */
+    static String methodOf(Object key) {
+        String value = String.valueOf(key);
+        int start = value.indexOf(':');
+        if (start < 0) {
+            return null;
+        }
+        int end = value.indexOf(':', start + 1);
+        return end >= 0 ? value.substring(start + 1, end) : value.substring(start + 1);
+    }
+
+    /**
+     * Ключ записи с hash tag владельца: "id:метод:..." → "{id}:метод:...".
+     */
+    static String hashTagged(Object key) {
+        String value = String.valueOf(key);
+        String owner = ownerOf(value);
+        return "{" + owner + "}" + value.substring(owner.length());
+    }
+
+    static String tagKey(String cacheName, String owner) {
+        return TAG_KEY_PREFIX + cacheName + ":{" + owner + "}";
+    }
+}
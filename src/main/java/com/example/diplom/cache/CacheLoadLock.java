@@ -0,0 +1,74 @@
+package com.example.diplom.cache;
+
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+/**
+ * Короткая блокировка загрузки ключа кэша между узлами (SET NX PX).
+ * Узел, не получивший блокировку, ждёт появления значения в Redis не дольше TTL блокировки.
+ */
+public class CacheLoadLock {
+
+    private static final String LOCK_KEY_PREFIX = "cache-lock:";
+    private static final long POLL_INTERVAL_MS = 25;
+
+    private static final RedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then " +
+            "  return redis.call('DEL', KEYS[1]) " +
+            "end " +
+            "return 0", Long.class);
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final Duration ttl;
+
+    public CacheLoadLock(StringRedisTemplate stringRedisTemplate, Duration ttl) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.ttl = ttl;
+    }
+
+    /**
+     * Возвращает токен владельца или null, если ключ уже загружает другой узел.
+     */
+    public String tryAcquire(String redisKey) {
+        String token = UUID.randomUUID().toString();
+        Boolean acquired = stringRedisTemplate.opsForValue().setIfAbsent(lockKey(redisKey), token, ttl);
+        return Boolean.TRUE.equals(acquired) ? token : null;
+    }
+
+    public void release(String redisKey, String token) {
+        stringRedisTemplate.execute(RELEASE_SCRIPT, List.of(lockKey(redisKey)), token);
+    }
+
+    /**
+     * Опрашивает lookup, пока он не вернёт значение или не истечёт TTL блокировки.
+     */
+    public <T> T await(Supplier<T> lookup) {
+        long deadline = System.nanoTime() + ttl.toNanos();
+        while (System.nanoTime() < deadline) {
+            T value = lookup.get();
+            if (value != null) {
+                return value;
+            }
+            try {
+                Thread.sleep(POLL_INTERVAL_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Ключ блокировки сохраняет hash tag владельца и попадает в тот же слот, что и запись.
+     */
+    static String lockKey(String redisKey) {
+        return LOCK_KEY_PREFIX + redisKey;
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.diplom.cache;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Метрики кэшей в разрезе имени кэша и кэшируемого метода:
+ * обращения (попадание в L1, в Redis, промах), время загрузки, инвалидации и размер значений.
+ * Плюс состояние автомата Redis и операции, выполненные в обход Redis.
+ */
+@Component
+public class CacheMetrics {
+
+    public static final String RESULT_LOCAL_HIT = "local_hit";
+    public static final String RESULT_REMOTE_HIT = "remote_hit";
+    public static final String RESULT_STALE_HIT = "stale_hit";
+    public static final String RESULT_MISS = "miss";
+
+    private final MeterRegistry registry;
+
+    @Autowired
+    public CacheMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    public void recordLookup(String cacheName, Object key, String result) {
+        registry.counter("cache.lookups", "cache", cacheName, "method", methodTag(key), "result", result)
+                .increment();
+    }
+
+    /**
+     * Оборачивает загрузку значения таймером cache.load.
+     */
+    public <T> Callable<T> timed(String cacheName, Object key, Callable<T> loader) {
+        Timer timer = registry.timer("cache.load", "cache", cacheName, "method", methodTag(key));
+        return () -> timer.recordCallable(loader);
+    }
+
+    public void recordInvalidation(String cacheName, long removedKeys) {
+        registry.counter("cache.invalidations", "cache", cacheName).increment();
+        registry.counter("cache.invalidated.keys", "cache", cacheName).increment(removedKeys);
+    }
+
+    public void recordPayload(String cacheName, Object key, int bytes) {
+        DistributionSummary.builder("cache.payload.size")
+                .baseUnit("bytes")
+                .tags("cache", cacheName, "method", methodTag(key))
+                .register(registry)
+                .record(bytes);
+    }
+
+    static String methodTag(Object key) {
+        String method = CacheInvalidator.methodOf(key);
+        return method != null ? method : "unknown";
+    }
+
+    public void recordBypass(String cacheName, String operation) {
+        registry.counter("cache.bypassed", "cache", cacheName, "operation", operation).increment();
+    }
+
+    public void recordError(String cacheName, String operation) {
+        registry.counter("cache.errors", "cache", cacheName, "operation", operation).increment();
+    }
+
+    public void recordCircuitOpened() {
+        registry.counter("cache.circuit.opened").increment();
+    }
+
+    public void recordMissedInvalidation(String cacheName) {
+        registry.counter("cache.invalidations.missed", "cache", cacheName).increment();
+    }
+
+    /**
+     * Пропущенная инвалидация отброшена из переполненной очереди и уже не будет повторена.
+     */
+    public void recordDroppedInvalidation(String cacheName) {
+        registry.counter("cache.invalidation.dropped", "cache", cacheName).increment();
+    }
+
+    /**
+     * Датчик состояния автомата: 0 — замкнут, 1 — пробная операция, 2 — разомкнут.
+     */
+    void registerCircuitState(RedisCircuitBreaker breaker) {
+        Gauge.builder("cache.circuit.state", breaker, b -> b.getState().ordinal())
+                .register(registry);
+    }
+}
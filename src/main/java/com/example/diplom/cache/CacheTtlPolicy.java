@@ -0,0 +1,56 @@
+package com.example.diplom.cache;
+
+import org.springframework.data.redis.cache.RedisCacheWriter;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * TTL записи Redis в зависимости от кэшируемого метода (вторая часть ключа).
+ * Календарь меняется с каждой записью к врачу и живёт недолго, справочник услуг — долго.
+ */
+public class CacheTtlPolicy implements RedisCacheWriter.TtlFunction {
+
+    public enum Group { CALENDAR, MEDICAL_CARD, SERVICES, PROFILE }
+
+    private static final Map<String, Group> METHOD_GROUPS = Map.ofEntries(
+            Map.entry("getDoctorVisitDates", Group.CALENDAR),
+            Map.entry("getDoctorVisitSummary", Group.CALENDAR),
+            Map.entry("getDoctorVisitDatesByDay", Group.CALENDAR),
+            Map.entry("getPatientMedicalCard", Group.MEDICAL_CARD),
+            Map.entry("getFinishVisitData", Group.MEDICAL_CARD),
+            Map.entry("getVisitsByPatient", Group.MEDICAL_CARD),
+            Map.entry("getVisitsByPatientPage", Group.MEDICAL_CARD),
+            Map.entry("getDoctorServices", Group.SERVICES),
+            Map.entry("getDoctorPatients", Group.PROFILE),
+            Map.entry("getPatientDoctors", Group.PROFILE),
+            Map.entry("profileById", Group.PROFILE)
+    );
+
+    private final Duration defaultTtl;
+    private final Map<Group, Duration> ttls;
+
+    public CacheTtlPolicy(Duration defaultTtl, Map<Group, Duration> ttls) {
+        this.defaultTtl = defaultTtl;
+        this.ttls = ttls.isEmpty() ? Collections.emptyMap() : new EnumMap<>(ttls);
+    }
+
+    @Override
+    public Duration getTimeToLive(Object key, Object value) {
+        return ttlFor(key);
+    }
+
+    public Duration ttlFor(Object key) {
+        Group group = METHOD_GROUPS.get(CacheInvalidator.methodOf(key));
+        return group != null ? ttls.getOrDefault(group, defaultTtl) : defaultTtl;
+    }
+
+    /**
+     * Наибольший TTL — столько должен жить тег владельца, чтобы пережить любую свою запись.
+     */
+    public Duration maxTtl() {
+        return ttls.values().stream().reduce(defaultTtl, (a, b) -> a.compareTo(b) >= 0 ? a : b);
+    }
+}
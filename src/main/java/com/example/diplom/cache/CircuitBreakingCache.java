@@ -0,0 +1,119 @@
+package com.example.diplom.cache;
+
+import org.springframework.cache.Cache;
+import org.springframework.dao.DataAccessException;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Обёртка над кэшем Redis с автоматом {@link RedisCircuitBreaker}. Пока автомат разомкнут,
+ * чтение считается промахом, запись и удаление пропускаются, а значение считается напрямую —
+ * запросы не ждут таймаута Redis. Ошибки доступа к Redis учитываются автоматом и не выходят наружу.
+ */
+public class CircuitBreakingCache implements Cache {
+
+    private final Cache delegate;
+    private final RedisCircuitBreaker breaker;
+    private final CacheMetrics metrics;
+
+    public CircuitBreakingCache(Cache delegate, RedisCircuitBreaker breaker, CacheMetrics metrics) {
+        this.delegate = delegate;
+        this.breaker = breaker;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public String getName() {
+        return delegate.getName();
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return delegate.getNativeCache();
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        return guarded("get", () -> delegate.get(key), () -> null);
+    }
+
+    @Override
+    public <T> T get(Object key, Class<T> type) {
+        return guarded("get", () -> delegate.get(key, type), () -> null);
+    }
+
+    @Override
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        // Если Redis отказал уже после загрузки (при записи), повторно не считаем.
+        AtomicBoolean loaded = new AtomicBoolean();
+        AtomicReference<T> result = new AtomicReference<>();
+        Callable<T> remembering = () -> {
+            T value = valueLoader.call();
+            result.set(value);
+            loaded.set(true);
+            return value;
+        };
+        return guarded("get", () -> delegate.get(key, remembering),
+                () -> loaded.get() ? result.get() : load(key, valueLoader));
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        guarded("put", () -> {
+            delegate.put(key, value);
+            return null;
+        }, () -> null);
+    }
+
+    @Override
+    public ValueWrapper putIfAbsent(Object key, Object value) {
+        return guarded("put", () -> delegate.putIfAbsent(key, value), () -> null);
+    }
+
+    @Override
+    public void evict(Object key) {
+        guarded("evict", () -> {
+            delegate.evict(key);
+            return null;
+        }, () -> null);
+    }
+
+    @Override
+    public void clear() {
+        guarded("clear", () -> {
+            delegate.clear();
+            return null;
+        }, () -> null);
+    }
+
+    private <T> T guarded(String operation, Supplier<T> redisCall, Supplier<T> fallback) {
+        if (!breaker.allowRequest()) {
+            metrics.recordBypass(getName(), operation);
+            return fallback.get();
+        }
+        T result;
+        try {
+            result = redisCall.get();
+        } catch (ValueRetrievalException e) {
+            // Ошибка самого загружаемого метода, Redis тут ни при чём.
+            throw e;
+        } catch (DataAccessException e) {
+            breaker.recordFailure(e);
+            metrics.recordBypass(getName(), operation);
+            return fallback.get();
+        }
+        breaker.recordSuccess();
+        return result;
+    }
+
+    private static <T> T load(Object key, Callable<T> valueLoader) {
+        try {
+            return valueLoader.call();
+        } catch (Exception e) {
+            throw new ValueRetrievalException(key, valueLoader, e);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.diplom.cache;
+
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4FastDecompressor;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Компактный сериализатор значений кэша: бинарный JSON (Smile) с общими строками,
+ * поэтому повторяющиеся имена классов и полей из type-метаданных записываются один раз.
+ * Значения больше порога дополнительно сжимаются LZ4.
+ * <p>
+ * Формат: первый байт — {@link #FORMAT_SMILE} или {@link #FORMAT_SMILE_LZ4}
+ * (за ним длина исходных данных и сжатый блок). Записи, сохранённые раньше в JSON,
+ * начинаются с текстового символа и читаются прежним сериализатором.
+ */
+public class CompactRedisSerializer implements RedisSerializer<Object> {
+
+    static final byte FORMAT_SMILE = 1;
+    static final byte FORMAT_SMILE_LZ4 = 2;
+
+    private static final LZ4Factory LZ4 = LZ4Factory.fastestInstance();
+
+    private final RedisSerializer<Object> smileSerializer;
+    private final RedisSerializer<Object> legacySerializer;
+    private final int compressionThreshold;
+
+    /**
+     * @param compressionThreshold размер в байтах, начиная с которого значение сжимается; 0 — не сжимать
+     */
+    public CompactRedisSerializer(RedisSerializer<Object> smileSerializer,
+                                  RedisSerializer<Object> legacySerializer,
+                                  int compressionThreshold) {
+        this.smileSerializer = smileSerializer;
+        this.legacySerializer = legacySerializer;
+        this.compressionThreshold = compressionThreshold;
+    }
+
+    @Override
+    public byte[] serialize(Object value) throws SerializationException {
+        byte[] smile = smileSerializer.serialize(value);
+        if (smile == null) {
+            return null;
+        }
+        if (compressionThreshold > 0 && smile.length >= compressionThreshold) {
+            LZ4Compressor compressor = LZ4.fastCompressor();
+            byte[] compressed = new byte[compressor.maxCompressedLength(smile.length)];
+            int compressedLength = compressor.compress(smile, 0, smile.length, compressed, 0, compressed.length);
+            return ByteBuffer.allocate(1 + Integer.BYTES + compressedLength)
+                    .put(FORMAT_SMILE_LZ4)
+                    .putInt(smile.length)
+                    .put(compressed, 0, compressedLength)
+                    .array();
+        }
+        byte[] result = new byte[smile.length + 1];
+        result[0] = FORMAT_SMILE;
+        System.arraycopy(smile, 0, result, 1, smile.length);
+        return result;
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        return switch (bytes[0]) {
+            case FORMAT_SMILE -> smileSerializer.deserialize(Arrays.copyOfRange(bytes, 1, bytes.length));
+            case FORMAT_SMILE_LZ4 -> smileSerializer.deserialize(decompress(bytes));
+            default -> legacySerializer.deserialize(bytes);
+        };
+    }
+
+    private static byte[] decompress(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes, 1, bytes.length - 1);
+        int originalLength = buffer.getInt();
+        if (originalLength < 0) {
+            throw new SerializationException("Некорректная длина сжатого значения кэша: " + originalLength);
+        }
+        LZ4FastDecompressor decompressor = LZ4.fastDecompressor();
+        byte[] restored = new byte[originalLength];
+        decompressor.decompress(bytes, 1 + Integer.BYTES, restored, 0, originalLength);
+        return restored;
+    }
+}
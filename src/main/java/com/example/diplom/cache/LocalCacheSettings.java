@@ -0,0 +1,27 @@
+package com.example.diplom.cache;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Параметры локального уровня кэша.
+ *
+ * @param maximumWeight        предельный суммарный вес записей L1 на кэш по умолчанию — число записей
+ *                             плюс элементов закэшированных коллекций (см. {@link TwoLevelCacheManager#weigh})
+ * @param maximumWeights       собственный бюджет веса для отдельных кэшей в тех же единицах
+ * @param ttl                  время жизни записи L1
+ * @param staleWhileRevalidate методы (вторая часть ключа), для которых после инвалидации
+ *                             отдаётся прежнее значение, пока новое считается в фоне
+ * @param maxStale             сколько после инвалидации можно отдавать прежнее значение
+ */
+public record LocalCacheSettings(long maximumWeight,
+                                 Map<String, Long> maximumWeights,
+                                 Duration ttl,
+                                 Set<String> staleWhileRevalidate,
+                                 Duration maxStale) {
+
+    public long maximumWeightFor(String cacheName) {
+        return maximumWeights.getOrDefault(cacheName, maximumWeight);
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.diplom.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Автомат защиты Redis для кэшей. После failureThreshold ошибок подряд размыкается
+ * и на openDuration все обращения к Redis пропускаются. Затем одна пробная операция
+ * (HALF_OPEN) решает, замкнуть автомат или разомкнуть снова.
+ * При замыкании вызываются подписчики {@link #onClose} — например, повтор пропущенных инвалидаций.
+ */
+@Component
+public class RedisCircuitBreaker {
+
+    private static final Logger logger = LoggerFactory.getLogger(RedisCircuitBreaker.class);
+
+    public enum State { CLOSED, HALF_OPEN, OPEN }
+
+    private final int failureThreshold;
+    private final long openMillis;
+    private final Clock clock;
+    private final CacheMetrics metrics;
+    private final AtomicReference<State> state = new AtomicReference<>(State.CLOSED);
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private final List<Runnable> closeListeners = new CopyOnWriteArrayList<>();
+    private volatile long stateChangedAt;
+
+    @Autowired
+    public RedisCircuitBreaker(@Value("${cache.circuit.failure-threshold:5}") int failureThreshold,
+                               @Value("${cache.circuit.open-duration:PT30S}") Duration openDuration,
+                               CacheMetrics metrics) {
+        this(failureThreshold, openDuration, metrics, Clock.systemUTC());
+    }
+
+    RedisCircuitBreaker(int failureThreshold, Duration openDuration, CacheMetrics metrics, Clock clock) {
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openDuration.toMillis();
+        this.metrics = metrics;
+        this.clock = clock;
+        metrics.registerCircuitState(this);
+    }
+
+    /**
+     * Можно ли сейчас обращаться к Redis. В разомкнутом состоянии по истечении паузы
+     * пропускает ровно одну пробную операцию; если проба не отчиталась за паузу — ещё одну.
+     */
+    public boolean allowRequest() {
+        State current = state.get();
+        if (current == State.CLOSED) {
+            return true;
+        }
+        long now = clock.millis();
+        if (now - stateChangedAt < openMillis) {
+            return false;
+        }
+        if (state.compareAndSet(current, State.HALF_OPEN)) {
+            stateChangedAt = now;
+            return true;
+        }
+        return false;
+    }
+
+    public void recordSuccess() {
+        consecutiveFailures.set(0);
+        if (state.get() != State.CLOSED && state.getAndSet(State.CLOSED) != State.CLOSED) {
+            stateChangedAt = clock.millis();
+            logger.info("Redis снова доступен, кэш работает в обычном режиме");
+            closeListeners.forEach(Runnable::run);
+        }
+    }
+
+    public void recordFailure(RuntimeException e) {
+        State current = state.get();
+        if (current == State.HALF_OPEN || consecutiveFailures.incrementAndGet() >= failureThreshold) {
+            if (current != State.OPEN && state.compareAndSet(current, State.OPEN)) {
+                stateChangedAt = clock.millis();
+                metrics.recordCircuitOpened();
+                logger.warn("Redis недоступен, кэш переключён на локальный уровень на {} мс: {}",
+                        openMillis, e.getMessage());
+            }
+        }
+    }
+
+    public State getState() {
+        return state.get();
+    }
+
+    public void onClose(Runnable listener) {
+        closeListeners.add(listener);
+    }
+}
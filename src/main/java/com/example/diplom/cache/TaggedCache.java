@@ -0,0 +1,136 @@
+package com.example.diplom.cache;
+
+import org.springframework.cache.Cache;
+
+import java.time.Duration;
+import java.util.concurrent.Callable;
+
+/**
+ * Обёртка над кэшем Redis: переводит ключ в форму с hash tag владельца
+ * и регистрирует каждую запись в теге владельца для {@link CacheInvalidator}.
+ * Если задана {@link CacheLoadLock}, промах при get(key, loader) вычисляется одним узлом кластера.
+ */
+public class TaggedCache implements Cache {
+
+    private final Cache delegate;
+    private final CacheInvalidator invalidator;
+    private final Duration ttl;
+    private final CacheLoadLock loadLock;
+
+    public TaggedCache(Cache delegate, CacheInvalidator invalidator, Duration ttl) {
+        this(delegate, invalidator, ttl, null);
+    }
+
+    public TaggedCache(Cache delegate, CacheInvalidator invalidator, Duration ttl, CacheLoadLock loadLock) {
+        this.delegate = delegate;
+        this.invalidator = invalidator;
+        this.ttl = ttl;
+        this.loadLock = loadLock;
+    }
+
+    @Override
+    public String getName() {
+        return delegate.getName();
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return delegate.getNativeCache();
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        return delegate.get(CacheInvalidator.hashTagged(key));
+    }
+
+    @Override
+    public <T> T get(Object key, Class<T> type) {
+        return delegate.get(CacheInvalidator.hashTagged(key), type);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        ValueWrapper cached = get(key);
+        if (cached != null) {
+            return (T) cached.get();
+        }
+        if (loadLock == null) {
+            return load(key, valueLoader);
+        }
+        String redisKey = redisKey(CacheInvalidator.hashTagged(key));
+        String token = loadLock.tryAcquire(redisKey);
+        if (token == null) {
+            ValueWrapper loaded = loadLock.await(() -> get(key));
+            // Узел-владелец блокировки не успел или упал — считаем сами.
+            return loaded != null ? (T) loaded.get() : load(key, valueLoader);
+        }
+        try {
+            return load(key, valueLoader);
+        } finally {
+            loadLock.release(redisKey, token);
+        }
+    }
+
+    private <T> T load(Object key, Callable<T> valueLoader) {
+        T value;
+        try {
+            value = valueLoader.call();
+        } catch (Exception e) {
+            throw new ValueRetrievalException(key, valueLoader, e);
+        }
+        put(key, value);
+        return value;
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        String taggedKey = CacheInvalidator.hashTagged(key);
+        delegate.put(taggedKey, value);
+        tagOrEvict(key, taggedKey);
+    }
+
+    @Override
+    public ValueWrapper putIfAbsent(Object key, Object value) {
+        String taggedKey = CacheInvalidator.hashTagged(key);
+        ValueWrapper existing = delegate.putIfAbsent(taggedKey, value);
+        if (existing == null) {
+            tagOrEvict(key, taggedKey);
+        }
+        return existing;
+    }
+
+    /**
+     * Регистрирует запись в теге владельца. Запись без тега инвалидация не найдёт,
+     * поэтому при ошибке тегирования она удаляется, а ошибка передаётся дальше.
+     */
+    private void tagOrEvict(Object key, String taggedKey) {
+        try {
+            invalidator.tag(getName(), CacheInvalidator.ownerOf(key), redisKey(taggedKey), ttl);
+        } catch (RuntimeException e) {
+            try {
+                delegate.evict(taggedKey);
+            } catch (RuntimeException evictError) {
+                e.addSuppressed(evictError);
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public void evict(Object key) {
+        delegate.evict(CacheInvalidator.hashTagged(key));
+    }
+
+    @Override
+    public void clear() {
+        delegate.clear();
+    }
+
+    /**
+     * Полный ключ в Redis с префиксом кэша по умолчанию ("имя::").
+     */
+    private String redisKey(String taggedKey) {
+        return getName() + "::" + taggedKey;
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.diplom.cache;
+
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Оборачивает кэши базового менеджера в {@link TaggedCache}.
+ */
+public class TaggedCacheManager implements CacheManager {
+
+    private final CacheManager delegate;
+    private final CacheInvalidator invalidator;
+    private final Duration ttl;
+    private final CacheLoadLock loadLock;
+    private final ConcurrentMap<String, Cache> caches = new ConcurrentHashMap<>();
+
+    /**
+     * @param loadLock межузловая блокировка загрузки или null, если достаточно локального single-flight
+     */
+    public TaggedCacheManager(CacheManager delegate, CacheInvalidator invalidator, Duration ttl,
+                              CacheLoadLock loadLock) {
+        this.delegate = delegate;
+        this.invalidator = invalidator;
+        this.ttl = ttl;
+        this.loadLock = loadLock;
+    }
+
+    @Override
+    public Cache getCache(String name) {
+        Cache cache = caches.get(name);
+        if (cache != null) {
+            return cache;
+        }
+        Cache target = delegate.getCache(name);
+        return target != null
+                ? caches.computeIfAbsent(name, n -> new TaggedCache(target, invalidator, ttl, loadLock))
+                : null;
+    }
+
+    @Override
+    public Collection<String> getCacheNames() {
+        return delegate.getCacheNames();
+    }
+}
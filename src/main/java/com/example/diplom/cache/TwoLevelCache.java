@@ -0,0 +1,201 @@
+package com.example.diplom.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cache.support.SimpleValueWrapper;
+import org.springframework.security.concurrent.DelegatingSecurityContextRunnable;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
+
+/**
+ * Двухуровневый кэш: локальный Caffeine (L1) перед общим кэшем Redis (L2).
+ * Попадание в L1 обходится без сетевого запроса и десериализации.
+ * L1 хранит ValueWrapper, чтобы кэшировать и null-значения так же, как L2.
+ * <p>
+ * Промахи get(key, loader) (методы с {@code @Cacheable(sync = true)}) вычисляются один раз
+ * на узел: остальные потоки ждут результат первого. Для ключей с stale-while-revalidate
+ * инвалидированное значение ещё недолго отдаётся сразу, а новое считается в фоне.
+ * Промах и попадание в Redis учитываются в метриках один раз на вычисление, а не на каждый ждущий поток.
+ */
+public class TwoLevelCache implements org.springframework.cache.Cache {
+
+    private static final Logger logger = LoggerFactory.getLogger(TwoLevelCache.class);
+
+    private final org.springframework.cache.Cache remote;
+    private final Cache<Object, ValueWrapper> local;
+    private final CacheInvalidator invalidator;
+    private final CacheMetrics metrics;
+    private final Cache<Object, ValueWrapper> stale;
+    private final Predicate<Object> staleWhileRevalidate;
+    private final Executor refreshExecutor;
+    private final SingleFlight singleFlight = new SingleFlight();
+
+    public TwoLevelCache(org.springframework.cache.Cache remote,
+                         Cache<Object, ValueWrapper> local,
+                         CacheInvalidator invalidator,
+                         CacheMetrics metrics) {
+        this(remote, local, invalidator, metrics, null, key -> false, Runnable::run);
+    }
+
+    /**
+     * @param stale хранилище инвалидированных значений для stale-while-revalidate или null
+     */
+    public TwoLevelCache(org.springframework.cache.Cache remote,
+                         Cache<Object, ValueWrapper> local,
+                         CacheInvalidator invalidator,
+                         CacheMetrics metrics,
+                         Cache<Object, ValueWrapper> stale,
+                         Predicate<Object> staleWhileRevalidate,
+                         Executor refreshExecutor) {
+        this.remote = remote;
+        this.local = local;
+        this.invalidator = invalidator;
+        this.metrics = metrics;
+        this.stale = stale;
+        this.staleWhileRevalidate = staleWhileRevalidate;
+        this.refreshExecutor = refreshExecutor;
+    }
+
+    @Override
+    public String getName() {
+        return remote.getName();
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return remote.getNativeCache();
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        ValueWrapper cached = local.getIfPresent(key);
+        if (cached != null) {
+            metrics.recordLookup(getName(), key, CacheMetrics.RESULT_LOCAL_HIT);
+            return cached;
+        }
+        ValueWrapper loaded = remote.get(key);
+        if (loaded != null) {
+            local.put(key, new SimpleValueWrapper(loaded.get()));
+        }
+        metrics.recordLookup(getName(), key, loaded != null ? CacheMetrics.RESULT_REMOTE_HIT : CacheMetrics.RESULT_MISS);
+        return loaded;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Class<T> type) {
+        ValueWrapper wrapper = get(key);
+        Object value = wrapper != null ? wrapper.get() : null;
+        if (value != null && type != null && !type.isInstance(value)) {
+            throw new IllegalStateException("Значение в кэше " + getName() + " не является " + type.getName());
+        }
+        return (T) value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        ValueWrapper cached = local.getIfPresent(key);
+        if (cached != null) {
+            metrics.recordLookup(getName(), key, CacheMetrics.RESULT_LOCAL_HIT);
+            return (T) cached.get();
+        }
+        ValueWrapper previous = stale != null ? stale.getIfPresent(key) : null;
+        if (previous != null) {
+            metrics.recordLookup(getName(), key, CacheMetrics.RESULT_STALE_HIT);
+            refreshAsync(key, valueLoader);
+            return (T) previous.get();
+        }
+        return load(key, valueLoader);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T load(Object key, Callable<T> valueLoader) {
+        return singleFlight.execute(key, () -> {
+            ValueWrapper cached = local.getIfPresent(key);
+            if (cached != null) {
+                return (T) cached.get();
+            }
+            AtomicBoolean computed = new AtomicBoolean();
+            Callable<T> timedLoader = metrics.timed(getName(), key, valueLoader);
+            T value = remote.get(key, () -> {
+                computed.set(true);
+                return timedLoader.call();
+            });
+            metrics.recordLookup(getName(), key,
+                    computed.get() ? CacheMetrics.RESULT_MISS : CacheMetrics.RESULT_REMOTE_HIT);
+            local.put(key, new SimpleValueWrapper(value));
+            if (stale != null) {
+                stale.invalidate(key);
+            }
+            return value;
+        });
+    }
+
+    private void refreshAsync(Object key, Callable<?> valueLoader) {
+        if (singleFlight.isLoading(key)) {
+            return;
+        }
+        refreshExecutor.execute(new DelegatingSecurityContextRunnable(() -> {
+            try {
+                load(key, valueLoader);
+            } catch (RuntimeException e) {
+                logger.warn("Не удалось обновить запись {} кэша {} в фоне", key, getName(), e);
+            }
+        }));
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        remote.put(key, value);
+        local.put(key, new SimpleValueWrapper(value));
+    }
+
+    @Override
+    public ValueWrapper putIfAbsent(Object key, Object value) {
+        ValueWrapper existing = remote.putIfAbsent(key, value);
+        local.put(key, new SimpleValueWrapper(existing != null ? existing.get() : value));
+        return existing;
+    }
+
+    @Override
+    public void evict(Object key) {
+        remote.evict(key);
+        local.invalidate(key);
+        String owner = CacheInvalidator.ownerOf(key);
+        String rest = String.valueOf(key).substring(owner.length());
+        invalidator.broadcast(getName(), owner,
+                rest.isEmpty() ? List.of() : List.of(rest.substring(1)));
+    }
+
+    @Override
+    public void clear() {
+        remote.clear();
+        local.invalidateAll();
+        if (stale != null) {
+            stale.invalidateAll();
+        }
+    }
+
+    /**
+     * Удаляет из L1 записи владельца (ключи вида "id:..."), подходящие под селекторы.
+     * Значения stale-while-revalidate переносятся в хранилище устаревших.
+     */
+    void evictLocal(String owner, Collection<String> selectors) {
+        local.asMap().entrySet().removeIf(entry -> {
+            if (!CacheInvalidator.matches(entry.getKey(), owner, selectors)) {
+                return false;
+            }
+            if (stale != null && staleWhileRevalidate.test(entry.getKey())) {
+                stale.put(entry.getKey(), entry.getValue());
+            }
+            return true;
+        });
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.diplom.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+
+/**
+ * Оборачивает кэши базового менеджера (Redis) в {@link TwoLevelCache} с локальным L1 на каждом узле.
+ * Размер L1 ограничен числом закэшированных объектов, а не байтами: коллекция весит
+ * столько, сколько в ней элементов, остальные значения — единицу. Бюджет задаётся в этих единицах.
+ * TTL локальных записей короче, чем в Redis, — это страховка на случай потерянного сообщения pub/sub.
+ * Фоновое обновление stale-while-revalidate выполняется на refreshExecutor.
+ * Обращения к Redis идут через {@link CircuitBreakingCache}: при недоступности Redis L1 остаётся
+ * единственным уровнем, а промахи считаются напрямую из базы.
+ */
+public class TwoLevelCacheManager implements CacheManager {
+
+    private final CacheManager delegate;
+    private final CacheInvalidator invalidator;
+    private final CacheMetrics metrics;
+    private final RedisCircuitBreaker circuitBreaker;
+    private final LocalCacheSettings settings;
+    private final Executor refreshExecutor;
+    private final ConcurrentMap<String, TwoLevelCache> caches = new ConcurrentHashMap<>();
+
+    public TwoLevelCacheManager(CacheManager delegate, CacheInvalidator invalidator, CacheMetrics metrics,
+                                RedisCircuitBreaker circuitBreaker, LocalCacheSettings settings,
+                                Executor refreshExecutor) {
+        this.delegate = delegate;
+        this.invalidator = invalidator;
+        this.metrics = metrics;
+        this.circuitBreaker = circuitBreaker;
+        this.settings = settings;
+        this.refreshExecutor = refreshExecutor;
+        invalidator.onLocalEvict(this::evictLocal);
+    }
+
+    @Override
+    public Cache getCache(String name) {
+        TwoLevelCache cache = caches.get(name);
+        if (cache != null) {
+            return cache;
+        }
+        Cache remote = delegate.getCache(name);
+        return remote != null
+                ? caches.computeIfAbsent(name, n -> createCache(new CircuitBreakingCache(remote, circuitBreaker, metrics)))
+                : null;
+    }
+
+    @Override
+    public Collection<String> getCacheNames() {
+        return delegate.getCacheNames();
+    }
+
+    private TwoLevelCache createCache(Cache remote) {
+        com.github.benmanes.caffeine.cache.Cache<Object, Cache.ValueWrapper> local = Caffeine.newBuilder()
+                .maximumWeight(settings.maximumWeightFor(remote.getName()))
+                .weigher((Object key, Cache.ValueWrapper value) -> weigh(value.get()))
+                .expireAfterWrite(settings.ttl())
+                .build();
+        if (settings.staleWhileRevalidate().isEmpty()) {
+            return new TwoLevelCache(remote, local, invalidator, metrics);
+        }
+        com.github.benmanes.caffeine.cache.Cache<Object, Cache.ValueWrapper> stale = Caffeine.newBuilder()
+                .maximumWeight(settings.maximumWeightFor(remote.getName()))
+                .weigher((Object key, Cache.ValueWrapper value) -> weigh(value.get()))
+                .expireAfterWrite(settings.maxStale())
+                .build();
+        return new TwoLevelCache(remote, local, invalidator, metrics, stale,
+                key -> settings.staleWhileRevalidate().contains(CacheInvalidator.methodOf(key)),
+                refreshExecutor);
+    }
+
+    private void evictLocal(String cacheName, String owner, Collection<String> selectors) {
+        TwoLevelCache cache = caches.get(cacheName);
+        if (cache != null) {
+            cache.evictLocal(owner, selectors);
+        }
+    }
+
+    /**
+     * Вес записи L1 в элементах: 1 за саму запись плюс число элементов коллекции или словаря.
+     * Размер значения в байтах не учитывается, чтобы не сериализовать значение при каждой вставке в L1.
+     */
+    static int weigh(Object value) {
+        if (value instanceof Collection<?> collection) {
+            return 1 + collection.size();
+        }
+        if (value instanceof Map<?, ?> map) {
+            return 1 + map.size();
+        }
+        return 1;
+    }
+}
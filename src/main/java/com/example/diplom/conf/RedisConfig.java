@@ -1,28 +1,90 @@
 package com.example.diplom.conf;
 import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import com.fasterxml.jackson.module.paramnames.ParameterNamesModule;
 import com.fasterxml.jackson.databind.jsontype.impl.LaissezFaireSubTypeValidator;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+import com.example.diplom.cache.BypassingCacheErrorHandler;
+import com.example.diplom.cache.CacheInvalidator;
+import com.example.diplom.cache.CacheLoadLock;
+import com.example.diplom.cache.CacheMetrics;
+import com.example.diplom.cache.CacheTtlPolicy;
+import com.example.diplom.cache.CompactRedisSerializer;
+import com.example.diplom.cache.LocalCacheSettings;
+import com.example.diplom.cache.MeteredRedisCacheWriter;
+import com.example.diplom.cache.RedisCircuitBreaker;
+import com.example.diplom.cache.TaggedCacheManager;
+import com.example.diplom.cache.TwoLevelCacheManager;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.data.redis.LettuceClientConfigurationBuilderCustomizer;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.CachingConfigurer;
+import org.springframework.cache.interceptor.CacheErrorHandler;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.cache.RedisCacheConfiguration;
 import org.springframework.data.redis.cache.RedisCacheManager;
+import org.springframework.data.redis.cache.RedisCacheWriter;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.listener.adapter.MessageListenerAdapter;
 import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.RedisSerializationContext.SerializationPair;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
 import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
 
 @Configuration
-public class RedisConfig {
+public class RedisConfig implements CachingConfigurer {
+
+    private final ObjectProvider<CacheMetrics> cacheMetrics;
+
+    @Autowired
+    public RedisConfig(ObjectProvider<CacheMetrics> cacheMetrics) {
+        this.cacheMetrics = cacheMetrics;
+    }
+
+    /**
+     * Ошибка кэша не должна ронять запрос: значение просто считается из базы.
+     */
+    @Override
+    public CacheErrorHandler errorHandler() {
+        return new BypassingCacheErrorHandler(cacheMetrics);
+    }
+
+    /**
+     * Таймаут команд Lettuce по умолчанию — минута; при зависшем Redis запросы ждали бы его целиком.
+     * Короткий таймаут быстро даёт ошибку, и автомат {@link RedisCircuitBreaker} отключает Redis.
+     */
+    @Bean
+    public LettuceClientConfigurationBuilderCustomizer redisCommandTimeoutCustomizer(
+            @Value("${spring.data.redis.timeout:2s}") Duration commandTimeout) {
+        return builder -> builder.commandTimeout(commandTimeout);
+    }
 
     private ObjectMapper redisObjectMapper() {
-        ObjectMapper mapper = new ObjectMapper();
+        return redisObjectMapper(new JsonFactory());
+    }
+
+    /**
+     * ObjectMapper значений кэша поверх заданного формата (JSON или Smile).
+     */
+    public static ObjectMapper redisObjectMapper(JsonFactory factory) {
+        ObjectMapper mapper = new ObjectMapper(factory);
         mapper.registerModule(new ParameterNamesModule())
                 .registerModule(new Jdk8Module())
                 .registerModule(new JavaTimeModule());
@@ -54,17 +116,85 @@ public class RedisConfig {
     }
 
     @Bean
-    public RedisCacheManager cacheManager(RedisConnectionFactory factory) {
+    public LocalCacheSettings localCacheSettings(
+            @Value("${cache.local.max-weight:10000}") long maximumWeight,
+            @Value("#{${cache.local.budgets:{doctorCache: 20000, patientCache: 10000}}}") Map<String, Long> budgets,
+            @Value("${cache.local.ttl:PT5M}") Duration ttl,
+            @Value("${cache.local.stale-while-revalidate:getDoctorVisitDates,getDoctorVisitSummary}") Set<String> staleWhileRevalidate,
+            @Value("${cache.local.max-stale:PT30S}") Duration maxStale) {
+        return new LocalCacheSettings(maximumWeight, budgets, ttl, staleWhileRevalidate, maxStale);
+    }
+
+    @Bean
+    public CacheTtlPolicy cacheTtlPolicy(
+            @Value("${cache.ttl.default:PT1H}") Duration defaultTtl,
+            @Value("${cache.ttl.calendar:PT10M}") Duration calendar,
+            @Value("${cache.ttl.medical-card:PT30M}") Duration medicalCard,
+            @Value("${cache.ttl.services:PT6H}") Duration services,
+            @Value("${cache.ttl.profile:PT1H}") Duration profile) {
+        return new CacheTtlPolicy(defaultTtl, Map.of(
+                CacheTtlPolicy.Group.CALENDAR, calendar,
+                CacheTtlPolicy.Group.MEDICAL_CARD, medicalCard,
+                CacheTtlPolicy.Group.SERVICES, services,
+                CacheTtlPolicy.Group.PROFILE, profile));
+    }
+
+    @Bean
+    public CacheManager cacheManager(RedisConnectionFactory factory, CacheInvalidator cacheInvalidator,
+                                     CacheMetrics cacheMetrics, RedisCircuitBreaker redisCircuitBreaker,
+                                     CacheTtlPolicy cacheTtlPolicy,
+                                     LocalCacheSettings localCacheSettings,
+                                     StringRedisTemplate stringRedisTemplate,
+                                     @Qualifier("applicationTaskExecutor") Executor refreshExecutor,
+                                     @Value("${cache.compact.caches:doctorCache,patientCache}") Set<String> compactCaches,
+                                     @Value("${cache.compact.compression-threshold:2048}") int compressionThreshold,
+                                     @Value("${cache.load-lock.enabled:false}") boolean loadLockEnabled,
+                                     @Value("${cache.load-lock.ttl:PT5S}") Duration loadLockTtl) {
         GenericJackson2JsonRedisSerializer jsonSerializer =
                 new GenericJackson2JsonRedisSerializer(redisObjectMapper());
 
         RedisCacheConfiguration cacheConfig = RedisCacheConfiguration.defaultCacheConfig()
-                .entryTtl(Duration.ofHours(1))
+                .entryTtl(cacheTtlPolicy)
                 .serializeKeysWith(SerializationPair.fromSerializer(new StringRedisSerializer()))
                 .serializeValuesWith(SerializationPair.fromSerializer(jsonSerializer));
 
-        return RedisCacheManager.builder(factory)
-                .cacheDefaults(cacheConfig)
+        RedisCacheConfiguration compactConfig = cacheConfig.serializeValuesWith(SerializationPair.fromSerializer(
+                compactSerializer(jsonSerializer, compressionThreshold)));
+
+        RedisCacheWriter cacheWriter = new MeteredRedisCacheWriter(
+                RedisCacheWriter.nonLockingRedisCacheWriter(factory), cacheMetrics);
+        RedisCacheManager.RedisCacheManagerBuilder builder = RedisCacheManager.builder(cacheWriter)
+                .cacheDefaults(cacheConfig);
+        compactCaches.forEach(name -> builder.withCacheConfiguration(name, compactConfig));
+        RedisCacheManager redisCacheManager = builder.build();
+        redisCacheManager.afterPropertiesSet();
+        CacheLoadLock loadLock = loadLockEnabled ? new CacheLoadLock(stringRedisTemplate, loadLockTtl) : null;
+        return new TwoLevelCacheManager(
+                new TaggedCacheManager(redisCacheManager, cacheInvalidator, cacheTtlPolicy.maxTtl(), loadLock),
+                cacheInvalidator, cacheMetrics, redisCircuitBreaker, localCacheSettings, refreshExecutor);
+    }
+
+    /**
+     * Сериализатор кэшей из cache.compact.caches: Smile с LZ4 выше порога, старые JSON-записи читаются как раньше.
+     */
+    public static CompactRedisSerializer compactSerializer(GenericJackson2JsonRedisSerializer legacySerializer,
+                                                           int compressionThreshold) {
+        SmileFactory smileFactory = SmileFactory.builder()
+                .enable(SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES)
                 .build();
+        return new CompactRedisSerializer(
+                new GenericJackson2JsonRedisSerializer(redisObjectMapper(smileFactory)),
+                legacySerializer, compressionThreshold);
+    }
+
+    @Bean
+    public RedisMessageListenerContainer cacheInvalidationListenerContainer(RedisConnectionFactory factory,
+                                                                           CacheInvalidator cacheInvalidator) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(factory);
+        MessageListenerAdapter listener = new MessageListenerAdapter(cacheInvalidator, "handleMessage");
+        listener.afterPropertiesSet();
+        container.addMessageListener(listener, new ChannelTopic(CacheInvalidator.INVALIDATION_CHANNEL));
+        return container;
     }
 }
\ No newline at end of file
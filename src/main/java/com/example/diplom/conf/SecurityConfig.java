@@ -45,6 +45,9 @@ public class SecurityConfig {
                         .requestMatchers("/auth/**", "/register/**", "/api/specializations", "/swagger-ui/**").permitAll()
                         .requestMatchers("/api/doctors/**").hasRole("DOCTOR")
                         .requestMatchers("/api/patients/**").hasAnyRole("PATIENT", "DOCTOR")
+                        .requestMatchers("/api/attachments/**").hasAnyRole("PATIENT", "DOCTOR")
+                        // Доступ к локальному хранилищу проверяется подписью ссылки.
+                        .requestMatchers("/api/storage/**").permitAll()
                         .requestMatchers("/ws-chat/**").permitAll()
                         .requestMatchers("/ws-notifications/**").permitAll()
                         .anyRequest().authenticated()
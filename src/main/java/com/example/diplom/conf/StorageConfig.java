@@ -0,0 +1,35 @@
+package com.example.diplom.conf;
+
+import com.example.diplom.storage.AttachmentStorage;
+import com.example.diplom.storage.LocalAttachmentStorage;
+import com.example.diplom.storage.MinioAttachmentStorage;
+import io.minio.MinioClient;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Выбор хранилища вложений по storage.type: minio (по умолчанию) или local.
+ */
+@Configuration
+public class StorageConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "storage.type", havingValue = "minio", matchIfMissing = true)
+    public AttachmentStorage minioAttachmentStorage(MinioClient minioClient,
+                                                    @Value("${minio.bucket.name}") String bucketName) {
+        return new MinioAttachmentStorage(minioClient, bucketName);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "storage.type", havingValue = "local")
+    public LocalAttachmentStorage localAttachmentStorage(@Value("${storage.local.root}") Path root,
+                                                        @Value("${storage.local.base-url:http://localhost:8080}") String baseUrl,
+                                                        @Value("${storage.local.secret}") String secret) throws IOException {
+        return new LocalAttachmentStorage(root, baseUrl, secret);
+    }
+}
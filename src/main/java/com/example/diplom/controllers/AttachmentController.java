@@ -0,0 +1,107 @@
+package com.example.diplom.controllers;
+
+import com.example.diplom.controllers.RR.AttachmentPageResponse;
+import com.example.diplom.controllers.interfaces.AttachmentAPI;
+import com.example.diplom.exceptions.ResourceNotFoundException;
+import com.example.diplom.exceptions.StatusResponse;
+import com.example.diplom.services.AttachmentService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.net.URI;
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+
+@RestController
+public class AttachmentController implements AttachmentAPI {
+    private static final Logger logger = LoggerFactory.getLogger(AttachmentController.class);
+
+    private final AttachmentService attachmentService;
+
+    @Autowired
+    public AttachmentController(AttachmentService attachmentService) {
+        this.attachmentService = attachmentService;
+    }
+
+    @Override
+    public ResponseEntity<?> openAttachment(UUID id) {
+        UUID userId = getUserId();
+        logger.debug("Запрос вложения {} пользователем {}", id, userId);
+        return redirect(id, userId, () -> attachmentService.getPresignedUrlForUser(id, userId));
+    }
+
+    @Override
+    public ResponseEntity<?> openAttachmentPreview(UUID id) {
+        UUID userId = getUserId();
+        logger.debug("Запрос превью вложения {} пользователем {}", id, userId);
+        return redirect(id, userId, () -> attachmentService.getPreviewUrlForUser(id, userId));
+    }
+
+    @Override
+    public ResponseEntity<?> getPatientAttachments(UUID patientId, String contentType, LocalDateTime beforeCreated,
+                                                   UUID beforeId, int size) {
+        UUID userId = getUserId();
+        UUID targetId = patientId != null ? patientId : userId;
+        logger.info("Каталог вложений пациента {} для пользователя {}, курсор: {} / {}", targetId, userId, beforeCreated, beforeId);
+        return page(() -> attachmentService.getPatientAttachments(userId, targetId, contentType, beforeCreated, beforeId, size));
+    }
+
+    @Override
+    public ResponseEntity<?> getVisitAttachments(UUID visitId, String contentType, LocalDateTime beforeCreated,
+                                                 UUID beforeId, int size) {
+        UUID userId = getUserId();
+        logger.info("Каталог вложений визита {} для пользователя {}, курсор: {} / {}", visitId, userId, beforeCreated, beforeId);
+        return page(() -> attachmentService.getVisitAttachments(userId, visitId, contentType, beforeCreated, beforeId, size));
+    }
+
+    private ResponseEntity<?> page(Callable<AttachmentPageResponse> catalog) {
+        try {
+            AttachmentPageResponse page = catalog.call();
+            logger.debug("Получено {} вложений", page.attachments().size());
+            return ResponseEntity.ok(page);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(400).body(new StatusResponse("Error", e.getMessage()));
+        } catch (ResourceNotFoundException e) {
+            return ResponseEntity.status(404).body(new StatusResponse("Error", e.getMessage()));
+        } catch (AccessDeniedException e) {
+            return ResponseEntity.status(403).body(new StatusResponse("Error", e.getMessage()));
+        } catch (Exception e) {
+            logger.error("Ошибка при получении каталога вложений", e);
+            return ResponseEntity.status(500).body(new StatusResponse("Error", "Internal server error"));
+        }
+    }
+
+    private ResponseEntity<?> redirect(UUID id, UUID userId, Callable<String> signedUrl) {
+        try {
+            String url = signedUrl.call();
+            // Подписанная ссылка временная, кэшировать переадресацию нельзя.
+            return ResponseEntity.status(HttpStatus.FOUND)
+                    .location(URI.create(url))
+                    .cacheControl(CacheControl.noStore())
+                    .build();
+        } catch (ResourceNotFoundException e) {
+            logger.warn("Вложение или превью не найдено: {}", id);
+            return ResponseEntity.status(404).body(new StatusResponse("Error", e.getMessage()));
+        } catch (AccessDeniedException e) {
+            logger.warn("Доступ к вложению {} запрещён пользователю {}", id, userId);
+            return ResponseEntity.status(403).body(new StatusResponse("Error", e.getMessage()));
+        } catch (Exception e) {
+            logger.error("Ошибка при подписи ссылки на вложение {}", id, e);
+            return ResponseEntity.status(500).body(new StatusResponse("Error", "Internal server error"));
+        }
+    }
+
+    UUID getUserId() {
+        Jwt jwt = (Jwt) SecurityContextHolder.getContext().getAuthentication().getPrincipal();
+        return UUID.fromString(jwt.getClaim("id"));
+    }
+}
@@ -3,20 +3,29 @@ package com.example.diplom.controllers;
 import com.example.diplom.controllers.RR.*;
 import com.example.diplom.controllers.interfaces.DoctorAPI;
 import com.example.diplom.exceptions.StatusResponse;
+import com.example.diplom.exceptions.ResourceNotFoundException;
 import com.example.diplom.services.DoctorService;
+import com.example.diplom.services.MedicalRecordExportService;
+import com.example.diplom.services.dtos.MedicalRecordExport;
 import com.example.diplom.services.dtos.VisitDto;
+import jakarta.servlet.http.HttpServletResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.oauth2.jwt.Jwt;
 
 
+import java.io.IOException;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.UUID;
 import java.util.stream.Collectors;
@@ -25,10 +34,12 @@ import java.util.stream.Collectors;
 public class DoctorController implements DoctorAPI {
     private static final Logger logger = LoggerFactory.getLogger(DoctorController.class);
     private DoctorService doctorService;
+    private final MedicalRecordExportService exportService;
 
     @Autowired
-    public DoctorController(DoctorService doctorService) {
+    public DoctorController(DoctorService doctorService, MedicalRecordExportService exportService) {
         this.doctorService = doctorService;
+        this.exportService = exportService;
     }
 
     @Override
@@ -56,6 +67,15 @@ public class DoctorController implements DoctorAPI {
         return responses;
     }
 
+    @Override
+    public List<VisitDaySummaryResponse> getDoctorVisitSummary(int month, int year) {
+        UUID doctorId = getDoctorId();
+        logger.info("Получение сводки посещений для доктора с id: {}, месяц: {}, год: {}", doctorId, month, year);
+        List<VisitDaySummaryResponse> summary = doctorService.getDoctorVisitSummary(doctorId, month, year);
+        logger.debug("Найдено {} дней с посещениями", summary.size());
+        return summary;
+    }
+
     @Override
     public List<VisitDateResponse> getDoctorVisitDatesByDay(String date) {
         UUID doctorId = getDoctorId();
@@ -105,6 +125,20 @@ public class DoctorController implements DoctorAPI {
         return ResponseEntity.status(HttpStatus.CREATED).body(response);
     }
 
+    @Override
+    public ResponseEntity<?> getFreeSlots(LocalDateTime from, LocalDateTime to, int duration) {
+        UUID doctorId = getDoctorId();
+        logger.info("Поиск свободных окон для доктора с id: {} с {} по {}, длительность: {} мин", doctorId, from, to, duration);
+        try {
+            List<FreeSlotResponse> slots = doctorService.findFreeSlots(doctorId, from, to, duration);
+            logger.debug("Найдено {} свободных окон для доктора с id: {}", slots.size(), doctorId);
+            return ResponseEntity.ok(slots);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Некорректный запрос свободных окон: {}", e.getMessage());
+            return ResponseEntity.status(400).body(new StatusResponse("Error", e.getMessage()));
+        }
+    }
+
     @Override
     public ResponseEntity<StatusResponse> updateServicePrice(@RequestBody UpdateServiceRequest updateServiceRequest) {
         UUID doctorId = getDoctorId();
@@ -169,6 +203,31 @@ public class DoctorController implements DoctorAPI {
         return ResponseEntity.ok(response);
     }
 
+    @Override
+    public ResponseEntity<?> exportPatientMedicalCard(UUID patientId, HttpServletResponse response) {
+        UUID doctorId = getDoctorId();
+        logger.info("Выгрузка медицинской карты пациента с id: {} для доктора с id: {}", patientId, doctorId);
+        MedicalRecordExport export;
+        try {
+            export = exportService.exportForDoctor(doctorId, patientId);
+        } catch (ResourceNotFoundException e) {
+            logger.warn("Пациент не найден: {}", e.getMessage());
+            return ResponseEntity.status(404).body(new StatusResponse("Error", e.getMessage()));
+        } catch (AccessDeniedException e) {
+            logger.warn("Доступ к медкарте пациента {} запрещён доктору {}", patientId, doctorId);
+            return ResponseEntity.status(403).body(new StatusResponse("Error", e.getMessage()));
+        }
+        response.setContentType("application/zip");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                ContentDisposition.attachment().filename(export.fileName()).build().toString());
+        try {
+            export.writeTo(response.getOutputStream());
+        } catch (IOException e) {
+            logger.warn("Выгрузка медкарты пациента с id: {} прервана: {}", patientId, e.getMessage());
+        }
+        return null;
+    }
+
     @Override
     public ResponseEntity<byte[]> getFinancialDashboardReport(@RequestBody ReportRequest reportRequest) {
         UUID doctorId = getDoctorId();
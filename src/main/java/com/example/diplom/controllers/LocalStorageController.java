@@ -0,0 +1,92 @@
+package com.example.diplom.controllers;
+
+import com.example.diplom.exceptions.StatusResponse;
+import com.example.diplom.storage.LocalAttachmentStorage;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.util.OptionalLong;
+
+/**
+ * Раздача и приём файлов локального хранилища по подписанным ссылкам
+ * (аналог presigned URL MinIO). Авторизация — только подпись и срок ссылки.
+ */
+@RestController
+@RequestMapping("/api/storage")
+@ConditionalOnProperty(name = "storage.type", havingValue = "local")
+public class LocalStorageController {
+    private static final Logger logger = LoggerFactory.getLogger(LocalStorageController.class);
+
+    private final LocalAttachmentStorage storage;
+
+    @Autowired
+    public LocalStorageController(LocalAttachmentStorage storage) {
+        this.storage = storage;
+    }
+
+    @GetMapping("/{key}")
+    public ResponseEntity<?> download(@PathVariable String key,
+                                      @RequestParam long expires,
+                                      @RequestParam String signature,
+                                      HttpServletResponse response) {
+        if (!storage.verify("GET", key, expires, signature)) {
+            logger.warn("Отклонена ссылка на скачивание объекта {}", key);
+            return ResponseEntity.status(403).body(new StatusResponse("Error", "Invalid or expired signature"));
+        }
+        try {
+            OptionalLong size = storage.size(key);
+            if (size.isEmpty()) {
+                return ResponseEntity.status(404).body(new StatusResponse("Error", "Object not found"));
+            }
+            response.setContentType(MediaTypeFactory.getMediaType(key)
+                    .orElse(MediaType.APPLICATION_OCTET_STREAM).toString());
+            response.setContentLengthLong(size.getAsLong());
+            response.setHeader(HttpHeaders.CACHE_CONTROL, CacheControl.noStore().getHeaderValue());
+            // Файл копируется из FileChannel прямо в поток ответа, ответ уже сформирован.
+            storage.transferTo(key, Channels.newChannel(response.getOutputStream()));
+            return null;
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(400).body(new StatusResponse("Error", e.getMessage()));
+        } catch (Exception e) {
+            logger.error("Ошибка при чтении объекта {}", key, e);
+            return ResponseEntity.status(500).body(new StatusResponse("Error", "Internal server error"));
+        }
+    }
+
+    @PutMapping("/{key}")
+    public ResponseEntity<?> upload(@PathVariable String key,
+                                    @RequestParam long expires,
+                                    @RequestParam String signature,
+                                    HttpServletRequest request) {
+        if (!storage.verify("PUT", key, expires, signature)) {
+            logger.warn("Отклонена ссылка на загрузку объекта {}", key);
+            return ResponseEntity.status(403).body(new StatusResponse("Error", "Invalid or expired signature"));
+        }
+        try (InputStream content = request.getInputStream()) {
+            storage.put(key, content, request.getContentLengthLong(), request.getContentType());
+            return ResponseEntity.ok(new StatusResponse("CREATED", "Object stored"));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(400).body(new StatusResponse("Error", e.getMessage()));
+        } catch (Exception e) {
+            logger.error("Ошибка при записи объекта {}", key, e);
+            return ResponseEntity.status(500).body(new StatusResponse("Error", "Internal server error"));
+        }
+    }
+}
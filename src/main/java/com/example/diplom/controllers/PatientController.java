@@ -6,12 +6,17 @@ import com.example.diplom.exceptions.AlreadyLinkedException;
 import com.example.diplom.exceptions.ResourceNotFoundException;
 import com.example.diplom.exceptions.StatusResponse;
 import com.example.diplom.services.AttachmentService;
+import com.example.diplom.services.MedicalRecordExportService;
 import com.example.diplom.services.PatientService;
 import com.example.diplom.services.dtos.AttachmentDto;
+import com.example.diplom.services.dtos.MedicalRecordExport;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -22,6 +27,7 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.io.IOException;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.UUID;
 
@@ -31,11 +37,14 @@ public class PatientController implements PatientAPI {
 
     private final AttachmentService attachmentService;
     private final PatientService patientService;
+    private final MedicalRecordExportService exportService;
 
     @Autowired
-    public PatientController(AttachmentService attachmentService, PatientService patientService) {
+    public PatientController(AttachmentService attachmentService, PatientService patientService,
+                             MedicalRecordExportService exportService) {
         this.attachmentService = attachmentService;
         this.patientService = patientService;
+        this.exportService = exportService;
     }
 
     @Override
@@ -60,6 +69,43 @@ public class PatientController implements PatientAPI {
         }
     }
 
+    @Override
+    public ResponseEntity<?> startAttachmentUpload(@Valid @RequestBody StartAttachmentUploadRequest request) {
+        UUID patientId = getPatientId();
+        logger.info("Начало прямой загрузки вложения для пациента с id: {}", patientId);
+        try {
+            return ResponseEntity.ok(attachmentService.startUpload(patientId, request));
+        } catch (ResourceNotFoundException e) {
+            logger.warn("Не найден ресурс для пациента с id: {}. Ошибка: {}", patientId, e.getMessage());
+            return ResponseEntity.status(404).body(new StatusResponse("Error", e.getMessage()));
+        } catch (Exception e) {
+            logger.error("Ошибка при подготовке загрузки вложения", e);
+            return ResponseEntity.status(500).body(new StatusResponse("Error", "Internal server error"));
+        }
+    }
+
+    @Override
+    public ResponseEntity<?> completeAttachmentUpload(UUID id) {
+        UUID patientId = getPatientId();
+        logger.info("Подтверждение загрузки вложения {} для пациента с id: {}", id, patientId);
+        try {
+            attachmentService.completeUpload(patientId, id);
+            return ResponseEntity.ok(new StatusResponse("Add", "Attachment added"));
+        } catch (ResourceNotFoundException e) {
+            logger.warn("Вложение или файл не найдены: {}", e.getMessage());
+            return ResponseEntity.status(404).body(new StatusResponse("Error", e.getMessage()));
+        } catch (AccessDeniedException e) {
+            logger.warn("Доступ запрещён: {}", e.getMessage());
+            return ResponseEntity.status(403).body(new StatusResponse("Error", e.getMessage()));
+        } catch (IllegalArgumentException e) {
+            logger.warn("Загруженный файл отклонён: {}", e.getMessage());
+            return ResponseEntity.status(400).body(new StatusResponse("Error", e.getMessage()));
+        } catch (Exception e) {
+            logger.error("Ошибка при подтверждении загрузки вложения", e);
+            return ResponseEntity.status(500).body(new StatusResponse("Error", "Internal server error"));
+        }
+    }
+
     @Override
     public ResponseEntity<?> deleteAttachment(@RequestParam("url") String url) {
         UUID patientId = getPatientId();
@@ -88,6 +134,29 @@ public class PatientController implements PatientAPI {
         return ResponseEntity.ok(doctors);
     }
 
+    @Override
+    public ResponseEntity<?> exportMedicalRecord(HttpServletResponse response) {
+        UUID patientId = getPatientId();
+        logger.info("Выгрузка медкарты пациента с id: {}", patientId);
+        MedicalRecordExport export;
+        try {
+            export = exportService.exportForPatient(patientId);
+        } catch (ResourceNotFoundException e) {
+            logger.warn("Пациент не найден: {}", e.getMessage());
+            return ResponseEntity.status(404).body(new StatusResponse("Error", e.getMessage()));
+        }
+        // Архив пишется прямо в ответ по мере чтения файлов; после первого байта статус уже не изменить.
+        response.setContentType("application/zip");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                ContentDisposition.attachment().filename(export.fileName()).build().toString());
+        try {
+            export.writeTo(response.getOutputStream());
+        } catch (IOException e) {
+            logger.warn("Выгрузка медкарты пациента с id: {} прервана: {}", patientId, e.getMessage());
+        }
+        return null;
+    }
+
     @Override
     public ResponseEntity<List<PatientVisitDetailsResponse>> getVisitsByPatient(UUID id) {
         logger.info("Получение списка визитов пациента");
@@ -97,6 +166,15 @@ public class PatientController implements PatientAPI {
         return ResponseEntity.ok(visits);
     }
 
+    @Override
+    public ResponseEntity<PatientVisitPageResponse> getVisitsByPatientPage(UUID id, LocalDateTime beforeDate, UUID beforeId, int size) {
+        UUID patientId = (id != null) ? id : getPatientId();
+        logger.info("Получение страницы визитов пациента с id: {}, курсор: {} / {}", patientId, beforeDate, beforeId);
+        PatientVisitPageResponse page = patientService.getVisitsByPatientPage(patientId, beforeDate, beforeId, size);
+        logger.debug("Получено {} визитов", page.visits().size());
+        return ResponseEntity.ok(page);
+    }
+
     @Override
     public ResponseEntity<PatientProfileResponse> getPatientProfile(UUID id) {
         UUID patientId = (id != null) ? id : getPatientId();
@@ -0,0 +1,24 @@
+package com.example.diplom.controllers.RR;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Вложение в каталоге. url/previewUrl — ссылки /api/attachments/{id}; previewUrl null, пока превью нет.
+ * Размер, тип, контрольная сумма и размеры изображения пустые у вложений, загруженных до их учёта.
+ */
+public record AttachmentMetadataResponse(
+        UUID id,
+        UUID visitId,
+        String url,
+        String previewUrl,
+        String fileName,
+        String description,
+        String contentType,
+        Long size,
+        String checksum,
+        LocalDateTime uploadedAt,
+        Integer width,
+        Integer height
+) {
+}
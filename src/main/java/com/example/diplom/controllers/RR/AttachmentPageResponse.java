@@ -0,0 +1,16 @@
+package com.example.diplom.controllers.RR;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Страница каталога вложений, от новых к старым. nextCreated/nextId — курсор следующей страницы,
+ * null, если вложений больше нет.
+ */
+public record AttachmentPageResponse(
+        List<AttachmentMetadataResponse> attachments,
+        LocalDateTime nextCreated,
+        UUID nextId
+) {
+}
@@ -0,0 +1,11 @@
+package com.example.diplom.controllers.RR;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+public record AttachmentUploadResponse(
+        UUID attachmentId,
+        String uploadUrl,
+        LocalDateTime expiresAt
+) {
+}
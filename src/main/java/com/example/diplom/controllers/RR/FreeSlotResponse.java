@@ -0,0 +1,6 @@
+package com.example.diplom.controllers.RR;
+
+import java.time.LocalDateTime;
+
+public record FreeSlotResponse(LocalDateTime start, LocalDateTime end) {
+}
@@ -0,0 +1,16 @@
+package com.example.diplom.controllers.RR;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Страница истории визитов. nextVisitDate/nextVisitId — курсор следующей страницы,
+ * null, если визитов больше нет.
+ */
+public record PatientVisitPageResponse(
+        List<PatientVisitDetailsResponse> visits,
+        LocalDateTime nextVisitDate,
+        UUID nextVisitId
+) {
+}
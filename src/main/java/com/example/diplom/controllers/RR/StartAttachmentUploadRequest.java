@@ -0,0 +1,22 @@
+package com.example.diplom.controllers.RR;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+
+import java.util.UUID;
+
+public record StartAttachmentUploadRequest(
+
+        @NotNull(message = "Visit ID cannot be null")
+        UUID visitId,
+
+        @NotBlank(message = "File name cannot be empty")
+        @Size(max = 255, message = "File name cannot exceed 255 characters")
+        String fileName,
+
+        @Size(max = 500, message = "Description cannot exceed 500 characters")
+        String description
+
+) {
+}
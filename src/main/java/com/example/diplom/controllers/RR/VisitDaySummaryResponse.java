@@ -0,0 +1,6 @@
+package com.example.diplom.controllers.RR;
+
+import java.time.LocalDate;
+
+public record VisitDaySummaryResponse(LocalDate date, Long visits, Long finished) {
+}
@@ -0,0 +1,68 @@
+package com.example.diplom.controllers.interfaces;
+
+import com.example.diplom.exceptions.StatusResponse;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Tag(name = "attachments")
+@ApiResponses({
+        @ApiResponse(responseCode = "302", description = "Переадресация на подписанную ссылку файла"),
+        @ApiResponse(responseCode = "401", description = "Пользователь не авторизован", content =
+        @Content(mediaType = "application/json", schema = @Schema(implementation = StatusResponse.class))),
+        @ApiResponse(responseCode = "403", description = "Нет доступа к вложению", content =
+        @Content(mediaType = "application/json", schema = @Schema(implementation = StatusResponse.class))),
+        @ApiResponse(responseCode = "404", description = "Ресурс не найден", content =
+        @Content(mediaType = "application/json", schema = @Schema(implementation = StatusResponse.class))),
+        @ApiResponse(responseCode = "500", description = "Внутренняя ошибка сервера", content =
+        @Content(mediaType = "application/json", schema = @Schema(implementation = StatusResponse.class)))
+})
+@RequestMapping("/api/attachments")
+public interface AttachmentAPI {
+
+    @Operation(summary = "Открыть вложение: переадресация на свежую подписанную ссылку MinIO")
+    @GetMapping(value = "/{id}")
+    ResponseEntity<?> openAttachment(@PathVariable("id") UUID id);
+
+    @Operation(summary = "Открыть превью вложения (JPEG до 320px); 404, пока превью не построено")
+    @GetMapping(value = "/{id}/preview")
+    ResponseEntity<?> openAttachmentPreview(@PathVariable("id") UUID id);
+
+    @Operation(summary = "Каталог вложений пациента: размер, тип, контрольная сумма, от новых к старым")
+    @GetMapping
+    ResponseEntity<?> getPatientAttachments(
+            @Parameter(description = "ID пациента (если не указан, берётся из контекста авторизации)", required = false)
+            @RequestParam(value = "patientId", required = false) UUID patientId,
+            @Parameter(description = "Префикс MIME-типа, например image/ или application/pdf", required = false)
+            @RequestParam(value = "contentType", required = false) String contentType,
+            @Parameter(description = "nextCreated из предыдущей страницы", required = false)
+            @RequestParam(value = "beforeCreated", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime beforeCreated,
+            @Parameter(description = "nextId из предыдущей страницы", required = false)
+            @RequestParam(value = "beforeId", required = false) UUID beforeId,
+            @RequestParam(value = "size", defaultValue = "20") int size);
+
+    @Operation(summary = "Каталог вложений визита")
+    @GetMapping(value = "/visits/{visitId}")
+    ResponseEntity<?> getVisitAttachments(
+            @PathVariable("visitId") UUID visitId,
+            @Parameter(description = "Префикс MIME-типа, например image/ или application/pdf", required = false)
+            @RequestParam(value = "contentType", required = false) String contentType,
+            @Parameter(description = "nextCreated из предыдущей страницы", required = false)
+            @RequestParam(value = "beforeCreated", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime beforeCreated,
+            @Parameter(description = "nextId из предыдущей страницы", required = false)
+            @RequestParam(value = "beforeId", required = false) UUID beforeId,
+            @RequestParam(value = "size", defaultValue = "20") int size);
+}
@@ -3,14 +3,18 @@ package com.example.diplom.controllers.interfaces;
 import com.example.diplom.controllers.RR.*;
 import com.example.diplom.exceptions.StatusResponse;
 import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.UUID;
 
@@ -39,6 +43,13 @@ public interface DoctorAPI {
             @RequestParam("month") int month,
             @RequestParam("year") int year
     );
+    @Operation(summary = "Получить сводку визитов врача по дням за указанный месяц")
+    @GetMapping(value = "/visits/dates/summary")
+    List<VisitDaySummaryResponse> getDoctorVisitSummary(
+            @RequestParam("month") int month,
+            @RequestParam("year") int year
+    );
+
     @Operation(summary = "Получить визиты врача за указанный день")
     @GetMapping(value = "/visits/day")
     List<VisitDateResponse> getDoctorVisitDatesByDay(
@@ -57,6 +68,14 @@ public interface DoctorAPI {
     @PostMapping(value = "/visits")
     ResponseEntity<CreateVisitResponse> createVisit(@RequestBody CreateVisitRequest visitRequest);
 
+    @Operation(summary = "Найти свободные окна врача в указанном интервале")
+    @GetMapping(value = "/visits/free-slots")
+    ResponseEntity<?> getFreeSlots(
+            @RequestParam("from") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam("to") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(value = "duration", defaultValue = "15") int duration
+    );
+
     @Operation(summary = "Обновить цену услуги доктора")
     @PutMapping(value = "/services/update-price")
     ResponseEntity<StatusResponse> updateServicePrice(
@@ -86,6 +105,11 @@ public interface DoctorAPI {
     @GetMapping("/visits/medical-card")
     ResponseEntity<PatientMedCardResponse> getPatientMedicalCard(@RequestParam("patientId") UUID patientId);
 
+    @Operation(summary = "Выгрузить медицинскую карту пациента ZIP-архивом вместе с вложениями")
+    @GetMapping("/visits/medical-card/export")
+    ResponseEntity<?> exportPatientMedicalCard(@RequestParam("patientId") UUID patientId,
+                                               @Parameter(hidden = true) HttpServletResponse response);
+
 
     @Operation(summary = "Создать и получить отчет")
     @PostMapping("/report")
@@ -9,10 +9,13 @@ import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.UUID;
 
@@ -39,15 +42,38 @@ public interface PatientAPI {
     @PostMapping(value = "/add-attachment", consumes = {"multipart/form-data"})
     ResponseEntity<?> AddAttachment(@ModelAttribute AddAttachmentRequest addAttachmentRequest);
 
+    @Operation(summary = "Начать загрузку вложения напрямую в хранилище: ссылка PUT и id вложения")
+    @PostMapping(value = "/attachments/upload")
+    ResponseEntity<?> startAttachmentUpload(@RequestBody @Valid StartAttachmentUploadRequest request);
+
+    @Operation(summary = "Подтвердить загрузку вложения и привязать его к визиту")
+    @PostMapping(value = "/attachments/{id}/complete")
+    ResponseEntity<?> completeAttachmentUpload(@PathVariable("id") UUID id);
+
     @Operation(summary = "удалить вложение")
     @DeleteMapping(value = "/delete-attachment")
     ResponseEntity<?> deleteAttachment(@RequestParam("url") String url);
 
+    @Operation(summary = "Выгрузить медкарту ZIP-архивом: сводка визитов и все вложения")
+    @GetMapping(value = "/export")
+    ResponseEntity<?> exportMedicalRecord(@Parameter(hidden = true) HttpServletResponse response);
+
     @Operation(summary = "Получить визиты пациента")
     @GetMapping(value = "/get-patient-visits")
     ResponseEntity<List<PatientVisitDetailsResponse>> getVisitsByPatient(@Parameter(description = "ID пациента (если не указан, берётся из контекста авторизации)", required = false)
                                                                          @RequestParam(value = "id", required = false) UUID id);
 
+    @Operation(summary = "Получить страницу визитов пациента, от новых к старым")
+    @GetMapping(value = "/get-patient-visits/page")
+    ResponseEntity<PatientVisitPageResponse> getVisitsByPatientPage(
+            @Parameter(description = "ID пациента (если не указан, берётся из контекста авторизации)", required = false)
+            @RequestParam(value = "id", required = false) UUID id,
+            @Parameter(description = "Дата визита из курсора предыдущей страницы", required = false)
+            @RequestParam(value = "beforeDate", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime beforeDate,
+            @Parameter(description = "ID визита из курсора предыдущей страницы", required = false)
+            @RequestParam(value = "beforeId", required = false) UUID beforeId,
+            @RequestParam(value = "size", defaultValue = "20") int size);
+
     @Operation(summary = "Получить всех врачей пациента")
     @GetMapping(value = "/doctors")
     ResponseEntity<List<DoctorResponse>> getPatientDoctors();
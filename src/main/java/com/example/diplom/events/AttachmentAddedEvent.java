@@ -0,0 +1,9 @@
+package com.example.diplom.events;
+
+import java.util.UUID;
+
+/**
+ * Пациент прикрепил файл к визиту.
+ */
+public record AttachmentAddedEvent(UUID doctorId, UUID patientId, UUID visitId, UUID attachmentId) {
+}
@@ -0,0 +1,9 @@
+package com.example.diplom.events;
+
+import java.util.UUID;
+
+/**
+ * Изменились данные пациента целиком: регистрация, профиль или удаление.
+ */
+public record PatientDataChangedEvent(UUID patientId) {
+}
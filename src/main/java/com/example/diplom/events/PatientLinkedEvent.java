@@ -0,0 +1,9 @@
+package com.example.diplom.events;
+
+import java.util.UUID;
+
+/**
+ * Пациент привязан к врачу (по коду врача или добавлен врачом вручную).
+ */
+public record PatientLinkedEvent(UUID doctorId, UUID patientId) {
+}
@@ -0,0 +1,9 @@
+package com.example.diplom.events;
+
+import java.util.UUID;
+
+/**
+ * Врач добавил услугу в свой прайс.
+ */
+public record ServiceCreatedEvent(UUID doctorId, UUID serviceId) {
+}
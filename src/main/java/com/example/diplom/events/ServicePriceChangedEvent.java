@@ -0,0 +1,9 @@
+package com.example.diplom.events;
+
+import java.util.UUID;
+
+/**
+ * Врач изменил цену услуги. Незавершённые визиты показывают текущую цену, завершённые — зафиксированную.
+ */
+public record ServicePriceChangedEvent(UUID doctorId, UUID serviceId) {
+}
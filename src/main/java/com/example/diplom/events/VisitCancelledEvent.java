@@ -0,0 +1,10 @@
+package com.example.diplom.events;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Врач отменил приём, визит удалён.
+ */
+public record VisitCancelledEvent(UUID doctorId, UUID patientId, UUID visitId, LocalDateTime visitDate) {
+}
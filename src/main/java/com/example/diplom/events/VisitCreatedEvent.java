@@ -0,0 +1,10 @@
+package com.example.diplom.events;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Врач записал пациента на приём.
+ */
+public record VisitCreatedEvent(UUID doctorId, UUID patientId, UUID visitId, LocalDateTime visitDate) {
+}
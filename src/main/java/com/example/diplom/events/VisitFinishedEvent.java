@@ -0,0 +1,10 @@
+package com.example.diplom.events;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Приём завершён: сохранены услуги, итоговая стоимость и заметки.
+ */
+public record VisitFinishedEvent(UUID doctorId, UUID patientId, UUID visitId, LocalDateTime visitDate) {
+}
@@ -0,0 +1,14 @@
+package com.example.diplom.events;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Приём перенесён с previousDate на visitDate.
+ */
+public record VisitRearrangedEvent(UUID doctorId,
+                                   UUID patientId,
+                                   UUID visitId,
+                                   LocalDateTime previousDate,
+                                   LocalDateTime visitDate) {
+}
@@ -1,13 +1,28 @@
 package com.example.diplom.models;
 import jakarta.persistence.*;
+import org.hibernate.annotations.ColumnDefault;
+
+import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "attachments")
+@Table(name = "attachments", indexes = {
+        @Index(name = "idx_attachments_file_path", columnList = "file_path"),
+        @Index(name = "idx_attachments_visit_id", columnList = "visit_id, created, id")
+})
 public class Attachment extends Base {
 
     private Visit visit;
     private String filePath;
+    private String originalName;
     private String description;
+    private AttachmentStatus status = AttachmentStatus.READY;
+    private String previewPath;
+    private Long sizeBytes;
+    private String contentType;
+    private String checksum;
+    private LocalDateTime uploadedAt;
+    private Integer imageWidth;
+    private Integer imageHeight;
 
     public Attachment() {
     }
@@ -31,6 +46,18 @@ public class Attachment extends Base {
         this.filePath = filePath;
     }
 
+    /**
+     * Имя файла при загрузке; ключ в хранилище его не содержит, если он адресуется по содержимому.
+     */
+    @Column(name = "original_name")
+    public String getOriginalName() {
+        return originalName;
+    }
+
+    public void setOriginalName(String originalName) {
+        this.originalName = originalName;
+    }
+
     @Column(name = "description")
     public String getDescription() {
         return description;
@@ -40,12 +67,100 @@ public class Attachment extends Base {
         this.description = description;
     }
 
+    @Enumerated(EnumType.STRING)
+    @ColumnDefault("'READY'")
+    @Column(name = "status", nullable = false, length = 16)
+    public AttachmentStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(AttachmentStatus status) {
+        this.status = status;
+    }
+
+    /**
+     * Ключ уменьшенной копии (JPEG) в хранилище; null, пока превью не построено или формат не поддерживается.
+     */
+    @Column(name = "preview_path")
+    public String getPreviewPath() {
+        return previewPath;
+    }
+
+    public void setPreviewPath(String previewPath) {
+        this.previewPath = previewPath;
+    }
+
+    /*
+     * Метаданные файла, заполняются при загрузке, чтобы списки вложений строились
+     * без обращений к хранилищу. У вложений, загруженных раньше, они пустые.
+     */
+
+    @Column(name = "size_bytes")
+    public Long getSizeBytes() {
+        return sizeBytes;
+    }
+
+    public void setSizeBytes(Long sizeBytes) {
+        this.sizeBytes = sizeBytes;
+    }
+
+    @Column(name = "content_type", length = 127)
+    public String getContentType() {
+        return contentType;
+    }
+
+    public void setContentType(String contentType) {
+        this.contentType = contentType;
+    }
+
+    /**
+     * SHA-256 содержимого в hex; пусто у прямых загрузок — их содержимое сервер не читает.
+     */
+    @Column(name = "checksum_sha256", length = 64)
+    public String getChecksum() {
+        return checksum;
+    }
+
+    public void setChecksum(String checksum) {
+        this.checksum = checksum;
+    }
+
+    @Column(name = "uploaded_at")
+    public LocalDateTime getUploadedAt() {
+        return uploadedAt;
+    }
+
+    public void setUploadedAt(LocalDateTime uploadedAt) {
+        this.uploadedAt = uploadedAt;
+    }
+
+    @Column(name = "image_width")
+    public Integer getImageWidth() {
+        return imageWidth;
+    }
+
+    public void setImageWidth(Integer imageWidth) {
+        this.imageWidth = imageWidth;
+    }
+
+    @Column(name = "image_height")
+    public Integer getImageHeight() {
+        return imageHeight;
+    }
+
+    public void setImageHeight(Integer imageHeight) {
+        this.imageHeight = imageHeight;
+    }
+
     @Override
     public String toString() {
         return "Attachment{" +
                 "id=" + id +
                 ", filePath='" + filePath + '\'' +
                 ", description='" + description + '\'' +
+                ", status=" + status +
+                ", contentType='" + contentType + '\'' +
+                ", sizeBytes=" + sizeBytes +
                 '}';
     }
 }
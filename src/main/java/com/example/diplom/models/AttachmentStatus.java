@@ -0,0 +1,9 @@
+package com.example.diplom.models;
+
+/**
+ * PENDING — запись создана, файл ещё загружается клиентом напрямую в MinIO;
+ * READY — файл загружен и вложение видно в визите.
+ */
+public enum AttachmentStatus {
+    PENDING, READY
+}
@@ -7,7 +7,10 @@ import java.util.HashSet;
 import java.util.Set;
 
 @Entity
-@Table(name = "visits")
+@Table(name = "visits", indexes = {
+        @Index(name = "idx_visits_doctor_visit_date", columnList = "doctor_id, visit_date"),
+        @Index(name = "idx_visits_patient_visit_date", columnList = "patient_id, visit_date")
+})
 public class Visit extends Base {
 
     private Patient patient;
@@ -2,6 +2,7 @@ package com.example.diplom.models;
 
 import com.example.diplom.models.PK.VisitServicePK;
 import jakarta.persistence.*;
+import java.math.BigDecimal;
 import java.util.Objects;
 import java.util.UUID;
 
@@ -15,6 +16,8 @@ public class VisitService {
     private Visit visit;
     private Service service;
     private int quantity;
+    private BigDecimal unitPrice;
+    private BigDecimal lineTotal;
 
     public VisitService() {
     }
@@ -81,6 +84,35 @@ public class VisitService {
         this.quantity = quantity;
     }
 
+    /**
+     * Цена услуги на момент завершения визита; null у строк, ещё не прошедших backfill.
+     */
+    @Column(name = "unit_price", precision = 10, scale = 2)
+    public BigDecimal getUnitPrice() {
+        return unitPrice;
+    }
+
+    public void setUnitPrice(BigDecimal unitPrice) {
+        this.unitPrice = unitPrice;
+    }
+
+    @Column(name = "line_total", precision = 10, scale = 2)
+    public BigDecimal getLineTotal() {
+        return lineTotal;
+    }
+
+    public void setLineTotal(BigDecimal lineTotal) {
+        this.lineTotal = lineTotal;
+    }
+
+    /**
+     * Фиксирует цену строки и пересчитывает её сумму по текущему количеству.
+     */
+    public void snapshotPrice(BigDecimal price) {
+        this.unitPrice = price;
+        this.lineTotal = price.multiply(BigDecimal.valueOf(quantity));
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -101,6 +133,7 @@ public class VisitService {
                 "visitId=" + visitId +
                 ", serviceId=" + serviceId +
                 ", quantity=" + quantity +
+                ", unitPrice=" + unitPrice +
                 '}';
     }
 }
@@ -0,0 +1,155 @@
+package com.example.diplom.preview;
+
+import com.example.diplom.events.AttachmentAddedEvent;
+import com.example.diplom.repositories.AttachmentRepository;
+import com.example.diplom.storage.AttachmentStorage;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Фоновое построение превью после добавления вложения. Пул из workers потоков с очередью
+ * queueCapacity: при заполненной очереди задача отбрасывается (attachment.preview.rejected),
+ * а запрос, добавивший вложение, не ждёт. Без превью клиент показывает оригинал.
+ * Превью кладётся в хранилище рядом с оригиналом под ключом {@code <filePath>.preview.jpg};
+ * вложения с общим объектом делят и превью, повторно оно не строится.
+ */
+@Component
+public class AttachmentPreviewService {
+
+    public static final String PREVIEW_SUFFIX = ".preview.jpg";
+
+    private static final Logger logger = LoggerFactory.getLogger(AttachmentPreviewService.class);
+
+    private final AttachmentRepository attachmentRepository;
+    private final AttachmentStorage storage;
+    private final PreviewRenderer renderer;
+    private final MeterRegistry registry;
+    private final long maxSourceSize;
+    private final ThreadPoolExecutor executor;
+    private final Timer renderTimer;
+
+    @Autowired
+    public AttachmentPreviewService(AttachmentRepository attachmentRepository,
+                                    AttachmentStorage storage,
+                                    PreviewRenderer renderer,
+                                    MeterRegistry registry,
+                                    @Value("${preview.workers:2}") int workers,
+                                    @Value("${preview.queue-capacity:100}") int queueCapacity,
+                                    @Value("${preview.max-source-size:20971520}") long maxSourceSize) {
+        this.attachmentRepository = attachmentRepository;
+        this.storage = storage;
+        this.renderer = renderer;
+        this.registry = registry;
+        this.maxSourceSize = maxSourceSize;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "attachment-preview-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.renderTimer = registry.timer("attachment.preview.render");
+        Gauge.builder("attachment.preview.queue.depth", executor, pool -> pool.getQueue().size())
+                .description("Вложения, ожидающие построения превью")
+                .register(registry);
+        Gauge.builder("attachment.preview.active", executor, ThreadPoolExecutor::getActiveCount)
+                .register(registry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public static String previewKey(String filePath) {
+        return filePath + PREVIEW_SUFFIX;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onAttachmentAdded(AttachmentAddedEvent event) {
+        submit(event.attachmentId());
+    }
+
+    /**
+     * Ставит вложение в очередь; false — очередь заполнена и задача отброшена.
+     */
+    public boolean submit(UUID attachmentId) {
+        try {
+            executor.execute(() -> generate(attachmentId));
+            return true;
+        } catch (RejectedExecutionException e) {
+            registry.counter("attachment.preview.rejected").increment();
+            logger.warn("Очередь превью заполнена, превью вложения {} не будет построено", attachmentId);
+            return false;
+        }
+    }
+
+    void generate(UUID attachmentId) {
+        try {
+            String result = renderTimer.recordCallable(() -> buildPreview(attachmentId));
+            registry.counter("attachment.preview.processed", "result", result).increment();
+        } catch (Exception e) {
+            registry.counter("attachment.preview.processed", "result", "failed").increment();
+            logger.warn("Не удалось построить превью вложения {}", attachmentId, e);
+        }
+    }
+
+    private String buildPreview(UUID attachmentId) throws IOException {
+        Optional<String> filePath = attachmentRepository.findReadyFilePathById(attachmentId);
+        if (filePath.isEmpty()) {
+            return "missing";
+        }
+        String key = filePath.get();
+        if (!renderer.supports(key)) {
+            return "unsupported";
+        }
+        String previewKey = previewKey(key);
+        if (storage.size(previewKey).isPresent()) {
+            return attachmentRepository.updatePreviewPath(attachmentId, previewKey) == 0 ? "missing" : "reused";
+        }
+        OptionalLong size = storage.size(key);
+        if (size.isEmpty()) {
+            return "missing";
+        }
+        if (size.getAsLong() > maxSourceSize) {
+            return "too_large";
+        }
+
+        ByteArrayOutputStream source = new ByteArrayOutputStream((int) size.getAsLong());
+        storage.transferTo(key, source);
+        byte[] preview = renderer.render(key, source.toByteArray());
+        if (preview == null) {
+            return "unsupported";
+        }
+
+        storage.put(previewKey, new ByteArrayInputStream(preview), preview.length, PreviewRenderer.CONTENT_TYPE);
+        if (attachmentRepository.updatePreviewPath(attachmentId, previewKey) == 0) {
+            // Вложение удалили, пока строилось превью; превью нужно только другим ссылкам на объект.
+            if (attachmentRepository.countByFilePathAndIdNot(key, attachmentId) == 0) {
+                storage.delete(previewKey);
+            }
+            return "missing";
+        }
+        return "generated";
+    }
+}
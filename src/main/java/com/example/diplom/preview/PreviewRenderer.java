@@ -0,0 +1,127 @@
+package com.example.diplom.preview;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.rendering.ImageType;
+import org.apache.pdfbox.rendering.PDFRenderer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Строит JPEG-превью вложения: уменьшенное изображение или первую страницу PDF,
+ * вписанные в квадрат maxDimension. Тип определяется по расширению имени файла.
+ */
+@Component
+public class PreviewRenderer {
+
+    public static final String CONTENT_TYPE = "image/jpeg";
+
+    private static final Set<String> IMAGE_EXTENSIONS = Set.of("png", "jpg", "jpeg", "gif", "bmp");
+
+    private final int maxDimension;
+
+    public PreviewRenderer(@Value("${preview.max-dimension:320}") int maxDimension) {
+        if (maxDimension < 16) {
+            throw new IllegalArgumentException("preview.max-dimension должен быть не меньше 16");
+        }
+        this.maxDimension = maxDimension;
+    }
+
+    public boolean supports(String fileName) {
+        String extension = extension(fileName);
+        return "pdf".equals(extension) || IMAGE_EXTENSIONS.contains(extension);
+    }
+
+    /**
+     * Превью в формате JPEG или null, если формат не поддерживается либо файл не читается как изображение.
+     */
+    public byte[] render(String fileName, byte[] source) throws IOException {
+        String extension = extension(fileName);
+        BufferedImage image;
+        if ("pdf".equals(extension)) {
+            image = renderFirstPage(source);
+        } else if (IMAGE_EXTENSIONS.contains(extension)) {
+            image = readImage(source);
+        } else {
+            return null;
+        }
+        return image != null ? encode(fit(image)) : null;
+    }
+
+    private BufferedImage renderFirstPage(byte[] source) throws IOException {
+        try (PDDocument document = PDDocument.load(source)) {
+            if (document.getNumberOfPages() == 0) {
+                return null;
+            }
+            PDRectangle box = document.getPage(0).getCropBox();
+            // Рендерим сразу в нужном масштабе, а не в 72 dpi с последующим уменьшением.
+            float scale = maxDimension / Math.max(box.getWidth(), box.getHeight());
+            return new PDFRenderer(document).renderImage(0, scale, ImageType.RGB);
+        }
+    }
+
+    private BufferedImage readImage(byte[] source) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(new ByteArrayInputStream(source))) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                int longest = Math.max(reader.getWidth(0), reader.getHeight(0));
+                // Подвыборка при декодировании: полноразмерный растр снимка не попадает в память.
+                int step = Math.max(1, longest / (maxDimension * 2));
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(step, step, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private BufferedImage fit(BufferedImage image) {
+        double factor = Math.min(1.0, (double) maxDimension / Math.max(image.getWidth(), image.getHeight()));
+        int width = Math.max(1, (int) Math.round(image.getWidth() * factor));
+        int height = Math.max(1, (int) Math.round(image.getHeight() * factor));
+        BufferedImage result = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = result.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            // JPEG без альфа-канала: прозрачные области PNG становятся белыми, а не чёрными.
+            graphics.setColor(Color.WHITE);
+            graphics.fillRect(0, 0, width, height);
+            graphics.drawImage(image, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        return result;
+    }
+
+    private static byte[] encode(BufferedImage image) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "jpg", out);
+        return out.toByteArray();
+    }
+
+    private static String extension(String fileName) {
+        int dot = fileName.lastIndexOf('.');
+        return dot >= 0 ? fileName.substring(dot + 1).toLowerCase(Locale.ROOT) : "";
+    }
+}
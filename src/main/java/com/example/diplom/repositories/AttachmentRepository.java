@@ -1,13 +1,157 @@
 package com.example.diplom.repositories;
 
 import com.example.diplom.models.Attachment;
+import com.example.diplom.models.AttachmentStatus;
+import com.example.diplom.services.dtos.AttachmentAccessDto;
+import com.example.diplom.services.dtos.AttachmentDto;
+import com.example.diplom.services.dtos.AttachmentExportDto;
+import com.example.diplom.services.dtos.AttachmentMetadataDto;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
 @Repository
 public interface AttachmentRepository extends JpaRepository<Attachment, UUID> {
-    Optional<Attachment> findByFilePath(String filePath);
+
+    /**
+     * Общая часть запросов каталога. :contentType — шаблон LIKE с экранированием '!',
+     * "%" без фильтра. Каталог упорядочен по (created, id): у вложений, созданных до перехода
+     * на UUID v7, id случайные, поэтому id только разрешает равенство времени создания.
+     */
+    String CATALOG_BEFORE = "AND (a.created < :beforeCreated OR (a.created = :beforeCreated AND a.id < :beforeId)) ";
+
+    String CATALOG_ORDER = "ORDER BY a.created DESC, a.id DESC";
+
+    String CATALOG_ROWS = "SELECT new com.example.diplom.services.dtos.AttachmentMetadataDto(" +
+            "a.id, v.id, a.originalName, a.description, a.contentType, a.sizeBytes, a.checksum, a.uploadedAt, " +
+            "a.imageWidth, a.imageHeight, a.previewPath, a.created) " +
+            "FROM Attachment a JOIN a.visit v " +
+            "WHERE a.status = com.example.diplom.models.AttachmentStatus.READY " +
+            "AND COALESCE(a.contentType, '') LIKE :contentType ESCAPE '!' ";
+
+    /**
+     * Несколько вложений могут ссылаться на один объект, если загружено одинаковое содержимое.
+     */
+    List<Attachment> findByFilePath(String filePath);
+
+    /**
+     * Число других вложений, ссылающихся на тот же объект хранилища.
+     */
+    long countByFilePathAndIdNot(String filePath, UUID id);
+
+    boolean existsByFilePath(String filePath);
+
+    /**
+     * Загруженные вложения набора визитов без загрузки самих визитов.
+     */
+    @Query("SELECT new com.example.diplom.services.dtos.AttachmentDto(a.id, a.visit.id, a.filePath, a.description, a.previewPath) " +
+            "FROM Attachment a WHERE a.visit.id IN :visitIds " +
+            "AND a.status = com.example.diplom.models.AttachmentStatus.READY")
+    List<AttachmentDto> findDtosByVisitIds(@Param("visitIds") Collection<UUID> visitIds);
+
+    @Query("SELECT new com.example.diplom.services.dtos.AttachmentAccessDto(a.filePath, v.patient.id, v.doctor.id, a.previewPath) " +
+            "FROM Attachment a JOIN a.visit v WHERE a.id = :id " +
+            "AND a.status = com.example.diplom.models.AttachmentStatus.READY")
+    Optional<AttachmentAccessDto> findAccessById(@Param("id") UUID id);
+
+    /**
+     * Идентификаторы всех вложений пациента, от новых визитов к старым.
+     */
+    @Query("SELECT a.id FROM Attachment a JOIN a.visit v WHERE v.patient.id = :patientId " +
+            "AND a.status = com.example.diplom.models.AttachmentStatus.READY " +
+            "ORDER BY v.visitDate DESC, a.id")
+    List<UUID> findIdsByPatientId(@Param("patientId") UUID patientId);
+
+    /**
+     * Вложения пациента для выгрузки медкарты, от старых визитов к новым.
+     */
+    @Query("SELECT new com.example.diplom.services.dtos.AttachmentExportDto(a.id, v.id, v.visitDate, a.filePath, a.originalName, a.description) " +
+            "FROM Attachment a JOIN a.visit v WHERE v.patient.id = :patientId " +
+            "AND a.status = com.example.diplom.models.AttachmentStatus.READY " +
+            "ORDER BY v.visitDate, a.id")
+    List<AttachmentExportDto> findExportRowsByPatientId(@Param("patientId") UUID patientId);
+
+    /**
+     * То же, но только по визитам к указанному врачу — как в медкарте врача.
+     */
+    @Query("SELECT new com.example.diplom.services.dtos.AttachmentExportDto(a.id, v.id, v.visitDate, a.filePath, a.originalName, a.description) " +
+            "FROM Attachment a JOIN a.visit v WHERE v.patient.id = :patientId AND v.doctor.id = :doctorId " +
+            "AND a.status = com.example.diplom.models.AttachmentStatus.READY " +
+            "ORDER BY v.visitDate, a.id")
+    List<AttachmentExportDto> findExportRowsByPatientIdAndDoctorId(@Param("patientId") UUID patientId,
+                                                                   @Param("doctorId") UUID doctorId);
+
+    /**
+     * Каталог вложений пациента, от новых к старым.
+     */
+    @Query(CATALOG_ROWS + "AND v.patient.id = :patientId " + CATALOG_ORDER)
+    List<AttachmentMetadataDto> findCatalogByPatientId(@Param("patientId") UUID patientId,
+                                                       @Param("contentType") String contentType,
+                                                       Limit limit);
+
+    /**
+     * Следующая страница каталога пациента после курсора (beforeCreated, beforeId).
+     */
+    @Query(CATALOG_ROWS + "AND v.patient.id = :patientId " + CATALOG_BEFORE + CATALOG_ORDER)
+    List<AttachmentMetadataDto> findCatalogByPatientIdBefore(@Param("patientId") UUID patientId,
+                                                             @Param("contentType") String contentType,
+                                                             @Param("beforeCreated") LocalDateTime beforeCreated,
+                                                             @Param("beforeId") UUID beforeId,
+                                                             Limit limit);
+
+    /**
+     * Каталог пациента, ограниченный визитами одного врача.
+     */
+    @Query(CATALOG_ROWS + "AND v.patient.id = :patientId AND v.doctor.id = :doctorId " + CATALOG_ORDER)
+    List<AttachmentMetadataDto> findCatalogByPatientIdAndDoctorId(@Param("patientId") UUID patientId,
+                                                                  @Param("doctorId") UUID doctorId,
+                                                                  @Param("contentType") String contentType,
+                                                                  Limit limit);
+
+    @Query(CATALOG_ROWS + "AND v.patient.id = :patientId AND v.doctor.id = :doctorId " + CATALOG_BEFORE + CATALOG_ORDER)
+    List<AttachmentMetadataDto> findCatalogByPatientIdAndDoctorIdBefore(@Param("patientId") UUID patientId,
+                                                                        @Param("doctorId") UUID doctorId,
+                                                                        @Param("contentType") String contentType,
+                                                                        @Param("beforeCreated") LocalDateTime beforeCreated,
+                                                                        @Param("beforeId") UUID beforeId,
+                                                                        Limit limit);
+
+    @Query(CATALOG_ROWS + "AND v.id = :visitId " + CATALOG_ORDER)
+    List<AttachmentMetadataDto> findCatalogByVisitId(@Param("visitId") UUID visitId,
+                                                     @Param("contentType") String contentType,
+                                                     Limit limit);
+
+    @Query(CATALOG_ROWS + "AND v.id = :visitId " + CATALOG_BEFORE + CATALOG_ORDER)
+    List<AttachmentMetadataDto> findCatalogByVisitIdBefore(@Param("visitId") UUID visitId,
+                                                           @Param("contentType") String contentType,
+                                                           @Param("beforeCreated") LocalDateTime beforeCreated,
+                                                           @Param("beforeId") UUID beforeId,
+                                                           Limit limit);
+
+    @Query("SELECT a.filePath FROM Attachment a WHERE a.id = :id " +
+            "AND a.status = com.example.diplom.models.AttachmentStatus.READY")
+    Optional<String> findReadyFilePathById(@Param("id") UUID id);
+
+    /**
+     * Записывает ключ превью; 0 — вложение уже удалено.
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE Attachment a SET a.previewPath = :previewPath WHERE a.id = :id")
+    int updatePreviewPath(@Param("id") UUID id, @Param("previewPath") String previewPath);
+
+    /**
+     * Незавершённые загрузки старше cutoff — клиент получил ссылку, но так и не подтвердил загрузку.
+     */
+    List<Attachment> findByStatusAndCreatedBefore(AttachmentStatus status, LocalDateTime cutoff, Limit limit);
 }
@@ -4,6 +4,7 @@ import com.example.diplom.models.Service;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -17,4 +18,6 @@ public interface ServiceRepository extends JpaRepository<Service, UUID> {
 
     Optional<Service> findByDoctorIdAndName(UUID doctorId, String name);
 
+    List<Service> findByDoctorIdAndNameIn(UUID doctorId, Collection<String> names);
+
 }
@@ -1,6 +1,10 @@
 package com.example.diplom.repositories;
 
+import com.example.diplom.controllers.RR.VisitDaySummaryResponse;
 import com.example.diplom.models.Visit;
+import com.example.diplom.services.dtos.PatientVisitRowDto;
+import com.example.diplom.services.dtos.VisitParticipantsDto;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -14,17 +18,32 @@ import java.util.UUID;
 @Repository
 public interface VisitRepository extends JpaRepository<Visit, UUID> {
 
+    /**
+     * Визиты врача в полуинтервале [from, to). Условие по голому visit_date
+     * позволяет использовать индекс (doctor_id, visit_date).
+     */
     @Query("SELECT v FROM Visit v WHERE v.doctor.id = :doctorId " +
-            "AND EXTRACT(MONTH FROM v.visitDate) = :month " +
-            "AND EXTRACT(YEAR FROM v.visitDate) = :year")
-    List<Visit> findByDoctorIdAndMonthYear(UUID doctorId, int month, int year);
-
-    @Query("SELECT v FROM Visit v WHERE v.doctor.id = :doctorId " +
-            "AND CAST(v.visitDate AS DATE) = CAST(:date AS DATE)")
-    List<Visit> findByDoctorIdAndDate(UUID doctorId, String date);
+            "AND v.visitDate >= :from AND v.visitDate < :to " +
+            "ORDER BY v.visitDate")
+    List<Visit> findByDoctorIdAndVisitDateRange(@Param("doctorId") UUID doctorId,
+                                                @Param("from") LocalDateTime from,
+                                                @Param("to") LocalDateTime to);
 
     List<Visit> findByDoctorIdAndVisitDateBetween(UUID doctorId, LocalDateTime start, LocalDateTime end);
 
+    /**
+     * Количество визитов и завершённых визитов по дням в полуинтервале [from, to).
+     */
+    @Query("SELECT new com.example.diplom.controllers.RR.VisitDaySummaryResponse(" +
+            "CAST(v.visitDate AS LocalDate), COUNT(v), SUM(CASE WHEN v.finished = true THEN 1L ELSE 0L END)) " +
+            "FROM Visit v WHERE v.doctor.id = :doctorId " +
+            "AND v.visitDate >= :from AND v.visitDate < :to " +
+            "GROUP BY CAST(v.visitDate AS LocalDate) " +
+            "ORDER BY CAST(v.visitDate AS LocalDate)")
+    List<VisitDaySummaryResponse> summarizeByDay(@Param("doctorId") UUID doctorId,
+                                                 @Param("from") LocalDateTime from,
+                                                 @Param("to") LocalDateTime to);
+
     Optional<Visit> findByIdAndPatientId(UUID visitId, UUID patientId);
 
     @Query("SELECT v.notes FROM Visit v WHERE v.id = :id")
@@ -33,8 +52,42 @@ public interface VisitRepository extends JpaRepository<Visit, UUID> {
 
     List<Visit> findByPatientIdAndDoctorId(UUID patientId, UUID doctorId);
 
+    /**
+     * Визиты пациента у врача для медкарты. Врач, его специализация и пациент
+     * подтягиваются тем же запросом, а не отдельным select на каждую связь.
+     */
+    @Query("SELECT v FROM Visit v JOIN FETCH v.doctor d JOIN FETCH d.specialization JOIN FETCH v.patient p " +
+            "WHERE p.id = :patientId AND d.id = :doctorId ORDER BY v.visitDate")
+    List<Visit> findMedicalCardVisits(@Param("patientId") UUID patientId, @Param("doctorId") UUID doctorId);
+
     List<Visit> findByPatientId(UUID patientId);
 
+    @Query("SELECT new com.example.diplom.services.dtos.VisitParticipantsDto(v.patient.id, v.doctor.id) " +
+            "FROM Visit v WHERE v.id = :visitId")
+    Optional<VisitParticipantsDto> findParticipantsById(@Param("visitId") UUID visitId);
+
+    /**
+     * История визитов пациента, от новых к старым, без загрузки сущностей.
+     */
+    @Query("SELECT new com.example.diplom.services.dtos.PatientVisitRowDto(" +
+            "v.id, v.visitDate, v.finished, v.notes, v.totalCost, d.fullName) " +
+            "FROM Visit v JOIN v.doctor d WHERE v.patient.id = :patientId " +
+            "ORDER BY v.visitDate DESC, v.id DESC")
+    List<PatientVisitRowDto> findPatientVisitRows(@Param("patientId") UUID patientId, Limit limit);
+
+    /**
+     * Следующая страница истории после курсора (visitDate, id), от новых к старым.
+     */
+    @Query("SELECT new com.example.diplom.services.dtos.PatientVisitRowDto(" +
+            "v.id, v.visitDate, v.finished, v.notes, v.totalCost, d.fullName) " +
+            "FROM Visit v JOIN v.doctor d WHERE v.patient.id = :patientId " +
+            "AND (v.visitDate < :beforeDate OR (v.visitDate = :beforeDate AND v.id < :beforeId)) " +
+            "ORDER BY v.visitDate DESC, v.id DESC")
+    List<PatientVisitRowDto> findPatientVisitRowsBefore(@Param("patientId") UUID patientId,
+                                                        @Param("beforeDate") LocalDateTime beforeDate,
+                                                        @Param("beforeId") UUID beforeId,
+                                                        Limit limit);
+
     @Query("SELECT v FROM Visit v WHERE v.visitDate BETWEEN :start AND :end AND v.finished = false")
     List<Visit> findVisitsByVisitDateBetween(
             @Param("start") LocalDateTime start,
@@ -3,12 +3,47 @@ package com.example.diplom.repositories;
 import com.example.diplom.models.PK.VisitServicePK;
 import com.example.diplom.models.Visit;
 import com.example.diplom.models.VisitService;
+import com.example.diplom.services.dtos.ServiceRevenueDto;
+import com.example.diplom.services.dtos.VisitServiceLineDto;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.UUID;
 
 @Repository
 public interface VisitServiceRepository extends JpaRepository<VisitService, VisitServicePK> {
     List<VisitService> findByVisit(Visit visit);
+
+    @Query("SELECT vs FROM VisitService vs JOIN FETCH vs.service WHERE vs.visitId = :visitId")
+    List<VisitService> findWithServiceByVisitId(@Param("visitId") UUID visitId);
+
+    /**
+     * Строки услуг сразу для набора визитов вместе с названием услуги и ценой,
+     * зафиксированной при завершении визита.
+     */
+    @Query("SELECT new com.example.diplom.services.dtos.VisitServiceLineDto(" +
+            "vs.visitId, s.id, s.name, COALESCE(vs.unitPrice, s.price), vs.quantity) " +
+            "FROM VisitService vs JOIN vs.service s WHERE vs.visitId IN :visitIds")
+    List<VisitServiceLineDto> findLinesByVisitIds(@Param("visitIds") Collection<UUID> visitIds);
+
+    /**
+     * Выручка врача по услугам за период по зафиксированным суммам строк.
+     */
+    @Query("SELECT new com.example.diplom.services.dtos.ServiceRevenueDto(" +
+            "s.name, SUM(COALESCE(vs.lineTotal, s.price * vs.quantity))) " +
+            "FROM VisitService vs JOIN vs.service s JOIN vs.visit v " +
+            "WHERE v.doctor.id = :doctorId AND v.visitDate BETWEEN :start AND :end " +
+            "GROUP BY s.name")
+    List<ServiceRevenueDto> sumRevenueByService(@Param("doctorId") UUID doctorId,
+                                                @Param("start") LocalDateTime start,
+                                                @Param("end") LocalDateTime end);
+
+    @Query("SELECT vs FROM VisitService vs JOIN FETCH vs.service WHERE vs.unitPrice IS NULL")
+    List<VisitService> findWithoutPriceSnapshot(Limit limit);
 }
\ No newline at end of file
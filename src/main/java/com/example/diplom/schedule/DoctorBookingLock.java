@@ -0,0 +1,76 @@
+package com.example.diplom.schedule;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Сериализует запись к одному врачу: проверка пересечений и сохранение визита
+ * выполняются под блокировкой врача. Внутри JVM используется полосатый набор
+ * ReentrantLock, между узлами — транзакционная advisory-блокировка PostgreSQL.
+ * Записи к разным врачам почти всегда попадают в разные полосы и не ждут друг друга.
+ */
+@Component
+public class DoctorBookingLock {
+
+    private static final Logger logger = LoggerFactory.getLogger(DoctorBookingLock.class);
+    private static final int STRIPES = 256;
+    private static final int ADVISORY_LOCK_NAMESPACE = 0x626f6f6b;
+
+    private final ReentrantLock[] stripes = new ReentrantLock[STRIPES];
+    private final TransactionTemplate transactionTemplate;
+    private final JdbcTemplate jdbcTemplate;
+    private volatile Boolean advisoryLocksSupported;
+
+    @Autowired
+    public DoctorBookingLock(PlatformTransactionManager transactionManager, DataSource dataSource) {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    /**
+     * Выполняет action в транзакции, удерживая блокировку врача до фиксации транзакции.
+     */
+    public <T> T withDoctorLock(UUID doctorId, Supplier<T> action) {
+        ReentrantLock lock = stripes[Math.floorMod(doctorId.hashCode(), STRIPES)];
+        lock.lock();
+        try {
+            return transactionTemplate.execute(status -> {
+                if (advisoryLocksSupported()) {
+                    jdbcTemplate.query("SELECT pg_advisory_xact_lock(?, ?)",
+                            rs -> null, ADVISORY_LOCK_NAMESPACE, doctorId.hashCode());
+                }
+                return action.get();
+            });
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean advisoryLocksSupported() {
+        Boolean supported = advisoryLocksSupported;
+        if (supported == null) {
+            String product = jdbcTemplate.execute((ConnectionCallback<String>) con ->
+                    con.getMetaData().getDatabaseProductName());
+            supported = "PostgreSQL".equalsIgnoreCase(product);
+            if (!supported) {
+                logger.warn("БД {} не поддерживает advisory-блокировки, запись к врачу сериализуется только внутри узла", product);
+            }
+            advisoryLocksSupported = supported;
+        }
+        return supported;
+    }
+}
@@ -0,0 +1,244 @@
+package com.example.diplom.schedule;
+
+import com.example.diplom.models.AppointmentCheckResult;
+import com.example.diplom.models.Visit;
+import com.example.diplom.repositories.VisitRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Consumer;
+
+/**
+ * Отсортированный по времени начала индекс визитов каждого врача.
+ * Заполняется лениво помесячно и обновляется при создании, переносе и отмене визита,
+ * поэтому проверка пересечений не ходит в БД.
+ * Между узлами согласуется через счётчик версии в Redis; если Redis недоступен,
+ * проверка выполняется запросом к БД.
+ */
+@Component
+public class DoctorScheduleIndex {
+
+    public static final long MIN_GAP_MINUTES = 15;
+
+    private static final Logger logger = LoggerFactory.getLogger(DoctorScheduleIndex.class);
+    private static final String VERSION_KEY_PREFIX = "schedule:version:";
+    private static final Duration MAX_AGE = Duration.ofMinutes(5);
+
+    private final VisitRepository visitRepository;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final ConcurrentMap<UUID, DoctorSchedule> schedules = new ConcurrentHashMap<>();
+
+    @Autowired
+    public DoctorScheduleIndex(VisitRepository visitRepository, StringRedisTemplate stringRedisTemplate) {
+        this.visitRepository = visitRepository;
+        this.stringRedisTemplate = stringRedisTemplate;
+    }
+
+    public AppointmentCheckResult check(UUID doctorId, LocalDateTime newTime, UUID existingVisitId) {
+        LocalDateTime windowStart = newTime.minusMinutes(MIN_GAP_MINUTES);
+        LocalDateTime windowEnd = newTime.plusMinutes(MIN_GAP_MINUTES);
+
+        DoctorSchedule schedule = acquire(doctorId);
+        if (schedule == null) {
+            return checkAgainstDatabase(doctorId, newTime, existingVisitId);
+        }
+        synchronized (schedule) {
+            ensureLoaded(schedule, doctorId, windowStart, windowEnd);
+            AppointmentCheckResult result = AppointmentCheckResult.OK;
+            for (Map.Entry<LocalDateTime, Set<UUID>> entry
+                    : schedule.starts.subMap(windowStart, true, windowEnd, true).entrySet()) {
+                boolean onlySelf = existingVisitId != null
+                        && entry.getValue().size() == 1
+                        && entry.getValue().contains(existingVisitId);
+                if (!onlySelf) {
+                    result = worst(result, classify(newTime, entry.getKey()));
+                }
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Времена начала визитов врача в полуинтервале [from, to) по возрастанию.
+     */
+    public List<LocalDateTime> visitStarts(UUID doctorId, LocalDateTime from, LocalDateTime to) {
+        DoctorSchedule schedule = acquire(doctorId);
+        if (schedule == null) {
+            return visitRepository.findByDoctorIdAndVisitDateRange(doctorId, from, to).stream()
+                    .map(Visit::getVisitDate)
+                    .toList();
+        }
+        synchronized (schedule) {
+            ensureLoaded(schedule, doctorId, from, to);
+            List<LocalDateTime> result = new ArrayList<>();
+            for (Map.Entry<LocalDateTime, Set<UUID>> entry : schedule.starts.subMap(from, true, to, false).entrySet()) {
+                for (int i = 0; i < entry.getValue().size(); i++) {
+                    result.add(entry.getKey());
+                }
+            }
+            return result;
+        }
+    }
+
+    public void visitScheduled(UUID doctorId, UUID visitId, LocalDateTime visitDate) {
+        applyChange(doctorId, schedule -> schedule.put(visitId, visitDate));
+    }
+
+    public void visitRemoved(UUID doctorId, UUID visitId) {
+        applyChange(doctorId, schedule -> schedule.remove(visitId));
+    }
+
+    static AppointmentCheckResult classify(LocalDateTime newTime, LocalDateTime otherTime) {
+        long diff = Math.abs(Duration.between(newTime, otherTime).toMinutes());
+        if (diff == 0) {
+            return AppointmentCheckResult.ERROR;
+        } else if (diff < MIN_GAP_MINUTES) {
+            return AppointmentCheckResult.WARNING;
+        }
+        return AppointmentCheckResult.OK;
+    }
+
+    private static AppointmentCheckResult worst(AppointmentCheckResult a, AppointmentCheckResult b) {
+        return a.ordinal() >= b.ordinal() ? a : b;
+    }
+
+    private AppointmentCheckResult checkAgainstDatabase(UUID doctorId, LocalDateTime newTime, UUID existingVisitId) {
+        AppointmentCheckResult result = AppointmentCheckResult.OK;
+        List<Visit> nearbyVisits = visitRepository.findByDoctorIdAndVisitDateBetween(
+                doctorId, newTime.minusMinutes(MIN_GAP_MINUTES), newTime.plusMinutes(MIN_GAP_MINUTES));
+        for (Visit visit : nearbyVisits) {
+            if (existingVisitId != null && visit.getId().equals(existingVisitId)) {
+                continue;
+            }
+            result = worst(result, classify(newTime, visit.getVisitDate()));
+        }
+        return result;
+    }
+
+    /**
+     * Возвращает локальное расписание, актуальное для текущей версии в Redis,
+     * или null, если версию узнать не удалось.
+     */
+    private DoctorSchedule acquire(UUID doctorId) {
+        long version;
+        try {
+            version = currentVersion(doctorId);
+        } catch (RuntimeException e) {
+            logger.warn("Не удалось прочитать версию расписания врача {}, проверка через БД: {}", doctorId, e.getMessage());
+            schedules.remove(doctorId);
+            return null;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        return schedules.compute(doctorId, (id, existing) ->
+                existing == null || existing.version != version || existing.loadedAt.plus(MAX_AGE).isBefore(now)
+                        ? new DoctorSchedule(version, now)
+                        : existing);
+    }
+
+    /**
+     * Версия в Redis увеличивается сразу, чтобы другой узел, дождавшийся блокировки врача,
+     * перечитал расписание из БД. Локальный индекс меняется только после фиксации транзакции.
+     */
+    private void applyChange(UUID doctorId, Consumer<DoctorSchedule> change) {
+        long newVersion;
+        try {
+            Long incremented = stringRedisTemplate.opsForValue().increment(VERSION_KEY_PREFIX + doctorId);
+            newVersion = incremented != null ? incremented : -1;
+        } catch (RuntimeException e) {
+            logger.warn("Не удалось обновить версию расписания врача {}: {}", doctorId, e.getMessage());
+            schedules.remove(doctorId);
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == STATUS_COMMITTED) {
+                        applyLocally(doctorId, newVersion, change);
+                    } else {
+                        schedules.remove(doctorId);
+                    }
+                }
+            });
+        } else {
+            applyLocally(doctorId, newVersion, change);
+        }
+    }
+
+    private void applyLocally(UUID doctorId, long newVersion, Consumer<DoctorSchedule> change) {
+        DoctorSchedule schedule = schedules.get(doctorId);
+        if (schedule == null) {
+            return;
+        }
+        synchronized (schedule) {
+            if (schedule.version == newVersion - 1) {
+                change.accept(schedule);
+                schedule.version = newVersion;
+            } else {
+                // Расписание успел изменить другой узел — перечитаем при следующем обращении.
+                schedules.remove(doctorId, schedule);
+            }
+        }
+    }
+
+    private long currentVersion(UUID doctorId) {
+        String value = stringRedisTemplate.opsForValue().get(VERSION_KEY_PREFIX + doctorId);
+        return value != null ? Long.parseLong(value) : 0L;
+    }
+
+    private void ensureLoaded(DoctorSchedule schedule, UUID doctorId, LocalDateTime from, LocalDateTime to) {
+        YearMonth month = YearMonth.from(from);
+        YearMonth last = YearMonth.from(to);
+        while (!month.isAfter(last)) {
+            if (schedule.loadedMonths.add(month)) {
+                LocalDateTime monthStart = month.atDay(1).atStartOfDay();
+                for (Visit visit : visitRepository.findByDoctorIdAndVisitDateRange(
+                        doctorId, monthStart, monthStart.plusMonths(1))) {
+                    schedule.put(visit.getId(), visit.getVisitDate());
+                }
+            }
+            month = month.plusMonths(1);
+        }
+    }
+
+    static final class DoctorSchedule {
+        private final NavigableMap<LocalDateTime, Set<UUID>> starts = new TreeMap<>();
+        private final Map<UUID, LocalDateTime> byVisit = new HashMap<>();
+        private final Set<YearMonth> loadedMonths = new HashSet<>();
+        private final LocalDateTime loadedAt;
+        private long version;
+
+        DoctorSchedule(long version, LocalDateTime loadedAt) {
+            this.version = version;
+            this.loadedAt = loadedAt;
+        }
+
+        void put(UUID visitId, LocalDateTime visitDate) {
+            remove(visitId);
+            byVisit.put(visitId, visitDate);
+            starts.computeIfAbsent(visitDate, d -> new HashSet<>()).add(visitId);
+        }
+
+        void remove(UUID visitId) {
+            LocalDateTime previous = byVisit.remove(visitId);
+            if (previous != null) {
+                Set<UUID> ids = starts.get(previous);
+                ids.remove(visitId);
+                if (ids.isEmpty()) {
+                    starts.remove(previous);
+                }
+            }
+        }
+    }
+}
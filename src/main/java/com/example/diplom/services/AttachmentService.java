@@ -1,18 +1,71 @@
 package com.example.diplom.services;
 
 import com.example.diplom.controllers.RR.AddAttachmentRequest;
+import com.example.diplom.controllers.RR.AttachmentPageResponse;
+import com.example.diplom.controllers.RR.AttachmentUploadResponse;
+import com.example.diplom.controllers.RR.StartAttachmentUploadRequest;
 import com.example.diplom.services.dtos.AttachmentDto;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.time.LocalDateTime;
 import java.util.UUID;
 
 public interface AttachmentService {
+
+    String LINK_PREFIX = "/api/attachments/";
+
+    /**
+     * Ссылка на вложение в ответах API. Подписанный URL MinIO выдаётся только при переходе по ней.
+     */
+    static String linkFor(UUID attachmentId) {
+        return LINK_PREFIX + attachmentId;
+    }
+
+    /**
+     * Ссылка на превью вложения; 404, пока превью не построено.
+     */
+    static String previewLinkFor(UUID attachmentId) {
+        return linkFor(attachmentId) + "/preview";
+    }
+
     AttachmentDto addAttachment(UUID patientId, AddAttachmentRequest request) throws IOException;
 
     String storeFile(MultipartFile file) throws Exception;
 
-    String getPresignedUrlForAttachment(UUID attachmentId) throws Exception;
+    /**
+     * Первый шаг прямой загрузки: создаёт вложение в статусе PENDING и выдаёт ссылку PUT в MinIO.
+     */
+    AttachmentUploadResponse startUpload(UUID patientId, StartAttachmentUploadRequest request) throws Exception;
+
+    /**
+     * Второй шаг: проверяет, что файл загружен в MinIO, и делает вложение видимым в визите.
+     */
+    AttachmentDto completeUpload(UUID patientId, UUID attachmentId) throws Exception;
+
+    /**
+     * Подписанная ссылка на вложение для пациента-владельца или врача визита.
+     */
+    String getPresignedUrlForUser(UUID attachmentId, UUID userId) throws Exception;
+
+    /**
+     * То же для превью вложения; ResourceNotFoundException, если превью ещё нет.
+     */
+    String getPreviewUrlForUser(UUID attachmentId, UUID userId) throws Exception;
+
+    /**
+     * Каталог вложений пациента из базы, от новых к старым. contentType — префикс MIME-типа
+     * ("image/", "application/pdf"), beforeCreated/beforeId — курсор из предыдущей страницы, передаются вместе.
+     * Пациенту доступен весь каталог, связанному с ним врачу — только вложения его визитов.
+     */
+    AttachmentPageResponse getPatientAttachments(UUID userId, UUID patientId, String contentType,
+                                                 LocalDateTime beforeCreated, UUID beforeId, int size);
+
+    /**
+     * То же для одного визита; доступно только пациенту и врачу визита.
+     */
+    AttachmentPageResponse getVisitAttachments(UUID userId, UUID visitId, String contentType,
+                                               LocalDateTime beforeCreated, UUID beforeId, int size);
 
     void deleteAttachmentByUrl(UUID patientId, String url) throws Exception;
 
@@ -3,6 +3,7 @@ package com.example.diplom.services;
 import com.example.diplom.controllers.RR.*;
 import com.example.diplom.services.dtos.VisitDto;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.UUID;
 
@@ -11,12 +12,16 @@ public interface DoctorService {
 
     List<VisitDto> getDoctorVisitDates(UUID doctorId, int month, int year);
 
+    List<VisitDaySummaryResponse> getDoctorVisitSummary(UUID doctorId, int month, int year);
+
     List<VisitDto> getDoctorVisitDatesByDay(UUID doctorId, String date);
 
     void createServiceForDoctor(UUID doctorId, CreateServiceRequest serviceRequest);
 
     CreateVisitResponse createVisit(UUID doctorId, CreateVisitRequest visitRequest);
 
+    List<FreeSlotResponse> findFreeSlots(UUID doctorId, LocalDateTime from, LocalDateTime to, int durationMinutes);
+
     List<ServiceResponse> getDoctorServices(UUID doctorId);
 
     void updateServicePrice(UUID doctorId, UpdateServiceRequest updateServiceRequest);
@@ -0,0 +1,19 @@
+package com.example.diplom.services;
+
+import com.example.diplom.services.dtos.MedicalRecordExport;
+
+import java.util.UUID;
+
+/**
+ * Выгрузка медкарты одним ZIP-архивом: сводка визитов в summary.json и все файлы вложений.
+ * Архив собирается на лету, без временных файлов.
+ */
+public interface MedicalRecordExportService {
+
+    MedicalRecordExport exportForPatient(UUID patientId);
+
+    /**
+     * Медкарта глазами врача: только визиты к нему, при наличии связи врач–пациент.
+     */
+    MedicalRecordExport exportForDoctor(UUID doctorId, UUID patientId);
+}
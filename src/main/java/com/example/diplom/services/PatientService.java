@@ -2,6 +2,7 @@ package com.example.diplom.services;
 
 import com.example.diplom.controllers.RR.*;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.UUID;
 
@@ -10,6 +11,8 @@ public interface PatientService {
 
     List<PatientVisitDetailsResponse> getVisitsByPatient(UUID patientId);
 
+    PatientVisitPageResponse getVisitsByPatientPage(UUID patientId, LocalDateTime beforeDate, UUID beforeId, int size);
+
     List<DoctorResponse> getPatientDoctors(UUID patientId);
 
     PatientProfileResponse profileById(UUID patientId) ;
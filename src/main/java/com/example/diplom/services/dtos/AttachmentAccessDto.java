@@ -0,0 +1,13 @@
+package com.example.diplom.services.dtos;
+
+import java.util.UUID;
+
+/**
+ * Путь файла вложения, его превью и участники визита — всё, что нужно для проверки доступа и подписи ссылки.
+ */
+public record AttachmentAccessDto(String filePath, UUID patientId, UUID doctorId, String previewPath) {
+
+    public AttachmentAccessDto(String filePath, UUID patientId, UUID doctorId) {
+        this(filePath, patientId, doctorId, null);
+    }
+}
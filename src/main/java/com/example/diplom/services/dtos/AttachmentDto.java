@@ -7,6 +7,7 @@ public class AttachmentDto {
     private UUID visitId;
     private String filePath;
     private String description;
+    private String previewPath;
 
     public AttachmentDto(UUID id, UUID visitId, String filePath, String description) {
         Id = id;
@@ -15,6 +16,11 @@ public class AttachmentDto {
         this.description = description;
     }
 
+    public AttachmentDto(UUID id, UUID visitId, String filePath, String description, String previewPath) {
+        this(id, visitId, filePath, description);
+        this.previewPath = previewPath;
+    }
+
     public AttachmentDto() {
     }
 
@@ -49,4 +55,12 @@ public class AttachmentDto {
     public void setDescription(String description) {
         this.description = description;
     }
+
+    public String getPreviewPath() {
+        return previewPath;
+    }
+
+    public void setPreviewPath(String previewPath) {
+        this.previewPath = previewPath;
+    }
 }
@@ -0,0 +1,15 @@
+package com.example.diplom.services.dtos;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Вложение и дата его визита — строка выгрузки медкарты без загрузки сущностей.
+ */
+public record AttachmentExportDto(UUID id, UUID visitId, LocalDateTime visitDate, String filePath,
+                                  String originalName, String description) {
+
+    public AttachmentExportDto(UUID id, UUID visitId, LocalDateTime visitDate, String filePath, String description) {
+        this(id, visitId, visitDate, filePath, null, description);
+    }
+}
@@ -0,0 +1,13 @@
+package com.example.diplom.services.dtos;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Строка каталога вложений — только столбцы таблицы, без обращений к хранилищу.
+ * created — время создания строки, первая часть курсора страницы.
+ */
+public record AttachmentMetadataDto(UUID id, UUID visitId, String originalName, String description,
+                                    String contentType, Long sizeBytes, String checksum, LocalDateTime uploadedAt,
+                                    Integer imageWidth, Integer imageHeight, String previewPath, LocalDateTime created) {
+}
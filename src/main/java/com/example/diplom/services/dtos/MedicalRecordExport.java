@@ -0,0 +1,19 @@
+package com.example.diplom.services.dtos;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Подготовленная выгрузка медкарты: права и сводка уже проверены, архив пишется при вызове writeTo.
+ */
+public record MedicalRecordExport(String fileName, Content content) {
+
+    @FunctionalInterface
+    public interface Content {
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    public void writeTo(OutputStream out) throws IOException {
+        content.writeTo(out);
+    }
+}
@@ -0,0 +1,9 @@
+package com.example.diplom.services.dtos;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+public record PatientVisitRowDto(UUID visitId, LocalDateTime visitDate, boolean finished,
+                                 String notes, BigDecimal totalCost, String doctorName) {
+}
@@ -0,0 +1,6 @@
+package com.example.diplom.services.dtos;
+
+import java.math.BigDecimal;
+
+public record ServiceRevenueDto(String name, BigDecimal revenue) {
+}
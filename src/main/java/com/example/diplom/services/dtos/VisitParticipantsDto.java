@@ -0,0 +1,9 @@
+package com.example.diplom.services.dtos;
+
+import java.util.UUID;
+
+/**
+ * Пациент и врач визита — для проверки доступа без загрузки визита.
+ */
+public record VisitParticipantsDto(UUID patientId, UUID doctorId) {
+}
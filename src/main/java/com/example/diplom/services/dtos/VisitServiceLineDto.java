@@ -0,0 +1,7 @@
+package com.example.diplom.services.dtos;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+public record VisitServiceLineDto(UUID visitId, UUID serviceId, String name, BigDecimal price, int quantity) {
+}
@@ -1,89 +1,144 @@
 package com.example.diplom.services.implementations;
 
+import com.example.diplom.controllers.RR.AttachmentMetadataResponse;
+import com.example.diplom.controllers.RR.AttachmentPageResponse;
+import com.example.diplom.controllers.RR.AttachmentUploadResponse;
+import com.example.diplom.controllers.RR.StartAttachmentUploadRequest;
 import com.example.diplom.services.AttachmentService;
+import com.example.diplom.services.dtos.AttachmentAccessDto;
 import com.example.diplom.services.dtos.AttachmentDto;
-import io.minio.*;
-import io.minio.http.Method;
+import com.example.diplom.services.dtos.AttachmentMetadataDto;
+import com.example.diplom.services.dtos.VisitParticipantsDto;
 import jakarta.transaction.Transactional;
 import org.modelmapper.ModelMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.stereotype.Service;
 import com.example.diplom.controllers.RR.AddAttachmentRequest;
+import com.example.diplom.events.AttachmentAddedEvent;
 import com.example.diplom.exceptions.ResourceNotFoundException;
 import com.example.diplom.models.Attachment;
+import com.example.diplom.models.AttachmentStatus;
+import com.example.diplom.models.PK.DoctorPatientPK;
 import com.example.diplom.models.Visit;
 import com.example.diplom.repositories.AttachmentRepository;
+import com.example.diplom.repositories.DoctorPatientRepository;
 import com.example.diplom.repositories.VisitRepository;
+import com.example.diplom.storage.AttachmentStorage;
+import com.example.diplom.storage.StorageKeyLock;
+import com.example.diplom.utils.ImageDimensions;
+import com.example.diplom.utils.PresignedUrlSigner;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.URI;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.OptionalLong;
 import java.util.List;
 import java.util.Set;
 import java.util.UUID;
-import java.util.concurrent.TimeUnit;
 
 @Service
 public class AttachmentServiceImpl implements AttachmentService {
 
+    private static final Logger logger = LoggerFactory.getLogger(AttachmentServiceImpl.class);
+
+    private static final int MAX_PAGE_SIZE = 100;
+
     private final VisitRepository visitRepository;
     private final AttachmentRepository attachmentRepository;
+    private final DoctorPatientRepository doctorPatientRepository;
     private final ModelMapper modelMapper;
-    private final MinioClient minioClient;
-    private final RedisTemplate<String, Object> redisTemplate;
+    private final AttachmentStorage storage;
+    private final ApplicationEventPublisher eventPublisher;
+    private final PresignedUrlSigner presignedUrlSigner;
+    private final StorageKeyLock storageKeyLock;
 
-    @Value("${minio.bucket.name}")
+    @Value("${minio.bucket.name:}")
     private String bucketName;
 
+    @Value("${minio.upload.max-size:52428800}")
+    private long maxUploadSize;
+
     @Autowired
     public AttachmentServiceImpl(VisitRepository visitRepository,
                                  AttachmentRepository attachmentRepository,
+                                 DoctorPatientRepository doctorPatientRepository,
                                  ModelMapper modelMapper,
-                                 MinioClient minioClient, RedisTemplate<String, Object> redisTemplate) {
+                                 AttachmentStorage storage, ApplicationEventPublisher eventPublisher,
+                                 PresignedUrlSigner presignedUrlSigner,
+                                 StorageKeyLock storageKeyLock) {
         this.visitRepository = visitRepository;
         this.attachmentRepository = attachmentRepository;
+        this.doctorPatientRepository = doctorPatientRepository;
         this.modelMapper = modelMapper;
-        this.minioClient = minioClient;
-        this.redisTemplate = redisTemplate;
+        this.storage = storage;
+        this.eventPublisher = eventPublisher;
+        this.presignedUrlSigner = presignedUrlSigner;
+        this.storageKeyLock = storageKeyLock;
     }
 
 
-    private void evictPatientCache(UUID patientId) {
-        String cacheName = "patientCache";
-        String pattern = cacheName + "::" + patientId + ":*";
-        Set<String> keys = redisTemplate.keys(pattern);
-        if (keys != null && !keys.isEmpty()) {
-            redisTemplate.delete(keys);
-        }
-    }
-
     @Override
     public AttachmentDto addAttachment(UUID patientId, AddAttachmentRequest request) throws IOException {
         Visit visit = visitRepository.findByIdAndPatientId(request.visitId(), patientId)
                 .orElseThrow(() -> new ResourceNotFoundException("Visit not found for the given patient"));
 
-        String fileName;
-
-        evictPatientCache(patientId);
+        MultipartFile file = request.file();
+        FileKey stored;
         try {
-            fileName = storeFile(request.file());
+            stored = fileKey(file);
         } catch (Exception e) {
             throw new RuntimeException("Error storing file", e);
         }
 
         Attachment attachment = new Attachment();
         attachment.setVisit(visit);
-        attachment.setFilePath(fileName);
+        attachment.setFilePath(stored.key());
+        attachment.setOriginalName(originalName(file.getOriginalFilename()));
         attachment.setDescription(request.description());
+        attachment.setSizeBytes(file.getSize());
+        attachment.setContentType(contentType(stored.key()));
+        attachment.setChecksum(stored.checksum());
+        attachment.setUploadedAt(LocalDateTime.now());
+        if (attachment.getContentType().startsWith("image/")) {
+            try (InputStream content = file.getInputStream()) {
+                ImageDimensions.read(content).ifPresent(size -> {
+                    attachment.setImageWidth(size.width());
+                    attachment.setImageHeight(size.height());
+                });
+            }
+        }
 
-        Attachment savedAttachment = attachmentRepository.save(attachment);
+        // Объект и строка, ссылающаяся на него, появляются под блокировкой ключа:
+        // удаление того же объекта не проскочит между проверкой наличия и вставкой.
+        Attachment savedAttachment = storageKeyLock.withKeyLock(stored.key(), () -> {
+            putIfAbsent(file, stored.key());
+            Attachment saved = attachmentRepository.save(attachment);
 
-        Set<Attachment> visitAttachments = visit.getAttachments();
-        visitAttachments.add(savedAttachment);
-        visit.setAttachments(visitAttachments);
-        visitRepository.save(visit);
+            Set<Attachment> visitAttachments = visit.getAttachments();
+            visitAttachments.add(saved);
+            visit.setAttachments(visitAttachments);
+            visitRepository.save(visit);
+            return saved;
+        });
+        eventPublisher.publishEvent(new AttachmentAddedEvent(
+                visit.getDoctor().getId(), patientId, visit.getId(), savedAttachment.getId()));
 
         return new AttachmentDto(savedAttachment.getId(),
                 savedAttachment.getVisit().getId(),
@@ -91,65 +146,308 @@ public class AttachmentServiceImpl implements AttachmentService {
                 savedAttachment.getDescription());
     }
 
+    /**
+     * Кладёт файл в хранилище под ключом по содержимому (SHA-256 и расширение).
+     * Если такой объект уже есть, загрузка пропускается и вложения делят один объект.
+     */
     public String storeFile(MultipartFile file) throws Exception {
+        FileKey stored = fileKey(file);
+        storageKeyLock.withKeyLock(stored.key(), () -> {
+            putIfAbsent(file, stored.key());
+            return null;
+        });
+        return stored.key();
+    }
+
+    private record FileKey(String key, String checksum) {
+    }
+
+    private FileKey fileKey(MultipartFile file) throws Exception {
         String originalFileName = file.getOriginalFilename();
         if (originalFileName == null) {
             throw new RuntimeException("Invalid file name");
         }
 
-        String fileName = UUID.randomUUID() + "_" + originalFileName;
+        // Multipart-файл уже принят сервером, поэтому хэш считается отдельным потоковым проходом
+        // до загрузки: так известен ключ и можно не загружать повторяющееся содержимое.
+        String checksum;
+        try (InputStream content = file.getInputStream()) {
+            checksum = sha256(content);
+        }
+        return new FileKey(contentKey(checksum, originalFileName), checksum);
+    }
+
+    /**
+     * Загружает файл под ключом, если такого объекта ещё нет. Вызывается под блокировкой ключа.
+     */
+    private void putIfAbsent(MultipartFile file, String key) {
+        try {
+            if (storage.size(key).isPresent()) {
+                return;
+            }
+            try (InputStream content = file.getInputStream()) {
+                storage.put(key, content, file.getSize(), contentType(key));
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Error storing file", e);
+        }
+    }
+
+    private static String contentKey(String sha256, String originalFileName) {
+        int dot = originalFileName.lastIndexOf('.');
+        String extension = dot >= 0 ? originalFileName.substring(dot + 1).toLowerCase(Locale.ROOT) : "";
+        // Расширение остаётся в ключе: по нему определяются тип содержимого и формат превью.
+        return extension.matches("[a-z0-9]{1,10}") ? sha256 + "." + extension : sha256;
+    }
+
+    private static String sha256(InputStream content) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 недоступен", e);
+        }
+        try (DigestInputStream in = new DigestInputStream(content, digest)) {
+            in.transferTo(OutputStream.nullOutputStream());
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static String objectKey(String originalFileName) {
+        return UUID.randomUUID() + "_" + originalName(originalFileName);
+    }
 
-        ObjectWriteResponse response = minioClient.putObject(
-                PutObjectArgs.builder()
-                        .bucket(bucketName)
-                        .object(fileName)
-                        .stream(file.getInputStream(), file.getSize(), -1)
-                        .contentType(file.getContentType())
-                        .build()
-        );
-        return fileName;
+    private static String originalName(String originalFileName) {
+        return originalFileName == null ? null : originalFileName.replaceAll("[/\\\\]", "_");
+    }
+
+    /**
+     * MIME-тип по расширению ключа или имени файла — так же, как формат определяет PreviewRenderer.
+     * Заявленный клиентом Content-Type не используется: он не проверяется и может не совпадать с файлом.
+     */
+    private static String contentType(String fileName) {
+        return MediaTypeFactory.getMediaType(fileName)
+                .orElse(MediaType.APPLICATION_OCTET_STREAM)
+                .toString();
     }
 
     @Override
-    public String getPresignedUrlForAttachment(UUID attachmentId) throws Exception {
+    public AttachmentUploadResponse startUpload(UUID patientId, StartAttachmentUploadRequest request) throws Exception {
+        Visit visit = visitRepository.findByIdAndPatientId(request.visitId(), patientId)
+                .orElseThrow(() -> new ResourceNotFoundException("Visit not found for the given patient"));
+
+        Attachment attachment = new Attachment();
+        attachment.setVisit(visit);
+        attachment.setFilePath(objectKey(request.fileName()));
+        attachment.setOriginalName(originalName(request.fileName()));
+        attachment.setContentType(contentType(attachment.getOriginalName()));
+        attachment.setDescription(request.description());
+        attachment.setStatus(AttachmentStatus.PENDING);
+        Attachment saved = attachmentRepository.save(attachment);
+
+        String uploadUrl = presignedUrlSigner.signUpload(saved.getFilePath());
+        return new AttachmentUploadResponse(saved.getId(), uploadUrl,
+                LocalDateTime.now().plus(PresignedUrlSigner.UPLOAD_EXPIRY));
+    }
+
+    // Отклонение слишком большого файла удаляет запись и бросает IllegalArgumentException — удаление должно зафиксироваться.
+    @Transactional(dontRollbackOn = IllegalArgumentException.class)
+    @Override
+    public AttachmentDto completeUpload(UUID patientId, UUID attachmentId) throws Exception {
         Attachment attachment = attachmentRepository.findById(attachmentId)
                 .orElseThrow(() -> new ResourceNotFoundException("Attachment not found"));
-        return minioClient.getPresignedObjectUrl(
-                GetPresignedObjectUrlArgs.builder()
-                        .method(Method.GET)
-                        .bucket(bucketName)
-                        .object(attachment.getFilePath())
-                        .expiry(2, TimeUnit.HOURS)
-                        .build()
-        );
+        Visit visit = attachment.getVisit();
+        if (!visit.getPatient().getId().equals(patientId)) {
+            throw new org.springframework.security.access.AccessDeniedException("Patient not allowed to complete this upload");
+        }
+        if (attachment.getStatus() == AttachmentStatus.READY) {
+            // Повторное подтверждение (например, после обрыва ответа) ничего не меняет.
+            return toDto(attachment);
+        }
+
+        OptionalLong size = storage.size(attachment.getFilePath());
+        if (size.isEmpty()) {
+            throw new ResourceNotFoundException("Uploaded file not found");
+        }
+        if (size.getAsLong() > maxUploadSize) {
+            storage.delete(attachment.getFilePath());
+            visit.getAttachments().remove(attachment);
+            attachmentRepository.delete(attachment);
+            throw new IllegalArgumentException("File size exceeds " + maxUploadSize + " bytes");
+        }
+
+        attachment.setSizeBytes(size.getAsLong());
+        attachment.setUploadedAt(LocalDateTime.now());
+        attachment.setStatus(AttachmentStatus.READY);
+        Attachment saved = attachmentRepository.save(attachment);
+        eventPublisher.publishEvent(new AttachmentAddedEvent(
+                visit.getDoctor().getId(), patientId, visit.getId(), saved.getId()));
+        return toDto(saved);
+    }
+
+    private static AttachmentDto toDto(Attachment attachment) {
+        return new AttachmentDto(attachment.getId(),
+                attachment.getVisit().getId(),
+                attachment.getFilePath(),
+                attachment.getDescription(),
+                attachment.getPreviewPath());
+    }
+
+    @Override
+    public String getPresignedUrlForUser(UUID attachmentId, UUID userId) throws Exception {
+        return presignedUrlSigner.sign(accessibleAttachment(attachmentId, userId).filePath());
+    }
+
+    @Override
+    public String getPreviewUrlForUser(UUID attachmentId, UUID userId) throws Exception {
+        AttachmentAccessDto access = accessibleAttachment(attachmentId, userId);
+        if (access.previewPath() == null) {
+            throw new ResourceNotFoundException("Preview not available");
+        }
+        return presignedUrlSigner.sign(access.previewPath());
+    }
+
+    private AttachmentAccessDto accessibleAttachment(UUID attachmentId, UUID userId) {
+        AttachmentAccessDto access = attachmentRepository.findAccessById(attachmentId)
+                .orElseThrow(() -> new ResourceNotFoundException("Attachment not found"));
+        if (!canView(userId, access.patientId(), access.doctorId())) {
+            throw new org.springframework.security.access.AccessDeniedException("User not allowed to open this attachment");
+        }
+        return access;
+    }
+
+    /**
+     * Пациент или врач визита (doctorId может быть null). Связь врача с пациентом
+     * не даёт доступа к вложениям визитов других врачей.
+     */
+    private boolean canView(UUID userId, UUID patientId, UUID doctorId) {
+        return userId.equals(patientId) || userId.equals(doctorId);
+    }
+
+    @Override
+    public AttachmentPageResponse getPatientAttachments(UUID userId, UUID patientId, String contentType,
+                                                        LocalDateTime beforeCreated, UUID beforeId, int size) {
+        checkPage(beforeCreated, beforeId, size);
+        String pattern = contentTypePattern(contentType);
+        // Запрашиваем на одну запись больше, чтобы понять, есть ли следующая страница.
+        Limit limit = Limit.of(size + 1);
+        if (userId.equals(patientId)) {
+            return toPage(beforeId == null
+                    ? attachmentRepository.findCatalogByPatientId(patientId, pattern, limit)
+                    : attachmentRepository.findCatalogByPatientIdBefore(patientId, pattern, beforeCreated, beforeId, limit),
+                    size);
+        }
+        if (!doctorPatientRepository.existsById(new DoctorPatientPK(userId, patientId))) {
+            throw new org.springframework.security.access.AccessDeniedException("User not allowed to view attachments of this patient");
+        }
+        // Связанный врач видит только вложения своих визитов — как и при открытии вложения.
+        return toPage(beforeId == null
+                ? attachmentRepository.findCatalogByPatientIdAndDoctorId(patientId, userId, pattern, limit)
+                : attachmentRepository.findCatalogByPatientIdAndDoctorIdBefore(patientId, userId, pattern,
+                        beforeCreated, beforeId, limit),
+                size);
+    }
+
+    @Override
+    public AttachmentPageResponse getVisitAttachments(UUID userId, UUID visitId, String contentType,
+                                                      LocalDateTime beforeCreated, UUID beforeId, int size) {
+        checkPage(beforeCreated, beforeId, size);
+        VisitParticipantsDto visit = visitRepository.findParticipantsById(visitId)
+                .orElseThrow(() -> new ResourceNotFoundException("Visit not found"));
+        if (!canView(userId, visit.patientId(), visit.doctorId())) {
+            throw new org.springframework.security.access.AccessDeniedException("User not allowed to view attachments of this visit");
+        }
+        String pattern = contentTypePattern(contentType);
+        Limit limit = Limit.of(size + 1);
+        return toPage(beforeId == null
+                ? attachmentRepository.findCatalogByVisitId(visitId, pattern, limit)
+                : attachmentRepository.findCatalogByVisitIdBefore(visitId, pattern, beforeCreated, beforeId, limit),
+                size);
+    }
+
+    private static void checkPage(LocalDateTime beforeCreated, UUID beforeId, int size) {
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("Page size must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        if ((beforeCreated == null) != (beforeId == null)) {
+            throw new IllegalArgumentException("beforeCreated and beforeId must be passed together");
+        }
+    }
+
+    /**
+     * Префикс MIME-типа как шаблон LIKE; '!' — символ экранирования в запросах каталога.
+     */
+    private static String contentTypePattern(String contentType) {
+        if (contentType == null || contentType.isBlank()) {
+            return "%";
+        }
+        return contentType.trim().toLowerCase(Locale.ROOT)
+                .replace("!", "!!")
+                .replace("%", "!%")
+                .replace("_", "!_") + "%";
+    }
+
+    private static AttachmentPageResponse toPage(List<AttachmentMetadataDto> rows, int size) {
+        boolean hasMore = rows.size() > size;
+        List<AttachmentMetadataDto> page = hasMore ? rows.subList(0, size) : rows;
+        List<AttachmentMetadataResponse> attachments = page.stream()
+                .map(row -> new AttachmentMetadataResponse(
+                        row.id(),
+                        row.visitId(),
+                        AttachmentService.linkFor(row.id()),
+                        row.previewPath() != null ? AttachmentService.previewLinkFor(row.id()) : null,
+                        row.originalName(),
+                        row.description(),
+                        row.contentType(),
+                        row.sizeBytes(),
+                        row.checksum(),
+                        row.uploadedAt(),
+                        row.imageWidth(),
+                        row.imageHeight()
+                ))
+                .toList();
+        AttachmentMetadataDto last = hasMore ? page.get(page.size() - 1) : null;
+        return new AttachmentPageResponse(attachments,
+                last != null ? last.created() : null,
+                last != null ? last.id() : null);
     }
 
     @Override
     public void deleteAttachmentByUrl(UUID patientId, String url) throws Exception {
         URI uri = new URI(url);
         String path = uri.getPath();
-        String expectedPrefix = "/" + bucketName + "/";
-        if (!path.startsWith(expectedPrefix)) {
-            throw new IllegalArgumentException("Неверный формат URL");
+        Attachment attachment;
+        if (path.startsWith(LINK_PREFIX)) {
+            // Ссылка вида /api/attachments/{id} из ответов API.
+            UUID attachmentId;
+            try {
+                attachmentId = UUID.fromString(path.substring(LINK_PREFIX.length()));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Неверный формат URL");
+            }
+            attachment = attachmentRepository.findById(attachmentId)
+                    .orElseThrow(() -> new ResourceNotFoundException("Attachment not found"));
+        } else {
+            String expectedPrefix = "/" + bucketName + "/";
+            if (!path.startsWith(expectedPrefix)) {
+                throw new IllegalArgumentException("Неверный формат URL");
+            }
+            List<Attachment> sharing = attachmentRepository.findByFilePath(path.substring(expectedPrefix.length()));
+            if (sharing.isEmpty()) {
+                throw new ResourceNotFoundException("Attachment not found");
+            }
+            attachment = sharing.stream()
+                    .filter(candidate -> candidate.getVisit().getPatient().getId().equals(patientId))
+                    .findFirst()
+                    .orElse(sharing.get(0));
         }
-        String fileKey = path.substring(expectedPrefix.length());
-
-        Attachment attachment = attachmentRepository.findByFilePath(fileKey)
-                .orElseThrow(() -> new ResourceNotFoundException("Attachment not found"));
-
         if (!attachment.getVisit().getPatient().getId().equals(patientId)) {
             throw new org.springframework.security.access.AccessDeniedException("Patient not allowed to delete this attachment");
         }
 
-        minioClient.removeObject(
-                io.minio.RemoveObjectArgs.builder()
-                        .bucket(bucketName)
-                        .object(fileKey)
-                        .build()
-        );
-
         attachment.getVisit().getAttachments().remove(attachment);
         attachmentRepository.delete(attachment);
+        releaseFiles(attachment);
     }
 
     @Transactional
@@ -158,18 +456,53 @@ public class AttachmentServiceImpl implements AttachmentService {
         Attachment attachment = attachmentRepository.findById(attachmentId)
                 .orElseThrow(() -> new ResourceNotFoundException("Attachment not found with id: " + attachmentId));
 
-        String fileKey = attachment.getFilePath();
-        minioClient.removeObject(
-                io.minio.RemoveObjectArgs.builder()
-                        .bucket(bucketName)
-                        .object(fileKey)
-                        .build()
-        );
-
         if (attachment.getVisit() != null && attachment.getVisit().getAttachments() != null) {
             attachment.getVisit().getAttachments().remove(attachment);
         }
         attachmentRepository.delete(attachment);
+        releaseFiles(attachment);
+    }
+
+    /**
+     * Удаляет объект и превью удалённого вложения, если на объект больше не ссылается ни одно вложение.
+     * Ссылки пересчитываются после фиксации удаления строки и под блокировкой ключа, поэтому
+     * параллельная загрузка того же содержимого либо уже видна в подсчёте, либо сама загрузит объект заново.
+     */
+    private void releaseFiles(Attachment attachment) {
+        String filePath = attachment.getFilePath();
+        String previewPath = attachment.getPreviewPath();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    removeUnreferenced(filePath, previewPath);
+                }
+            });
+        } else {
+            removeUnreferenced(filePath, previewPath);
+        }
+    }
+
+    private void removeUnreferenced(String filePath, String previewPath) {
+        storageKeyLock.withKeyLock(filePath, () -> {
+            if (attachmentRepository.existsByFilePath(filePath)) {
+                return null;
+            }
+            try {
+                storage.delete(filePath);
+                if (previewPath != null) {
+                    storage.delete(previewPath);
+                }
+            } catch (IOException e) {
+                // Строка уже удалена; объект без ссылок останется в хранилище до ручной очистки.
+                logger.warn("Не удалось удалить объект {} из хранилища", filePath, e);
+            }
+            presignedUrlSigner.evict(filePath);
+            if (previewPath != null) {
+                presignedUrlSigner.evict(previewPath);
+            }
+            return null;
+        });
     }
 
     @Override
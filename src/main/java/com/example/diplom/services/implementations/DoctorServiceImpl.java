@@ -1,15 +1,21 @@
 package com.example.diplom.services.implementations;
 
 import com.example.diplom.controllers.RR.*;
+import com.example.diplom.events.*;
 import com.example.diplom.exceptions.AppointmentWarningException;
 import com.example.diplom.exceptions.ResourceNotFoundException;
 import com.example.diplom.models.*;
 import com.example.diplom.notif.NotificationMailService;
 import com.example.diplom.repositories.*;
+import com.example.diplom.schedule.DoctorBookingLock;
+import com.example.diplom.schedule.DoctorScheduleIndex;
 import com.example.diplom.services.AttachmentService;
 import com.example.diplom.services.DoctorService;
+import com.example.diplom.services.dtos.AttachmentDto;
 import com.example.diplom.services.dtos.DoctorRegistrationDto;
+import com.example.diplom.services.dtos.ServiceRevenueDto;
 import com.example.diplom.services.dtos.VisitDto;
+import com.example.diplom.services.dtos.VisitServiceLineDto;
 import com.itextpdf.io.font.PdfEncodings;
 import com.itextpdf.io.image.ImageDataFactory;
 import com.itextpdf.kernel.colors.DeviceRgb;
@@ -24,6 +30,9 @@ import com.itextpdf.layout.element.Image;
 import com.itextpdf.layout.element.Paragraph;
 import com.itextpdf.layout.element.Table;
 import com.itextpdf.layout.properties.UnitValue;
+import jakarta.persistence.EntityManager;
+import jakarta.transaction.Transactional;
+import org.hibernate.Session;
 import org.jfree.chart.ChartFactory;
 import org.jfree.chart.ChartUtils;
 import org.jfree.chart.JFreeChart;
@@ -38,18 +47,21 @@ import org.jfree.data.category.DefaultCategoryDataset;
 import org.jfree.data.general.DefaultPieDataset;
 import org.modelmapper.ModelMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.cache.annotation.CacheConfig;
 import org.springframework.cache.annotation.Cacheable;
-import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
 import java.io.ByteArrayOutputStream;
 import java.math.BigDecimal;
+import java.time.DateTimeException;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
+import java.time.YearMonth;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
 import java.util.function.Function;
@@ -59,6 +71,9 @@ import java.util.stream.Collectors;
 @Service
 public class DoctorServiceImpl implements DoctorService {
 
+    private static final long MAX_FREE_SLOTS_RANGE_DAYS = 31;
+    private static final int VISIT_LINES_BATCH_SIZE = 50;
+
     private final DoctorRepository doctorRepository;
     private final VisitRepository visitRepository;
     private final ServiceRepository serviceRepository;
@@ -70,7 +85,11 @@ public class DoctorServiceImpl implements DoctorService {
     private final NotificationMailService notificationService;
     private final AttachmentService attachmentService;
     private final DoctorPatientRepository doctorPatientRepository;
-    private final RedisTemplate<String, Object> redisTemplate;
+    private final AttachmentRepository attachmentRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final DoctorScheduleIndex scheduleIndex;
+    private final DoctorBookingLock bookingLock;
+    private final EntityManager entityManager;
 
     @Autowired
     public DoctorServiceImpl(
@@ -85,7 +104,11 @@ public class DoctorServiceImpl implements DoctorService {
             NotificationMailService notificationService,
             AttachmentService attachmentService,
             DoctorPatientRepository doctorPatientRepository,
-            RedisTemplate<String, Object> redisTemplate
+            AttachmentRepository attachmentRepository,
+            ApplicationEventPublisher eventPublisher,
+            DoctorScheduleIndex scheduleIndex,
+            DoctorBookingLock bookingLock,
+            EntityManager entityManager
     ) {
         this.doctorRepository = doctorRepository;
         this.visitRepository = visitRepository;
@@ -98,25 +121,11 @@ public class DoctorServiceImpl implements DoctorService {
         this.notificationService = notificationService;
         this.attachmentService = attachmentService;
         this.doctorPatientRepository = doctorPatientRepository;
-        this.redisTemplate = redisTemplate;
-    }
-
-    private void evictDoctorCache(UUID doctorId) {
-        String cacheName = "doctorCache";
-        String pattern = cacheName + "::" + doctorId + ":*";
-        Set<String> keys = redisTemplate.keys(pattern);
-        if (keys != null && !keys.isEmpty()) {
-            redisTemplate.delete(keys);
-        }
-    }
-
-    private void evictPatientCache(UUID patientId) {
-        String cacheName = "patientCache";
-        String pattern = cacheName + "::" + patientId + ":*";
-        Set<String> keys = redisTemplate.keys(pattern);
-        if (keys != null && !keys.isEmpty()) {
-            redisTemplate.delete(keys);
-        }
+        this.attachmentRepository = attachmentRepository;
+        this.eventPublisher = eventPublisher;
+        this.scheduleIndex = scheduleIndex;
+        this.bookingLock = bookingLock;
+        this.entityManager = entityManager;
     }
 
     @Override
@@ -140,12 +149,17 @@ public class DoctorServiceImpl implements DoctorService {
 
     @Override
     @PreAuthorize("@doctorAuthz.matchDoctorId(authentication, #doctorId)")
-    @Cacheable(key = "#doctorId + ':' + #root.methodName + ':' + #month + ':' + #year")
+    @Cacheable(key = "#doctorId + ':' + #root.methodName + ':' + #month + ':' + #year", sync = true)
     public List<VisitDto> getDoctorVisitDates(UUID doctorId, int month, int year) {
         Doctor doctor = doctorRepository.findById(doctorId)
                 .orElseThrow(() -> new ResourceNotFoundException("Doctor not found " + doctorId));
 
-        return visitRepository.findByDoctorIdAndMonthYear(doctorId, month, year).stream()
+        Optional<LocalDateTime> monthStart = monthStart(month, year);
+        if (monthStart.isEmpty()) {
+            return List.of();
+        }
+        LocalDateTime from = monthStart.get();
+        return visitRepository.findByDoctorIdAndVisitDateRange(doctorId, from, from.plusMonths(1)).stream()
                 .map(visit -> {
                     VisitDto dto = modelMapper.map(visit, VisitDto.class);
                     dto.setFinished(visit.isFinished());
@@ -156,14 +170,52 @@ public class DoctorServiceImpl implements DoctorService {
                 .toList();
     }
 
+    /**
+     * Сводка месяца для календаря: по дню — число визитов и число завершённых.
+     * Считается одним агрегирующим запросом без загрузки самих визитов.
+     */
     @Override
     @PreAuthorize("@doctorAuthz.matchDoctorId(authentication, #doctorId)")
-    @Cacheable(key = "#doctorId + ':' + #root.methodName + ':' + #date")
+    @Cacheable(key = "#doctorId + ':' + #root.methodName + ':' + #month + ':' + #year", sync = true)
+    public List<VisitDaySummaryResponse> getDoctorVisitSummary(UUID doctorId, int month, int year) {
+        if (!doctorRepository.existsById(doctorId)) {
+            throw new ResourceNotFoundException("Doctor not found " + doctorId);
+        }
+        Optional<LocalDateTime> monthStart = monthStart(month, year);
+        if (monthStart.isEmpty()) {
+            return List.of();
+        }
+        LocalDateTime from = monthStart.get();
+        return visitRepository.summarizeByDay(doctorId, from, from.plusMonths(1));
+    }
+
+    /**
+     * Начало месяца; пусто для несуществующих month/year — как и прежние запросы по EXTRACT,
+     * такие параметры дают пустой список, а не ошибку.
+     */
+    private static Optional<LocalDateTime> monthStart(int month, int year) {
+        try {
+            return Optional.of(YearMonth.of(year, month).atDay(1).atStartOfDay());
+        } catch (DateTimeException e) {
+            return Optional.empty();
+        }
+    }
+
+    @Override
+    @PreAuthorize("@doctorAuthz.matchDoctorId(authentication, #doctorId)")
+    @Cacheable(key = "#doctorId + ':' + #root.methodName + ':' + #date", sync = true)
     public List<VisitDto> getDoctorVisitDatesByDay(UUID doctorId, String date) {
         Doctor doctor = doctorRepository.findById(doctorId)
                 .orElseThrow(() -> new ResourceNotFoundException("Doctor not found " + doctorId));
 
-        return visitRepository.findByDoctorIdAndDate(doctorId, date).stream()
+        LocalDateTime from;
+        try {
+            from = LocalDate.parse(date).atStartOfDay();
+        } catch (DateTimeException e) {
+            // Некорректная дата ни с чем не совпадает — как прежнее сравнение CAST(visit_date AS date).
+            return List.of();
+        }
+        return visitRepository.findByDoctorIdAndVisitDateRange(doctorId, from, from.plusDays(1)).stream()
                 .map(visit -> {
                     VisitDto dto = modelMapper.map(visit, VisitDto.class);
                     dto.setFinished(visit.isFinished());
@@ -191,7 +243,7 @@ public class DoctorServiceImpl implements DoctorService {
         newService.setDoctor(doctor);
 
         serviceRepository.save(newService);
-        evictDoctorCache(doctorId);
+        eventPublisher.publishEvent(new ServiceCreatedEvent(doctorId, newService.getId()));
 
     }
 
@@ -223,7 +275,7 @@ public class DoctorServiceImpl implements DoctorService {
 
         service.setPrice(updateServiceRequest.price());
         serviceRepository.save(service);
-        evictDoctorCache(doctorId);
+        eventPublisher.publishEvent(new ServicePriceChangedEvent(doctorId, service.getId()));
 
     }
 
@@ -251,12 +303,14 @@ public class DoctorServiceImpl implements DoctorService {
         Visit visit = visitRepository.findById(visitIdRequest.id())
                 .orElseThrow(() -> new ResourceNotFoundException("Visit not found"));
         visitRepository.deleteById(visitIdRequest.id());
-        evictDoctorCache(doctorId);
-        evictPatientCache(visit.getPatient().getId());
+        scheduleIndex.visitRemoved(doctorId, visitIdRequest.id());
+        eventPublisher.publishEvent(new VisitCancelledEvent(
+                doctorId, visit.getPatient().getId(), visit.getId(), visit.getVisitDate()));
     }
 
 
     @Override
+    @Transactional
     @PreAuthorize("@doctorAuthz.hasDoctorVisitOwnership(authentication, #doctorId, #finishVisitRequest.id())")
     public void finishVisit(UUID doctorId, FinishVisitRequest finishVisitRequest) {
 
@@ -267,21 +321,20 @@ public class DoctorServiceImpl implements DoctorService {
             throw new IllegalArgumentException("At least one service must be provided.");
         }
 
+        // Строки визита уходят в БД пачками JDBC при фиксации, а не отдельным запросом на каждую.
+        entityManager.unwrap(Session.class).setJdbcBatchSize(VISIT_LINES_BATCH_SIZE);
+
         visit.setFinished(true);
-        updateVisitServices(visit, finishVisitRequest.services());
+        BigDecimal totalCost = updateVisitServices(visit, finishVisitRequest.services());
 
         if (!finishVisitRequest.notes().equals(visit.getNotes())) {
             visit.setNotes(finishVisitRequest.notes());
         }
-
-        BigDecimal totalCost = visitServiceRepository.findByVisit(visit).stream()
-                .map(vs -> vs.getService().getPrice().multiply(BigDecimal.valueOf(vs.getQuantity())))
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
         visit.setTotalCost(totalCost);
 
         visitRepository.save(visit);
-        evictDoctorCache(doctorId);
-        evictPatientCache(visit.getPatient().getId());
+        eventPublisher.publishEvent(new VisitFinishedEvent(
+                doctorId, visit.getPatient().getId(), visit.getId(), visit.getVisitDate()));
 
     }
 
@@ -297,35 +350,40 @@ public class DoctorServiceImpl implements DoctorService {
 
     @Override
     @PreAuthorize("@doctorAuthz.hasDoctorPatientOwnership(authentication, #doctorId, #patientId)")
-    @Cacheable(key = "#doctorId + ':' + #root.methodName + ':' + #patientId")
+    @Cacheable(key = "#doctorId + ':' + #root.methodName + ':' + #patientId", sync = true)
     public PatientMedCardResponse getPatientMedicalCard(UUID doctorId, UUID patientId) {
         Patient patient = patientRepository.findById(patientId)
                 .orElseThrow(() -> new ResourceNotFoundException("Patient not found " + patientId));
 
-        List<Visit> visits = visitRepository.findByPatientIdAndDoctorId(patientId, doctorId);
+        // Визиты, строки услуг и вложения читаются тремя запросами независимо от числа визитов.
+        List<Visit> visits = visitRepository.findMedicalCardVisits(patientId, doctorId);
+        Map<UUID, List<VisitServiceLineDto>> linesByVisit = new HashMap<>();
+        Map<UUID, List<AttachmentDto>> attachmentsByVisit = new HashMap<>();
+        if (!visits.isEmpty()) {
+            List<UUID> visitIds = visits.stream().map(Visit::getId).toList();
+            linesByVisit = visitServiceRepository.findLinesByVisitIds(visitIds).stream()
+                    .collect(Collectors.groupingBy(VisitServiceLineDto::visitId));
+            attachmentsByVisit = attachmentRepository.findDtosByVisitIds(visitIds).stream()
+                    .collect(Collectors.groupingBy(AttachmentDto::getVisitId));
+        }
+
+        Map<UUID, List<VisitServiceLineDto>> lines = linesByVisit;
+        Map<UUID, List<AttachmentDto>> attachments = attachmentsByVisit;
         List<VisitDetailsResponse> visitDetails = visits.stream()
                 .map(visit -> {
-                    List<VisitService> vsList = visitServiceRepository.findByVisit(visit);
-
-                    List<VisitServicesDetailsResponse> serviceResponses = vsList.stream()
-                            .map(vs -> new VisitServicesDetailsResponse(
-                                    vs.getServiceId(),
-                                    vs.getService().getName(),
-                                    vs.getService().getPrice(),
-                                    vs.getQuantity()
+                    List<VisitServicesDetailsResponse> serviceResponses = lines
+                            .getOrDefault(visit.getId(), List.of()).stream()
+                            .map(line -> new VisitServicesDetailsResponse(
+                                    line.serviceId(),
+                                    line.name(),
+                                    line.price(),
+                                    line.quantity()
                             ))
                             .toList();
 
-                    List<String> attachmentUrls = visit.getAttachments().stream()
-                            .map(a -> {
-                                try {
-                                    return attachmentService.getPresignedUrlForAttachment(a.getId());
-                                } catch (Exception e) {
-                                    e.printStackTrace();
-                                    return null;
-                                }
-                            })
-                            .filter(Objects::nonNull)
+                    List<String> attachmentUrls = attachments
+                            .getOrDefault(visit.getId(), List.of()).stream()
+                            .map(a -> AttachmentService.linkFor(a.getId()))
                             .toList();
 
                     return new VisitDetailsResponse(
@@ -350,64 +408,83 @@ public class DoctorServiceImpl implements DoctorService {
         );
     }
 
-    private void updateVisitServices(Visit visit, List<ServiceUpdateRequest> serviceUpdates) {
-        List<VisitService> existing = visitServiceRepository.findByVisit(visit);
-        Map<String, VisitService> existingMap = existing.stream()
-                .collect(Collectors.toMap(vs -> vs.getService().getName(), Function.identity()));
-
+    /**
+     * Применяет присланные количества к строкам визита и возвращает итоговую стоимость визита.
+     * Все услуги разрешаются одним запросом, цена фиксируется в строке,
+     * стоимость считается по уже загруженным строкам.
+     */
+    private BigDecimal updateVisitServices(Visit visit, List<ServiceUpdateRequest> serviceUpdates) {
+        Map<String, Integer> quantities = new LinkedHashMap<>();
         for (ServiceUpdateRequest update : serviceUpdates) {
             if (update.quantity() < 0) {
                 throw new IllegalArgumentException("Quantity cannot be negative for service: " + update.name());
             }
-            com.example.diplom.models.Service service = serviceRepository
-                    .findByDoctorIdAndName(visit.getDoctor().getId(), update.name())
-                    .orElseThrow(() -> new ResourceNotFoundException("Service not found: " + update.name()));
-
-            if (existingMap.containsKey(update.name())) {
-                VisitService vs = existingMap.get(update.name());
-                vs.setQuantity(update.quantity());
-                visitServiceRepository.save(vs);
-            } else if (update.quantity() > 0) {
-                VisitService newVs = new VisitService();
-                newVs.setVisit(visit);
-                newVs.setService(service);
-                newVs.setQuantity(update.quantity());
-                visitServiceRepository.save(newVs);
+            quantities.put(update.name(), update.quantity());
+        }
+
+        Map<String, com.example.diplom.models.Service> services = serviceRepository
+                .findByDoctorIdAndNameIn(visit.getDoctor().getId(), quantities.keySet()).stream()
+                .collect(Collectors.toMap(com.example.diplom.models.Service::getName, Function.identity()));
+        Map<UUID, VisitService> lines = visitServiceRepository.findWithServiceByVisitId(visit.getId()).stream()
+                .collect(Collectors.toMap(VisitService::getServiceId, Function.identity()));
+
+        for (Map.Entry<String, Integer> update : quantities.entrySet()) {
+            com.example.diplom.models.Service service = services.get(update.getKey());
+            if (service == null) {
+                throw new ResourceNotFoundException("Service not found: " + update.getKey());
+            }
+            VisitService line = lines.get(service.getId());
+            if (line != null) {
+                line.setQuantity(update.getValue());
+            } else if (update.getValue() > 0) {
+                line = new VisitService(visit, service, update.getValue());
+                entityManager.persist(line);
+                lines.put(service.getId(), line);
             }
         }
-        evictPatientCache(visit.getPatient().getId());
 
+        // Уже зафиксированная цена строки не меняется при повторном завершении визита.
+        BigDecimal total = BigDecimal.ZERO;
+        for (VisitService line : lines.values()) {
+            line.snapshotPrice(line.getUnitPrice() != null ? line.getUnitPrice() : line.getService().getPrice());
+            total = total.add(line.getLineTotal());
+        }
+        return total;
     }
 
     @Override
     @PreAuthorize("@doctorAuthz.hasDoctorPatientOwnership(authentication, #doctorId, #visitRequest.patientId())")
     public CreateVisitResponse createVisit(UUID doctorId, CreateVisitRequest visitRequest) {
-        AppointmentCheckResult result = checkAppointmentOverlap(doctorId, visitRequest.visitDate(), null);
-        if (result == AppointmentCheckResult.ERROR) {
-            throw new IllegalArgumentException("Записи пересекаются");
-        } else if (result == AppointmentCheckResult.WARNING && !visitRequest.force()) {
-            throw new AppointmentWarningException("There is another appointment close to this time. Is everything right?");
-        }
+        Visit saved = bookingLock.withDoctorLock(doctorId, () -> {
+            AppointmentCheckResult result = checkAppointmentOverlap(doctorId, visitRequest.visitDate(), null);
+            if (result == AppointmentCheckResult.ERROR) {
+                throw new IllegalArgumentException("Записи пересекаются");
+            } else if (result == AppointmentCheckResult.WARNING && !visitRequest.force()) {
+                throw new AppointmentWarningException("There is another appointment close to this time. Is everything right?");
+            }
 
-        Doctor doctor = doctorRepository.findById(doctorId)
-                .orElseThrow(() -> new ResourceNotFoundException("Doctor not found " + doctorId));
-        Patient patient = patientRepository.findById(visitRequest.patientId())
-                .orElseThrow(() -> new ResourceNotFoundException("Patient not found " + visitRequest.patientId()));
-        if(patient.getPhone().contains("удален")){
-            throw new ResourceNotFoundException("Пациент был удален");
-        }
-        Visit visit = new Visit();
-        visit.setDoctor(doctor);
-        visit.setPatient(patient);
-        visit.setVisitDate(visitRequest.visitDate());
-        visit.setNotes(visitRequest.notes());
-        visit.setFinished(false);
-        visit.setTotalCost(BigDecimal.ZERO);
-
-        Visit saved = visitRepository.save(visit);
-        notificationService.sendVisitCreatedNotification(patient.getEmail(), saved.getVisitDate().toString());
-        evictDoctorCache(doctorId);
-        evictPatientCache(visit.getPatient().getId());
+            Doctor doctor = doctorRepository.findById(doctorId)
+                    .orElseThrow(() -> new ResourceNotFoundException("Doctor not found " + doctorId));
+            Patient patient = patientRepository.findById(visitRequest.patientId())
+                    .orElseThrow(() -> new ResourceNotFoundException("Patient not found " + visitRequest.patientId()));
+            if(patient.getPhone().contains("удален")){
+                throw new ResourceNotFoundException("Пациент был удален");
+            }
+            Visit visit = new Visit();
+            visit.setDoctor(doctor);
+            visit.setPatient(patient);
+            visit.setVisitDate(visitRequest.visitDate());
+            visit.setNotes(visitRequest.notes());
+            visit.setFinished(false);
+            visit.setTotalCost(BigDecimal.ZERO);
+
+            Visit persisted = visitRepository.save(visit);
+            scheduleIndex.visitScheduled(doctorId, persisted.getId(), persisted.getVisitDate());
+            eventPublisher.publishEvent(new VisitCreatedEvent(
+                    doctorId, patient.getId(), persisted.getId(), persisted.getVisitDate()));
+            return persisted;
+        });
+        notificationService.sendVisitCreatedNotification(saved.getPatient().getEmail(), saved.getVisitDate().toString());
 
         return new CreateVisitResponse(saved.getVisitDate(), saved.getId());
     }
@@ -415,40 +492,71 @@ public class DoctorServiceImpl implements DoctorService {
     @Override
     @PreAuthorize("@doctorAuthz.hasDoctorVisitOwnership(authentication, #doctorId, #rearrangeRequest.visitId())")
     public void rearrangeVisit(UUID doctorId, RearrangeVisitRequest rearrangeRequest) {
-        AppointmentCheckResult result = checkAppointmentOverlap(doctorId, rearrangeRequest.newVisitDate(), rearrangeRequest.visitId());
-        if (result == AppointmentCheckResult.ERROR) {
-            throw new IllegalArgumentException("Appointments overlap");
-        } else if (result == AppointmentCheckResult.WARNING && !rearrangeRequest.force()) {
-            throw new AppointmentWarningException("There is another appointment close to this time. Is everything right?");
-        }
-
-        Visit visit = visitRepository.findById(rearrangeRequest.visitId())
-                .orElseThrow(() -> new ResourceNotFoundException("Visit not found " + rearrangeRequest.visitId()));
+        Visit visit = bookingLock.withDoctorLock(doctorId, () -> {
+            AppointmentCheckResult result = checkAppointmentOverlap(doctorId, rearrangeRequest.newVisitDate(), rearrangeRequest.visitId());
+            if (result == AppointmentCheckResult.ERROR) {
+                throw new IllegalArgumentException("Appointments overlap");
+            } else if (result == AppointmentCheckResult.WARNING && !rearrangeRequest.force()) {
+                throw new AppointmentWarningException("There is another appointment close to this time. Is everything right?");
+            }
 
-        visit.setVisitDate(rearrangeRequest.newVisitDate());
-        visitRepository.save(visit);
-        evictDoctorCache(doctorId);
-        evictPatientCache(visit.getPatient().getId());
+            Visit existing = visitRepository.findById(rearrangeRequest.visitId())
+                    .orElseThrow(() -> new ResourceNotFoundException("Visit not found " + rearrangeRequest.visitId()));
+
+            LocalDateTime previousDate = existing.getVisitDate();
+            existing.setVisitDate(rearrangeRequest.newVisitDate());
+            visitRepository.save(existing);
+            scheduleIndex.visitScheduled(doctorId, existing.getId(), existing.getVisitDate());
+            eventPublisher.publishEvent(new VisitRearrangedEvent(doctorId, existing.getPatient().getId(),
+                    existing.getId(), previousDate, existing.getVisitDate()));
+            return existing;
+        });
         notificationService.sendVisitCreatedNotification(visit.getPatient().getEmail(), visit.getVisitDate().toString());
     }
 
-    private AppointmentCheckResult checkAppointmentOverlap(UUID doctorId, LocalDateTime newTime, UUID existingVisitId) {
-        LocalDateTime windowStart = newTime.minusMinutes(15);
-        LocalDateTime windowEnd = newTime.plusMinutes(15);
+    /**
+     * Свободные окна врача в интервале [from, to), в каждое из которых помещается визит
+     * длительностью durationMinutes. Каждый существующий визит считается занимающим
+     * MIN_GAP_MINUTES, как и в checkAppointmentOverlap: окно заканчивается началом следующего
+     * визита, поэтому результат OK гарантирован для визита, начатого не позже чем за
+     * durationMinutes (и не меньше MIN_GAP_MINUTES) до конца окна, — в частности, в его начале.
+     * Окна строятся за один проход по отсортированным визитам.
+     */
+    @Override
+    @PreAuthorize("@doctorAuthz.matchDoctorId(authentication, #doctorId)")
+    public List<FreeSlotResponse> findFreeSlots(UUID doctorId, LocalDateTime from, LocalDateTime to, int durationMinutes) {
+        if (durationMinutes <= 0) {
+            throw new IllegalArgumentException("Duration must be positive");
+        }
+        if (!from.isBefore(to)) {
+            throw new IllegalArgumentException("Interval start must be before its end");
+        }
+        if (Duration.between(from, to).compareTo(Duration.ofDays(MAX_FREE_SLOTS_RANGE_DAYS)) > 0) {
+            throw new IllegalArgumentException("Interval must not exceed " + MAX_FREE_SLOTS_RANGE_DAYS + " days");
+        }
+
+        Duration gap = Duration.ofMinutes(DoctorScheduleIndex.MIN_GAP_MINUTES);
+        Duration need = Duration.ofMinutes(Math.max(durationMinutes, DoctorScheduleIndex.MIN_GAP_MINUTES));
 
-        List<Visit> nearbyVisits = visitRepository.findByDoctorIdAndVisitDateBetween(doctorId, windowStart, windowEnd);
-        for (Visit visit : nearbyVisits) {
-            if (existingVisitId != null && visit.getId().equals(existingVisitId)) {
-                continue;
+        List<FreeSlotResponse> slots = new ArrayList<>();
+        LocalDateTime cursor = from;
+        for (LocalDateTime start : scheduleIndex.visitStarts(doctorId, from.minus(gap), to)) {
+            if (!cursor.plus(need).isAfter(start)) {
+                slots.add(new FreeSlotResponse(cursor, start));
             }
-            long diff = Math.abs(java.time.Duration.between(newTime, visit.getVisitDate()).toMinutes());
-            if (diff == 0) {
-                return AppointmentCheckResult.ERROR;
-            } else if (diff < 15) {
-                return AppointmentCheckResult.WARNING;
+            LocalDateTime busyUntil = start.plus(gap);
+            if (busyUntil.isAfter(cursor)) {
+                cursor = busyUntil;
             }
         }
-        return AppointmentCheckResult.OK;
+        if (!cursor.plus(need).isAfter(to)) {
+            slots.add(new FreeSlotResponse(cursor, to));
+        }
+        return slots;
+    }
+
+    private AppointmentCheckResult checkAppointmentOverlap(UUID doctorId, LocalDateTime newTime, UUID existingVisitId) {
+        return scheduleIndex.check(doctorId, newTime, existingVisitId);
     }
 
 
@@ -478,15 +586,8 @@ public class DoctorServiceImpl implements DoctorService {
         int visitCount = visits.size();
 
         Map<String, BigDecimal> serviceRevenue = new HashMap<>();
-        for (Visit visit : visits) {
-            List<VisitService> vsList = visitServiceRepository.findByVisit(visit);
-            for (VisitService vs : vsList) {
-                String serviceName = vs.getService().getName();
-                BigDecimal revenue = vs.getService().getPrice()
-                        .multiply(BigDecimal.valueOf(vs.getQuantity()));
-                serviceRevenue.put(serviceName,
-                        serviceRevenue.getOrDefault(serviceName, BigDecimal.ZERO).add(revenue));
-            }
+        for (ServiceRevenueDto revenue : visitServiceRepository.sumRevenueByService(doctorId, startOfDay, endOfDay)) {
+            serviceRevenue.put(revenue.name(), revenue.revenue());
         }
 
         LocalDate currentDate = reportRequest.startDate();
@@ -684,7 +785,7 @@ public class DoctorServiceImpl implements DoctorService {
         dp.setDoctor(doctor);
         dp.setPatient(savedPatient);
         doctorPatientRepository.save(dp);
-        evictDoctorCache(doctorId);
+        eventPublisher.publishEvent(new PatientLinkedEvent(doctorId, savedPatient.getId()));
 
         return new PatientResponse(savedPatient.getFullName(), savedPatient.getBirthDate(), savedPatient.getId());
     }
@@ -695,19 +796,19 @@ public class DoctorServiceImpl implements DoctorService {
         List<com.example.diplom.models.Service> docServices =
                 serviceRepository.findByDoctorId(doctorId);
 
-        Map<UUID, Integer> serviceQuantities = visitServiceRepository.findByVisit(visit).stream()
-                .collect(Collectors.toMap(
-                        vs -> vs.getService().getId(),
-                        VisitService::getQuantity
-                ));
+        Map<UUID, VisitService> visitLines = visitServiceRepository.findByVisit(visit).stream()
+                .collect(Collectors.toMap(VisitService::getServiceId, Function.identity()));
 
         List<VisitServicesDetailsResponse> services = docServices.stream()
-                .map(s -> new VisitServicesDetailsResponse(
-                        s.getId(),
-                        s.getName(),
-                        s.getPrice(),
-                        serviceQuantities.getOrDefault(s.getId(), 0)
-                ))
+                .map(s -> {
+                    VisitService line = visitLines.get(s.getId());
+                    return new VisitServicesDetailsResponse(
+                            s.getId(),
+                            s.getName(),
+                            line != null && line.getUnitPrice() != null ? line.getUnitPrice() : s.getPrice(),
+                            line != null ? line.getQuantity() : 0
+                    );
+                })
                 .toList();
 
         List<String> attachments = buildAttachmentUrls(visit.getAttachments());
@@ -726,14 +827,8 @@ public class DoctorServiceImpl implements DoctorService {
 
     private List<String> buildAttachmentUrls(Collection<Attachment> attachments) {
         return attachments.stream()
-                .map(a -> {
-                    try {
-                        return attachmentService.getPresignedUrlForAttachment(a.getId());
-                    } catch (Exception e) {
-                        return null;
-                    }
-                })
-                .filter(Objects::nonNull)
+                .filter(a -> a.getStatus() == AttachmentStatus.READY)
+                .map(a -> AttachmentService.linkFor(a.getId()))
                 .toList();
     }
 }
\ No newline at end of file
@@ -0,0 +1,251 @@
+package com.example.diplom.services.implementations;
+
+import com.example.diplom.controllers.RR.PatientMedCardResponse;
+import com.example.diplom.controllers.RR.PatientVisitDetailsResponse;
+import com.example.diplom.repositories.AttachmentRepository;
+import com.example.diplom.services.DoctorService;
+import com.example.diplom.services.MedicalRecordExportService;
+import com.example.diplom.services.PatientService;
+import com.example.diplom.services.dtos.AttachmentExportDto;
+import com.example.diplom.services.dtos.MedicalRecordExport;
+import com.example.diplom.storage.AttachmentStorage;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Архив пишется последовательно, а файлы вложений заранее скачиваются на отдельном пуле
+ * не более чем на prefetchWindow вперёд. Каждый файл идёт через канал с буфером PIPE_BUFFER,
+ * поэтому память на одну выгрузку ограничена prefetchWindow * PIPE_BUFFER
+ * независимо от числа и размера файлов.
+ */
+@Service
+public class MedicalRecordExportServiceImpl implements MedicalRecordExportService {
+
+    static final String SUMMARY_ENTRY = "summary.json";
+    static final String ATTACHMENTS_DIR = "attachments/";
+
+    private static final Logger logger = LoggerFactory.getLogger(MedicalRecordExportServiceImpl.class);
+    private static final int PIPE_BUFFER = 256 * 1024;
+    private static final int COPY_BUFFER = 64 * 1024;
+    private static final int KEY_PREFIX_LENGTH = 37; // UUID и "_" у вложений без original_name
+
+    private final PatientService patientService;
+    private final DoctorService doctorService;
+    private final AttachmentRepository attachmentRepository;
+    private final AttachmentStorage storage;
+    private final ObjectMapper objectMapper;
+    private final ExecutorService prefetchExecutor;
+    private final int prefetchWindow;
+
+    @Autowired
+    public MedicalRecordExportServiceImpl(PatientService patientService,
+                                          DoctorService doctorService,
+                                          AttachmentRepository attachmentRepository,
+                                          AttachmentStorage storage,
+                                          ObjectMapper objectMapper,
+                                          @Value("${export.prefetch.threads:8}") int prefetchThreads,
+                                          @Value("${export.prefetch.window:4}") int prefetchWindow) {
+        if (prefetchThreads < 1 || prefetchWindow < 1) {
+            throw new IllegalArgumentException("export.prefetch.threads и export.prefetch.window должны быть положительными");
+        }
+        this.patientService = patientService;
+        this.doctorService = doctorService;
+        this.attachmentRepository = attachmentRepository;
+        this.storage = storage;
+        this.objectMapper = objectMapper;
+        this.prefetchWindow = prefetchWindow;
+        // Отдельный пул: закачки блокируются на заполненном канале и не должны занимать общий executor.
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.prefetchExecutor = Executors.newFixedThreadPool(prefetchThreads, runnable -> {
+            Thread thread = new Thread(runnable, "export-prefetch-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        prefetchExecutor.shutdownNow();
+    }
+
+    @Override
+    public MedicalRecordExport exportForPatient(UUID patientId) {
+        List<PatientVisitDetailsResponse> visits = patientService.getVisitsByPatient(patientId);
+        return export(visits, attachmentRepository.findExportRowsByPatientId(patientId));
+    }
+
+    @Override
+    public MedicalRecordExport exportForDoctor(UUID doctorId, UUID patientId) {
+        PatientMedCardResponse card = doctorService.getPatientMedicalCard(doctorId, patientId);
+        return export(card, attachmentRepository.findExportRowsByPatientIdAndDoctorId(patientId, doctorId));
+    }
+
+    private MedicalRecordExport export(Object record, List<AttachmentExportDto> attachments) {
+        String fileName = "medical-record-" + LocalDate.now() + ".zip";
+        return new MedicalRecordExport(fileName, out -> write(out, record, attachments));
+    }
+
+    /**
+     * Файл в архиве; entry == null, если файл не удалось получить из хранилища.
+     */
+    record ExportedFile(UUID attachmentId, UUID visitId, String description, String entry, long size, boolean complete) {
+    }
+
+    private record Prefetch(AttachmentExportDto attachment, InputStream content, CompletableFuture<Long> done) {
+
+        boolean failed() {
+            try {
+                done.join();
+                return false;
+            } catch (CompletionException e) {
+                logger.warn("Не удалось выгрузить файл вложения {}", attachment.filePath(), e.getCause());
+                return true;
+            }
+        }
+
+        void cancel() {
+            try {
+                content.close();
+            } catch (IOException ignored) {
+                // Закачка завершится ошибкой записи в закрытый канал.
+            }
+        }
+    }
+
+    void write(OutputStream out, Object record, List<AttachmentExportDto> attachments) throws IOException {
+        ZipOutputStream zip = new ZipOutputStream(out);
+        // Вложения — в основном PDF и изображения, уже сжатые: сильное сжатие только тратит CPU.
+        zip.setLevel(Deflater.BEST_SPEED);
+
+        List<ExportedFile> files = new ArrayList<>(attachments.size());
+        Set<String> entryNames = new HashSet<>();
+        Deque<Prefetch> window = new ArrayDeque<>();
+        Iterator<AttachmentExportDto> pending = attachments.iterator();
+        try {
+            while (pending.hasNext() || !window.isEmpty()) {
+                while (window.size() < prefetchWindow && pending.hasNext()) {
+                    window.add(prefetch(pending.next()));
+                }
+                files.add(copyEntry(zip, window.poll(), entryNames));
+            }
+        } finally {
+            window.forEach(Prefetch::cancel);
+        }
+
+        // Сводка пишется последней, чтобы отметить в ней файлы, которые не удалось выгрузить.
+        zip.putNextEntry(new ZipEntry(SUMMARY_ENTRY));
+        JsonGenerator json = objectMapper.getFactory().createGenerator(zip);
+        json.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        json.writeStartObject();
+        json.writeObjectField("exportedAt", LocalDateTime.now());
+        json.writeObjectField("record", record);
+        json.writeObjectField("files", files);
+        json.writeEndObject();
+        json.close();
+        zip.closeEntry();
+        zip.finish();
+    }
+
+    private Prefetch prefetch(AttachmentExportDto attachment) throws IOException {
+        PipedInputStream content = new PipedInputStream(PIPE_BUFFER);
+        OutputStream pipe = flushing(new PipedOutputStream(content));
+        CompletableFuture<Long> done = CompletableFuture.supplyAsync(() -> {
+            try (pipe) {
+                return storage.transferTo(attachment.filePath(), pipe);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, prefetchExecutor);
+        return new Prefetch(attachment, content, done);
+    }
+
+    private ExportedFile copyEntry(ZipOutputStream zip, Prefetch prefetch, Set<String> entryNames) throws IOException {
+        AttachmentExportDto attachment = prefetch.attachment();
+        try (InputStream content = prefetch.content()) {
+            byte[] buffer = new byte[COPY_BUFFER];
+            int read = content.read(buffer);
+            if (read < 0 && prefetch.failed()) {
+                return new ExportedFile(attachment.id(), attachment.visitId(), attachment.description(), null, 0, false);
+            }
+
+            String entry = entryName(attachment, entryNames);
+            zip.putNextEntry(new ZipEntry(entry));
+            long size = 0;
+            while (read >= 0) {
+                zip.write(buffer, 0, read);
+                size += read;
+                read = content.read(buffer);
+            }
+            zip.closeEntry();
+            return new ExportedFile(attachment.id(), attachment.visitId(), attachment.description(), entry, size,
+                    !prefetch.failed());
+        }
+    }
+
+    /**
+     * attachments/{дата визита}/{исходное имя файла}; совпадающие имена получают суффикс " (n)".
+     */
+    private static String entryName(AttachmentExportDto attachment, Set<String> entryNames) {
+        String fileName = attachment.originalName();
+        if (fileName == null) {
+            String key = attachment.filePath();
+            fileName = key.length() > KEY_PREFIX_LENGTH && key.charAt(KEY_PREFIX_LENGTH - 1) == '_'
+                    ? key.substring(KEY_PREFIX_LENGTH)
+                    : key;
+        }
+        String dir = ATTACHMENTS_DIR + attachment.visitDate().toLocalDate() + "/";
+        String name = dir + fileName;
+        int dot = fileName.lastIndexOf('.');
+        String base = dot > 0 ? fileName.substring(0, dot) : fileName;
+        String extension = dot > 0 ? fileName.substring(dot) : "";
+        for (int n = 2; !entryNames.add(name); n++) {
+            name = dir + base + " (" + n + ")" + extension;
+        }
+        return name;
+    }
+
+    /**
+     * PipedInputStream будит читателя только по flush, иначе чтение ждёт данные до секунды.
+     */
+    private static OutputStream flushing(PipedOutputStream pipe) {
+        return new FilterOutputStream(pipe) {
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+                out.flush();
+            }
+        };
+    }
+}
@@ -1,6 +1,8 @@
 package com.example.diplom.services.implementations;
 
 import com.example.diplom.controllers.RR.*;
+import com.example.diplom.events.PatientDataChangedEvent;
+import com.example.diplom.events.PatientLinkedEvent;
 import com.example.diplom.exceptions.AlreadyLinkedException;
 import com.example.diplom.exceptions.ResourceNotFoundException;
 import com.example.diplom.models.*;
@@ -8,17 +10,22 @@ import com.example.diplom.models.PK.DoctorPatientPK;
 import com.example.diplom.repositories.*;
 import com.example.diplom.services.AttachmentService;
 import com.example.diplom.services.PatientService;
+import com.example.diplom.services.dtos.AttachmentDto;
 import com.example.diplom.services.dtos.PatientRegistrationDto;
+import com.example.diplom.services.dtos.PatientVisitRowDto;
+import com.example.diplom.services.dtos.VisitServiceLineDto;
 import jakarta.transaction.Transactional;
 import org.modelmapper.ModelMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.cache.annotation.CacheConfig;
 import org.springframework.cache.annotation.Cacheable;
-import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.domain.Limit;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -26,6 +33,8 @@ import java.util.stream.Collectors;
 @Service
 public class PatientServiceImpl implements PatientService {
 
+    private static final int MAX_VISIT_PAGE_SIZE = 100;
+
     private final PatientRepository patientRepository;
     private final PasswordEncoder passwordEncoder;
     private final ModelMapper modelMapper;
@@ -35,8 +44,9 @@ public class PatientServiceImpl implements PatientService {
     private final DoctorPatientRepository doctorPatientRepository;
     private final ChatServiceImpl chatService;
     private final DoctorRepository doctorRepository;
+    private final AttachmentRepository attachmentRepository;
 
-    private final RedisTemplate<String, Object> redisTemplate;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Autowired
     public PatientServiceImpl(
@@ -48,7 +58,9 @@ public class PatientServiceImpl implements PatientService {
             AttachmentService attachmentService,
             DoctorPatientRepository doctorPatientRepository,
             ChatServiceImpl chatService,
-            DoctorRepository doctorRepository, RedisTemplate<String, Object> redisTemplate
+            DoctorRepository doctorRepository,
+            AttachmentRepository attachmentRepository,
+            ApplicationEventPublisher eventPublisher
     ) {
         this.patientRepository = patientRepository;
         this.passwordEncoder = passwordEncoder;
@@ -59,7 +71,8 @@ public class PatientServiceImpl implements PatientService {
         this.doctorPatientRepository = doctorPatientRepository;
         this.chatService = chatService;
         this.doctorRepository = doctorRepository;
-        this.redisTemplate = redisTemplate;
+        this.attachmentRepository = attachmentRepository;
+        this.eventPublisher = eventPublisher;
     }
 
     @Override
@@ -92,50 +105,89 @@ public class PatientServiceImpl implements PatientService {
             Patient newPatient = modelMapper.map(dto, Patient.class);
             newPatient.setIsTemporary(false);
             patientRepository.save(newPatient);
-            evictPatientCache(newPatient.getId());
+            eventPublisher.publishEvent(new PatientDataChangedEvent(newPatient.getId()));
 
         }
     }
 
-    private void evictPatientCache(UUID patientId) {
-        String cacheName = "patientCache";
-        String pattern = cacheName + "::" + patientId + ":*";
-        Set<String> keys = redisTemplate.keys(pattern);
-        if (keys != null && !keys.isEmpty()) {
-            redisTemplate.delete(keys);
-        }
-    }
-
     @Override
     @Cacheable(key = "#patientId + ':' + #root.methodName")
     public List<PatientVisitDetailsResponse> getVisitsByPatient(UUID patientId) {
-        Patient patient = patientRepository.findById(patientId)
-                .orElseThrow(() -> new ResourceNotFoundException("Patient not found " + patientId));
+        requirePatient(patientId);
+        return toPatientVisitDetails(visitRepository.findPatientVisitRows(patientId, Limit.unlimited()));
+    }
 
-        List<Visit> visits = visitRepository.findByPatientId(patientId);
+    /**
+     * Постраничная история визитов с курсором по (visitDate, id): каждая страница —
+     * три запроса независимо от её размера и от длины всей истории.
+     */
+    @Override
+    @Cacheable(key = "#patientId + ':' + #root.methodName + ':' + #beforeDate + ':' + #beforeId + ':' + #size")
+    public PatientVisitPageResponse getVisitsByPatientPage(UUID patientId, LocalDateTime beforeDate, UUID beforeId, int size) {
+        if (size < 1 || size > MAX_VISIT_PAGE_SIZE) {
+            throw new IllegalArgumentException("Page size must be between 1 and " + MAX_VISIT_PAGE_SIZE);
+        }
+        if ((beforeDate == null) != (beforeId == null)) {
+            throw new IllegalArgumentException("beforeDate and beforeId must be passed together");
+        }
+        requirePatient(patientId);
+
+        // Запрашиваем на одну запись больше, чтобы понять, есть ли следующая страница.
+        Limit limit = Limit.of(size + 1);
+        List<PatientVisitRowDto> rows = beforeDate == null
+                ? visitRepository.findPatientVisitRows(patientId, limit)
+                : visitRepository.findPatientVisitRowsBefore(patientId, beforeDate, beforeId, limit);
+
+        boolean hasMore = rows.size() > size;
+        List<PatientVisitRowDto> page = hasMore ? rows.subList(0, size) : rows;
+        PatientVisitRowDto last = hasMore ? page.get(page.size() - 1) : null;
+        return new PatientVisitPageResponse(
+                toPatientVisitDetails(page),
+                last != null ? last.visitDate() : null,
+                last != null ? last.visitId() : null
+        );
+    }
 
-        return visits.stream()
-                .map(visit -> {
-                    List<VisitService> visitServices = visitServiceRepository.findByVisit(visit);
+    private void requirePatient(UUID patientId) {
+        if (!patientRepository.existsById(patientId)) {
+            throw new ResourceNotFoundException("Patient not found " + patientId);
+        }
+    }
 
-                    List<VisitServicesDetailsResponse> serviceResponses = visitServices.stream()
-                            .map(vs -> new VisitServicesDetailsResponse(
-                                    vs.getService().getId(),
-                                    vs.getService().getName(),
-                                    vs.getService().getPrice(),
-                                    vs.getQuantity()
+    private List<PatientVisitDetailsResponse> toPatientVisitDetails(List<PatientVisitRowDto> rows) {
+        if (rows.isEmpty()) {
+            return List.of();
+        }
+        List<UUID> visitIds = rows.stream().map(PatientVisitRowDto::visitId).toList();
+        Map<UUID, List<VisitServiceLineDto>> lines = visitServiceRepository.findLinesByVisitIds(visitIds).stream()
+                .collect(Collectors.groupingBy(VisitServiceLineDto::visitId));
+        Map<UUID, List<AttachmentDto>> attachments = attachmentRepository.findDtosByVisitIds(visitIds).stream()
+                .collect(Collectors.groupingBy(AttachmentDto::getVisitId));
+
+        return rows.stream()
+                .map(row -> {
+                    List<VisitServicesDetailsResponse> serviceResponses = lines
+                            .getOrDefault(row.visitId(), List.of()).stream()
+                            .map(line -> new VisitServicesDetailsResponse(
+                                    line.serviceId(),
+                                    line.name(),
+                                    line.price(),
+                                    line.quantity()
                             ))
                             .toList();
 
-                    List<String> attachmentUrls = buildAttachmentUrls(visit.getAttachments());
+                    List<String> attachmentUrls = attachments
+                            .getOrDefault(row.visitId(), List.of()).stream()
+                            .map(attachment -> AttachmentService.linkFor(attachment.getId()))
+                            .toList();
 
                     return new PatientVisitDetailsResponse(
-                            visit.getDoctor().getFullName(),
-                            visit.getId(),
-                            visit.getVisitDate(),
-                            visit.isFinished(),
-                            visit.getNotes() != null ? visit.getNotes() : "",
-                            visit.getTotalCost(),
+                            row.doctorName(),
+                            row.visitId(),
+                            row.visitDate(),
+                            row.finished(),
+                            row.notes() != null ? row.notes() : "",
+                            row.totalCost(),
                             serviceResponses,
                             attachmentUrls
                     );
@@ -162,10 +214,9 @@ public class PatientServiceImpl implements PatientService {
     public PatientProfileResponse profileById(UUID patientId) throws ResourceNotFoundException {
         return patientRepository.findById(patientId)
                 .map(patient -> {
-                    List<Attachment> allAttachments = patient.getVisits().stream()
-                            .flatMap(visit -> visit.getAttachments().stream())
-                            .collect(Collectors.toList());
-                    List<String> attachmentUrls = buildAttachmentUrls(allAttachments);
+                    List<String> attachmentUrls = attachmentRepository.findIdsByPatientId(patientId).stream()
+                            .map(AttachmentService::linkFor)
+                            .toList();
                     return new PatientProfileResponse(
                             patient.getFullName(),
                             patient.getBirthDate(),
@@ -183,7 +234,7 @@ public class PatientServiceImpl implements PatientService {
         Patient patient = patientRepository.findById(patientId)
                 .orElseThrow(() -> new ResourceNotFoundException("Patient not found with id: " + patientId));
 
-        evictPatientCache(patientId);
+        eventPublisher.publishEvent(new PatientDataChangedEvent(patientId));
 
         for (Visit visit : patient.getVisits()) {
             Set<Attachment> attachmentsCopy = Set.copyOf(visit.getAttachments());
@@ -228,7 +279,7 @@ public class PatientServiceImpl implements PatientService {
         }
         patientRepository.save(patient);
 
-        evictPatientCache(patientId);
+        eventPublisher.publishEvent(new PatientDataChangedEvent(patientId));
 
     }
 
@@ -247,21 +298,7 @@ public class PatientServiceImpl implements PatientService {
 
         DoctorPatient doctorPatient = new DoctorPatient(doctor, patient);
         doctorPatientRepository.save(doctorPatient);
-        evictPatientCache(patient.getId());
+        eventPublisher.publishEvent(new PatientLinkedEvent(doctor.getId(), patient.getId()));
 
     }
-
-    private List<String> buildAttachmentUrls(Collection<Attachment> attachments) {
-        return attachments.stream()
-                .map(attachment -> {
-                    try {
-                        return attachmentService.getPresignedUrlForAttachment(attachment.getId());
-                    } catch (Exception e) {
-                        e.printStackTrace();
-                        return null;
-                    }
-                })
-                .filter(Objects::nonNull)
-                .toList();
-    }
 }
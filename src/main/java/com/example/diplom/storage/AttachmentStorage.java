@@ -0,0 +1,43 @@
+package com.example.diplom.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.time.Duration;
+import java.util.OptionalLong;
+
+/**
+ * Хранилище файлов вложений. Ключ — имя объекта без каталогов: {@code <sha256>.<ext>} для файлов,
+ * загруженных через сервер (одинаковое содержимое хранится один раз), {@code <uuid>_<имя-файла>} для прямой
+ * загрузки по ссылке PUT и старых вложений. Превью лежит рядом под ключом {@code <ключ>.preview.jpg}.
+ * Отсутствующий объект при чтении — {@link java.nio.file.NoSuchFileException}.
+ */
+public interface AttachmentStorage {
+
+    void put(String key, InputStream content, long size, String contentType) throws IOException;
+
+    /**
+     * Размер объекта в байтах или пусто, если объекта нет.
+     */
+    OptionalLong size(String key) throws IOException;
+
+    /**
+     * Пишет содержимое объекта в target и возвращает число переданных байт.
+     */
+    long transferTo(String key, OutputStream target) throws IOException;
+
+    /**
+     * Удаляет объект; отсутствие объекта ошибкой не считается.
+     */
+    void delete(String key) throws IOException;
+
+    /**
+     * Ссылка на скачивание без авторизации, действительная expiry.
+     */
+    String presignGet(String key, Duration expiry) throws IOException;
+
+    /**
+     * Ссылка, по которой клиент сам загружает объект методом PUT.
+     */
+    String presignPut(String key, Duration expiry) throws IOException;
+}
@@ -0,0 +1,170 @@
+package com.example.diplom.storage;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URLEncoder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.OptionalLong;
+
+/**
+ * Хранилище вложений в локальном каталоге. Данные копируются через
+ * FileChannel.transferFrom/transferTo: файл целиком в память не читается. Каналы-обёртки
+ * над InputStream/OutputStream ({@link Channels}) при этом копируют данные небольшими
+ * порциями через свой буфер в куче; без него передача идёт только в канал файла или сокета.
+ * Временные ссылки подписываются HMAC-SHA256 и проверяются
+ * {@link com.example.diplom.controllers.LocalStorageController}.
+ */
+public class LocalAttachmentStorage implements AttachmentStorage {
+
+    public static final String URL_PREFIX = "/api/storage/";
+
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+    /** Порция передачи при неизвестном размере входного потока. */
+    private static final long CHUNK = 8L * 1024 * 1024;
+
+    private final Path root;
+    private final String baseUrl;
+    private final SecretKeySpec secret;
+    private final Clock clock;
+
+    public LocalAttachmentStorage(Path root, String baseUrl, String secret) throws IOException {
+        this(root, baseUrl, secret, Clock.systemUTC());
+    }
+
+    LocalAttachmentStorage(Path root, String baseUrl, String secret, Clock clock) throws IOException {
+        if (secret == null || secret.length() < 32) {
+            throw new IllegalArgumentException("storage.local.secret должен содержать не менее 32 символов");
+        }
+        this.root = Files.createDirectories(root).toAbsolutePath().normalize();
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        this.secret = new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), HMAC_ALGORITHM);
+        this.clock = clock;
+    }
+
+    @Override
+    public void put(String key, InputStream content, long size, String contentType) throws IOException {
+        Path target = resolve(key);
+        // Пишем во временный файл и переименовываем: читатели не видят недописанный объект.
+        Path tmp = Files.createTempFile(root, ".upload-", ".tmp");
+        try {
+            try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.WRITE);
+                 ReadableByteChannel in = Channels.newChannel(content)) {
+                long position = 0;
+                while (size < 0 || position < size) {
+                    long count = size < 0 ? CHUNK : size - position;
+                    long written = out.transferFrom(in, position, count);
+                    if (written <= 0) {
+                        break;
+                    }
+                    position += written;
+                }
+                if (size >= 0 && position != size) {
+                    throw new IOException("Поток завершился раньше: получено " + position + " из " + size + " байт");
+                }
+                out.force(false);
+            }
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    @Override
+    public OptionalLong size(String key) throws IOException {
+        Path path = resolve(key);
+        try {
+            return OptionalLong.of(Files.size(path));
+        } catch (NoSuchFileException e) {
+            return OptionalLong.empty();
+        }
+    }
+
+    @Override
+    public long transferTo(String key, OutputStream target) throws IOException {
+        return transferTo(key, Channels.newChannel(target));
+    }
+
+    public long transferTo(String key, WritableByteChannel target) throws IOException {
+        try (FileChannel in = FileChannel.open(resolve(key), StandardOpenOption.READ)) {
+            long size = in.size();
+            long position = 0;
+            while (position < size) {
+                position += in.transferTo(position, size - position, target);
+            }
+            return position;
+        }
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        Files.deleteIfExists(resolve(key));
+    }
+
+    @Override
+    public String presignGet(String key, Duration expiry) {
+        return presign("GET", key, expiry);
+    }
+
+    @Override
+    public String presignPut(String key, Duration expiry) {
+        return presign("PUT", key, expiry);
+    }
+
+    /**
+     * Проверяет подпись ссылки, выданной {@link #presignGet}/{@link #presignPut}.
+     */
+    public boolean verify(String method, String key, long expires, String signature) {
+        if (signature == null || clock.instant().getEpochSecond() > expires) {
+            return false;
+        }
+        byte[] expected = sign(method, key, expires).getBytes(StandardCharsets.US_ASCII);
+        return MessageDigest.isEqual(expected, signature.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private String presign(String method, String key, Duration expiry) {
+        resolve(key);
+        long expires = clock.instant().plus(expiry).getEpochSecond();
+        return baseUrl + URL_PREFIX + URLEncoder.encode(key, StandardCharsets.UTF_8).replace("+", "%20")
+                + "?expires=" + expires + "&signature=" + sign(method, key, expires);
+    }
+
+    private String sign(String method, String key, long expires) {
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(secret);
+            byte[] digest = mac.doFinal((method + "\n" + key + "\n" + expires).getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HMAC недоступен", e);
+        }
+    }
+
+    private Path resolve(String key) {
+        if (key == null || key.isBlank() || key.equals(".") || key.equals("..")
+                || key.indexOf('/') >= 0 || key.indexOf('\\') >= 0 || key.indexOf('\0') >= 0) {
+            throw new IllegalArgumentException("Недопустимый ключ объекта: " + key);
+        }
+        Path path = root.resolve(key).normalize();
+        if (!path.getParent().equals(root)) {
+            throw new IllegalArgumentException("Недопустимый ключ объекта: " + key);
+        }
+        return path;
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.diplom.storage;
+
+import io.minio.GetObjectArgs;
+import io.minio.GetPresignedObjectUrlArgs;
+import io.minio.MinioClient;
+import io.minio.PutObjectArgs;
+import io.minio.RemoveObjectArgs;
+import io.minio.StatObjectArgs;
+import io.minio.errors.ErrorResponseException;
+import io.minio.http.Method;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.NoSuchFileException;
+import java.time.Duration;
+import java.util.OptionalLong;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Хранилище вложений в бакете MinIO (S3). Ошибки клиента MinIO приводятся к IOException.
+ */
+public class MinioAttachmentStorage implements AttachmentStorage {
+
+    private final MinioClient minioClient;
+    private final String bucketName;
+
+    public MinioAttachmentStorage(MinioClient minioClient, String bucketName) {
+        this.minioClient = minioClient;
+        this.bucketName = bucketName;
+    }
+
+    @Override
+    public void put(String key, InputStream content, long size, String contentType) throws IOException {
+        call(() -> minioClient.putObject(PutObjectArgs.builder()
+                .bucket(bucketName)
+                .object(key)
+                .stream(content, size, size < 0 ? 10 * 1024 * 1024 : -1)
+                .contentType(contentType != null ? contentType : "application/octet-stream")
+                .build()));
+    }
+
+    @Override
+    public OptionalLong size(String key) throws IOException {
+        try {
+            return OptionalLong.of(call(() -> minioClient.statObject(StatObjectArgs.builder()
+                    .bucket(bucketName)
+                    .object(key)
+                    .build())).size());
+        } catch (NoSuchFileException e) {
+            return OptionalLong.empty();
+        }
+    }
+
+    @Override
+    public long transferTo(String key, OutputStream target) throws IOException {
+        try (InputStream in = call(() -> minioClient.getObject(GetObjectArgs.builder()
+                .bucket(bucketName)
+                .object(key)
+                .build()))) {
+            return in.transferTo(target);
+        }
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        call(() -> {
+            minioClient.removeObject(RemoveObjectArgs.builder()
+                    .bucket(bucketName)
+                    .object(key)
+                    .build());
+            return null;
+        });
+    }
+
+    @Override
+    public String presignGet(String key, Duration expiry) throws IOException {
+        return presign(Method.GET, key, expiry);
+    }
+
+    @Override
+    public String presignPut(String key, Duration expiry) throws IOException {
+        return presign(Method.PUT, key, expiry);
+    }
+
+    private String presign(Method method, String key, Duration expiry) throws IOException {
+        return call(() -> minioClient.getPresignedObjectUrl(GetPresignedObjectUrlArgs.builder()
+                .method(method)
+                .bucket(bucketName)
+                .object(key)
+                .expiry((int) expiry.toSeconds(), TimeUnit.SECONDS)
+                .build()));
+    }
+
+    @FunctionalInterface
+    private interface MinioCall<T> {
+        T call() throws Exception;
+    }
+
+    private <T> T call(MinioCall<T> call) throws IOException {
+        try {
+            return call.call();
+        } catch (ErrorResponseException e) {
+            String code = e.errorResponse().code();
+            if ("NoSuchKey".equals(code) || "NoSuchObject".equals(code)) {
+                throw new NoSuchFileException(e.errorResponse().objectName());
+            }
+            throw new IOException("Ошибка MinIO: " + code, e);
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException("Ошибка MinIO", e);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.diplom.storage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Сериализует работу с одним объектом хранилища: проверка наличия объекта и запись вложения,
+ * ссылающегося на него, не пересекаются с подсчётом ссылок и удалением того же объекта.
+ * Внутри JVM используется полосатый набор ReentrantLock, между узлами — транзакционная
+ * advisory-блокировка PostgreSQL по хэшу ключа.
+ */
+@Component
+public class StorageKeyLock {
+
+    private static final Logger logger = LoggerFactory.getLogger(StorageKeyLock.class);
+    private static final int STRIPES = 256;
+    private static final int ADVISORY_LOCK_NAMESPACE = 0x6f626a6b;
+
+    private final ReentrantLock[] stripes = new ReentrantLock[STRIPES];
+    private final TransactionTemplate transactionTemplate;
+    private final JdbcTemplate jdbcTemplate;
+    private volatile Boolean advisoryLocksSupported;
+
+    @Autowired
+    public StorageKeyLock(PlatformTransactionManager transactionManager, DataSource dataSource) {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        // Своя транзакция: блокировка держится до её фиксации, в том числе при вызове после коммита внешней.
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    /**
+     * Выполняет action в новой транзакции, удерживая блокировку ключа до её фиксации.
+     */
+    public <T> T withKeyLock(String key, Supplier<T> action) {
+        ReentrantLock lock = stripes[Math.floorMod(key.hashCode(), STRIPES)];
+        lock.lock();
+        try {
+            return transactionTemplate.execute(status -> {
+                if (advisoryLocksSupported()) {
+                    jdbcTemplate.query("SELECT pg_advisory_xact_lock(?, ?)",
+                            rs -> null, ADVISORY_LOCK_NAMESPACE, key.hashCode());
+                }
+                return action.get();
+            });
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean advisoryLocksSupported() {
+        Boolean supported = advisoryLocksSupported;
+        if (supported == null) {
+            String product = jdbcTemplate.execute((ConnectionCallback<String>) con ->
+                    con.getMetaData().getDatabaseProductName());
+            supported = "PostgreSQL".equalsIgnoreCase(product);
+            if (!supported) {
+                logger.warn("БД {} не поддерживает advisory-блокировки, работа с объектом хранилища сериализуется только внутри узла", product);
+            }
+            advisoryLocksSupported = supported;
+        }
+        return supported;
+    }
+}
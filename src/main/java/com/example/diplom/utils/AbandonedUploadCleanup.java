@@ -0,0 +1,84 @@
+package com.example.diplom.utils;
+
+import com.example.diplom.models.Attachment;
+import com.example.diplom.models.AttachmentStatus;
+import com.example.diplom.repositories.AttachmentRepository;
+import com.example.diplom.storage.AttachmentStorage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Удаляет вложения, загрузка которых была начата, но не подтверждена за pendingTtl:
+ * объект в хранилище (если клиент успел его загрузить) и запись PENDING. Работает пачками.
+ */
+@Component
+public class AbandonedUploadCleanup {
+
+    private static final Logger logger = LoggerFactory.getLogger(AbandonedUploadCleanup.class);
+    static final int CHUNK_SIZE = 100;
+
+    private final AttachmentRepository attachmentRepository;
+    private final AttachmentStorage storage;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration pendingTtl;
+
+    @Autowired
+    public AbandonedUploadCleanup(AttachmentRepository attachmentRepository,
+                                  AttachmentStorage storage,
+                                  PlatformTransactionManager transactionManager,
+                                  @Value("${minio.upload.pending-ttl:PT24H}") Duration pendingTtl) {
+        this.attachmentRepository = attachmentRepository;
+        this.storage = storage;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.pendingTtl = pendingTtl;
+    }
+
+    @Scheduled(fixedDelayString = "${minio.upload.cleanup-interval:PT1H}")
+    public void onSchedule() {
+        run(LocalDateTime.now().minus(pendingTtl));
+    }
+
+    public int run(LocalDateTime cutoff) {
+        int total = 0;
+        int processed;
+        do {
+            Integer chunk = transactionTemplate.execute(status -> {
+                List<Attachment> abandoned = attachmentRepository.findByStatusAndCreatedBefore(
+                        AttachmentStatus.PENDING, cutoff, Limit.of(CHUNK_SIZE));
+                for (Attachment attachment : abandoned) {
+                    removeObject(attachment.getFilePath());
+                    attachment.getVisit().getAttachments().remove(attachment);
+                    attachmentRepository.delete(attachment);
+                }
+                return abandoned.size();
+            });
+            processed = chunk != null ? chunk : 0;
+            total += processed;
+        } while (processed == CHUNK_SIZE);
+
+        if (total > 0) {
+            logger.info("Удалено незавершённых загрузок вложений: {}", total);
+        }
+        return total;
+    }
+
+    private void removeObject(String filePath) {
+        try {
+            // Удаление отсутствующего объекта не считается ошибкой.
+            storage.delete(filePath);
+        } catch (Exception e) {
+            logger.warn("Не удалось удалить объект {} незавершённой загрузки", filePath, e);
+        }
+    }
+}
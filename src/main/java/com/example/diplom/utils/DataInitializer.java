@@ -6,14 +6,12 @@ import com.example.diplom.repositories.*;
 import com.example.diplom.services.AttachmentService;
 import com.example.diplom.services.ChatService;
 import com.github.javafaker.Faker;
-import io.minio.MinioClient;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.PDPage;
 import org.apache.pdfbox.pdmodel.PDPageContentStream;
 import org.apache.pdfbox.pdmodel.font.PDType0Font;
 import org.apache.pdfbox.pdmodel.font.PDType1Font;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Component;
@@ -38,7 +36,6 @@ public class DataInitializer {
     private final DoctorPatientRepository doctorPatientRepository;
     private final VisitServiceRepository visitServiceRepository;
     private final SpecializationRepository specializationRepository;
-    private final MinioClient minioClient;
     private final AttachmentService attachmentService;
     private final ChatService chatService;
     private final Faker faker;
@@ -46,9 +43,6 @@ public class DataInitializer {
 
     private final PasswordEncoder passwordEncoder;
 
-    @Value("${minio.bucket.name}")
-    private String bucketName;
-
     @Autowired
     public DataInitializer(DoctorRepository doctorRepository, PatientRepository patientRepository,
                            VisitRepository visitRepository, ServiceRepository serviceRepository,
@@ -56,7 +50,7 @@ public class DataInitializer {
                            VisitServiceRepository visitServiceRepository,
                            SpecializationRepository specializationRepository,
                            PasswordEncoder passwordEncoder,
-                           MinioClient minioClient, AttachmentService attachmentService, ChatService chatService) {
+                           AttachmentService attachmentService, ChatService chatService) {
         this.doctorRepository = doctorRepository;
         this.patientRepository = patientRepository;
         this.visitRepository = visitRepository;
@@ -66,7 +60,6 @@ public class DataInitializer {
         this.visitServiceRepository = visitServiceRepository;
         this.specializationRepository = specializationRepository;
         this.passwordEncoder = passwordEncoder;
-        this.minioClient = minioClient;
         this.attachmentService = attachmentService;
         this.chatService = chatService;
         this.faker = new Faker(new Locale("ru"));
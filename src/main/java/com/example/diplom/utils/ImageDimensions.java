@@ -0,0 +1,43 @@
+package com.example.diplom.utils;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.Optional;
+
+/**
+ * Размеры изображения по заголовку файла, без декодирования пикселей.
+ */
+public final class ImageDimensions {
+
+    public record Size(int width, int height) {
+    }
+
+    private ImageDimensions() {
+    }
+
+    /**
+     * Пусто, если формат не распознан ImageIO или заголовок повреждён.
+     */
+    public static Optional<Size> read(InputStream content) {
+        try (ImageInputStream input = new MemoryCacheImageInputStream(content)) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return Optional.empty();
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                return Optional.of(new Size(reader.getWidth(0), reader.getHeight(0)));
+            } finally {
+                reader.dispose();
+            }
+        } catch (IOException | RuntimeException e) {
+            return Optional.empty();
+        }
+    }
+}
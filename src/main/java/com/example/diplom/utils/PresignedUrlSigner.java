@@ -0,0 +1,65 @@
+package com.example.diplom.utils;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.example.diplom.storage.AttachmentStorage;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Подписывает ссылки хранилища на файлы вложений и кэширует их в памяти узла.
+ * Ссылка действительна {@link #URL_EXPIRY}, а в кэше живёт меньше — повторно отданная ссылка
+ * остаётся рабочей ещё минимум (URL_EXPIRY - cacheTtl).
+ * Ссылки на загрузку (PUT) одноразовые по смыслу и не кэшируются.
+ */
+@Component
+public class PresignedUrlSigner {
+
+    static final Duration URL_EXPIRY = Duration.ofHours(2);
+    public static final Duration UPLOAD_EXPIRY = Duration.ofMinutes(15);
+
+    private final AttachmentStorage storage;
+    private final Cache<String, String> urls;
+
+    @Autowired
+    public PresignedUrlSigner(AttachmentStorage storage,
+                              @Value("${minio.presigned.cache-ttl:PT1H30M}") Duration cacheTtl,
+                              @Value("${minio.presigned.cache-size:10000}") long cacheSize) {
+        if (cacheTtl.compareTo(URL_EXPIRY) >= 0) {
+            throw new IllegalArgumentException("TTL кэша ссылок должен быть меньше срока их действия " + URL_EXPIRY);
+        }
+        this.storage = storage;
+        this.urls = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfterWrite(cacheTtl)
+                .build();
+    }
+
+    public String sign(String filePath) throws Exception {
+        String cached = urls.getIfPresent(filePath);
+        if (cached != null) {
+            return cached;
+        }
+        String url = presign(filePath);
+        urls.put(filePath, url);
+        return url;
+    }
+
+    /**
+     * Ссылка, по которой клиент сам загружает файл в хранилище методом PUT.
+     */
+    public String signUpload(String filePath) throws Exception {
+        return storage.presignPut(filePath, UPLOAD_EXPIRY);
+    }
+
+    public void evict(String filePath) {
+        urls.invalidate(filePath);
+    }
+
+    private String presign(String filePath) throws Exception {
+        return storage.presignGet(filePath, URL_EXPIRY);
+    }
+}
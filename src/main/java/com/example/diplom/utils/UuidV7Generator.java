@@ -0,0 +1,48 @@
+package com.example.diplom.utils;
+
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.uuid.UuidValueGenerator;
+
+import java.security.SecureRandom;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * UUID версии 7 (RFC 9562): 48 бит миллисекунд Unix-времени, затем 12-битный счётчик
+ * и 62 случайных бита. Ключи растут со временем, поэтому вставки идут в конец
+ * B-tree индекса, а не в случайную страницу, как у v4. Тип столбца не меняется,
+ * существующие v4-ключи остаются валидными.
+ * <p>
+ * Внутри одной миллисекунды счётчик монотонно растёт; при его переполнении значение
+ * переходит на следующую миллисекунду, так что порядок генерации в JVM сохраняется.
+ */
+public class UuidV7Generator implements UuidValueGenerator {
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+    private static final int COUNTER_BITS = 12;
+    private static final int COUNTER_SEED_BOUND = 1 << (COUNTER_BITS - 1);
+
+    /** Последнее выданное значение: (миллисекунды << 12) | счётчик. */
+    private static final AtomicLong LAST = new AtomicLong();
+
+    @Override
+    public UUID generateUuid(SharedSessionContractImplementor session) {
+        return next();
+    }
+
+    public static UUID next() {
+        long timeAndCounter = nextTimeAndCounter(System.currentTimeMillis());
+        long msb = (timeAndCounter >>> COUNTER_BITS) << 16
+                | 0x7000L
+                | (timeAndCounter & ((1L << COUNTER_BITS) - 1));
+        long lsb = (RANDOM.nextLong() & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L;
+        return new UUID(msb, lsb);
+    }
+
+    static long nextTimeAndCounter(long nowMillis) {
+        // Начальное значение счётчика случайно, но не выше половины диапазона,
+        // чтобы в той же миллисекунде оставался запас для роста.
+        long fresh = (nowMillis << COUNTER_BITS) | RANDOM.nextInt(COUNTER_SEED_BOUND);
+        return LAST.updateAndGet(last -> fresh > last ? fresh : last + 1);
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.diplom.utils;
+
+import com.example.diplom.models.VisitService;
+import com.example.diplom.repositories.VisitServiceRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+/**
+ * Заполняет unit_price и line_total у строк визитов, созданных до появления снимка цены.
+ * Берётся текущая цена услуги — точнее для старых строк данных нет. Работает пачками
+ * в отдельных транзакциях и завершается, когда строк без снимка не осталось.
+ */
+@Component
+public class VisitServicePriceBackfill {
+
+    private static final Logger logger = LoggerFactory.getLogger(VisitServicePriceBackfill.class);
+    static final int CHUNK_SIZE = 500;
+
+    private final VisitServiceRepository visitServiceRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    @Autowired
+    public VisitServicePriceBackfill(VisitServiceRepository visitServiceRepository,
+                                     PlatformTransactionManager transactionManager) {
+        this.visitServiceRepository = visitServiceRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Async
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        run();
+    }
+
+    public int run() {
+        int total = 0;
+        int processed;
+        do {
+            Integer chunk = transactionTemplate.execute(status -> {
+                List<VisitService> lines = visitServiceRepository.findWithoutPriceSnapshot(Limit.of(CHUNK_SIZE));
+                for (VisitService line : lines) {
+                    line.snapshotPrice(line.getService().getPrice());
+                }
+                return lines.size();
+            });
+            processed = chunk != null ? chunk : 0;
+            total += processed;
+        } while (processed == CHUNK_SIZE);
+
+        if (total > 0) {
+            logger.info("Заполнен снимок цены у {} строк визитов", total);
+        }
+        return total;
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.diplom.cache;
+
+import com.example.diplom.events.AttachmentAddedEvent;
+import com.example.diplom.events.PatientLinkedEvent;
+import com.example.diplom.events.VisitCreatedEvent;
+import com.example.diplom.events.VisitRearrangedEvent;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CacheInvalidationListenerTest {
+
+    @Mock
+    private CacheInvalidator invalidator;
+
+    @InjectMocks
+    private CacheInvalidationListener listener;
+
+    private final UUID doctorId = UUID.randomUUID();
+    private final UUID patientId = UUID.randomUUID();
+    private final UUID visitId = UUID.randomUUID();
+
+    @Test
+    void onVisitCreated_evictsOnlyThatMonthDayAndMedicalCard() {
+        listener.onVisitCreated(new VisitCreatedEvent(doctorId, patientId, visitId,
+                LocalDateTime.of(2025, 3, 10, 9, 30)));
+
+        verify(invalidator).evict(CacheInvalidator.DOCTOR_CACHE, doctorId.toString(), List.of(
+                "getDoctorVisitDates:3:2025",
+                "getDoctorVisitSummary:3:2025",
+                "getDoctorVisitDatesByDay:2025-03-10",
+                "getPatientMedicalCard:" + patientId));
+        verify(invalidator).evict(CacheInvalidator.PATIENT_CACHE, patientId.toString(),
+                List.of("getVisitsByPatient", "getVisitsByPatientPage"));
+        verify(invalidator, never()).evictDoctor(any());
+        verify(invalidator, never()).evictPatient(any());
+    }
+
+    @Test
+    void onVisitRearranged_evictsBothMonthsAndTheVisit() {
+        listener.onVisitRearranged(new VisitRearrangedEvent(doctorId, patientId, visitId,
+                LocalDateTime.of(2025, 3, 31, 18, 0), LocalDateTime.of(2025, 4, 1, 9, 0)));
+
+        verify(invalidator).evict(CacheInvalidator.DOCTOR_CACHE, doctorId.toString(), List.of(
+                "getDoctorVisitDates:3:2025",
+                "getDoctorVisitSummary:3:2025",
+                "getDoctorVisitDatesByDay:2025-03-31",
+                "getDoctorVisitDates:4:2025",
+                "getDoctorVisitSummary:4:2025",
+                "getDoctorVisitDatesByDay:2025-04-01",
+                "getPatientMedicalCard:" + patientId,
+                "getFinishVisitData:" + visitId));
+    }
+
+    @Test
+    void onPatientLinked_evictsPatientListsOnBothSides() {
+        listener.onPatientLinked(new PatientLinkedEvent(doctorId, patientId));
+
+        verify(invalidator).evict(CacheInvalidator.DOCTOR_CACHE, doctorId.toString(), List.of("getDoctorPatients"));
+        verify(invalidator).evict(CacheInvalidator.PATIENT_CACHE, patientId.toString(), List.of("getPatientDoctors"));
+    }
+
+    @Test
+    void onAttachmentAdded_evictsPatientProfileWithItsAttachmentLinks() {
+        listener.onAttachmentAdded(new AttachmentAddedEvent(doctorId, patientId, visitId, UUID.randomUUID()));
+
+        verify(invalidator).evict(CacheInvalidator.DOCTOR_CACHE, doctorId.toString(), List.of(
+                "getPatientMedicalCard:" + patientId,
+                "getFinishVisitData:" + visitId));
+        verify(invalidator).evict(CacheInvalidator.PATIENT_CACHE, patientId.toString(),
+                List.of("getVisitsByPatient", "getVisitsByPatientPage", "profileById"));
+    }
+}
@@ -0,0 +1,128 @@
+package com.example.diplom.cache;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CacheInvalidatorTest {
+
+    @Mock
+    private StringRedisTemplate stringRedisTemplate;
+    @Mock
+    private CacheMetrics metrics;
+
+    private CacheInvalidator invalidator;
+
+    @BeforeEach
+    void setUp() {
+        invalidator = new CacheInvalidator(stringRedisTemplate, metrics,
+                new RedisCircuitBreaker(5, Duration.ofSeconds(30), metrics));
+    }
+
+    @Test
+    void evictDoctor_deletesTaggedKeysWithoutScanningKeyspace() {
+        UUID doctorId = UUID.randomUUID();
+        when(stringRedisTemplate.execute(any(RedisScript.class), anyList())).thenReturn(3L);
+
+        long removed = invalidator.evict(CacheInvalidator.DOCTOR_CACHE, doctorId.toString());
+
+        assertEquals(3L, removed);
+        verify(stringRedisTemplate).execute(any(RedisScript.class),
+                eq(List.of("cache-tags:doctorCache:{" + doctorId + "}")));
+        verify(stringRedisTemplate).convertAndSend(CacheInvalidator.INVALIDATION_CHANNEL, "doctorCache|" + doctorId);
+        verify(metrics).recordInvalidation(CacheInvalidator.DOCTOR_CACHE, 3L);
+        verify(stringRedisTemplate, never()).keys(anyString());
+    }
+
+    @Test
+    void evictPatient_usesPatientTag() {
+        UUID patientId = UUID.randomUUID();
+
+        invalidator.evictPatient(patientId);
+
+        verify(stringRedisTemplate).execute(any(RedisScript.class),
+                eq(List.of("cache-tags:patientCache:{" + patientId + "}")));
+        verify(stringRedisTemplate, never()).keys(anyString());
+    }
+
+    @Test
+    void evictSelected_passesOwnerPrefixAndSelectorsToScript() {
+        UUID doctorId = UUID.randomUUID();
+        when(stringRedisTemplate.execute(any(RedisScript.class), anyList(), any(), any())).thenReturn(1L);
+
+        long removed = invalidator.evict(CacheInvalidator.DOCTOR_CACHE, doctorId.toString(),
+                List.of("getDoctorVisitDates:3:2025"));
+
+        assertEquals(1L, removed);
+        verify(stringRedisTemplate).execute(any(RedisScript.class),
+                eq(List.of("cache-tags:doctorCache:{" + doctorId + "}")),
+                eq("doctorCache::{" + doctorId + "}:"), eq("getDoctorVisitDates:3:2025"));
+        verify(stringRedisTemplate).convertAndSend(CacheInvalidator.INVALIDATION_CHANNEL,
+                "doctorCache|" + doctorId + "|getDoctorVisitDates:3:2025");
+    }
+
+    @Test
+    void matches_selectorCoversExactKeyAndItsSuffixes() {
+        List<String> selectors = List.of("getVisitsByPatientPage", "getDoctorVisitDates:1:2025");
+
+        assertTrue(CacheInvalidator.matches("p:getVisitsByPatientPage:null:null:20", "p", selectors));
+        assertTrue(CacheInvalidator.matches("p:getDoctorVisitDates:1:2025", "p", selectors));
+        assertFalse(CacheInvalidator.matches("p:getDoctorVisitDates:11:2025", "p", selectors));
+        assertFalse(CacheInvalidator.matches("p:getVisitsByPatient", "p", selectors));
+        assertFalse(CacheInvalidator.matches("q:getVisitsByPatientPage:x", "p", selectors));
+    }
+
+    @Test
+    void evict_whenRedisFails_remembersAndReplaysAfterRecovery() {
+        UUID doctorId = UUID.randomUUID();
+        when(stringRedisTemplate.execute(any(RedisScript.class), anyList(), any(), any()))
+                .thenThrow(new RedisConnectionFailureException("down"))
+                .thenReturn(2L);
+
+        long removed = invalidator.evict(CacheInvalidator.DOCTOR_CACHE, doctorId.toString(),
+                List.of("getDoctorVisitDates:3:2025"));
+
+        assertEquals(0, removed);
+        assertEquals(1, invalidator.missedCount());
+        verify(metrics).recordMissedInvalidation(CacheInvalidator.DOCTOR_CACHE);
+        verify(stringRedisTemplate, never()).convertAndSend(anyString(), anyString());
+
+        invalidator.replayMissed();
+
+        assertEquals(0, invalidator.missedCount());
+        verify(stringRedisTemplate, times(2)).execute(any(RedisScript.class),
+                eq(List.of("cache-tags:doctorCache:{" + doctorId + "}")),
+                eq("doctorCache::{" + doctorId + "}:"), eq("getDoctorVisitDates:3:2025"));
+        verify(stringRedisTemplate).convertAndSend(CacheInvalidator.INVALIDATION_CHANNEL,
+                "doctorCache|" + doctorId + "|getDoctorVisitDates:3:2025");
+        verify(metrics).recordInvalidation(CacheInvalidator.DOCTOR_CACHE, 2L);
+    }
+
+    @Test
+    void evict_whenMissedQueueOverflows_dropsEldestAndCountsIt() {
+        when(stringRedisTemplate.execute(any(RedisScript.class), anyList()))
+                .thenThrow(new RedisConnectionFailureException("down"));
+
+        for (int i = 0; i <= CacheInvalidator.MAX_MISSED; i++) {
+            invalidator.evict(CacheInvalidator.PATIENT_CACHE, "owner-" + i);
+        }
+
+        assertEquals(CacheInvalidator.MAX_MISSED, invalidator.missedCount());
+        verify(metrics).recordDroppedInvalidation(CacheInvalidator.PATIENT_CACHE);
+        verify(metrics, never()).recordMissedInvalidation("dropped");
+    }
+}
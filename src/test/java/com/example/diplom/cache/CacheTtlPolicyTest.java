@@ -0,0 +1,32 @@
+package com.example.diplom.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CacheTtlPolicyTest {
+
+    private final CacheTtlPolicy policy = new CacheTtlPolicy(Duration.ofHours(1), Map.of(
+            CacheTtlPolicy.Group.CALENDAR, Duration.ofMinutes(10),
+            CacheTtlPolicy.Group.SERVICES, Duration.ofHours(6)));
+
+    @Test
+    void getTimeToLive_dependsOnCachedMethod() {
+        String owner = "{" + UUID.randomUUID() + "}";
+
+        assertEquals(Duration.ofMinutes(10), policy.getTimeToLive(owner + ":getDoctorVisitDates:3:2025", null));
+        assertEquals(Duration.ofHours(6), policy.getTimeToLive(owner + ":getDoctorServices", null));
+        // Для группы без собственного TTL и неизвестных методов — TTL по умолчанию.
+        assertEquals(Duration.ofHours(1), policy.getTimeToLive(owner + ":getPatientMedicalCard:1", null));
+        assertEquals(Duration.ofHours(1), policy.getTimeToLive(owner + ":somethingElse", null));
+    }
+
+    @Test
+    void maxTtl_coversEveryGroup() {
+        assertEquals(Duration.ofHours(6), policy.maxTtl());
+    }
+}
@@ -0,0 +1,157 @@
+package com.example.diplom.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.Cache;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.cache.RedisCacheManager;
+import org.springframework.data.redis.cache.RedisCacheWriter;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceClientConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import io.lettuce.core.ClientOptions;
+import io.lettuce.core.SocketOptions;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Redis-заглушка принимает соединения и никогда не отвечает — так ведёт себя зависший узел.
+ * Кэш должен отключить Redis после порога ошибок и дальше отвечать без ожидания таймаутов.
+ */
+class CircuitBreakingCacheTest {
+
+    private static final Duration REDIS_TIMEOUT = Duration.ofMillis(200);
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final List<Socket> accepted = new CopyOnWriteArrayList<>();
+    private ServerSocket hangingRedis;
+    private LettuceConnectionFactory connectionFactory;
+    private RedisCircuitBreaker breaker;
+    private CacheInvalidator invalidator;
+    private Cache cache;
+
+    private final UUID doctorId = UUID.randomUUID();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        hangingRedis = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(() -> {
+            while (!hangingRedis.isClosed()) {
+                try {
+                    accepted.add(hangingRedis.accept());
+                } catch (IOException e) {
+                    return;
+                }
+            }
+        });
+        acceptor.setDaemon(true);
+        acceptor.start();
+
+        LettuceClientConfiguration clientConfig = LettuceClientConfiguration.builder()
+                .commandTimeout(REDIS_TIMEOUT)
+                .clientOptions(ClientOptions.builder()
+                        .socketOptions(SocketOptions.builder().connectTimeout(REDIS_TIMEOUT).build())
+                        .build())
+                .build();
+        connectionFactory = new LettuceConnectionFactory(new RedisStandaloneConfiguration(
+                hangingRedis.getInetAddress().getHostAddress(), hangingRedis.getLocalPort()), clientConfig);
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+
+        CacheMetrics metrics = new CacheMetrics(registry);
+        breaker = new RedisCircuitBreaker(2, Duration.ofMinutes(1), metrics);
+        StringRedisTemplate stringRedisTemplate = new StringRedisTemplate(connectionFactory);
+        invalidator = new CacheInvalidator(stringRedisTemplate, metrics, breaker);
+
+        RedisCacheManager redisCacheManager = RedisCacheManager
+                .builder(RedisCacheWriter.nonLockingRedisCacheWriter(connectionFactory))
+                .cacheDefaults(RedisCacheConfiguration.defaultCacheConfig())
+                .initialCacheNames(Set.of(CacheInvalidator.DOCTOR_CACHE))
+                .build();
+        redisCacheManager.afterPropertiesSet();
+        TwoLevelCacheManager cacheManager = new TwoLevelCacheManager(
+                new TaggedCacheManager(redisCacheManager, invalidator, Duration.ofHours(1), null),
+                invalidator, metrics, breaker,
+                new LocalCacheSettings(100, Map.of(), Duration.ofMinutes(5), Set.of(), Duration.ofSeconds(30)),
+                Runnable::run);
+        cache = cacheManager.getCache(CacheInvalidator.DOCTOR_CACHE);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        connectionFactory.destroy();
+        hangingRedis.close();
+        for (Socket socket : accepted) {
+            socket.close();
+        }
+    }
+
+    @Test
+    void hangingRedis_opensCircuitAndServesFromLoaderWithoutWaiting() {
+        AtomicInteger loads = new AtomicInteger();
+
+        // Первые обращения упираются в таймаут, но запрос всё равно получает значение из загрузчика.
+        for (int i = 0; i < 2; i++) {
+            String key = doctorId + ":getDoctorServices:" + i;
+            assertEquals("services", cache.get(key, () -> {
+                loads.incrementAndGet();
+                return "services";
+            }));
+        }
+        assertEquals(RedisCircuitBreaker.State.OPEN, breaker.getState());
+        assertEquals(2, loads.get());
+
+        long started = System.nanoTime();
+        String value = cache.get(doctorId + ":getDoctorPatients", () -> {
+            loads.incrementAndGet();
+            return "patients";
+        });
+        Duration elapsed = Duration.ofNanos(System.nanoTime() - started);
+
+        assertEquals("patients", value);
+        assertEquals(3, loads.get());
+        assertTrue(elapsed.compareTo(REDIS_TIMEOUT) < 0, "кэш ждал Redis " + elapsed);
+        // Значение осталось в L1 и отдаётся без повторной загрузки.
+        assertEquals("patients", cache.get(doctorId + ":getDoctorPatients", () -> {
+            loads.incrementAndGet();
+            return "reloaded";
+        }));
+        assertEquals(3, loads.get());
+        assertTrue(registry.get("cache.bypassed").counters().stream()
+                .mapToDouble(counter -> counter.count()).sum() >= 3);
+    }
+
+    @Test
+    void hangingRedis_invalidationClearsLocalAndIsRememberedForReplay() {
+        breaker.recordFailure(new org.springframework.dao.QueryTimeoutException("timeout"));
+        breaker.recordFailure(new org.springframework.dao.QueryTimeoutException("timeout"));
+        String key = doctorId + ":getDoctorPatients";
+        cache.get(key, () -> "patients");
+
+        long started = System.nanoTime();
+        long removed = invalidator.evict(CacheInvalidator.DOCTOR_CACHE, doctorId.toString(), List.of("getDoctorPatients"));
+        Duration elapsed = Duration.ofNanos(System.nanoTime() - started);
+
+        assertEquals(0, removed);
+        assertTrue(elapsed.compareTo(REDIS_TIMEOUT) < 0, "инвалидация ждала Redis " + elapsed);
+        assertEquals("fresh", cache.get(key, () -> "fresh"));
+        assertEquals(1, invalidator.missedCount());
+        assertEquals(1.0, registry.get("cache.invalidations.missed").counter().count());
+    }
+}
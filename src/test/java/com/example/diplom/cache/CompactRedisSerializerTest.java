@@ -0,0 +1,89 @@
+package com.example.diplom.cache;
+
+import com.example.diplom.conf.RedisConfig;
+import com.example.diplom.controllers.RR.PatientMedCardResponse;
+import com.example.diplom.controllers.RR.ServiceResponse;
+import com.example.diplom.controllers.RR.VisitDetailsResponse;
+import com.example.diplom.controllers.RR.VisitServicesDetailsResponse;
+import com.example.diplom.services.dtos.VisitDto;
+import com.example.diplom.services.dtos.VisitServiceDto;
+import com.fasterxml.jackson.core.JsonFactory;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompactRedisSerializerTest {
+
+    private final GenericJackson2JsonRedisSerializer json =
+            new GenericJackson2JsonRedisSerializer(RedisConfig.redisObjectMapper(new JsonFactory()));
+
+    private PatientMedCardResponse medCard(int visits) {
+        List<VisitDetailsResponse> details = new ArrayList<>();
+        for (int i = 0; i < visits; i++) {
+            details.add(new VisitDetailsResponse(UUID.randomUUID(),
+                    LocalDateTime.of(2025, 3, 1, 9, 0).plusDays(i), i % 2 == 0, "Осмотр " + i,
+                    BigDecimal.valueOf(1500),
+                    List.of(new VisitServicesDetailsResponse(UUID.randomUUID(), "Консультация", BigDecimal.valueOf(1000), 1),
+                            new VisitServicesDetailsResponse(UUID.randomUUID(), "Анализ", BigDecimal.valueOf(500), 1)),
+                    List.of("https://minio.local/bucket/file-" + i)));
+        }
+        return new PatientMedCardResponse(UUID.randomUUID(), "Иван Иванов", LocalDate.of(1990, 5, 1),
+                "ivan@example.com", "5550001122", details);
+    }
+
+    @Test
+    void roundTrip_medCard_isSmallerThanJson() {
+        CompactRedisSerializer serializer = RedisConfig.compactSerializer(json, 0);
+        PatientMedCardResponse card = medCard(20);
+
+        byte[] compact = serializer.serialize(card);
+
+        assertEquals(CompactRedisSerializer.FORMAT_SMILE, compact[0]);
+        assertEquals(card, serializer.deserialize(compact));
+        assertTrue(compact.length < json.serialize(card).length,
+                "Smile: " + compact.length + " байт, JSON: " + json.serialize(card).length + " байт");
+    }
+
+    @Test
+    void roundTrip_aboveThreshold_compressesWithLz4() {
+        CompactRedisSerializer serializer = RedisConfig.compactSerializer(json, 256);
+        CompactRedisSerializer uncompressed = RedisConfig.compactSerializer(json, 0);
+        PatientMedCardResponse card = medCard(50);
+
+        byte[] compressed = serializer.serialize(card);
+
+        assertEquals(CompactRedisSerializer.FORMAT_SMILE_LZ4, compressed[0]);
+        assertTrue(compressed.length < uncompressed.serialize(card).length);
+        assertEquals(card, serializer.deserialize(compressed));
+    }
+
+    @Test
+    void roundTrip_listOfRecordsAndMutableDto() {
+        CompactRedisSerializer serializer = RedisConfig.compactSerializer(json, 0);
+        List<ServiceResponse> services = List.of(new ServiceResponse("Консультация", BigDecimal.valueOf(1000)));
+        VisitDto visit = new VisitDto(UUID.randomUUID(), null, null, LocalDateTime.of(2025, 3, 1, 9, 0), "notes",
+                List.of(new VisitServiceDto(UUID.randomUUID(), UUID.randomUUID(), 2)), null, true, BigDecimal.TEN);
+
+        assertEquals(services, serializer.deserialize(serializer.serialize(services)));
+        VisitDto restored = (VisitDto) serializer.deserialize(serializer.serialize(visit));
+        assertEquals(visit.getId(), restored.getId());
+        assertEquals(1, restored.getVisitServices().size());
+        assertEquals(2, restored.getVisitServices().get(0).getQuantity());
+    }
+
+    @Test
+    void deserialize_legacyJsonEntry_isStillReadable() {
+        CompactRedisSerializer serializer = RedisConfig.compactSerializer(json, 0);
+        PatientMedCardResponse card = medCard(2);
+
+        assertEquals(card, serializer.deserialize(json.serialize(card)));
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.diplom.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.QueryTimeoutException;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RedisCircuitBreakerTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final MutableClock clock = new MutableClock();
+    private RedisCircuitBreaker breaker;
+
+    @BeforeEach
+    void setUp() {
+        breaker = new RedisCircuitBreaker(3, Duration.ofSeconds(30), new CacheMetrics(registry), clock);
+    }
+
+    @Test
+    void opensAfterConsecutiveFailuresOnly() {
+        breaker.recordFailure(new QueryTimeoutException("timeout"));
+        breaker.recordFailure(new QueryTimeoutException("timeout"));
+        breaker.recordSuccess();
+        breaker.recordFailure(new QueryTimeoutException("timeout"));
+        breaker.recordFailure(new QueryTimeoutException("timeout"));
+        assertEquals(RedisCircuitBreaker.State.CLOSED, breaker.getState());
+
+        breaker.recordFailure(new QueryTimeoutException("timeout"));
+
+        assertEquals(RedisCircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.allowRequest());
+        assertEquals(1.0, registry.get("cache.circuit.opened").counter().count());
+        assertEquals(2.0, registry.get("cache.circuit.state").gauge().value());
+    }
+
+    @Test
+    void afterOpenDuration_singleProbeClosesAndNotifiesListeners() {
+        AtomicInteger closed = new AtomicInteger();
+        breaker.onClose(closed::incrementAndGet);
+        openBreaker();
+
+        clock.advance(Duration.ofSeconds(31));
+
+        assertTrue(breaker.allowRequest());
+        assertFalse(breaker.allowRequest());
+        assertEquals(RedisCircuitBreaker.State.HALF_OPEN, breaker.getState());
+
+        breaker.recordSuccess();
+
+        assertEquals(RedisCircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(breaker.allowRequest());
+        assertEquals(1, closed.get());
+    }
+
+    @Test
+    void failedProbe_opensAgain() {
+        openBreaker();
+        clock.advance(Duration.ofSeconds(31));
+        assertTrue(breaker.allowRequest());
+
+        breaker.recordFailure(new QueryTimeoutException("timeout"));
+
+        assertEquals(RedisCircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.allowRequest());
+    }
+
+    private void openBreaker() {
+        for (int i = 0; i < 3; i++) {
+            breaker.recordFailure(new QueryTimeoutException("timeout"));
+        }
+    }
+
+    private static class MutableClock extends Clock {
+
+        private Instant now = Instant.parse("2025-03-01T10:00:00Z");
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneOffset getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(java.time.ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
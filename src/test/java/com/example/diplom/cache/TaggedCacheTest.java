@@ -0,0 +1,114 @@
+package com.example.diplom.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TaggedCacheTest {
+
+    @Mock
+    private StringRedisTemplate stringRedisTemplate;
+
+    private CacheInvalidator invalidator;
+    private ConcurrentMapCache target;
+    private TaggedCache cache;
+
+    private final UUID doctorId = UUID.randomUUID();
+
+    @BeforeEach
+    void setUp() {
+        CacheMetrics metrics = new CacheMetrics(new SimpleMeterRegistry());
+        invalidator = new CacheInvalidator(stringRedisTemplate, metrics,
+                new RedisCircuitBreaker(5, Duration.ofSeconds(30), metrics));
+        target = new ConcurrentMapCache(CacheInvalidator.DOCTOR_CACHE);
+        cache = new TaggedCache(target, invalidator, Duration.ofHours(1));
+    }
+
+    @Test
+    void put_storesUnderHashTaggedKeyAndTagsOwner() {
+        cache.put(doctorId + ":getDoctorPatients", "value");
+
+        String taggedKey = "{" + doctorId + "}:getDoctorPatients";
+        assertEquals("value", target.get(taggedKey).get());
+        assertEquals("value", cache.get(doctorId + ":getDoctorPatients").get());
+        verify(stringRedisTemplate).execute(any(RedisScript.class),
+                eq(List.of("cache-tags:doctorCache:{" + doctorId + "}")),
+                eq("doctorCache::" + taggedKey), eq("3600000"));
+    }
+
+    @Test
+    void put_tagFails_evictsEntryAndRethrows() {
+        String key = doctorId + ":getDoctorPatients";
+        when(stringRedisTemplate.execute(any(RedisScript.class), anyList(), any(), any()))
+                .thenThrow(new RedisConnectionFailureException("down"));
+
+        assertThrows(RedisConnectionFailureException.class, () -> cache.put(key, "value"));
+
+        assertNull(target.get(CacheInvalidator.hashTagged(key)));
+    }
+
+    @Test
+    void getWithLoader_loadsOnceAndTags() {
+        String key = doctorId + ":getDoctorVisitDates:3:2025";
+
+        assertEquals("loaded", cache.get(key, () -> "loaded"));
+        assertEquals("loaded", cache.get(key, () -> fail("значение должно браться из кэша")));
+
+        verify(stringRedisTemplate, times(1)).execute(any(RedisScript.class), anyList(), any(), any());
+    }
+
+    @Test
+    void putIfAbsent_existingEntry_doesNotRetag() {
+        String key = doctorId + ":getDoctorPatients";
+        cache.put(key, "first");
+
+        Cache.ValueWrapper existing = cache.putIfAbsent(key, "second");
+
+        assertEquals("first", existing.get());
+        verify(stringRedisTemplate, times(1)).execute(any(RedisScript.class), anyList(), any(), any());
+    }
+
+    @Test
+    void getWithLoader_lockHeldByOtherNode_waitsForItsValue() {
+        @SuppressWarnings("unchecked")
+        ValueOperations<String, String> valueOperations = mock(ValueOperations.class);
+        when(stringRedisTemplate.opsForValue()).thenReturn(valueOperations);
+        String key = doctorId + ":getPatientMedicalCard:1";
+        // Блокировку держит другой узел; он кладёт значение, пока этот ждёт.
+        when(valueOperations.setIfAbsent(anyString(), anyString(), any(Duration.class))).thenAnswer(invocation -> {
+            target.put(CacheInvalidator.hashTagged(key), "from-other-node");
+            return false;
+        });
+        TaggedCache locked = new TaggedCache(target, invalidator, Duration.ofHours(1),
+                new CacheLoadLock(stringRedisTemplate, Duration.ofSeconds(2)));
+
+        assertEquals("from-other-node", locked.get(key, () -> fail("узел без блокировки не должен считать")));
+        verify(valueOperations).setIfAbsent(eq("cache-lock:doctorCache::" + CacheInvalidator.hashTagged(key)),
+                anyString(), eq(Duration.ofSeconds(2)));
+    }
+
+    @Test
+    void hashTagged_wrapsOwnerPrefix() {
+        assertEquals("{abc}:m:1", CacheInvalidator.hashTagged("abc:m:1"));
+        assertEquals("{abc}", CacheInvalidator.hashTagged("abc"));
+        assertEquals("abc", CacheInvalidator.ownerOf("abc:m:1"));
+    }
+}
@@ -0,0 +1,161 @@
+package com.example.diplom.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TwoLevelCacheTest {
+
+    @Mock
+    private StringRedisTemplate stringRedisTemplate;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private CacheInvalidator invalidator;
+    private ConcurrentMapCacheManager remoteManager;
+    private TwoLevelCacheManager cacheManager;
+
+    private final UUID doctorId = UUID.randomUUID();
+    private final UUID otherDoctorId = UUID.randomUUID();
+
+    @BeforeEach
+    void setUp() {
+        CacheMetrics metrics = new CacheMetrics(registry);
+        RedisCircuitBreaker circuitBreaker = new RedisCircuitBreaker(5, Duration.ofSeconds(30), metrics);
+        invalidator = new CacheInvalidator(stringRedisTemplate, metrics, circuitBreaker);
+        remoteManager = new ConcurrentMapCacheManager(CacheInvalidator.DOCTOR_CACHE);
+        cacheManager = new TwoLevelCacheManager(remoteManager, invalidator, metrics, circuitBreaker,
+                new LocalCacheSettings(100, Map.of(), Duration.ofMinutes(5), Set.of("getDoctorVisitDates"),
+                        Duration.ofSeconds(30)),
+                Runnable::run);
+    }
+
+    private ConcurrentMapCache remote() {
+        return (ConcurrentMapCache) remoteManager.getCache(CacheInvalidator.DOCTOR_CACHE);
+    }
+
+    private Cache cache() {
+        return cacheManager.getCache(CacheInvalidator.DOCTOR_CACHE);
+    }
+
+    @Test
+    void get_afterFirstRemoteRead_servedFromLocal() {
+        String key = doctorId + ":getDoctorServices";
+        remote().put(key, List.of("Консультация"));
+
+        assertEquals(List.of("Консультация"), cache().get(key).get());
+        remote().clear();
+
+        assertEquals(List.of("Консультация"), cache().get(key).get());
+    }
+
+    @Test
+    void evictDoctor_dropsOnlyOwnersLocalEntriesAndNotifiesOtherNodes() {
+        cache().put(doctorId + ":getDoctorServices", "own");
+        cache().put(otherDoctorId + ":getDoctorServices", "other");
+        remote().clear();
+
+        invalidator.evictDoctor(doctorId);
+
+        assertNull(cache().get(doctorId + ":getDoctorServices"));
+        assertEquals("other", cache().get(otherDoctorId + ":getDoctorServices").get());
+        verify(stringRedisTemplate).convertAndSend(CacheInvalidator.INVALIDATION_CHANNEL,
+                "doctorCache|" + doctorId);
+    }
+
+    @Test
+    void handleMessage_withSelectors_dropsOnlySelectedEntries() {
+        cache().put(doctorId + ":getDoctorVisitDates:3:2025", "march");
+        cache().put(doctorId + ":getDoctorVisitDates:4:2025", "april");
+        remote().clear();
+
+        invalidator.handleMessage("doctorCache|" + doctorId + "|getDoctorVisitDates:3:2025");
+
+        assertNull(cache().get(doctorId + ":getDoctorVisitDates:3:2025"));
+        assertEquals("april", cache().get(doctorId + ":getDoctorVisitDates:4:2025").get());
+    }
+
+    @Test
+    void handleMessage_fromOtherNode_dropsLocalEntries() {
+        cache().put(doctorId + ":getDoctorPatients", "stale");
+        remote().clear();
+
+        invalidator.handleMessage("doctorCache|" + doctorId);
+
+        assertNull(cache().get(doctorId + ":getDoctorPatients"));
+    }
+
+    @Test
+    void getWithLoader_cachesNullValuesLocally() {
+        String key = doctorId + ":getDoctorPatients";
+
+        assertNull(cache().get(key, () -> null));
+        assertNull(cache().get(key, () -> fail("значение должно браться из L1")));
+    }
+
+    @Test
+    void getWithLoader_afterEvict_servesStaleCalendarAndRefreshes() {
+        String key = doctorId + ":getDoctorVisitDates:3:2025";
+        assertEquals("old", cache().get(key, () -> "old"));
+
+        invalidator.evictDoctor(doctorId);
+        remote().clear();
+
+        // Исполнитель синхронный: фоновое обновление уже выполнено к моменту возврата.
+        assertEquals("old", cache().get(key, () -> "new"));
+        assertEquals("new", cache().get(key, () -> fail("значение уже обновлено")));
+    }
+
+    @Test
+    void getWithLoader_afterEvict_nonCalendarKeyIsRecomputed() {
+        String key = doctorId + ":getPatientMedicalCard:" + UUID.randomUUID();
+        AtomicInteger calls = new AtomicInteger();
+        cache().get(key, calls::incrementAndGet);
+
+        invalidator.evictDoctor(doctorId);
+        remote().clear();
+
+        assertEquals(2, cache().get(key, calls::incrementAndGet));
+    }
+
+    @Test
+    void getWithLoader_recordsLookupsAndLoadTimePerMethod() {
+        String key = doctorId + ":getDoctorServices";
+
+        cache().get(key, () -> "value");
+        cache().get(key, () -> "value");
+
+        assertEquals(1, lookups("getDoctorServices", CacheMetrics.RESULT_MISS));
+        assertEquals(1, lookups("getDoctorServices", CacheMetrics.RESULT_LOCAL_HIT));
+        assertEquals(1, registry.get("cache.load").tag("method", "getDoctorServices").timer().count());
+    }
+
+    private double lookups(String method, String result) {
+        return registry.get("cache.lookups")
+                .tags("cache", CacheInvalidator.DOCTOR_CACHE, "method", method, "result", result)
+                .counter().count();
+    }
+
+    @Test
+    void weigh_countsCollectionElements() {
+        assertEquals(1, TwoLevelCacheManager.weigh("value"));
+        assertEquals(4, TwoLevelCacheManager.weigh(List.of(1, 2, 3)));
+    }
+}
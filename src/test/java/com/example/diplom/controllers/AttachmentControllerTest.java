@@ -0,0 +1,151 @@
+package com.example.diplom.controllers;
+
+import com.example.diplom.controllers.RR.AttachmentMetadataResponse;
+import com.example.diplom.controllers.RR.AttachmentPageResponse;
+import com.example.diplom.exceptions.ResourceNotFoundException;
+import com.example.diplom.services.AttachmentService;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.jwt;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(AttachmentController.class)
+public class AttachmentControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private AttachmentService attachmentService;
+
+    private final UUID userId = UUID.randomUUID();
+    private final UUID attachmentId = UUID.randomUUID();
+
+    @Test
+    public void testOpenAttachmentRedirectsToSignedUrl() throws Exception {
+        Mockito.when(attachmentService.getPresignedUrlForUser(attachmentId, userId))
+                .thenReturn("http://minio/bucket/file.pdf?X-Amz-Signature=abc");
+
+        mockMvc.perform(get("/api/attachments/" + attachmentId)
+                        .with(jwt().jwt(jwt -> jwt.claim("id", userId.toString()))))
+                .andExpect(status().isFound())
+                .andExpect(header().string("Location", "http://minio/bucket/file.pdf?X-Amz-Signature=abc"))
+                .andExpect(header().string("Cache-Control", "no-store"));
+    }
+
+    @Test
+    public void testOpenAttachmentForbidden() throws Exception {
+        Mockito.when(attachmentService.getPresignedUrlForUser(attachmentId, userId))
+                .thenThrow(new AccessDeniedException("User not allowed to open this attachment"));
+
+        mockMvc.perform(get("/api/attachments/" + attachmentId)
+                        .with(jwt().jwt(jwt -> jwt.claim("id", userId.toString()))))
+                .andExpect(status().isForbidden())
+                .andExpect(jsonPath("$.status").value("Error"));
+    }
+
+    @Test
+    public void testOpenAttachmentNotFound() throws Exception {
+        Mockito.when(attachmentService.getPresignedUrlForUser(attachmentId, userId))
+                .thenThrow(new ResourceNotFoundException("Attachment not found"));
+
+        mockMvc.perform(get("/api/attachments/" + attachmentId)
+                        .with(jwt().jwt(jwt -> jwt.claim("id", userId.toString()))))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.message").value("Attachment not found"));
+    }
+
+    @Test
+    public void testOpenAttachmentPreviewRedirectsToSignedUrl() throws Exception {
+        Mockito.when(attachmentService.getPreviewUrlForUser(attachmentId, userId))
+                .thenReturn("http://minio/bucket/file.pdf.preview.jpg?X-Amz-Signature=abc");
+
+        mockMvc.perform(get("/api/attachments/" + attachmentId + "/preview")
+                        .with(jwt().jwt(jwt -> jwt.claim("id", userId.toString()))))
+                .andExpect(status().isFound())
+                .andExpect(header().string("Location", "http://minio/bucket/file.pdf.preview.jpg?X-Amz-Signature=abc"))
+                .andExpect(header().string("Cache-Control", "no-store"));
+    }
+
+    @Test
+    public void testOpenAttachmentPreviewNotReady() throws Exception {
+        Mockito.when(attachmentService.getPreviewUrlForUser(attachmentId, userId))
+                .thenThrow(new ResourceNotFoundException("Preview not available"));
+
+        mockMvc.perform(get("/api/attachments/" + attachmentId + "/preview")
+                        .with(jwt().jwt(jwt -> jwt.claim("id", userId.toString()))))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.message").value("Preview not available"));
+    }
+
+    @Test
+    public void testPatientAttachmentsDefaultsToCaller() throws Exception {
+        UUID nextId = UUID.randomUUID();
+        LocalDateTime nextCreated = LocalDateTime.of(2025, 5, 1, 9, 0, 0, 123_000_000);
+        AttachmentMetadataResponse item = new AttachmentMetadataResponse(attachmentId, UUID.randomUUID(),
+                "/api/attachments/" + attachmentId, null, "scan.pdf", "desc", "application/pdf", 2048L, "abc",
+                LocalDateTime.of(2025, 5, 1, 9, 0), null, null);
+        Mockito.when(attachmentService.getPatientAttachments(userId, userId, "application/pdf", null, null, 20))
+                .thenReturn(new AttachmentPageResponse(List.of(item), nextCreated, nextId));
+
+        mockMvc.perform(get("/api/attachments")
+                        .param("contentType", "application/pdf")
+                        .with(jwt().jwt(jwt -> jwt.claim("id", userId.toString()))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.attachments[0].fileName").value("scan.pdf"))
+                .andExpect(jsonPath("$.attachments[0].size").value(2048))
+                .andExpect(jsonPath("$.nextCreated").value("2025-05-01T09:00:00.123"))
+                .andExpect(jsonPath("$.nextId").value(nextId.toString()));
+    }
+
+    @Test
+    public void testPatientAttachmentsPassesCursor() throws Exception {
+        UUID beforeId = UUID.randomUUID();
+        LocalDateTime beforeCreated = LocalDateTime.of(2025, 5, 1, 9, 0, 0, 123_000_000);
+        Mockito.when(attachmentService.getPatientAttachments(userId, userId, null, beforeCreated, beforeId, 20))
+                .thenReturn(new AttachmentPageResponse(List.of(), null, null));
+
+        mockMvc.perform(get("/api/attachments")
+                        .param("beforeCreated", "2025-05-01T09:00:00.123")
+                        .param("beforeId", beforeId.toString())
+                        .with(jwt().jwt(jwt -> jwt.claim("id", userId.toString()))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.attachments").isEmpty());
+    }
+
+    @Test
+    public void testVisitAttachmentsErrors() throws Exception {
+        UUID visitId = UUID.randomUUID();
+        Mockito.when(attachmentService.getVisitAttachments(userId, visitId, null, null, null, 500))
+                .thenThrow(new IllegalArgumentException("Page size must be between 1 and 100"));
+        Mockito.when(attachmentService.getVisitAttachments(userId, visitId, null, null, null, 20))
+                .thenThrow(new AccessDeniedException("User not allowed to view attachments of this visit"));
+
+        mockMvc.perform(get("/api/attachments/visits/" + visitId).param("size", "500")
+                        .with(jwt().jwt(jwt -> jwt.claim("id", userId.toString()))))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("Page size must be between 1 and 100"));
+        mockMvc.perform(get("/api/attachments/visits/" + visitId)
+                        .with(jwt().jwt(jwt -> jwt.claim("id", userId.toString()))))
+                .andExpect(status().isForbidden());
+    }
+
+    @Test
+    public void testOpenAttachmentRequiresAuth() throws Exception {
+        mockMvc.perform(get("/api/attachments/" + attachmentId))
+                .andExpect(status().isUnauthorized());
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.diplom.controllers;
+
+import com.example.diplom.controllers.RR.FreeSlotResponse;
+import com.example.diplom.services.DoctorService;
+import com.example.diplom.services.MedicalRecordExportService;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.jwt;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(DoctorController.class)
+public class DoctorControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private DoctorService doctorService;
+
+    @MockBean
+    private MedicalRecordExportService exportService;
+
+    private final UUID doctorId = UUID.randomUUID();
+    private final LocalDateTime from = LocalDateTime.of(2025, 3, 10, 9, 0);
+    private final LocalDateTime to = LocalDateTime.of(2025, 3, 10, 18, 0);
+
+    @Test
+    public void testGetFreeSlots() throws Exception {
+        Mockito.when(doctorService.findFreeSlots(doctorId, from, to, 30))
+                .thenReturn(List.of(new FreeSlotResponse(from, to)));
+
+        mockMvc.perform(get("/api/doctors/visits/free-slots")
+                        .param("from", "2025-03-10T09:00:00")
+                        .param("to", "2025-03-10T18:00:00")
+                        .param("duration", "30")
+                        .with(jwt().jwt(jwt -> jwt.claim("id", doctorId.toString()))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].start").value("2025-03-10T09:00:00"));
+    }
+
+    @Test
+    public void testGetFreeSlotsInvalidIntervalIsBadRequest() throws Exception {
+        Mockito.when(doctorService.findFreeSlots(doctorId, to, from, 15))
+                .thenThrow(new IllegalArgumentException("Interval start must be before its end"));
+
+        mockMvc.perform(get("/api/doctors/visits/free-slots")
+                        .param("from", "2025-03-10T18:00:00")
+                        .param("to", "2025-03-10T09:00:00")
+                        .with(jwt().jwt(jwt -> jwt.claim("id", doctorId.toString()))))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("Interval start must be before its end"));
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.diplom.controllers;
+
+import com.example.diplom.storage.LocalAttachmentStorage;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Duration;
+
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.jwt;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(controllers = LocalStorageController.class, properties = "storage.type=local")
+@Import(LocalStorageControllerTest.StorageConfig.class)
+public class LocalStorageControllerTest {
+
+    @TestConfiguration
+    static class StorageConfig {
+        @Bean
+        LocalAttachmentStorage localAttachmentStorage() throws IOException {
+            return new LocalAttachmentStorage(Files.createTempDirectory("storage-test"), "http://localhost",
+                    "0123456789abcdef0123456789abcdef");
+        }
+    }
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private LocalAttachmentStorage storage;
+
+    private static String pathAndQuery(String url) {
+        return url.substring("http://localhost".length());
+    }
+
+    @Test
+    public void testDownloadStreamsSignedObject() throws Exception {
+        byte[] data = "%PDF-1.4".getBytes(StandardCharsets.US_ASCII);
+        storage.put("scan.pdf", new ByteArrayInputStream(data), data.length, "application/pdf");
+
+        mockMvc.perform(get(pathAndQuery(storage.presignGet("scan.pdf", Duration.ofMinutes(5)))).with(jwt()))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Type", "application/pdf"))
+                .andExpect(header().string("Cache-Control", "no-store"))
+                .andExpect(content().bytes(data));
+    }
+
+    @Test
+    public void testDownloadRejectsTamperedSignature() throws Exception {
+        String url = pathAndQuery(storage.presignGet("scan.pdf", Duration.ofMinutes(5)));
+
+        mockMvc.perform(get(url.replace("scan.pdf?", "other.pdf?")).with(jwt()))
+                .andExpect(status().isForbidden());
+    }
+
+    @Test
+    public void testDownloadWithPutSignatureForbidden() throws Exception {
+        mockMvc.perform(get(pathAndQuery(storage.presignPut("scan.pdf", Duration.ofMinutes(5)))).with(jwt()))
+                .andExpect(status().isForbidden());
+    }
+
+    @Test
+    public void testDownloadMissingObject() throws Exception {
+        mockMvc.perform(get(pathAndQuery(storage.presignGet("missing.pdf", Duration.ofMinutes(5)))).with(jwt()))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    public void testUploadStoresObject() throws Exception {
+        byte[] data = "uploaded".getBytes(StandardCharsets.US_ASCII);
+
+        mockMvc.perform(put(pathAndQuery(storage.presignPut("upload.txt", Duration.ofMinutes(5))))
+                        .with(jwt()).with(csrf())
+                        .contentType("text/plain")
+                        .content(data))
+                .andExpect(status().isOk());
+
+        assertThat(storage.size("upload.txt")).hasValue(data.length);
+    }
+}
@@ -1,14 +1,18 @@
 package com.example.diplom.controllers;
 
 import com.example.diplom.controllers.RR.AddAttachmentRequest;
+import com.example.diplom.controllers.RR.AttachmentUploadResponse;
+import com.example.diplom.controllers.RR.StartAttachmentUploadRequest;
 import com.example.diplom.controllers.RR.DoctorResponse;
 import com.example.diplom.controllers.RR.PatientProfileResponse;
 import com.example.diplom.controllers.RR.PatientVisitDetailsResponse;
 import com.example.diplom.exceptions.AlreadyLinkedException;
 import com.example.diplom.exceptions.ResourceNotFoundException;
 import com.example.diplom.services.AttachmentService;
+import com.example.diplom.services.MedicalRecordExportService;
 import com.example.diplom.services.PatientService;
 import com.example.diplom.services.dtos.AttachmentDto;
+import com.example.diplom.services.dtos.MedicalRecordExport;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -37,6 +41,9 @@ import static org.springframework.security.test.web.servlet.request.SecurityMock
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -52,6 +59,9 @@ public class PatientControllerTest {
     @MockBean
     private PatientService patientService;
 
+    @MockBean
+    private MedicalRecordExportService exportService;
+
     // Фиксированный UUID для передачи в JWT claim "id"
     private final UUID patientId = UUID.randomUUID();
 
@@ -111,6 +121,57 @@ public class PatientControllerTest {
                 .andExpect(jsonPath("$.message").value("File processing error"));
     }
 
+    @Test
+    public void testStartAttachmentUploadReturnsPutUrl() throws Exception {
+        UUID attachmentId = UUID.randomUUID();
+        Mockito.when(attachmentService.startUpload(eq(patientId), any(StartAttachmentUploadRequest.class)))
+                .thenReturn(new AttachmentUploadResponse(attachmentId, "http://minio/put", LocalDateTime.now()));
+
+        mockMvc.perform(post("/api/patients/attachments/upload")
+                        .with(csrf())
+                        .with(jwt().jwt(jwt -> jwt.claim("id", patientId.toString())))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"visitId\":\"" + validVisitId + "\",\"fileName\":\"scan.pdf\"}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.attachmentId").value(attachmentId.toString()))
+                .andExpect(jsonPath("$.uploadUrl").value("http://minio/put"));
+    }
+
+    @Test
+    public void testStartAttachmentUploadRequiresFileName() throws Exception {
+        mockMvc.perform(post("/api/patients/attachments/upload")
+                        .with(csrf())
+                        .with(jwt().jwt(jwt -> jwt.claim("id", patientId.toString())))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"visitId\":\"" + validVisitId + "\"}"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void testCompleteAttachmentUploadWhenFileMissing() throws Exception {
+        UUID attachmentId = UUID.randomUUID();
+        Mockito.when(attachmentService.completeUpload(patientId, attachmentId))
+                .thenThrow(new ResourceNotFoundException("Uploaded file not found"));
+
+        mockMvc.perform(post("/api/patients/attachments/" + attachmentId + "/complete")
+                        .with(csrf())
+                        .with(jwt().jwt(jwt -> jwt.claim("id", patientId.toString()))))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.message").value("Uploaded file not found"));
+    }
+
+    @Test
+    public void testCompleteAttachmentUploadSuccess() throws Exception {
+        UUID attachmentId = UUID.randomUUID();
+        Mockito.when(attachmentService.completeUpload(patientId, attachmentId)).thenReturn(new AttachmentDto());
+
+        mockMvc.perform(post("/api/patients/attachments/" + attachmentId + "/complete")
+                        .with(csrf())
+                        .with(jwt().jwt(jwt -> jwt.claim("id", patientId.toString()))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.message").value("Attachment added"));
+    }
+
     @Test
     public void testDeleteAttachmentSuccess() throws Exception {
         String url = "http://example.com/file.pdf";
@@ -345,4 +406,28 @@ public class PatientControllerTest {
                 .andExpect(jsonPath("$[1].notes").value("Notes 2"))
                 .andExpect(jsonPath("$[1].totalPrice").value(200.00));
     }
+
+    @Test
+    public void testExportMedicalRecordStreamsZip() throws Exception {
+        Mockito.when(exportService.exportForPatient(patientId))
+                .thenReturn(new MedicalRecordExport("medical-record.zip", out -> out.write(new byte[]{'P', 'K'})));
+
+        mockMvc.perform(get("/api/patients/export")
+                        .with(jwt().jwt(jwt -> jwt.claim("id", patientId.toString()))))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Type", "application/zip"))
+                .andExpect(header().string("Content-Disposition", "attachment; filename=\"medical-record.zip\""))
+                .andExpect(content().bytes(new byte[]{'P', 'K'}));
+    }
+
+    @Test
+    public void testExportMedicalRecordPatientNotFound() throws Exception {
+        Mockito.when(exportService.exportForPatient(patientId))
+                .thenThrow(new ResourceNotFoundException("Patient not found"));
+
+        mockMvc.perform(get("/api/patients/export")
+                        .with(jwt().jwt(jwt -> jwt.claim("id", patientId.toString()))))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.status").value("Error"));
+    }
 }
@@ -0,0 +1,145 @@
+package com.example.diplom.preview;
+
+import com.example.diplom.events.AttachmentAddedEvent;
+import com.example.diplom.repositories.AttachmentRepository;
+import com.example.diplom.storage.AttachmentStorage;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class AttachmentPreviewServiceTest {
+
+    private final AttachmentRepository attachmentRepository = mock(AttachmentRepository.class);
+    private final AttachmentStorage storage = mock(AttachmentStorage.class);
+    private final PreviewRenderer renderer = mock(PreviewRenderer.class);
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final UUID attachmentId = UUID.randomUUID();
+    private AttachmentPreviewService service;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        service = new AttachmentPreviewService(attachmentRepository, storage, renderer, registry, 1, 1, 1024);
+        when(renderer.supports(anyString())).thenReturn(true);
+        when(attachmentRepository.findReadyFilePathById(attachmentId)).thenReturn(Optional.of("key_scan.png"));
+        when(storage.size("key_scan.png")).thenReturn(OptionalLong.of(3));
+        when(storage.transferTo(eq("key_scan.png"), any(OutputStream.class))).thenAnswer(inv -> {
+            inv.getArgument(1, OutputStream.class).write(new byte[]{1, 2, 3});
+            return 3L;
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    private double processed(String result) {
+        return registry.counter("attachment.preview.processed", "result", result).count();
+    }
+
+    @Test
+    void generate_storesPreviewNextToOriginalAndRecordsPath() throws Exception {
+        when(renderer.render("key_scan.png", new byte[]{1, 2, 3})).thenReturn(new byte[]{9, 9});
+        when(attachmentRepository.updatePreviewPath(attachmentId, "key_scan.png.preview.jpg")).thenReturn(1);
+
+        service.generate(attachmentId);
+
+        verify(storage).put(eq("key_scan.png.preview.jpg"), any(InputStream.class), eq(2L), eq("image/jpeg"));
+        verify(attachmentRepository).updatePreviewPath(attachmentId, "key_scan.png.preview.jpg");
+        assertThat(processed("generated")).isEqualTo(1);
+        assertThat(registry.timer("attachment.preview.render").count()).isEqualTo(1);
+    }
+
+    @Test
+    void generate_skipsSourcesAboveLimit() throws Exception {
+        when(storage.size("key_scan.png")).thenReturn(OptionalLong.of(4096));
+
+        service.generate(attachmentId);
+
+        verify(storage, never()).transferTo(anyString(), any(OutputStream.class));
+        verify(renderer, never()).render(anyString(), any());
+        assertThat(processed("too_large")).isEqualTo(1);
+    }
+
+    @Test
+    void generate_whenAttachmentDeletedMeanwhile_thenRemovesPreview() throws Exception {
+        when(renderer.render(anyString(), any())).thenReturn(new byte[]{9});
+        when(attachmentRepository.updatePreviewPath(any(), anyString())).thenReturn(0);
+
+        service.generate(attachmentId);
+
+        verify(storage).delete("key_scan.png.preview.jpg");
+        assertThat(processed("missing")).isEqualTo(1);
+    }
+
+    @Test
+    void generate_whenSharedObjectAlreadyHasPreview_thenReusesIt() throws Exception {
+        when(storage.size("key_scan.png.preview.jpg")).thenReturn(OptionalLong.of(2));
+        when(attachmentRepository.updatePreviewPath(attachmentId, "key_scan.png.preview.jpg")).thenReturn(1);
+
+        service.generate(attachmentId);
+
+        verify(storage, never()).transferTo(anyString(), any(OutputStream.class));
+        verify(storage, never()).put(anyString(), any(), anyLong(), any());
+        assertThat(processed("reused")).isEqualTo(1);
+    }
+
+    @Test
+    void generate_whenDeletedButObjectShared_thenKeepsPreview() throws Exception {
+        when(renderer.render(anyString(), any())).thenReturn(new byte[]{9});
+        when(attachmentRepository.updatePreviewPath(any(), anyString())).thenReturn(0);
+        when(attachmentRepository.countByFilePathAndIdNot("key_scan.png", attachmentId)).thenReturn(1L);
+
+        service.generate(attachmentId);
+
+        verify(storage, never()).delete(anyString());
+        assertThat(processed("missing")).isEqualTo(1);
+    }
+
+    @Test
+    void generate_renderFailureIsCountedNotThrown() throws Exception {
+        when(renderer.render(anyString(), any())).thenThrow(new IllegalStateException("corrupt"));
+
+        assertThatCode(() -> service.generate(attachmentId)).doesNotThrowAnyException();
+        assertThat(processed("failed")).isEqualTo(1);
+        verify(storage, never()).put(anyString(), any(), anyLong(), any());
+    }
+
+    @Test
+    void submit_whenQueueFull_thenRejectsAndReportsDepth() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(attachmentRepository.findReadyFilePathById(any())).thenAnswer(inv -> {
+            started.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return Optional.empty();
+        });
+
+        assertThat(service.submit(UUID.randomUUID())).isTrue();
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        service.onAttachmentAdded(new AttachmentAddedEvent(UUID.randomUUID(), UUID.randomUUID(),
+                UUID.randomUUID(), UUID.randomUUID()));
+        boolean third = service.submit(UUID.randomUUID());
+
+        assertThat(third).isFalse();
+        assertThat(registry.get("attachment.preview.queue.depth").gauge().value()).isEqualTo(1);
+        assertThat(registry.counter("attachment.preview.rejected").count()).isEqualTo(1);
+        release.countDown();
+    }
+}
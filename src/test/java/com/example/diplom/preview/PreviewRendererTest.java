@@ -0,0 +1,81 @@
+package com.example.diplom.preview;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static org.assertj.core.api.Assertions.*;
+
+class PreviewRendererTest {
+
+    private final PreviewRenderer renderer = new PreviewRenderer(320);
+
+    private static BufferedImage decode(byte[] jpeg) throws IOException {
+        return ImageIO.read(new ByteArrayInputStream(jpeg));
+    }
+
+    private static byte[] png(int width, int height) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(Color.RED);
+        graphics.fillRect(0, 0, width / 2, height);
+        graphics.dispose();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+
+    @Test
+    void render_downscalesLargeImageKeepingAspectRatio() throws Exception {
+        BufferedImage preview = decode(renderer.render("scan.PNG", png(4000, 2000)));
+
+        assertThat(preview.getWidth()).isEqualTo(320);
+        assertThat(preview.getHeight()).isEqualTo(160);
+    }
+
+    @Test
+    void render_keepsSmallImageSize() throws Exception {
+        BufferedImage preview = decode(renderer.render("icon.png", png(100, 50)));
+
+        assertThat(preview.getWidth()).isEqualTo(100);
+        assertThat(preview.getHeight()).isEqualTo(50);
+    }
+
+    @Test
+    void render_pdfFirstPage() throws Exception {
+        ByteArrayOutputStream pdf = new ByteArrayOutputStream();
+        try (PDDocument document = new PDDocument()) {
+            PDPage page = new PDPage(PDRectangle.A4);
+            document.addPage(page);
+            try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+                content.setNonStrokingColor(Color.BLUE);
+                content.addRect(50, 50, 200, 200);
+                content.fill();
+            }
+            document.addPage(new PDPage(PDRectangle.A4));
+            document.save(pdf);
+        }
+
+        BufferedImage preview = decode(renderer.render("result.pdf", pdf.toByteArray()));
+
+        assertThat(preview.getHeight()).isEqualTo(320);
+        assertThat(preview.getWidth()).isBetween(225, 227);
+    }
+
+    @Test
+    void render_unsupportedOrBrokenFiles_returnNull() throws Exception {
+        assertThat(renderer.supports("notes.docx")).isFalse();
+        assertThat(renderer.render("notes.docx", new byte[]{1, 2, 3})).isNull();
+        assertThat(renderer.render("broken.jpg", new byte[]{1, 2, 3})).isNull();
+    }
+}
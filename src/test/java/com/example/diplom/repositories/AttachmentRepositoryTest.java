@@ -0,0 +1,245 @@
+package com.example.diplom.repositories;
+
+import com.example.diplom.models.Attachment;
+import com.example.diplom.models.AttachmentStatus;
+import com.example.diplom.models.Doctor;
+import com.example.diplom.models.Patient;
+import com.example.diplom.models.Specialization;
+import com.example.diplom.models.Visit;
+import com.example.diplom.services.dtos.AttachmentAccessDto;
+import com.example.diplom.services.dtos.AttachmentExportDto;
+import com.example.diplom.services.dtos.AttachmentMetadataDto;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.Limit;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.*;
+
+@DataJpaTest
+class AttachmentRepositoryTest {
+
+    @Autowired AttachmentRepository attachmentRepository;
+    @Autowired VisitRepository visitRepository;
+    @Autowired DoctorRepository doctorRepository;
+    @Autowired PatientRepository patientRepository;
+    @Autowired SpecializationRepository specializationRepository;
+    @Autowired TestEntityManager entityManager;
+
+    private Doctor doctor;
+    private Patient patient;
+
+    @BeforeEach
+    void setUp() {
+        doctor = new Doctor();
+        doctor.setEmail("attach-doc@example.com");
+        doctor.setPassword("pass");
+        doctor.setPhone("5553330001");
+        doctor.setFullName("Dr. Attach");
+        doctor.setSpecialization(specializationRepository.save(new Specialization("Attach")));
+        doctor.setUniqueCode("3334445");
+        doctorRepository.save(doctor);
+
+        patient = new Patient();
+        patient.setPhone("5553330002");
+        patient.setFullName("Attach Patient");
+        patient.setBirthDate(LocalDate.of(1985, 5, 5));
+        patientRepository.save(patient);
+    }
+
+    private Doctor otherDoctor() {
+        Doctor other = new Doctor();
+        other.setEmail("attach-other@example.com");
+        other.setPassword("pass");
+        other.setPhone("5553330003");
+        other.setFullName("Dr. Other");
+        other.setSpecialization(doctor.getSpecialization());
+        other.setUniqueCode("3334446");
+        return doctorRepository.save(other);
+    }
+
+    private Attachment attach(LocalDateTime visitDate, String filePath) {
+        return attach(visitDate, filePath, AttachmentStatus.READY);
+    }
+
+    private Attachment attach(LocalDateTime visitDate, String filePath, AttachmentStatus status) {
+        return attach(doctor, visitDate, filePath, status);
+    }
+
+    private Attachment attach(Doctor doctor, LocalDateTime visitDate, String filePath, AttachmentStatus status) {
+        return attach(doctor, visitDate, filePath, status, null);
+    }
+
+    private Attachment attach(Doctor doctor, LocalDateTime visitDate, String filePath, AttachmentStatus status,
+                              String originalName) {
+        Visit visit = new Visit();
+        visit.setDoctor(doctor);
+        visit.setPatient(patient);
+        visit.setVisitDate(visitDate);
+        visit.setTotalCost(BigDecimal.ZERO);
+        visitRepository.save(visit);
+
+        Attachment attachment = new Attachment();
+        attachment.setVisit(visit);
+        attachment.setFilePath(filePath);
+        attachment.setOriginalName(originalName);
+        attachment.setStatus(status);
+        return attachmentRepository.save(attachment);
+    }
+
+    @Test
+    void findAccessById_returnsPathAndVisitParticipants() {
+        Attachment attachment = attach(LocalDateTime.of(2025, 4, 1, 10, 0), "scan.pdf");
+
+        AttachmentAccessDto access = attachmentRepository.findAccessById(attachment.getId()).orElseThrow();
+
+        assertThat(access.filePath()).isEqualTo("scan.pdf");
+        assertThat(access.patientId()).isEqualTo(patient.getId());
+        assertThat(access.doctorId()).isEqualTo(doctor.getId());
+        assertThat(attachmentRepository.findAccessById(UUID.randomUUID())).isEmpty();
+    }
+
+    @Test
+    void findIdsByPatientId_newestVisitsFirst() {
+        Attachment older = attach(LocalDateTime.of(2025, 1, 10, 9, 0), "old.pdf");
+        Attachment newer = attach(LocalDateTime.of(2025, 3, 10, 9, 0), "new.pdf");
+
+        assertThat(attachmentRepository.findIdsByPatientId(patient.getId()))
+                .containsExactly(newer.getId(), older.getId());
+    }
+
+    @Test
+    void pendingUploads_hiddenFromReadQueries() {
+        Attachment ready = attach(LocalDateTime.of(2025, 2, 1, 9, 0), "ready.pdf");
+        Attachment pending = attach(LocalDateTime.of(2025, 2, 2, 9, 0), "pending.pdf", AttachmentStatus.PENDING);
+
+        assertThat(attachmentRepository.findIdsByPatientId(patient.getId())).containsExactly(ready.getId());
+        assertThat(attachmentRepository.findAccessById(pending.getId())).isEmpty();
+        assertThat(attachmentRepository.findDtosByVisitIds(
+                java.util.List.of(ready.getVisit().getId(), pending.getVisit().getId())))
+                .extracting(dto -> dto.getId())
+                .containsExactly(ready.getId());
+        assertThat(attachmentRepository.findByStatusAndCreatedBefore(
+                AttachmentStatus.PENDING, LocalDateTime.now().plusMinutes(1), Limit.of(10)))
+                .extracting(Attachment::getId)
+                .containsExactly(pending.getId());
+    }
+
+    @Test
+    void findExportRows_oldestVisitsFirstAndScopedToDoctor() {
+        Attachment newer = attach(LocalDateTime.of(2025, 3, 10, 9, 0), "new.pdf");
+        Attachment older = attach(LocalDateTime.of(2025, 1, 10, 9, 0), "old.pdf");
+        attach(LocalDateTime.of(2025, 2, 10, 9, 0), "pending.pdf", AttachmentStatus.PENDING);
+
+        Doctor other = otherDoctor();
+        Attachment foreign = attach(other, LocalDateTime.of(2025, 4, 10, 9, 0), "foreign.pdf", AttachmentStatus.READY);
+
+        assertThat(attachmentRepository.findExportRowsByPatientId(patient.getId()))
+                .extracting(AttachmentExportDto::id)
+                .containsExactly(older.getId(), newer.getId(), foreign.getId());
+        assertThat(attachmentRepository.findExportRowsByPatientIdAndDoctorId(patient.getId(), doctor.getId()))
+                .extracting(AttachmentExportDto::filePath, AttachmentExportDto::visitDate)
+                .containsExactly(tuple("old.pdf", LocalDateTime.of(2025, 1, 10, 9, 0)),
+                        tuple("new.pdf", LocalDateTime.of(2025, 3, 10, 9, 0)));
+    }
+
+    @Test
+    void sharedObject_countsOtherReferences() {
+        Attachment first = attach(doctor, LocalDateTime.of(2025, 5, 1, 9, 0), "abc123.pdf", AttachmentStatus.READY,
+                "blood test.pdf");
+        Attachment second = attach(LocalDateTime.of(2025, 5, 2, 9, 0), "abc123.pdf");
+        Attachment single = attach(LocalDateTime.of(2025, 5, 3, 9, 0), "single.pdf");
+
+        assertThat(attachmentRepository.countByFilePathAndIdNot("abc123.pdf", first.getId())).isEqualTo(1);
+        assertThat(attachmentRepository.countByFilePathAndIdNot("single.pdf", single.getId())).isZero();
+        assertThat(attachmentRepository.findByFilePath("abc123.pdf"))
+                .extracting(Attachment::getId)
+                .containsExactlyInAnyOrder(first.getId(), second.getId());
+        assertThat(attachmentRepository.findExportRowsByPatientId(patient.getId()))
+                .extracting(AttachmentExportDto::originalName)
+                .containsExactly("blood test.pdf", null, null);
+    }
+
+    private Attachment attachFile(Visit visit, String contentType) {
+        Attachment attachment = new Attachment();
+        attachment.setVisit(visit);
+        attachment.setFilePath(UUID.randomUUID() + ".bin");
+        attachment.setContentType(contentType);
+        attachment.setSizeBytes(10L);
+        return attachmentRepository.save(attachment);
+    }
+
+    @Test
+    void findCatalog_pagesNewestFirstAndFiltersByType() {
+        Attachment legacy = attach(LocalDateTime.of(2025, 6, 1, 9, 0), "legacy.pdf");
+        Visit first = legacy.getVisit();
+        Attachment image = attachFile(first, "image/png");
+        Attachment pdf = attachFile(first, "application/pdf");
+        Attachment lookalike = attachFile(first, "imagex/png");
+        attach(LocalDateTime.of(2025, 6, 2, 9, 0), "pending.png", AttachmentStatus.PENDING);
+        Attachment other = attach(LocalDateTime.of(2025, 6, 3, 9, 0), "other.pdf");
+        Attachment secondImage = attachFile(other.getVisit(), "image/jpeg");
+
+        assertThat(attachmentRepository.findCatalogByPatientId(patient.getId(), "%", Limit.of(3)))
+                .extracting(AttachmentMetadataDto::id)
+                .containsExactly(secondImage.getId(), other.getId(), lookalike.getId());
+        assertThat(attachmentRepository.findCatalogByPatientIdBefore(patient.getId(), "%", lookalike.getCreated(), lookalike.getId(), Limit.of(10)))
+                .extracting(AttachmentMetadataDto::id)
+                .containsExactly(pdf.getId(), image.getId(), legacy.getId());
+        assertThat(attachmentRepository.findCatalogByPatientId(patient.getId(), "image/%", Limit.of(10)))
+                .extracting(AttachmentMetadataDto::id)
+                .containsExactly(secondImage.getId(), image.getId());
+        assertThat(attachmentRepository.findCatalogByPatientId(patient.getId(), "image!_%", Limit.of(10))).isEmpty();
+        assertThat(attachmentRepository.findCatalogByVisitId(first.getId(), "%", Limit.of(10)))
+                .extracting(AttachmentMetadataDto::id)
+                .containsExactly(lookalike.getId(), pdf.getId(), image.getId(), legacy.getId());
+        assertThat(attachmentRepository.findCatalogByVisitIdBefore(first.getId(), "image/%", image.getCreated(), image.getId(), Limit.of(10)))
+                .isEmpty();
+    }
+
+    @Test
+    void findCatalogByPatientIdAndDoctorId_skipsOtherDoctorsVisits() {
+        Attachment own = attach(LocalDateTime.of(2025, 6, 1, 9, 0), "own.pdf");
+        Doctor other = otherDoctor();
+        attach(other, LocalDateTime.of(2025, 6, 2, 9, 0), "foreign.pdf", AttachmentStatus.READY);
+
+        assertThat(attachmentRepository.findCatalogByPatientIdAndDoctorId(patient.getId(), doctor.getId(), "%", Limit.of(10)))
+                .extracting(AttachmentMetadataDto::id)
+                .containsExactly(own.getId());
+        assertThat(attachmentRepository.findCatalogByPatientId(patient.getId(), "%", Limit.of(10))).hasSize(2);
+    }
+
+    @Test
+    void findCatalog_ordersByCreatedWhenIdsAreNotTimeOrdered() {
+        Attachment later = attach(LocalDateTime.of(2025, 6, 1, 9, 0), "later.pdf");
+        Attachment earlier = attachFile(later.getVisit(), "application/pdf");
+        // Как у вложений с UUID v4: больший id у более раннего вложения.
+        LocalDateTime laterCreated = LocalDateTime.of(2025, 6, 1, 12, 0);
+        setCreated(later, laterCreated);
+        setCreated(earlier, LocalDateTime.of(2025, 6, 1, 10, 0));
+
+        assertThat(attachmentRepository.findCatalogByVisitId(later.getVisit().getId(), "%", Limit.of(10)))
+                .extracting(AttachmentMetadataDto::id)
+                .containsExactly(later.getId(), earlier.getId());
+        assertThat(attachmentRepository.findCatalogByPatientIdBefore(patient.getId(), "%",
+                laterCreated, later.getId(), Limit.of(10)))
+                .extracting(AttachmentMetadataDto::id)
+                .containsExactly(earlier.getId());
+    }
+
+    private void setCreated(Attachment attachment, LocalDateTime created) {
+        entityManager.getEntityManager()
+                .createQuery("UPDATE Attachment a SET a.created = :created WHERE a.id = :id")
+                .setParameter("created", created)
+                .setParameter("id", attachment.getId())
+                .executeUpdate();
+        entityManager.clear();
+    }
+}
@@ -0,0 +1,152 @@
+package com.example.diplom.repositories;
+
+import com.example.diplom.controllers.RR.VisitDaySummaryResponse;
+import com.example.diplom.models.Doctor;
+import com.example.diplom.models.Patient;
+import com.example.diplom.models.Specialization;
+import com.example.diplom.models.Visit;
+import com.example.diplom.services.dtos.PatientVisitRowDto;
+import com.example.diplom.services.dtos.VisitParticipantsDto;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.Limit;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.*;
+
+@DataJpaTest
+class VisitRepositoryTest {
+
+    @Autowired VisitRepository visitRepository;
+    @Autowired DoctorRepository doctorRepository;
+    @Autowired PatientRepository patientRepository;
+    @Autowired SpecializationRepository specializationRepository;
+
+    private Doctor doctor;
+    private Patient patient;
+
+    @BeforeEach
+    void setUp() {
+        Specialization spec = specializationRepository.save(new Specialization("Therapy"));
+
+        doctor = new Doctor();
+        doctor.setEmail("doc@example.com");
+        doctor.setPassword("pass");
+        doctor.setPhone("1234567890");
+        doctor.setFullName("Dr. John Doe");
+        doctor.setSpecialization(spec);
+        doctor.setUniqueCode("1234567");
+        doctorRepository.save(doctor);
+
+        patient = new Patient();
+        patient.setPhone("0987654321");
+        patient.setFullName("Jane Roe");
+        patient.setBirthDate(LocalDate.of(1990, 1, 1));
+        patientRepository.save(patient);
+    }
+
+    private Visit visitAt(LocalDateTime date) {
+        return visitAt(date, false);
+    }
+
+    private Visit visitAt(LocalDateTime date, boolean finished) {
+        Visit visit = new Visit();
+        visit.setFinished(finished);
+        visit.setDoctor(doctor);
+        visit.setPatient(patient);
+        visit.setVisitDate(date);
+        visit.setTotalCost(BigDecimal.ZERO);
+        return visitRepository.save(visit);
+    }
+
+    @Test
+    void findByDoctorIdAndVisitDateRange_isHalfOpenAndOrdered() {
+        visitAt(LocalDateTime.of(2025, 1, 31, 23, 59, 59));
+        Visit late = visitAt(LocalDateTime.of(2025, 2, 28, 18, 0));
+        Visit first = visitAt(LocalDateTime.of(2025, 2, 1, 0, 0));
+        visitAt(LocalDateTime.of(2025, 3, 1, 0, 0));
+
+        List<Visit> february = visitRepository.findByDoctorIdAndVisitDateRange(
+                doctor.getId(),
+                LocalDateTime.of(2025, 2, 1, 0, 0),
+                LocalDateTime.of(2025, 3, 1, 0, 0));
+
+        assertThat(february)
+                .extracting(Visit::getId)
+                .containsExactly(first.getId(), late.getId());
+    }
+
+    @Test
+    void summarizeByDay_countsVisitsAndFinishedPerDay() {
+        visitAt(LocalDateTime.of(2025, 1, 31, 12, 0));
+        visitAt(LocalDateTime.of(2025, 2, 3, 9, 0), true);
+        visitAt(LocalDateTime.of(2025, 2, 3, 17, 30));
+        visitAt(LocalDateTime.of(2025, 2, 14, 10, 0));
+
+        List<VisitDaySummaryResponse> summary = visitRepository.summarizeByDay(
+                doctor.getId(),
+                LocalDateTime.of(2025, 2, 1, 0, 0),
+                LocalDateTime.of(2025, 3, 1, 0, 0));
+
+        assertThat(summary).containsExactly(
+                new VisitDaySummaryResponse(LocalDate.of(2025, 2, 3), 2L, 1L),
+                new VisitDaySummaryResponse(LocalDate.of(2025, 2, 14), 1L, 0L));
+    }
+
+    @Test
+    void findPatientVisitRows_pagesByKeysetWithoutGapsOrDuplicates() {
+        LocalDateTime sameTime = LocalDateTime.of(2025, 5, 5, 10, 0);
+        visitAt(sameTime);
+        visitAt(sameTime);
+        visitAt(sameTime);
+        visitAt(sameTime.minusDays(1));
+        visitAt(sameTime.plusDays(1));
+
+        List<PatientVisitRowDto> all = visitRepository.findPatientVisitRows(patient.getId(), Limit.unlimited());
+        List<PatientVisitRowDto> paged = new ArrayList<>(
+                visitRepository.findPatientVisitRows(patient.getId(), Limit.of(2)));
+        while (true) {
+            PatientVisitRowDto last = paged.get(paged.size() - 1);
+            List<PatientVisitRowDto> next = visitRepository.findPatientVisitRowsBefore(
+                    patient.getId(), last.visitDate(), last.visitId(), Limit.of(2));
+            if (next.isEmpty()) {
+                break;
+            }
+            paged.addAll(next);
+        }
+
+        assertThat(all).hasSize(5);
+        assertThat(all).extracting(PatientVisitRowDto::visitDate).isSortedAccordingTo(Comparator.reverseOrder());
+        assertThat(all).extracting(PatientVisitRowDto::doctorName).containsOnly("Dr. John Doe");
+        assertThat(paged).containsExactlyElementsOf(all);
+    }
+
+    @Test
+    void findParticipantsById_returnsPatientAndDoctor() {
+        Visit visit = visitAt(LocalDateTime.of(2025, 4, 1, 10, 0));
+
+        assertThat(visitRepository.findParticipantsById(visit.getId()))
+                .contains(new VisitParticipantsDto(patient.getId(), doctor.getId()));
+        assertThat(visitRepository.findParticipantsById(UUID.randomUUID())).isEmpty();
+    }
+
+    @Test
+    void save_assignsTimeOrderedV7Ids() {
+        Visit first = visitAt(LocalDateTime.of(2025, 6, 1, 9, 0));
+        Visit second = visitAt(LocalDateTime.of(2025, 6, 1, 8, 0));
+
+        assertThat(first.getId().version()).isEqualTo(7);
+        assertThat(doctor.getId().version()).isEqualTo(7);
+        assertThat(Long.compareUnsigned(first.getId().getMostSignificantBits(),
+                second.getId().getMostSignificantBits())).isNegative();
+    }
+}
@@ -0,0 +1,156 @@
+package com.example.diplom.schedule;
+
+import com.example.diplom.controllers.RR.CreateVisitRequest;
+import com.example.diplom.models.Doctor;
+import com.example.diplom.models.Patient;
+import com.example.diplom.models.Specialization;
+import com.example.diplom.models.Visit;
+import com.example.diplom.notif.NotificationMailService;
+import com.example.diplom.repositories.*;
+import com.example.diplom.services.AttachmentService;
+import com.example.diplom.services.implementations.DoctorServiceImpl;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.modelmapper.ModelMapper;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Параллельные попытки записи к одному врачу на одни и те же времена
+ * не должны приводить к пересекающимся визитам.
+ */
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class DoctorBookingConcurrencyTest {
+
+    private static final int ATTEMPTS = 2000;
+    private static final int THREADS = 16;
+
+    @Autowired DoctorRepository doctorRepository;
+    @Autowired PatientRepository patientRepository;
+    @Autowired VisitRepository visitRepository;
+    @Autowired ServiceRepository serviceRepository;
+    @Autowired SpecializationRepository specializationRepository;
+    @Autowired VisitServiceRepository visitServiceRepository;
+    @Autowired DoctorPatientRepository doctorPatientRepository;
+    @Autowired AttachmentRepository attachmentRepository;
+    @Autowired PlatformTransactionManager transactionManager;
+    @Autowired DataSource dataSource;
+    @Autowired EntityManager entityManager;
+
+    private DoctorServiceImpl doctorService;
+    private Specialization specialization;
+    private Doctor doctor;
+    private Patient patient;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        Map<String, AtomicLong> versions = new ConcurrentHashMap<>();
+        StringRedisTemplate stringRedisTemplate = mock(StringRedisTemplate.class);
+        ValueOperations<String, String> valueOperations = mock(ValueOperations.class);
+        when(stringRedisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.get(anyString())).thenAnswer(invocation ->
+                String.valueOf(versions.computeIfAbsent(invocation.getArgument(0), k -> new AtomicLong()).get()));
+        when(valueOperations.increment(anyString())).thenAnswer(invocation ->
+                versions.computeIfAbsent(invocation.getArgument(0), k -> new AtomicLong()).incrementAndGet());
+
+        doctorService = new DoctorServiceImpl(
+                doctorRepository, visitRepository, serviceRepository, specializationRepository,
+                patientRepository, visitServiceRepository, mock(PasswordEncoder.class), mock(ModelMapper.class),
+                mock(NotificationMailService.class), mock(AttachmentService.class), doctorPatientRepository,
+                attachmentRepository, mock(ApplicationEventPublisher.class),
+                new DoctorScheduleIndex(visitRepository, stringRedisTemplate),
+                new DoctorBookingLock(transactionManager, dataSource),
+                entityManager);
+
+        specialization = specializationRepository.save(new Specialization("Stress"));
+
+        doctor = new Doctor();
+        doctor.setEmail("stress-doc@example.com");
+        doctor.setPassword("pass");
+        doctor.setPhone("5550000001");
+        doctor.setFullName("Dr. Stress");
+        doctor.setSpecialization(specialization);
+        doctor.setUniqueCode("7654321");
+        doctor = doctorRepository.save(doctor);
+
+        patient = new Patient();
+        patient.setPhone("5550000002");
+        patient.setFullName("Stress Patient");
+        patient.setBirthDate(LocalDate.of(1990, 1, 1));
+        patient = patientRepository.save(patient);
+    }
+
+    @AfterEach
+    void tearDown() {
+        visitRepository.deleteAll(visitRepository.findByPatientId(patient.getId()));
+        patientRepository.deleteById(patient.getId());
+        doctorRepository.deleteById(doctor.getId());
+        specializationRepository.delete(specialization);
+    }
+
+    @Test
+    void parallelBookingsOnSameSlots_neverOverlap() throws Exception {
+        LocalDateTime base = LocalDateTime.of(2030, 6, 3, 10, 0);
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger booked = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (int i = 0; i < ATTEMPTS; i++) {
+            LocalDateTime slot = base.plusMinutes(5L * (i % 24));
+            futures.add(pool.submit(() -> {
+                start.await();
+                try {
+                    doctorService.createVisit(doctor.getId(),
+                            new CreateVisitRequest(patient.getId(), slot, "", false));
+                    booked.incrementAndGet();
+                } catch (RuntimeException expected) {
+                    // пересечение или предупреждение — запись отклонена
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+
+        List<LocalDateTime> dates = visitRepository.findByDoctorIdAndVisitDateRange(
+                        doctor.getId(), base.minusDays(1), base.plusDays(1)).stream()
+                .map(Visit::getVisitDate)
+                .toList();
+
+        assertThat(dates).hasSize(booked.get()).isNotEmpty();
+        for (int i = 1; i < dates.size(); i++) {
+            assertThat(Duration.between(dates.get(i - 1), dates.get(i)))
+                    .isGreaterThanOrEqualTo(Duration.ofMinutes(DoctorScheduleIndex.MIN_GAP_MINUTES));
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.diplom.schedule;
+
+import com.example.diplom.models.AppointmentCheckResult;
+import com.example.diplom.models.Visit;
+import com.example.diplom.repositories.VisitRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class DoctorScheduleIndexTest {
+
+    @Mock
+    private VisitRepository visitRepository;
+    @Mock
+    private StringRedisTemplate stringRedisTemplate;
+    @Mock
+    private ValueOperations<String, String> valueOperations;
+
+    @InjectMocks
+    private DoctorScheduleIndex index;
+
+    private final UUID doctorId = UUID.randomUUID();
+    private final LocalDateTime base = LocalDateTime.of(2025, 3, 10, 10, 0);
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(stringRedisTemplate.opsForValue()).thenReturn(valueOperations);
+    }
+
+    private Visit visit(LocalDateTime date) {
+        Visit v = new Visit();
+        v.setId(UUID.randomUUID());
+        v.setVisitDate(date);
+        v.setTotalCost(BigDecimal.ZERO);
+        return v;
+    }
+
+    @Test
+    void check_loadsMonthOnceAndClassifiesByGap() {
+        Visit existing = visit(base);
+        when(valueOperations.get(anyString())).thenReturn("3");
+        when(visitRepository.findByDoctorIdAndVisitDateRange(eq(doctorId), any(), any()))
+                .thenReturn(List.of(existing));
+
+        assertEquals(AppointmentCheckResult.ERROR, index.check(doctorId, base, null));
+        assertEquals(AppointmentCheckResult.WARNING, index.check(doctorId, base.plusMinutes(14), null));
+        assertEquals(AppointmentCheckResult.OK, index.check(doctorId, base.plusMinutes(15), null));
+        assertEquals(AppointmentCheckResult.OK, index.check(doctorId, base, existing.getId()));
+
+        verify(visitRepository, times(1)).findByDoctorIdAndVisitDateRange(eq(doctorId), any(), any());
+        verify(visitRepository, never()).findByDoctorIdAndVisitDateBetween(any(), any(), any());
+    }
+
+    @Test
+    void visitScheduled_updatesLocalIndexWithoutReload() {
+        when(valueOperations.get(anyString())).thenReturn("1", "2");
+        when(valueOperations.increment(anyString())).thenReturn(2L);
+        when(visitRepository.findByDoctorIdAndVisitDateRange(eq(doctorId), any(), any())).thenReturn(List.of());
+
+        assertEquals(AppointmentCheckResult.OK, index.check(doctorId, base, null));
+        index.visitScheduled(doctorId, UUID.randomUUID(), base.plusMinutes(5));
+
+        assertEquals(AppointmentCheckResult.WARNING, index.check(doctorId, base, null));
+        verify(visitRepository, times(1)).findByDoctorIdAndVisitDateRange(eq(doctorId), any(), any());
+    }
+
+    @Test
+    void check_reloadsWhenAnotherNodeChangedSchedule() {
+        when(valueOperations.get(anyString())).thenReturn("1", "2");
+        when(visitRepository.findByDoctorIdAndVisitDateRange(eq(doctorId), any(), any()))
+                .thenReturn(List.of(), List.of(visit(base)));
+
+        assertEquals(AppointmentCheckResult.OK, index.check(doctorId, base, null));
+        assertEquals(AppointmentCheckResult.ERROR, index.check(doctorId, base, null));
+    }
+
+    @Test
+    void visitStarts_returnsSortedStartsInHalfOpenRange() {
+        when(valueOperations.get(anyString())).thenReturn("1");
+        when(visitRepository.findByDoctorIdAndVisitDateRange(eq(doctorId), any(), any()))
+                .thenReturn(List.of(visit(base.plusHours(1)), visit(base), visit(base.plusHours(2))));
+
+        assertEquals(List.of(base, base.plusHours(1)),
+                index.visitStarts(doctorId, base, base.plusHours(2)));
+    }
+
+    @Test
+    void check_whenRedisUnavailable_fallsBackToDatabase() {
+        when(valueOperations.get(anyString())).thenThrow(new RedisConnectionFailureException("down"));
+        when(visitRepository.findByDoctorIdAndVisitDateBetween(doctorId, base.minusMinutes(15), base.plusMinutes(15)))
+                .thenReturn(List.of(visit(base.minusMinutes(10))));
+
+        assertEquals(AppointmentCheckResult.WARNING, index.check(doctorId, base, null));
+        verify(visitRepository, never()).findByDoctorIdAndVisitDateRange(any(), any(), any());
+    }
+}
@@ -2,34 +2,53 @@ package com.example.diplom.services;
 
 
 import com.example.diplom.controllers.RR.AddAttachmentRequest;
+import com.example.diplom.controllers.RR.AttachmentMetadataResponse;
+import com.example.diplom.controllers.RR.AttachmentPageResponse;
+import com.example.diplom.controllers.RR.AttachmentUploadResponse;
+import com.example.diplom.controllers.RR.StartAttachmentUploadRequest;
+import com.example.diplom.events.AttachmentAddedEvent;
 import com.example.diplom.exceptions.ResourceNotFoundException;
 import com.example.diplom.models.Attachment;
+import com.example.diplom.models.AttachmentStatus;
+import com.example.diplom.models.Doctor;
 import com.example.diplom.models.Patient;
 import com.example.diplom.models.Visit;
+import com.example.diplom.models.PK.DoctorPatientPK;
 import com.example.diplom.repositories.AttachmentRepository;
+import com.example.diplom.repositories.DoctorPatientRepository;
 import com.example.diplom.repositories.VisitRepository;
+import com.example.diplom.services.dtos.AttachmentAccessDto;
 import com.example.diplom.services.dtos.AttachmentDto;
+import com.example.diplom.services.dtos.AttachmentMetadataDto;
+import com.example.diplom.services.dtos.VisitParticipantsDto;
 import com.example.diplom.services.implementations.AttachmentServiceImpl;
-import io.minio.MinioClient;
-import io.minio.ObjectWriteResponse;
-import io.minio.PutObjectArgs;
-import io.minio.GetPresignedObjectUrlArgs;
+import com.example.diplom.storage.AttachmentStorage;
+import com.example.diplom.storage.StorageKeyLock;
+import com.example.diplom.utils.PresignedUrlSigner;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.modelmapper.ModelMapper;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
-import org.mockito.Mockito;
 import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.web.multipart.MultipartFile;
 
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.LocalDateTime;
 import java.util.*;
+import java.util.function.Supplier;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -42,11 +61,17 @@ class AttachmentServiceImplTest {
     @Mock
     private AttachmentRepository attachmentRepository;
     @Mock
+    private DoctorPatientRepository doctorPatientRepository;
+    @Mock
     private ModelMapper modelMapper;
     @Mock
-    private MinioClient minioClient;
+    private AttachmentStorage storage;
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
     @Mock
-    private RedisTemplate<String, Object> redisTemplate;
+    private PresignedUrlSigner presignedUrlSigner;
+    @Mock
+    private StorageKeyLock storageKeyLock;
 
 
     @InjectMocks
@@ -58,6 +83,15 @@ class AttachmentServiceImplTest {
     void setUp() {
         // Устанавливаем значение приватного поля bucketName
         ReflectionTestUtils.setField(service, "bucketName", bucket);
+        ReflectionTestUtils.setField(service, "maxUploadSize", 1024L);
+        lenient().when(storageKeyLock.withKeyLock(anyString(), any()))
+                .thenAnswer(inv -> inv.<Supplier<?>>getArgument(1).get());
+    }
+
+    private static byte[] png(int width, int height) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), "png", out);
+        return out.toByteArray();
     }
 
     @Test
@@ -75,8 +109,11 @@ class AttachmentServiceImplTest {
         UUID patientId = UUID.randomUUID();
         UUID visitId = UUID.randomUUID();
 
+        Doctor doctor = new Doctor();
+        doctor.setId(UUID.randomUUID());
         Visit visit = new Visit();
         visit.setId(visitId);
+        visit.setDoctor(doctor);
         visit.setAttachments(new HashSet<>());
 
         when(visitRepository.findByIdAndPatientId(visitId, patientId))
@@ -84,33 +121,145 @@ class AttachmentServiceImplTest {
 
         // Готовим запрос
         MultipartFile file = mock(MultipartFile.class);
+        byte[] png = png(640, 480);
+        when(file.getOriginalFilename()).thenReturn("scan.png");
+        when(file.getInputStream()).thenAnswer(inv -> new ByteArrayInputStream(png));
+        when(file.getSize()).thenReturn((long) png.length);
+        // Заявленный клиентом тип не используется — тип берётся по расширению.
+        lenient().when(file.getContentType()).thenReturn("text/html");
         AddAttachmentRequest req = new AddAttachmentRequest(visitId, file, "desc");
 
-        // Шпион на сервис, чтобы подменить storeFile
-        AttachmentServiceImpl spyService = Mockito.spy(service);
-        String fileName = "uuid_file.txt";
-        doReturn(fileName).when(spyService).storeFile(file);
-
         // Сохраняемый attachment
-        Attachment saved = new Attachment();
-        saved.setId(UUID.randomUUID());
-        saved.setVisit(visit);
-        saved.setFilePath(fileName);
-        saved.setDescription("desc");
-        when(attachmentRepository.save(any(Attachment.class))).thenReturn(saved);
+        UUID savedId = UUID.randomUUID();
+        when(attachmentRepository.save(any(Attachment.class))).thenAnswer(inv -> {
+            Attachment attachment = inv.getArgument(0);
+            attachment.setId(savedId);
+            return attachment;
+        });
 
         // Выполняем
-        AttachmentDto dto = spyService.addAttachment(patientId, req);
+        AttachmentDto dto = service.addAttachment(patientId, req);
 
         // Проверки
-        assertEquals(saved.getId(), dto.getId());
+        assertEquals(savedId, dto.getId());
         assertEquals(visitId, dto.getVisitId());
-        assertEquals(fileName, dto.getFilePath());
+        assertTrue(dto.getFilePath().endsWith(".png"));
         assertEquals("desc", dto.getDescription());
 
+        // Метаданные для каталога записаны при загрузке
+        Attachment saved = visit.getAttachments().iterator().next();
+        assertEquals("scan.png", saved.getOriginalName());
+        assertEquals(png.length, saved.getSizeBytes());
+        assertEquals("image/png", saved.getContentType());
+        verify(storage).put(eq(dto.getFilePath()), any(), eq((long) png.length), eq("image/png"));
+        assertEquals(dto.getFilePath(), saved.getChecksum() + ".png");
+        assertEquals(640, saved.getImageWidth());
+        assertEquals(480, saved.getImageHeight());
+        assertNotNull(saved.getUploadedAt());
+
         // Должен быть добавлен в набор визита
         assertTrue(visit.getAttachments().contains(saved));
         verify(visitRepository).save(visit);
+        // Загрузка и вставка строки — под блокировкой ключа объекта
+        verify(storageKeyLock).withKeyLock(eq(dto.getFilePath()), any());
+        verify(eventPublisher).publishEvent(
+                new AttachmentAddedEvent(doctor.getId(), patientId, visitId, saved.getId()));
+    }
+
+    @Test
+    void startUpload_createsPendingAttachmentAndSignsPut() throws Exception {
+        UUID patientId = UUID.randomUUID();
+        UUID visitId = UUID.randomUUID();
+        Visit visit = new Visit();
+        visit.setId(visitId);
+        when(visitRepository.findByIdAndPatientId(visitId, patientId)).thenReturn(Optional.of(visit));
+        when(attachmentRepository.save(any(Attachment.class))).thenAnswer(inv -> {
+            Attachment a = inv.getArgument(0);
+            a.setId(UUID.randomUUID());
+            return a;
+        });
+        when(presignedUrlSigner.signUpload(anyString())).thenReturn("put-url");
+
+        AttachmentUploadResponse response = service.startUpload(patientId,
+                new StartAttachmentUploadRequest(visitId, "../scan.pdf", "desc"));
+
+        assertEquals("put-url", response.uploadUrl());
+        assertNotNull(response.attachmentId());
+        verify(attachmentRepository).save(argThat(a -> a.getStatus() == AttachmentStatus.PENDING
+                && a.getFilePath().endsWith("_.._scan.pdf") && a.getVisit() == visit));
+        verifyNoInteractions(eventPublisher);
+        verify(storage, never()).put(anyString(), any(), anyLong(), any());
+    }
+
+    private Attachment pendingAttachment(UUID patientId, Doctor doctor) {
+        Patient patient = new Patient();
+        patient.setId(patientId);
+        Visit visit = new Visit();
+        visit.setId(UUID.randomUUID());
+        visit.setPatient(patient);
+        visit.setDoctor(doctor);
+        visit.setAttachments(new HashSet<>());
+        Attachment attachment = new Attachment();
+        attachment.setId(UUID.randomUUID());
+        attachment.setVisit(visit);
+        attachment.setFilePath("key_scan.pdf");
+        attachment.setStatus(AttachmentStatus.PENDING);
+        visit.getAttachments().add(attachment);
+        return attachment;
+    }
+
+    @Test
+    void completeUpload_marksReadyAndPublishesEvent() throws Exception {
+        UUID patientId = UUID.randomUUID();
+        Doctor doctor = new Doctor();
+        doctor.setId(UUID.randomUUID());
+        Attachment attachment = pendingAttachment(patientId, doctor);
+        when(attachmentRepository.findById(attachment.getId())).thenReturn(Optional.of(attachment));
+        when(storage.size("key_scan.pdf")).thenReturn(OptionalLong.of(512L));
+        when(attachmentRepository.save(attachment)).thenReturn(attachment);
+
+        AttachmentDto dto = service.completeUpload(patientId, attachment.getId());
+
+        assertEquals(attachment.getId(), dto.getId());
+        assertEquals(AttachmentStatus.READY, attachment.getStatus());
+        assertEquals(512L, attachment.getSizeBytes());
+        assertNotNull(attachment.getUploadedAt());
+        verify(eventPublisher).publishEvent(new AttachmentAddedEvent(
+                doctor.getId(), patientId, attachment.getVisit().getId(), attachment.getId()));
+    }
+
+    @Test
+    void completeUpload_whenObjectMissing_thenNotFound() throws Exception {
+        UUID patientId = UUID.randomUUID();
+        Attachment attachment = pendingAttachment(patientId, new Doctor());
+        when(attachmentRepository.findById(attachment.getId())).thenReturn(Optional.of(attachment));
+        when(storage.size("key_scan.pdf")).thenReturn(OptionalLong.empty());
+
+        assertThrows(ResourceNotFoundException.class, () -> service.completeUpload(patientId, attachment.getId()));
+        assertEquals(AttachmentStatus.PENDING, attachment.getStatus());
+        verifyNoInteractions(eventPublisher);
+    }
+
+    @Test
+    void completeUpload_whenTooLarge_thenRemovesObjectAndRecord() throws Exception {
+        UUID patientId = UUID.randomUUID();
+        Attachment attachment = pendingAttachment(patientId, new Doctor());
+        when(attachmentRepository.findById(attachment.getId())).thenReturn(Optional.of(attachment));
+        when(storage.size("key_scan.pdf")).thenReturn(OptionalLong.of(4096L));
+
+        assertThrows(IllegalArgumentException.class, () -> service.completeUpload(patientId, attachment.getId()));
+        verify(storage).delete("key_scan.pdf");
+        verify(attachmentRepository).delete(attachment);
+        verifyNoInteractions(eventPublisher);
+    }
+
+    @Test
+    void completeUpload_whenOtherPatient_thenDenied() {
+        Attachment attachment = pendingAttachment(UUID.randomUUID(), new Doctor());
+        when(attachmentRepository.findById(attachment.getId())).thenReturn(Optional.of(attachment));
+
+        assertThrows(AccessDeniedException.class,
+                () -> service.completeUpload(UUID.randomUUID(), attachment.getId()));
     }
 
     @Test
@@ -127,45 +276,175 @@ class AttachmentServiceImplTest {
         MultipartFile file = mock(MultipartFile.class);
         when(file.getOriginalFilename()).thenReturn("file.txt");
         byte[] data = "data".getBytes();
-        when(file.getInputStream()).thenReturn(new ByteArrayInputStream(data));
+        when(file.getInputStream()).thenAnswer(inv -> new ByteArrayInputStream(data));
         when(file.getSize()).thenReturn((long) data.length);
-        when(file.getContentType()).thenReturn("text/plain");
 
-        ObjectWriteResponse resp = mock(ObjectWriteResponse.class);
-        when(minioClient.putObject(any(PutObjectArgs.class))).thenReturn(resp);
+        when(storage.size(anyString())).thenReturn(OptionalLong.empty());
 
         String result = service.storeFile(file);
 
-        assertNotNull(result);
-        assertTrue(result.endsWith("_file.txt"));
-        // Проверяем, что префикс — валидный UUID
-        String prefix = result.substring(0, result.length() - "_file.txt".length());
-        assertDoesNotThrow(() -> UUID.fromString(prefix));
+        // SHA-256 от "data" и расширение исходного файла
+        assertEquals("3a6eb0790f39ac87c94f3856b2dd2c5d110e6811602261a9a923d3bb23adc8b7.txt", result);
+        verify(storage).put(eq(result), any(), eq((long) data.length), eq("text/plain"));
     }
 
     @Test
-    void getPresignedUrlForAttachment_whenNotFound_thenThrow() {
+    void storeFile_whenSameContentStored_thenSkipsUpload() throws Exception {
+        MultipartFile file = mock(MultipartFile.class);
+        when(file.getOriginalFilename()).thenReturn("Blood Test.PDF");
+        when(file.getInputStream()).thenAnswer(inv -> new ByteArrayInputStream("data".getBytes()));
+        when(storage.size(anyString())).thenReturn(OptionalLong.of(4));
+
+        String result = service.storeFile(file);
+
+        assertEquals("3a6eb0790f39ac87c94f3856b2dd2c5d110e6811602261a9a923d3bb23adc8b7.pdf", result);
+        verify(storage, never()).put(anyString(), any(), anyLong(), any());
+    }
+
+    @Test
+    void getPresignedUrlForUser_ownerOrVisitDoctorGetsSignedUrl() throws Exception {
         UUID attId = UUID.randomUUID();
-        when(attachmentRepository.findById(attId)).thenReturn(Optional.empty());
+        UUID patientId = UUID.randomUUID();
+        UUID visitDoctorId = UUID.randomUUID();
+        when(attachmentRepository.findAccessById(attId))
+                .thenReturn(Optional.of(new AttachmentAccessDto("path", patientId, visitDoctorId)));
+        when(presignedUrlSigner.sign("path")).thenReturn("url");
+
+        assertEquals("url", service.getPresignedUrlForUser(attId, patientId));
+        assertEquals("url", service.getPresignedUrlForUser(attId, visitDoctorId));
+    }
+
+    @Test
+    void getPresignedUrlForUser_whenLinkedDoctorOfAnotherVisit_thenDenied() {
+        UUID attId = UUID.randomUUID();
+        UUID patientId = UUID.randomUUID();
+        UUID linkedDoctorId = UUID.randomUUID();
+        when(attachmentRepository.findAccessById(attId))
+                .thenReturn(Optional.of(new AttachmentAccessDto("path", patientId, UUID.randomUUID())));
+
+        assertThrows(AccessDeniedException.class, () -> service.getPresignedUrlForUser(attId, linkedDoctorId));
+        verifyNoInteractions(doctorPatientRepository, presignedUrlSigner);
+    }
+
+    @Test
+    void getPresignedUrlForUser_whenStranger_thenDenied() throws Exception {
+        UUID attId = UUID.randomUUID();
+        UUID patientId = UUID.randomUUID();
+        UUID strangerId = UUID.randomUUID();
+        when(attachmentRepository.findAccessById(attId))
+                .thenReturn(Optional.of(new AttachmentAccessDto("path", patientId, UUID.randomUUID())));
+
+        assertThrows(AccessDeniedException.class, () -> service.getPresignedUrlForUser(attId, strangerId));
+        verifyNoInteractions(presignedUrlSigner);
+    }
+
+    @Test
+    void getPreviewUrlForUser_signsPreviewOrReportsMissing() throws Exception {
+        UUID withPreview = UUID.randomUUID();
+        UUID withoutPreview = UUID.randomUUID();
+        UUID patientId = UUID.randomUUID();
+        when(attachmentRepository.findAccessById(withPreview)).thenReturn(Optional.of(
+                new AttachmentAccessDto("path", patientId, UUID.randomUUID(), "path.preview.jpg")));
+        when(attachmentRepository.findAccessById(withoutPreview))
+                .thenReturn(Optional.of(new AttachmentAccessDto("path", patientId, UUID.randomUUID())));
+        when(presignedUrlSigner.sign("path.preview.jpg")).thenReturn("preview-url");
+
+        assertEquals("preview-url", service.getPreviewUrlForUser(withPreview, patientId));
+        assertThrows(ResourceNotFoundException.class, () -> service.getPreviewUrlForUser(withoutPreview, patientId));
+    }
+
+    private static final LocalDateTime CREATED = LocalDateTime.of(2025, 5, 1, 9, 0);
+
+    private static AttachmentMetadataDto catalogRow(UUID id, String previewPath) {
+        return new AttachmentMetadataDto(id, UUID.randomUUID(), "scan.png", "desc", "image/png", 10L, "abc",
+                CREATED, 640, 480, previewPath, CREATED);
+    }
+
+    @Test
+    void getPatientAttachments_returnsPageWithCursorFromDatabaseOnly() {
+        UUID patientId = UUID.randomUUID();
+        UUID newest = UUID.randomUUID();
+        UUID middle = UUID.randomUUID();
+        when(attachmentRepository.findCatalogByPatientId(patientId, "image/%", Limit.of(3)))
+                .thenReturn(List.of(catalogRow(newest, "key.preview.jpg"), catalogRow(middle, null),
+                        catalogRow(UUID.randomUUID(), null)));
+
+        AttachmentPageResponse page = service.getPatientAttachments(patientId, patientId, " Image/", null, null, 2);
+
+        assertEquals(List.of(newest, middle), page.attachments().stream().map(AttachmentMetadataResponse::id).toList());
+        assertEquals(CREATED, page.nextCreated());
+        assertEquals(middle, page.nextId());
+        assertEquals(AttachmentService.linkFor(newest), page.attachments().get(0).url());
+        assertEquals(AttachmentService.previewLinkFor(newest), page.attachments().get(0).previewUrl());
+        assertNull(page.attachments().get(1).previewUrl());
+        assertEquals(640, page.attachments().get(0).width());
+        verifyNoInteractions(storage, presignedUrlSigner);
+    }
+
+    @Test
+    void getPatientAttachments_nextPageEscapesFilterAndEndsCursor() {
+        UUID patientId = UUID.randomUUID();
+        UUID linkedDoctorId = UUID.randomUUID();
+        UUID beforeId = UUID.randomUUID();
+        when(doctorPatientRepository.existsById(new DoctorPatientPK(linkedDoctorId, patientId))).thenReturn(true);
+        when(attachmentRepository.findCatalogByPatientIdAndDoctorIdBefore(patientId, linkedDoctorId, "x!_y!%%", CREATED, beforeId,
+                Limit.of(21)))
+                .thenReturn(List.of(catalogRow(UUID.randomUUID(), null)));
+
+        AttachmentPageResponse page = service.getPatientAttachments(linkedDoctorId, patientId, "x_y%", CREATED, beforeId, 20);
+
+        assertEquals(1, page.attachments().size());
+        assertNull(page.nextCreated());
+        assertNull(page.nextId());
+        verify(attachmentRepository, never()).findCatalogByPatientIdBefore(any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void getPatientAttachments_whenStrangerOrBadPage_thenRejected() {
+        UUID patientId = UUID.randomUUID();
+
+        assertThrows(AccessDeniedException.class,
+                () -> service.getPatientAttachments(UUID.randomUUID(), patientId, null, null, null, 20));
+        assertThrows(IllegalArgumentException.class,
+                () -> service.getPatientAttachments(patientId, patientId, null, null, null, 101));
+        assertThrows(IllegalArgumentException.class,
+                () -> service.getPatientAttachments(patientId, patientId, null, null, UUID.randomUUID(), 20));
+        verify(attachmentRepository, never()).findCatalogByPatientId(any(), any(), any());
+    }
+
+    @Test
+    void getVisitAttachments_allowsVisitDoctorAndChecksVisit() {
+        UUID visitId = UUID.randomUUID();
+        UUID doctorId = UUID.randomUUID();
+        when(visitRepository.findParticipantsById(visitId))
+                .thenReturn(Optional.of(new VisitParticipantsDto(UUID.randomUUID(), doctorId)));
+        when(attachmentRepository.findCatalogByVisitId(visitId, "%", Limit.of(21)))
+                .thenReturn(List.of(catalogRow(UUID.randomUUID(), null)));
 
+        assertEquals(1, service.getVisitAttachments(doctorId, visitId, null, null, null, 20).attachments().size());
         assertThrows(ResourceNotFoundException.class,
-                () -> service.getPresignedUrlForAttachment(attId));
+                () -> service.getVisitAttachments(doctorId, UUID.randomUUID(), null, null, null, 20));
     }
 
     @Test
-    void getPresignedUrlForAttachment_success() throws Exception {
+    void deleteAttachmentByUrl_acceptsAttachmentLink() throws Exception {
+        UUID patientId = UUID.randomUUID();
         UUID attId = UUID.randomUUID();
+        Patient patient = new Patient();
+        patient.setId(patientId);
+        Visit visit = new Visit();
+        visit.setPatient(patient);
         Attachment attachment = new Attachment();
-        attachment.setId(attId);
-        attachment.setFilePath("path");
-
+        attachment.setVisit(visit);
+        attachment.setFilePath("file.txt");
+        visit.setAttachments(new HashSet<>(Set.of(attachment)));
         when(attachmentRepository.findById(attId)).thenReturn(Optional.of(attachment));
-        when(minioClient.getPresignedObjectUrl(any(GetPresignedObjectUrlArgs.class)))
-                .thenReturn("url");
 
-        String url = service.getPresignedUrlForAttachment(attId);
+        service.deleteAttachmentByUrl(patientId, AttachmentService.linkFor(attId));
 
-        assertEquals("url", url);
+        verify(storage).delete(anyString());
+        verify(presignedUrlSigner).evict("file.txt");
+        verify(attachmentRepository).delete(attachment);
     }
 
     @Test
@@ -183,7 +462,7 @@ class AttachmentServiceImplTest {
         String url = "http://host/" + bucket + "/file.txt";
 
         when(attachmentRepository.findByFilePath("file.txt"))
-                .thenReturn(Optional.empty());
+                .thenReturn(List.of());
 
         assertThrows(ResourceNotFoundException.class,
                 () -> service.deleteAttachmentByUrl(patientId, url));
@@ -202,7 +481,7 @@ class AttachmentServiceImplTest {
         attachment.setVisit(visit);
 
         when(attachmentRepository.findByFilePath("file.txt"))
-                .thenReturn(Optional.of(attachment));
+                .thenReturn(List.of(attachment));
 
         assertThrows(AccessDeniedException.class,
                 () -> service.deleteAttachmentByUrl(patientId, url));
@@ -225,11 +504,12 @@ class AttachmentServiceImplTest {
         visit.setAttachments(set);
 
         when(attachmentRepository.findByFilePath("file.txt"))
-                .thenReturn(Optional.of(attachment));
+                .thenReturn(List.of(attachment));
 
         service.deleteAttachmentByUrl(patientId, url);
 
-        verify(minioClient).removeObject(any());
+        verify(storage).delete(anyString());
+        verify(presignedUrlSigner).evict("file.txt");
         verify(attachmentRepository).delete(attachment);
         assertFalse(visit.getAttachments().contains(attachment));
     }
@@ -253,17 +533,60 @@ class AttachmentServiceImplTest {
         visit.setAttachments(attachments);
         attachment.setVisit(visit);
         attachment.setFilePath("fileKey");
+        attachment.setPreviewPath("fileKey.preview.jpg");
 
         when(attachmentRepository.findById(attId))
                 .thenReturn(Optional.of(attachment));
 
         service.deleteAttachmentById(attId);
 
-        verify(minioClient).removeObject(any());
+        verify(storage).delete("fileKey");
+        verify(storage).delete("fileKey.preview.jpg");
+        verify(presignedUrlSigner).evict("fileKey.preview.jpg");
         verify(attachmentRepository).delete(attachment);
         assertFalse(visit.getAttachments().contains(attachment));
     }
 
+    @Test
+    void deleteAttachmentById_whenObjectShared_thenKeepsFiles() throws Exception {
+        UUID attId = UUID.randomUUID();
+        Attachment attachment = new Attachment();
+        attachment.setId(attId);
+        attachment.setFilePath("hash.pdf");
+        attachment.setPreviewPath("hash.pdf.preview.jpg");
+        when(attachmentRepository.findById(attId)).thenReturn(Optional.of(attachment));
+        when(attachmentRepository.existsByFilePath("hash.pdf")).thenReturn(true);
+
+        service.deleteAttachmentById(attId);
+
+        verifyNoInteractions(storage, presignedUrlSigner);
+        verify(attachmentRepository).delete(attachment);
+    }
+
+    @Test
+    void deleteAttachmentById_inTransaction_removesFilesAfterCommit() throws Exception {
+        UUID attId = UUID.randomUUID();
+        Attachment attachment = new Attachment();
+        attachment.setId(attId);
+        attachment.setFilePath("hash.pdf");
+        when(attachmentRepository.findById(attId)).thenReturn(Optional.of(attachment));
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            service.deleteAttachmentById(attId);
+
+            verify(attachmentRepository).delete(attachment);
+            verifyNoInteractions(storage, storageKeyLock);
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        verify(storageKeyLock).withKeyLock(eq("hash.pdf"), any());
+        verify(storage).delete("hash.pdf");
+    }
+
     @Test
     void deleteAllAttachmentsByPatientId_success() throws Exception {
         UUID patientId = UUID.randomUUID();
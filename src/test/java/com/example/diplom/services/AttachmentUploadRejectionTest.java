@@ -0,0 +1,114 @@
+package com.example.diplom.services;
+
+import com.example.diplom.models.Attachment;
+import com.example.diplom.models.AttachmentStatus;
+import com.example.diplom.models.Doctor;
+import com.example.diplom.models.Patient;
+import com.example.diplom.models.Specialization;
+import com.example.diplom.models.Visit;
+import com.example.diplom.repositories.AttachmentRepository;
+import com.example.diplom.repositories.DoctorRepository;
+import com.example.diplom.repositories.PatientRepository;
+import com.example.diplom.repositories.SpecializationRepository;
+import com.example.diplom.repositories.VisitRepository;
+import com.example.diplom.services.implementations.AttachmentServiceImpl;
+import com.example.diplom.storage.AttachmentStorage;
+import com.example.diplom.storage.StorageKeyLock;
+import com.example.diplom.utils.PresignedUrlSigner;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.modelmapper.ModelMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.OptionalLong;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Отклонение слишком большого файла при подтверждении загрузки должно удалять
+ * PENDING-запись из БД, а не откатываться вместе с транзакцией сервиса.
+ */
+@DataJpaTest(properties = "minio.upload.max-size=1024")
+@Import(AttachmentServiceImpl.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class AttachmentUploadRejectionTest {
+
+    @Autowired AttachmentService attachmentService;
+    @Autowired AttachmentRepository attachmentRepository;
+    @Autowired VisitRepository visitRepository;
+    @Autowired DoctorRepository doctorRepository;
+    @Autowired PatientRepository patientRepository;
+    @Autowired SpecializationRepository specializationRepository;
+
+    @MockBean AttachmentStorage storage;
+    @MockBean ModelMapper modelMapper;
+    @MockBean PresignedUrlSigner presignedUrlSigner;
+    @MockBean StorageKeyLock storageKeyLock;
+
+    private Specialization specialization;
+    private Doctor doctor;
+    private Patient patient;
+    private Visit visit;
+
+    @BeforeEach
+    void setUp() {
+        specialization = specializationRepository.save(new Specialization("Reject"));
+
+        doctor = new Doctor();
+        doctor.setEmail("reject-doc@example.com");
+        doctor.setPassword("pass");
+        doctor.setPhone("5554440001");
+        doctor.setFullName("Dr. Reject");
+        doctor.setSpecialization(specialization);
+        doctor.setUniqueCode("4445556");
+        doctor = doctorRepository.save(doctor);
+
+        patient = new Patient();
+        patient.setPhone("5554440002");
+        patient.setFullName("Reject Patient");
+        patient.setBirthDate(LocalDate.of(1992, 2, 2));
+        patient = patientRepository.save(patient);
+
+        visit = new Visit();
+        visit.setDoctor(doctor);
+        visit.setPatient(patient);
+        visit.setVisitDate(LocalDateTime.of(2025, 6, 1, 10, 0));
+        visit.setTotalCost(BigDecimal.ZERO);
+        visit = visitRepository.save(visit);
+    }
+
+    @AfterEach
+    void tearDown() {
+        visitRepository.deleteById(visit.getId());
+        patientRepository.deleteById(patient.getId());
+        doctorRepository.deleteById(doctor.getId());
+        specializationRepository.delete(specialization);
+    }
+
+    @Test
+    void completeUpload_whenTooLarge_thenRecordDeletionIsCommitted() throws Exception {
+        Attachment attachment = new Attachment();
+        attachment.setVisit(visit);
+        attachment.setFilePath("key_big.pdf");
+        attachment.setStatus(AttachmentStatus.PENDING);
+        attachment = attachmentRepository.save(attachment);
+        when(storage.size("key_big.pdf")).thenReturn(OptionalLong.of(4096L));
+
+        Attachment pending = attachment;
+        assertThatThrownBy(() -> attachmentService.completeUpload(patient.getId(), pending.getId()))
+                .isInstanceOf(IllegalArgumentException.class);
+
+        verify(storage).delete("key_big.pdf");
+        assertThat(attachmentRepository.findById(pending.getId())).isEmpty();
+    }
+}
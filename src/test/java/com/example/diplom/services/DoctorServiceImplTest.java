@@ -2,20 +2,27 @@
 package com.example.diplom.services;
 
 import com.example.diplom.controllers.RR.*;
+import com.example.diplom.events.VisitFinishedEvent;
 import com.example.diplom.exceptions.*;
 import com.example.diplom.models.*;
 import com.example.diplom.notif.NotificationMailService;
 import com.example.diplom.repositories.*;
+import com.example.diplom.schedule.DoctorBookingLock;
+import com.example.diplom.schedule.DoctorScheduleIndex;
+import com.example.diplom.services.dtos.AttachmentDto;
 import com.example.diplom.services.dtos.VisitDto;
+import com.example.diplom.services.dtos.VisitServiceLineDto;
 import com.example.diplom.services.implementations.DoctorServiceImpl;
+import jakarta.persistence.EntityManager;
 import org.junit.jupiter.api.*;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.*;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.mockito.junit.jupiter.MockitoSettings;
 import org.mockito.quality.Strictness;
+import org.hibernate.Session;
 import org.modelmapper.ModelMapper;
-import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import com.example.diplom.services.dtos.DoctorRegistrationDto;
 
@@ -23,6 +30,7 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.time.LocalDate;
 import java.util.*;
+import java.util.function.Supplier;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -54,9 +62,17 @@ class DoctorServiceImplTest {
     private AttachmentService attachmentService;
     @Mock
     private DoctorPatientRepository doctorPatientRepository;
+    @Mock
+    private AttachmentRepository attachmentRepository;
 
     @Mock
-    private RedisTemplate<String, Object> redisTemplate;
+    private ApplicationEventPublisher eventPublisher;
+    @Mock
+    private DoctorScheduleIndex scheduleIndex;
+    @Mock
+    private DoctorBookingLock bookingLock;
+    @Mock
+    private EntityManager entityManager;
 
     @InjectMocks
     private DoctorServiceImpl service;
@@ -70,6 +86,9 @@ class DoctorServiceImplTest {
         doctor = new Doctor();
         doctor.setId(doctorId);
         lenient().when(doctorRepository.findById(doctorId)).thenReturn(Optional.of(doctor));
+        lenient().when(bookingLock.withDoctorLock(any(), any()))
+                .thenAnswer(invocation -> invocation.<Supplier<?>>getArgument(1).get());
+        lenient().when(entityManager.unwrap(Session.class)).thenReturn(mock(Session.class));
     }
 
 
@@ -114,7 +133,8 @@ class DoctorServiceImplTest {
         v.setTotalCost(BigDecimal.valueOf(123));
         v.setNotes("note");
         List<Visit> visits = List.of(v);
-        when(visitRepository.findByDoctorIdAndMonthYear(doctorId, 1, 2025))
+        when(visitRepository.findByDoctorIdAndVisitDateRange(doctorId,
+                LocalDateTime.of(2025, 1, 1, 0, 0), LocalDateTime.of(2025, 2, 1, 0, 0)))
                 .thenReturn(visits);
         VisitDto dto = new VisitDto();
         when(modelMapper.map(v, VisitDto.class)).thenReturn(dto);
@@ -141,7 +161,8 @@ class DoctorServiceImplTest {
         v.setTotalCost(BigDecimal.valueOf(50));
         v.setNotes("dayNote");
         List<Visit> visits = List.of(v);
-        when(visitRepository.findByDoctorIdAndDate(doctorId, "2025-01-01"))
+        when(visitRepository.findByDoctorIdAndVisitDateRange(doctorId,
+                LocalDateTime.of(2025, 1, 1, 0, 0), LocalDateTime.of(2025, 1, 2, 0, 0)))
                 .thenReturn(visits);
         VisitDto dto = new VisitDto();
         when(modelMapper.map(v, VisitDto.class)).thenReturn(dto);
@@ -153,6 +174,30 @@ class DoctorServiceImplTest {
         assertEquals("dayNote", dto.getNotes());
     }
 
+    @Test
+    void getDoctorVisits_whenMonthOrDateInvalid_thenEmpty() {
+        when(doctorRepository.existsById(doctorId)).thenReturn(true);
+
+        assertTrue(service.getDoctorVisitDates(doctorId, 13, 2025).isEmpty());
+        assertTrue(service.getDoctorVisitSummary(doctorId, 0, 2025).isEmpty());
+        assertTrue(service.getDoctorVisitDatesByDay(doctorId, "2025-02-30").isEmpty());
+        assertTrue(service.getDoctorVisitDatesByDay(doctorId, "not-a-date").isEmpty());
+        verifyNoInteractions(visitRepository);
+    }
+
+    @Test
+    void getDoctorVisitSummary_queriesWholeMonthAggregate() {
+        List<VisitDaySummaryResponse> summary =
+                List.of(new VisitDaySummaryResponse(LocalDate.of(2025, 2, 3), 2L, 1L));
+        when(doctorRepository.existsById(doctorId)).thenReturn(true);
+        when(visitRepository.summarizeByDay(doctorId,
+                LocalDateTime.of(2025, 2, 1, 0, 0), LocalDateTime.of(2025, 3, 1, 0, 0)))
+                .thenReturn(summary);
+
+        assertSame(summary, service.getDoctorVisitSummary(doctorId, 2, 2025));
+        verify(visitRepository, never()).findByDoctorIdAndVisitDateRange(any(), any(), any());
+    }
+
     @Test
     void createServiceForDoctor_whenNameExists_thenThrow() {
         when(serviceRepository.findByDoctorIdAndName(doctorId, "X-ray"))
@@ -263,23 +308,52 @@ class DoctorServiceImplTest {
         v.setFinished(false);
         v.setNotes("old");
         v.setDoctor(doctor);
+        v.setPatient(new Patient());
         v.setTotalCost(BigDecimal.ZERO);
         when(visitRepository.findById(vid)).thenReturn(Optional.of(v));
-        List<ServiceUpdateRequest> updates = List.of(new ServiceUpdateRequest("Svc", 2));
+        List<ServiceUpdateRequest> updates = List.of(
+                new ServiceUpdateRequest("Svc", 2), new ServiceUpdateRequest("Old", 1));
         com.example.diplom.models.Service msvc = new com.example.diplom.models.Service();
+        msvc.setId(UUID.randomUUID());
+        msvc.setName("Svc");
         msvc.setPrice(BigDecimal.valueOf(50));
-        when(serviceRepository.findByDoctorIdAndName(doctorId, "Svc")).thenReturn(Optional.of(msvc));
-        VisitService vs = new VisitService();
-        vs.setService(msvc);
-        vs.setQuantity(2);
-        when(visitServiceRepository.findByVisit(v)).thenReturn(Collections.emptyList(), List.of(vs));
+        com.example.diplom.models.Service old = new com.example.diplom.models.Service();
+        old.setId(UUID.randomUUID());
+        old.setName("Old");
+        old.setPrice(BigDecimal.valueOf(30));
+        when(serviceRepository.findByDoctorIdAndNameIn(eq(doctorId), any()))
+                .thenReturn(List.of(msvc, old));
+        VisitService existing = new VisitService(v, old, 4);
+        when(visitServiceRepository.findWithServiceByVisitId(vid)).thenReturn(List.of(existing));
 
         service.finishVisit(doctorId, new FinishVisitRequest(vid, updates, "new"));
 
         assertTrue(v.isFinished());
         assertEquals("new", v.getNotes());
-        assertEquals(BigDecimal.valueOf(100), v.getTotalCost());
+        assertEquals(1, existing.getQuantity());
+        assertEquals(BigDecimal.valueOf(30), existing.getUnitPrice());
+        assertEquals(BigDecimal.valueOf(30), existing.getLineTotal());
+        assertEquals(BigDecimal.valueOf(130), v.getTotalCost());
+        verify(entityManager).persist(argThat(line -> line instanceof VisitService vs
+                && vs.getServiceId().equals(msvc.getId()) && vs.getQuantity() == 2));
+        verify(visitServiceRepository, never()).save(any());
+        verify(visitServiceRepository, never()).findByVisit(any());
+        verify(serviceRepository, never()).findByDoctorIdAndName(any(), any());
         verify(visitRepository).save(v);
+        verify(eventPublisher).publishEvent(any(VisitFinishedEvent.class));
+    }
+
+    @Test
+    void finishVisit_whenServiceUnknown_thenThrow() {
+        Visit v = new Visit();
+        v.setId(UUID.randomUUID());
+        v.setDoctor(doctor);
+        when(visitRepository.findById(v.getId())).thenReturn(Optional.of(v));
+        when(serviceRepository.findByDoctorIdAndNameIn(eq(doctorId), any())).thenReturn(List.of());
+
+        assertThrows(ResourceNotFoundException.class, () -> service.finishVisit(doctorId,
+                new FinishVisitRequest(v.getId(), List.of(new ServiceUpdateRequest("Nope", 1)), "")));
+        verify(visitRepository, never()).save(any());
     }
 
     @Test
@@ -302,7 +376,6 @@ class DoctorServiceImplTest {
         vs.setService(s1);
         vs.setQuantity(3);
         when(visitServiceRepository.findByVisit(v)).thenReturn(List.of(vs));
-        when(attachmentService.getPresignedUrlForAttachment(any())).thenReturn("url");
 
         VisitDetailsResponse res = service.getFinishVisitData(doctorId, new VisitIdRequest(vid));
 
@@ -314,7 +387,7 @@ class DoctorServiceImplTest {
     @Test
     void createVisit_andOverlapLogic() {
         LocalDateTime now = LocalDateTime.now();
-        when(visitRepository.findByDoctorIdAndVisitDateBetween(eq(doctorId), any(), any())).thenReturn(Collections.emptyList());
+        when(scheduleIndex.check(doctorId, now, null)).thenReturn(AppointmentCheckResult.OK);
         Patient p = new Patient();
         p.setId(UUID.randomUUID());
         p.setEmail("e");
@@ -329,6 +402,55 @@ class DoctorServiceImplTest {
         CreateVisitResponse resp = service.createVisit(doctorId, new CreateVisitRequest(p.getId(), now, "", false));
         assertNotNull(resp.visitId());
         verify(notificationService).sendVisitCreatedNotification(eq("e"), anyString());
+        verify(scheduleIndex).visitScheduled(doctorId, resp.visitId(), now);
+    }
+
+    @Test
+    void createVisit_whenWarningAndNotForced_thenThrow() {
+        LocalDateTime now = LocalDateTime.now();
+        when(scheduleIndex.check(doctorId, now, null)).thenReturn(AppointmentCheckResult.WARNING);
+        assertThrows(AppointmentWarningException.class,
+                () -> service.createVisit(doctorId, new CreateVisitRequest(UUID.randomUUID(), now, "", false)));
+        verify(visitRepository, never()).save(any());
+    }
+
+    @Test
+    void findFreeSlots_skipsGapsShorterThanDuration() {
+        LocalDateTime from = LocalDateTime.of(2025, 3, 10, 9, 0);
+        LocalDateTime to = LocalDateTime.of(2025, 3, 10, 12, 0);
+        when(scheduleIndex.visitStarts(doctorId, from.minusMinutes(15), to)).thenReturn(List.of(
+                LocalDateTime.of(2025, 3, 10, 8, 50),
+                LocalDateTime.of(2025, 3, 10, 9, 30),
+                LocalDateTime.of(2025, 3, 10, 10, 0),
+                LocalDateTime.of(2025, 3, 10, 11, 45)));
+
+        List<FreeSlotResponse> slots = service.findFreeSlots(doctorId, from, to, 30);
+
+        assertEquals(List.of(
+                new FreeSlotResponse(LocalDateTime.of(2025, 3, 10, 10, 15), LocalDateTime.of(2025, 3, 10, 11, 45))
+        ), slots);
+    }
+
+    @Test
+    void findFreeSlots_whenNoVisits_returnsWholeInterval() {
+        LocalDateTime from = LocalDateTime.of(2025, 3, 10, 9, 0);
+        LocalDateTime to = LocalDateTime.of(2025, 3, 10, 10, 0);
+        when(scheduleIndex.visitStarts(eq(doctorId), any(), any())).thenReturn(List.of());
+
+        assertEquals(List.of(new FreeSlotResponse(from, to)), service.findFreeSlots(doctorId, from, to, 15));
+    }
+
+    @Test
+    void findFreeSlots_whenIntervalInvalid_thenThrow() {
+        LocalDateTime from = LocalDateTime.of(2025, 3, 10, 9, 0);
+        assertThrows(IllegalArgumentException.class,
+                () -> service.findFreeSlots(doctorId, from, from, 15));
+        assertThrows(IllegalArgumentException.class,
+                () -> service.findFreeSlots(doctorId, from, from.plusDays(40), 15));
+        assertThrows(IllegalArgumentException.class,
+                () -> service.findFreeSlots(doctorId, from, from.plusDays(31).plusHours(23), 15));
+        assertThrows(IllegalArgumentException.class,
+                () -> service.findFreeSlots(doctorId, from, from.plusHours(1), 0));
     }
 
     @Test
@@ -340,7 +462,7 @@ class DoctorServiceImplTest {
         existing.setDoctor(doctor);
         existing.setVisitDate(LocalDateTime.now());
         when(visitRepository.findById(vid)).thenReturn(Optional.of(existing));
-        when(visitRepository.findByDoctorIdAndVisitDateBetween(eq(doctorId), any(), any())).thenReturn(Collections.emptyList());
+        when(scheduleIndex.check(eq(doctorId), any(), eq(vid))).thenReturn(AppointmentCheckResult.OK);
         service.rearrangeVisit(doctorId, new RearrangeVisitRequest(vid, LocalDateTime.now(), false));
         verify(visitRepository).save(existing);
         verify(notificationService).sendVisitCreatedNotification(any(), any());
@@ -364,17 +486,23 @@ class DoctorServiceImplTest {
         v.setTotalCost(BigDecimal.ONE);
         v.setPatient(p);
         v.setDoctor(doctor);
-        when(visitRepository.findByPatientIdAndDoctorId(pid, doctorId)).thenReturn(List.of(v));
-        VisitService vs = new VisitService();
-        vs.setServiceId(UUID.randomUUID());
-        vs.setService(new com.example.diplom.models.Service());
-        vs.setQuantity(1);
-        when(visitServiceRepository.findByVisit(v)).thenReturn(List.of(vs));
-        when(attachmentService.getPresignedUrlForAttachment(any())).thenReturn("u");
+        when(visitRepository.findMedicalCardVisits(pid, doctorId)).thenReturn(List.of(v));
+        UUID serviceId = UUID.randomUUID();
+        when(visitServiceRepository.findLinesByVisitIds(List.of(v.getId())))
+                .thenReturn(List.of(new VisitServiceLineDto(v.getId(), serviceId, "S", BigDecimal.TEN, 1)));
+        UUID attachmentId = UUID.randomUUID();
+        when(attachmentRepository.findDtosByVisitIds(List.of(v.getId())))
+                .thenReturn(List.of(new AttachmentDto(attachmentId, v.getId(), "file", "d")));
 
         PatientMedCardResponse out = service.getPatientMedicalCard(doctorId, pid);
         assertEquals("FN", out.fullName());
         assertEquals(1, out.visits().size());
+        // Ссылки ведут на /api/attachments/{id}, подпись откладывается до перехода.
+        assertEquals(List.of("/api/attachments/" + attachmentId), out.visits().get(0).attachmentUrls());
+        verifyNoInteractions(attachmentService);
+        assertEquals("S", out.visits().get(0).services().get(0).name());
+        verify(visitServiceRepository, never()).findByVisit(any());
+        verify(attachmentRepository, never()).findById(any());
     }
 
     @Test
@@ -0,0 +1,180 @@
+package com.example.diplom.services;
+
+import com.example.diplom.controllers.RR.PatientMedCardResponse;
+import com.example.diplom.models.*;
+import com.example.diplom.notif.NotificationMailService;
+import com.example.diplom.repositories.*;
+import com.example.diplom.schedule.DoctorBookingLock;
+import com.example.diplom.schedule.DoctorScheduleIndex;
+import com.example.diplom.services.implementations.DoctorServiceImpl;
+import com.example.diplom.controllers.RR.FinishVisitRequest;
+import com.example.diplom.controllers.RR.ServiceUpdateRequest;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.modelmapper.ModelMapper;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Число SQL-запросов горячих путей врача не должно расти с количеством визитов и строк.
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+class DoctorServiceQueryCountTest {
+
+    private static final long MAX_STATEMENTS = 4;
+    private static final long MAX_FINISH_VISIT_STATEMENTS = 7;
+
+    @Autowired TestEntityManager entityManager;
+    @Autowired EntityManager jpaEntityManager;
+    @Autowired EntityManagerFactory entityManagerFactory;
+    @Autowired DoctorRepository doctorRepository;
+    @Autowired PatientRepository patientRepository;
+    @Autowired VisitRepository visitRepository;
+    @Autowired ServiceRepository serviceRepository;
+    @Autowired SpecializationRepository specializationRepository;
+    @Autowired VisitServiceRepository visitServiceRepository;
+    @Autowired DoctorPatientRepository doctorPatientRepository;
+    @Autowired AttachmentRepository attachmentRepository;
+
+    private DoctorServiceImpl doctorService;
+    private Doctor doctor;
+    private Service consultation;
+    private Service xray;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        AttachmentService attachmentService = mock(AttachmentService.class);
+
+        doctorService = new DoctorServiceImpl(
+                doctorRepository, visitRepository, serviceRepository, specializationRepository,
+                patientRepository, visitServiceRepository, mock(PasswordEncoder.class), mock(ModelMapper.class),
+                mock(NotificationMailService.class), attachmentService, doctorPatientRepository,
+                attachmentRepository, mock(ApplicationEventPublisher.class),
+                mock(DoctorScheduleIndex.class), mock(DoctorBookingLock.class),
+                jpaEntityManager);
+
+        doctor = new Doctor();
+        doctor.setEmail("card-doc@example.com");
+        doctor.setPassword("pass");
+        doctor.setPhone("5551110001");
+        doctor.setFullName("Dr. Card");
+        doctor.setSpecialization(specializationRepository.save(new Specialization("Cardiology")));
+        doctor.setUniqueCode("1112223");
+        doctorRepository.save(doctor);
+
+        consultation = service("Consultation", BigDecimal.valueOf(1000));
+        xray = service("X-ray", BigDecimal.valueOf(2500));
+    }
+
+    private Service service(String name, BigDecimal price) {
+        Service service = new Service();
+        service.setName(name);
+        service.setPrice(price);
+        service.setDoctor(doctor);
+        return serviceRepository.save(service);
+    }
+
+    private Patient patientWithVisits(String phone, int visitCount) {
+        Patient patient = new Patient();
+        patient.setPhone(phone);
+        patient.setFullName("Patient " + phone);
+        patient.setBirthDate(LocalDate.of(1985, 5, 5));
+        patientRepository.save(patient);
+
+        for (int i = 0; i < visitCount; i++) {
+            Visit visit = new Visit();
+            visit.setDoctor(doctor);
+            visit.setPatient(patient);
+            visit.setVisitDate(LocalDateTime.of(2025, 1, 1, 9, 0).plusDays(i));
+            visit.setFinished(true);
+            visit.setTotalCost(BigDecimal.valueOf(3500));
+            visitRepository.save(visit);
+
+            visitServiceRepository.save(new VisitService(visit, consultation, 1));
+            visitServiceRepository.save(new VisitService(visit, xray, 1));
+
+            Attachment attachment = new Attachment();
+            attachment.setVisit(visit);
+            attachment.setFilePath("scan-" + phone + "-" + i);
+            attachmentRepository.save(attachment);
+        }
+        return patient;
+    }
+
+    private Statistics resetStatistics() {
+        entityManager.flush();
+        entityManager.clear();
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        return statistics;
+    }
+
+    private long statementsFor(Patient patient, int expectedVisits) {
+        Statistics statistics = resetStatistics();
+
+        PatientMedCardResponse card = doctorService.getPatientMedicalCard(doctor.getId(), patient.getId());
+
+        assertThat(card.visits()).hasSize(expectedVisits);
+        assertThat(card.visits()).allSatisfy(visit -> {
+            assertThat(visit.services()).hasSize(2);
+            assertThat(visit.attachmentUrls()).hasSize(1);
+        });
+        return statistics.getPrepareStatementCount();
+    }
+
+    @Test
+    void getPatientMedicalCard_usesConstantNumberOfQueries() {
+        Patient few = patientWithVisits("5551110002", 1);
+        Patient many = patientWithVisits("5551110003", 25);
+
+        long forFew = statementsFor(few, 1);
+        long forMany = statementsFor(many, 25);
+
+        assertThat(forFew).isPositive();
+        assertThat(forMany).isEqualTo(forFew).isLessThanOrEqualTo(MAX_STATEMENTS);
+    }
+
+    @Test
+    void finishVisit_resolvesServicesOnceAndBatchesLines() {
+        Patient patient = patientWithVisits("5551110004", 1);
+        Visit visit = visitRepository.findByPatientId(patient.getId()).get(0);
+
+        List<ServiceUpdateRequest> updates = new ArrayList<>();
+        updates.add(new ServiceUpdateRequest("Consultation", 3));
+        BigDecimal expectedTotal = BigDecimal.valueOf(1000 * 3 + 2500);
+        for (int i = 0; i < 20; i++) {
+            service("Extra " + i, BigDecimal.valueOf(100));
+            updates.add(new ServiceUpdateRequest("Extra " + i, 1));
+            expectedTotal = expectedTotal.add(BigDecimal.valueOf(100));
+        }
+
+        Statistics statistics = resetStatistics();
+        doctorService.finishVisit(doctor.getId(), new FinishVisitRequest(visit.getId(), updates, "done"));
+        entityManager.flush();
+
+        assertThat(statistics.getEntityInsertCount()).isEqualTo(20);
+        assertThat(statistics.getPrepareStatementCount()).isLessThanOrEqualTo(MAX_FINISH_VISIT_STATEMENTS);
+
+        entityManager.clear();
+        Visit finished = visitRepository.findById(visit.getId()).orElseThrow();
+        assertThat(finished.getTotalCost()).isEqualByComparingTo(expectedTotal);
+        assertThat(visitServiceRepository.findWithServiceByVisitId(visit.getId())).hasSize(22);
+    }
+}
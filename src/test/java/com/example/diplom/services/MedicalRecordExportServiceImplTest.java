@@ -0,0 +1,232 @@
+package com.example.diplom.services;
+
+import com.example.diplom.controllers.RR.PatientVisitDetailsResponse;
+import com.example.diplom.repositories.AttachmentRepository;
+import com.example.diplom.services.dtos.AttachmentExportDto;
+import com.example.diplom.services.dtos.MedicalRecordExport;
+import com.example.diplom.services.implementations.MedicalRecordExportServiceImpl;
+import com.example.diplom.storage.AttachmentStorage;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.access.AccessDeniedException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class MedicalRecordExportServiceImplTest {
+
+    private static final int WINDOW = 3;
+
+    private final PatientService patientService = mock(PatientService.class);
+    private final DoctorService doctorService = mock(DoctorService.class);
+    private final AttachmentRepository attachmentRepository = mock(AttachmentRepository.class);
+    private final AttachmentStorage storage = mock(AttachmentStorage.class);
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules()
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+    private final UUID patientId = UUID.randomUUID();
+    private final UUID visitId = UUID.randomUUID();
+    private final LocalDateTime visitDate = LocalDateTime.of(2025, 3, 14, 10, 0);
+    private MedicalRecordExportServiceImpl service;
+
+    @BeforeEach
+    void setUp() {
+        service = new MedicalRecordExportServiceImpl(patientService, doctorService, attachmentRepository, storage,
+                objectMapper, 4, WINDOW);
+        when(patientService.getVisitsByPatient(patientId)).thenReturn(List.of(new PatientVisitDetailsResponse(
+                "Dr. A", visitId, visitDate, true, "notes", BigDecimal.TEN, List.of(), List.of())));
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    private AttachmentExportDto attachment(String filePath) {
+        return new AttachmentExportDto(UUID.randomUUID(), visitId, visitDate, filePath, "desc");
+    }
+
+    private void stored(String key, byte[] content) throws IOException {
+        when(storage.transferTo(eq(key), any(OutputStream.class))).thenAnswer(inv -> {
+            inv.getArgument(1, OutputStream.class).write(content);
+            return (long) content.length;
+        });
+    }
+
+    private static Map<String, byte[]> unzip(byte[] archive) throws IOException {
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(archive))) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                entries.put(entry.getName(), zip.readAllBytes());
+            }
+        }
+        return entries;
+    }
+
+    private byte[] write(MedicalRecordExport export) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        export.writeTo(out);
+        return out.toByteArray();
+    }
+
+    @Test
+    void exportForPatient_writesAttachmentsInOrderAndSummaryLast() throws Exception {
+        AttachmentExportDto first = attachment(UUID.randomUUID() + "_scan.pdf");
+        AttachmentExportDto second = attachment(UUID.randomUUID() + "_blood.png");
+        when(attachmentRepository.findExportRowsByPatientId(patientId)).thenReturn(List.of(first, second));
+        stored(first.filePath(), "pdf".getBytes(StandardCharsets.UTF_8));
+        stored(second.filePath(), "png".getBytes(StandardCharsets.UTF_8));
+
+        MedicalRecordExport export = service.exportForPatient(patientId);
+        Map<String, byte[]> entries = unzip(write(export));
+
+        assertThat(export.fileName()).startsWith("medical-record-").endsWith(".zip");
+        assertThat(entries.keySet()).containsExactly(
+                "attachments/2025-03-14/scan.pdf", "attachments/2025-03-14/blood.png", "summary.json");
+        assertThat(entries.get("attachments/2025-03-14/scan.pdf")).isEqualTo("pdf".getBytes(StandardCharsets.UTF_8));
+
+        JsonNode summary = objectMapper.readTree(entries.get("summary.json"));
+        assertThat(summary.path("record").get(0).path("visitId").asText()).isEqualTo(visitId.toString());
+        assertThat(summary.path("files")).hasSize(2);
+        assertThat(summary.path("files").get(1).path("entry").asText()).isEqualTo("attachments/2025-03-14/blood.png");
+        assertThat(summary.path("files").get(1).path("size").asLong()).isEqualTo(3);
+        assertThat(summary.path("files").get(1).path("complete").asBoolean()).isTrue();
+    }
+
+    @Test
+    void export_whenObjectMissing_thenSkipsItAndMarksInSummary() throws Exception {
+        AttachmentExportDto missing = attachment("missing.pdf");
+        AttachmentExportDto present = attachment("present.pdf");
+        when(attachmentRepository.findExportRowsByPatientId(patientId)).thenReturn(List.of(missing, present));
+        when(storage.transferTo(eq("missing.pdf"), any(OutputStream.class)))
+                .thenThrow(new NoSuchFileException("missing.pdf"));
+        stored("present.pdf", new byte[]{1, 2, 3});
+
+        Map<String, byte[]> entries = unzip(write(service.exportForPatient(patientId)));
+
+        assertThat(entries.keySet()).containsExactly("attachments/2025-03-14/present.pdf", "summary.json");
+        JsonNode missingFile = objectMapper.readTree(entries.get("summary.json")).path("files").get(0);
+        assertThat(missingFile.path("attachmentId").asText()).isEqualTo(missing.id().toString());
+        assertThat(missingFile.path("entry").isNull()).isTrue();
+        assertThat(missingFile.path("complete").asBoolean()).isFalse();
+    }
+
+    @Test
+    void export_sameFileNamesGetSuffix() throws Exception {
+        List<AttachmentExportDto> attachments = List.of(
+                attachment(UUID.randomUUID() + "_scan.pdf"),
+                attachment(UUID.randomUUID() + "_scan.pdf"),
+                attachment(UUID.randomUUID() + "_scan.pdf"));
+        when(attachmentRepository.findExportRowsByPatientId(patientId)).thenReturn(attachments);
+        for (AttachmentExportDto attachment : attachments) {
+            stored(attachment.filePath(), new byte[]{7});
+        }
+
+        Map<String, byte[]> entries = unzip(write(service.exportForPatient(patientId)));
+
+        assertThat(entries.keySet()).containsExactly("attachments/2025-03-14/scan.pdf",
+                "attachments/2025-03-14/scan (2).pdf", "attachments/2025-03-14/scan (3).pdf", "summary.json");
+    }
+
+    @Test
+    void export_contentAddressedKeysUseOriginalName() throws Exception {
+        AttachmentExportDto shared = new AttachmentExportDto(UUID.randomUUID(), visitId, visitDate,
+                "3a6eb0790f39ac87c94f3856b2dd2c5d110e6811602261a9a923d3bb23adc8b7.pdf", "Blood test.pdf", "desc");
+        when(attachmentRepository.findExportRowsByPatientId(patientId)).thenReturn(List.of(shared));
+        stored(shared.filePath(), new byte[]{1});
+
+        Map<String, byte[]> entries = unzip(write(service.exportForPatient(patientId)));
+
+        assertThat(entries.keySet()).containsExactly("attachments/2025-03-14/Blood test.pdf", "summary.json");
+    }
+
+    @Test
+    void export_prefetchesAtMostWindowFilesAtOnce() throws Exception {
+        List<AttachmentExportDto> attachments = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            attachments.add(attachment("file-" + i + ".bin"));
+        }
+        when(attachmentRepository.findExportRowsByPatientId(patientId)).thenReturn(attachments);
+        byte[] content = new byte[1024 * 1024];
+        AtomicInteger active = new AtomicInteger();
+        AtomicInteger maxActive = new AtomicInteger();
+        when(storage.transferTo(anyString(), any(OutputStream.class))).thenAnswer(inv -> {
+            maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+            try {
+                inv.getArgument(1, OutputStream.class).write(content);
+                return (long) content.length;
+            } finally {
+                active.decrementAndGet();
+            }
+        });
+
+        Map<String, byte[]> entries = unzip(write(service.exportForPatient(patientId)));
+
+        assertThat(entries).hasSize(21);
+        assertThat(entries.get("attachments/2025-03-14/file-19.bin")).isEqualTo(content);
+        assertThat(maxActive.get()).isBetween(1, WINDOW);
+    }
+
+    @Test
+    void export_whenClientDisconnects_thenStopsPrefetching() throws Exception {
+        List<AttachmentExportDto> attachments = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            AttachmentExportDto attachment = attachment("file-" + i + ".bin");
+            attachments.add(attachment);
+            stored(attachment.filePath(), new byte[1024 * 1024]);
+        }
+        when(attachmentRepository.findExportRowsByPatientId(patientId)).thenReturn(attachments);
+        OutputStream broken = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("Broken pipe");
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                throw new IOException("Broken pipe");
+            }
+        };
+
+        MedicalRecordExport export = service.exportForPatient(patientId);
+
+        assertThatThrownBy(() -> export.writeTo(broken)).isInstanceOf(IOException.class);
+        verify(storage, atMost(WINDOW + 1)).transferTo(anyString(), any(OutputStream.class));
+    }
+
+    @Test
+    void exportForDoctor_checksAccessBeforeWriting() {
+        UUID doctorId = UUID.randomUUID();
+        when(doctorService.getPatientMedicalCard(doctorId, patientId))
+                .thenThrow(new AccessDeniedException("Access Denied"));
+
+        assertThatThrownBy(() -> service.exportForDoctor(doctorId, patientId))
+                .isInstanceOf(AccessDeniedException.class);
+        verifyNoInteractions(attachmentRepository, storage);
+    }
+}
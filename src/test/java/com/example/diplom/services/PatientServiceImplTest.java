@@ -6,7 +6,10 @@ import com.example.diplom.exceptions.ResourceNotFoundException;
 import com.example.diplom.models.*;
 import com.example.diplom.models.PK.DoctorPatientPK;
 import com.example.diplom.repositories.*;
+import com.example.diplom.services.dtos.AttachmentDto;
 import com.example.diplom.services.dtos.PatientRegistrationDto;
+import com.example.diplom.services.dtos.PatientVisitRowDto;
+import com.example.diplom.services.dtos.VisitServiceLineDto;
 import com.example.diplom.services.implementations.ChatServiceImpl;
 import com.example.diplom.services.implementations.PatientServiceImpl;
 import org.junit.jupiter.api.BeforeEach;
@@ -15,7 +18,8 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.*;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.modelmapper.ModelMapper;
-import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
 import org.springframework.security.crypto.password.PasswordEncoder;
 
 import java.time.LocalDate;
@@ -37,8 +41,9 @@ class PatientServiceImplTest {
     @Mock private DoctorPatientRepository doctorPatientRepository;
     @Mock private ChatServiceImpl chatService;
     @Mock private DoctorRepository doctorRepository;
+    @Mock private AttachmentRepository attachmentRepository;
     @Mock
-    private RedisTemplate<String, Object> redisTemplate;
+    private ApplicationEventPublisher eventPublisher;
 
 
     @InjectMocks private PatientServiceImpl service;
@@ -107,8 +112,7 @@ class PatientServiceImplTest {
 
     @Test
     void getVisitsByPatient_notFound_throws() {
-        when(patientRepository.findById(patientId))
-                .thenReturn(Optional.empty());
+        when(patientRepository.existsById(patientId)).thenReturn(false);
 
         assertThrows(ResourceNotFoundException.class,
                 () -> service.getVisitsByPatient(patientId));
@@ -116,40 +120,75 @@ class PatientServiceImplTest {
 
     @Test
     void getVisitsByPatient_returnsMappedList() throws Exception {
-        when(patientRepository.findById(patientId))
-                .thenReturn(Optional.of(patient));
-
-        Visit visit = new Visit();
-        visit.setId(UUID.randomUUID());
-        Doctor doc = new Doctor();
-        doc.setFullName("Doc");
-        visit.setDoctor(doc);
-        visit.setVisitDate(LocalDateTime.of(2025,4,1,12,0));
-        visit.setFinished(true);
-        visit.setNotes("note");
-        visit.setTotalCost(java.math.BigDecimal.TEN);
-
-        Attachment att = new Attachment();
-        att.setId(UUID.randomUUID());
-        visit.setAttachments(new HashSet<>(List.of(att)));
-
-        when(visitRepository.findByPatientId(patientId))
-                .thenReturn(List.of(visit));
-        when(visitServiceRepository.findByVisit(visit))
-                .thenReturn(Collections.emptyList());
-        when(attachmentService.getPresignedUrlForAttachment(att.getId()))
-                .thenReturn("url");
+        when(patientRepository.existsById(patientId)).thenReturn(true);
+
+        UUID visitId = UUID.randomUUID();
+        UUID serviceId = UUID.randomUUID();
+        when(visitRepository.findPatientVisitRows(patientId, Limit.unlimited()))
+                .thenReturn(List.of(new PatientVisitRowDto(visitId, LocalDateTime.of(2025,4,1,12,0),
+                        true, "note", java.math.BigDecimal.TEN, "Doc")));
+        when(visitServiceRepository.findLinesByVisitIds(List.of(visitId)))
+                .thenReturn(List.of(new VisitServiceLineDto(visitId, serviceId, "S", java.math.BigDecimal.ONE, 2)));
+        UUID attachmentId = UUID.randomUUID();
+        when(attachmentRepository.findDtosByVisitIds(List.of(visitId)))
+                .thenReturn(List.of(new AttachmentDto(attachmentId, visitId, "file", null)));
 
         var respList = service.getVisitsByPatient(patientId);
 
         assertEquals(1, respList.size());
         var resp = respList.get(0);
         assertEquals("Doc", resp.doctorName());
-        assertEquals(visit.getId(), resp.visitId());
+        assertEquals(visitId, resp.visitId());
         assertTrue(resp.isFinished());
         assertEquals("note", resp.notes());
         assertEquals(java.math.BigDecimal.TEN, resp.totalPrice());
-        assertEquals(List.of("url"), resp.attachmentUrls());
+        assertEquals(List.of("/api/attachments/" + attachmentId), resp.attachmentUrls());
+        verifyNoInteractions(attachmentService);
+        assertEquals(2, resp.services().get(0).quantity());
+        verify(visitServiceRepository, never()).findByVisit(any());
+    }
+
+    @Test
+    void getVisitsByPatientPage_returnsCursorWhenMoreVisitsExist() {
+        when(patientRepository.existsById(patientId)).thenReturn(true);
+        LocalDateTime cursorDate = LocalDateTime.of(2025,4,1,12,0);
+        UUID cursorId = UUID.randomUUID();
+        PatientVisitRowDto newer = new PatientVisitRowDto(UUID.randomUUID(), cursorDate.minusDays(1),
+                false, null, java.math.BigDecimal.ZERO, "Doc");
+        PatientVisitRowDto older = new PatientVisitRowDto(UUID.randomUUID(), cursorDate.minusDays(2),
+                false, null, java.math.BigDecimal.ZERO, "Doc");
+        when(visitRepository.findPatientVisitRowsBefore(patientId, cursorDate, cursorId, Limit.of(2)))
+                .thenReturn(List.of(newer, older));
+        when(visitServiceRepository.findLinesByVisitIds(List.of(newer.visitId()))).thenReturn(List.of());
+        when(attachmentRepository.findDtosByVisitIds(List.of(newer.visitId()))).thenReturn(List.of());
+
+        PatientVisitPageResponse page = service.getVisitsByPatientPage(patientId, cursorDate, cursorId, 1);
+
+        assertEquals(1, page.visits().size());
+        assertEquals(newer.visitId(), page.visits().get(0).visitId());
+        assertEquals(newer.visitDate(), page.nextVisitDate());
+        assertEquals(newer.visitId(), page.nextVisitId());
+    }
+
+    @Test
+    void getVisitsByPatientPage_lastPageHasNoCursor() {
+        when(patientRepository.existsById(patientId)).thenReturn(true);
+        when(visitRepository.findPatientVisitRows(patientId, Limit.of(21))).thenReturn(List.of());
+
+        PatientVisitPageResponse page = service.getVisitsByPatientPage(patientId, null, null, 20);
+
+        assertTrue(page.visits().isEmpty());
+        assertNull(page.nextVisitDate());
+        assertNull(page.nextVisitId());
+    }
+
+    @Test
+    void getVisitsByPatientPage_rejectsHalfCursorAndBadSize() {
+        assertThrows(IllegalArgumentException.class,
+                () -> service.getVisitsByPatientPage(patientId, LocalDateTime.now(), null, 20));
+        assertThrows(IllegalArgumentException.class,
+                () -> service.getVisitsByPatientPage(patientId, null, null, 0));
+        verifyNoInteractions(visitRepository);
     }
 
     // ---------------- getPatientDoctors ----------------
@@ -189,23 +228,20 @@ class PatientServiceImplTest {
         patient.setEmail("a@b");
         patient.setPhone("9000");
 
-        Attachment att = new Attachment();
-        att.setId(UUID.randomUUID());
-        Visit v = new Visit();
-        v.setAttachments(new HashSet<>(List.of(att)));
-        patient.setVisits(new HashSet<>(List.of(v)));
+        UUID attachmentId = UUID.randomUUID();
 
         when(patientRepository.findById(patientId))
                 .thenReturn(Optional.of(patient));
-        when(attachmentService.getPresignedUrlForAttachment(att.getId()))
-                .thenReturn("u");
+        when(attachmentRepository.findIdsByPatientId(patientId))
+                .thenReturn(List.of(attachmentId));
 
         var resp = service.profileById(patientId);
         assertEquals("N", resp.fullName());
         assertEquals(LocalDate.of(1995,5,5), resp.birthDate());
         assertEquals("a@b", resp.email());
         assertEquals("9000", resp.phone());
-        assertEquals(List.of("u"), resp.attachments());
+        assertEquals(List.of("/api/attachments/" + attachmentId), resp.attachments());
+        verifyNoInteractions(attachmentService);
     }
 
     // ---------------- deleteAllPatientData ----------------
@@ -0,0 +1,177 @@
+package com.example.diplom.storage;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.OptionalLong;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Общие требования к реализациям {@link AttachmentStorage}. Каждая реализация
+ * подключается наследником, который создаёт хранилище в {@link #storage()}.
+ */
+abstract class AttachmentStorageContractTest {
+
+    /** Размер файла для проверки потоковой передачи без загрузки в память. */
+    static final long LARGE_SIZE = 64L * 1024 * 1024;
+
+    protected abstract AttachmentStorage storage() throws Exception;
+
+    private static String key(String name) {
+        return UUID.randomUUID() + "_" + name;
+    }
+
+    private static byte[] read(AttachmentStorage storage, String key) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        storage.transferTo(key, out);
+        return out.toByteArray();
+    }
+
+    private static void put(AttachmentStorage storage, String key, byte[] data) throws IOException {
+        storage.put(key, new ByteArrayInputStream(data), data.length, "application/pdf");
+    }
+
+    @Test
+    void put_thenSizeAndContentMatch() throws Exception {
+        AttachmentStorage storage = storage();
+        String key = key("scan.pdf");
+        byte[] data = "результаты анализов".getBytes(StandardCharsets.UTF_8);
+
+        put(storage, key, data);
+
+        assertThat(storage.size(key)).hasValue(data.length);
+        assertThat(read(storage, key)).isEqualTo(data);
+    }
+
+    @Test
+    void put_overwritesExistingObject() throws Exception {
+        AttachmentStorage storage = storage();
+        String key = key("scan.pdf");
+        put(storage, key, "old".getBytes(StandardCharsets.UTF_8));
+
+        put(storage, key, "new content".getBytes(StandardCharsets.UTF_8));
+
+        assertThat(read(storage, key)).isEqualTo("new content".getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void put_emptyObject() throws Exception {
+        AttachmentStorage storage = storage();
+        String key = key("empty.txt");
+
+        put(storage, key, new byte[0]);
+
+        assertThat(storage.size(key)).hasValue(0);
+        assertThat(read(storage, key)).isEmpty();
+    }
+
+    @Test
+    void size_whenMissing_thenEmpty() throws Exception {
+        assertThat(storage().size(key("missing.pdf"))).isEqualTo(OptionalLong.empty());
+    }
+
+    @Test
+    void transferTo_whenMissing_thenNoSuchFile() throws Exception {
+        AttachmentStorage storage = storage();
+
+        assertThatThrownBy(() -> storage.transferTo(key("missing.pdf"), OutputStream.nullOutputStream()))
+                .isInstanceOf(NoSuchFileException.class);
+    }
+
+    @Test
+    void delete_removesObjectAndIsIdempotent() throws Exception {
+        AttachmentStorage storage = storage();
+        String key = key("scan.pdf");
+        put(storage, key, new byte[]{1, 2, 3});
+
+        storage.delete(key);
+        storage.delete(key);
+
+        assertThat(storage.size(key)).isEmpty();
+    }
+
+    @Test
+    void presign_returnsDistinctUrlsForGetAndPut() throws Exception {
+        AttachmentStorage storage = storage();
+        String key = key("scan.pdf");
+
+        String get = storage.presignGet(key, Duration.ofMinutes(5));
+        String put = storage.presignPut(key, Duration.ofMinutes(5));
+
+        assertThat(get).startsWith("http").contains(key.substring(0, 36));
+        assertThat(put).startsWith("http").isNotEqualTo(get);
+    }
+
+    /**
+     * Крупный файл проходит туда и обратно потоком; сверяется контрольная сумма.
+     */
+    @Test
+    void largeObject_roundTripsAsStream() throws Exception {
+        AttachmentStorage storage = storage();
+        String key = key("large.bin");
+        MessageDigest written = MessageDigest.getInstance("SHA-256");
+        MessageDigest read = MessageDigest.getInstance("SHA-256");
+
+        storage.put(key, new RandomStream(LARGE_SIZE, written), LARGE_SIZE, "application/octet-stream");
+        long transferred = storage.transferTo(key, new OutputStream() {
+            @Override
+            public void write(int b) {
+                read.update((byte) b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                read.update(b, off, len);
+            }
+        });
+
+        assertThat(transferred).isEqualTo(LARGE_SIZE);
+        assertThat(read.digest()).isEqualTo(written.digest());
+        storage.delete(key);
+    }
+
+    /**
+     * Псевдослучайные данные заданной длины; попутно считает их хэш.
+     */
+    private static final class RandomStream extends InputStream {
+        private final Random random = new Random(42);
+        private final MessageDigest digest;
+        private long remaining;
+
+        RandomStream(long size, MessageDigest digest) {
+            this.remaining = size;
+            this.digest = digest;
+        }
+
+        @Override
+        public int read() {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int n = (int) Math.min(len, remaining);
+            byte[] chunk = new byte[n];
+            random.nextBytes(chunk);
+            System.arraycopy(chunk, 0, b, off, n);
+            digest.update(chunk);
+            remaining -= n;
+            return n;
+        }
+    }
+}
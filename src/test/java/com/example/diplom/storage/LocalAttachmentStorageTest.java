@@ -0,0 +1,95 @@
+package com.example.diplom.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.*;
+
+class LocalAttachmentStorageTest extends AttachmentStorageContractTest {
+
+    private static final String SECRET = "0123456789abcdef0123456789abcdef";
+    private static final Instant NOW = Instant.parse("2025-06-01T10:00:00Z");
+
+    @TempDir
+    Path root;
+
+    @Override
+    protected LocalAttachmentStorage storage() throws IOException {
+        return new LocalAttachmentStorage(root, "http://localhost:8080/", SECRET, Clock.fixed(NOW, ZoneOffset.UTC));
+    }
+
+    private static Map<String, String> query(String url) {
+        Map<String, String> params = new HashMap<>();
+        for (String pair : URI.create(url).getRawQuery().split("&")) {
+            String[] parts = pair.split("=", 2);
+            params.put(parts[0], parts[1]);
+        }
+        return params;
+    }
+
+    @Test
+    void presignGet_signatureVerifiesOnlyForSameMethodAndKey() throws Exception {
+        LocalAttachmentStorage storage = storage();
+        String url = storage.presignGet("a b.pdf", Duration.ofMinutes(5));
+        Map<String, String> params = query(url);
+        long expires = Long.parseLong(params.get("expires"));
+
+        assertThat(url).startsWith("http://localhost:8080/api/storage/a%20b.pdf?");
+        assertThat(expires).isEqualTo(NOW.plusSeconds(300).getEpochSecond());
+        assertThat(storage.verify("GET", "a b.pdf", expires, params.get("signature"))).isTrue();
+        assertThat(storage.verify("PUT", "a b.pdf", expires, params.get("signature"))).isFalse();
+        assertThat(storage.verify("GET", "other.pdf", expires, params.get("signature"))).isFalse();
+        assertThat(storage.verify("GET", "a b.pdf", expires + 3600, params.get("signature"))).isFalse();
+    }
+
+    @Test
+    void verify_rejectsExpiredLink() throws Exception {
+        String url = storage().presignGet("a.pdf", Duration.ofMinutes(5));
+        Map<String, String> params = query(url);
+        LocalAttachmentStorage later = new LocalAttachmentStorage(root, "http://localhost:8080", SECRET,
+                Clock.fixed(NOW.plus(Duration.ofMinutes(6)), ZoneOffset.UTC));
+
+        assertThat(later.verify("GET", "a.pdf", Long.parseLong(params.get("expires")), params.get("signature")))
+                .isFalse();
+    }
+
+    @Test
+    void keysEscapingRoot_areRejected() throws Exception {
+        LocalAttachmentStorage storage = storage();
+
+        for (String key : new String[]{"../secret", "..", "dir/file", "dir\\file", " "}) {
+            assertThatThrownBy(() -> storage.put(key, new ByteArrayInputStream(new byte[1]), 1, null))
+                    .as(key)
+                    .isInstanceOf(IllegalArgumentException.class);
+        }
+        assertThat(Files.list(root)).isEmpty();
+    }
+
+    @Test
+    void put_whenStreamShorterThanSize_thenKeepsNoPartialObject() throws Exception {
+        LocalAttachmentStorage storage = storage();
+
+        assertThatThrownBy(() -> storage.put("short.bin", new ByteArrayInputStream(new byte[10]), 20, null))
+                .isInstanceOf(IOException.class);
+        assertThat(storage.size("short.bin")).isEmpty();
+        assertThat(Files.list(root)).isEmpty();
+    }
+
+    @Test
+    void constructor_rejectsShortSecret() {
+        assertThatThrownBy(() -> new LocalAttachmentStorage(root, "http://localhost", "short"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.diplom.storage;
+
+import io.minio.BucketExistsArgs;
+import io.minio.MakeBucketArgs;
+import io.minio.MinioClient;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+
+/**
+ * Контракт для MinIO. Запускается только при заданном MINIO_TEST_URL
+ * (например, http://localhost:9000 из docker-compose).
+ */
+@EnabledIfEnvironmentVariable(named = "MINIO_TEST_URL", matches = ".+")
+class MinioAttachmentStorageTest extends AttachmentStorageContractTest {
+
+    private static final String BUCKET = "attachment-storage-contract";
+
+    @Override
+    protected AttachmentStorage storage() throws Exception {
+        MinioClient client = MinioClient.builder()
+                .endpoint(System.getenv("MINIO_TEST_URL"))
+                .credentials(System.getenv().getOrDefault("MINIO_TEST_ACCESS_KEY", "minioadmin"),
+                        System.getenv().getOrDefault("MINIO_TEST_SECRET_KEY", "minioadmin"))
+                .build();
+        if (!client.bucketExists(BucketExistsArgs.builder().bucket(BUCKET).build())) {
+            client.makeBucket(MakeBucketArgs.builder().bucket(BUCKET).build());
+        }
+        return new MinioAttachmentStorage(client, BUCKET);
+    }
+}
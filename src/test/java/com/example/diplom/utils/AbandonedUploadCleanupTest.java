@@ -0,0 +1,98 @@
+package com.example.diplom.utils;
+
+import com.example.diplom.models.*;
+import com.example.diplom.repositories.*;
+import com.example.diplom.storage.AttachmentStorage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@DataJpaTest
+class AbandonedUploadCleanupTest {
+
+    @Autowired TestEntityManager entityManager;
+    @Autowired PlatformTransactionManager transactionManager;
+    @Autowired AttachmentRepository attachmentRepository;
+    @Autowired VisitRepository visitRepository;
+    @Autowired DoctorRepository doctorRepository;
+    @Autowired PatientRepository patientRepository;
+    @Autowired SpecializationRepository specializationRepository;
+
+    private final AttachmentStorage storage = mock(AttachmentStorage.class);
+    private Visit visit;
+
+    @BeforeEach
+    void setUp() {
+        Doctor doctor = new Doctor();
+        doctor.setEmail("cleanup-doc@example.com");
+        doctor.setPassword("pass");
+        doctor.setPhone("5554440001");
+        doctor.setFullName("Dr. Cleanup");
+        doctor.setSpecialization(specializationRepository.save(new Specialization("Cleanup")));
+        doctor.setUniqueCode("4445556");
+        doctorRepository.save(doctor);
+
+        Patient patient = new Patient();
+        patient.setPhone("5554440002");
+        patient.setFullName("Cleanup Patient");
+        patient.setBirthDate(LocalDate.of(1975, 7, 7));
+        patientRepository.save(patient);
+
+        visit = new Visit();
+        visit.setDoctor(doctor);
+        visit.setPatient(patient);
+        visit.setVisitDate(LocalDateTime.of(2025, 5, 5, 10, 0));
+        visit.setTotalCost(BigDecimal.ZERO);
+        visitRepository.save(visit);
+    }
+
+    private Attachment attachment(String filePath, AttachmentStatus status) {
+        Attachment attachment = new Attachment();
+        attachment.setVisit(visit);
+        attachment.setFilePath(filePath);
+        attachment.setStatus(status);
+        visit.getAttachments().add(attachment);
+        return attachmentRepository.save(attachment);
+    }
+
+    @Test
+    void run_removesOnlyAbandonedPendingUploads() throws Exception {
+        Attachment abandoned = attachment("abandoned.pdf", AttachmentStatus.PENDING);
+        Attachment ready = attachment("ready.pdf", AttachmentStatus.READY);
+        entityManager.flush();
+
+        int removed = new AbandonedUploadCleanup(attachmentRepository, storage, transactionManager,
+                Duration.ofHours(24)).run(LocalDateTime.now().plusMinutes(1));
+        entityManager.flush();
+        entityManager.clear();
+
+        assertThat(removed).isEqualTo(1);
+        assertThat(attachmentRepository.findById(abandoned.getId())).isEmpty();
+        assertThat(attachmentRepository.findById(ready.getId())).isPresent();
+        verify(storage).delete("abandoned.pdf");
+        verifyNoMoreInteractions(storage);
+    }
+
+    @Test
+    void run_keepsRecentPendingUploads() {
+        Attachment pending = attachment("in-progress.pdf", AttachmentStatus.PENDING);
+        entityManager.flush();
+
+        int removed = new AbandonedUploadCleanup(attachmentRepository, storage, transactionManager,
+                Duration.ofHours(24)).run(LocalDateTime.now().minusHours(24));
+
+        assertThat(removed).isZero();
+        assertThat(attachmentRepository.findById(pending.getId())).isPresent();
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.diplom.utils;
+
+import com.example.diplom.storage.AttachmentStorage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PresignedUrlSignerTest {
+
+    @Mock
+    private AttachmentStorage storage;
+
+    private PresignedUrlSigner signer;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        signer = new PresignedUrlSigner(storage, Duration.ofMinutes(90), 100);
+        lenient().when(storage.presignGet(anyString(), any(Duration.class)))
+                .thenAnswer(inv -> "https://minio/" + inv.getArgument(0, String.class));
+    }
+
+    @Test
+    void sign_reusesCachedUrl() throws Exception {
+        assertEquals("https://minio/a.pdf", signer.sign("a.pdf"));
+        assertEquals("https://minio/a.pdf", signer.sign("a.pdf"));
+
+        verify(storage, times(1)).presignGet(anyString(), any(Duration.class));
+    }
+
+    @Test
+    void sign_urlOutlivesCacheEntry() throws Exception {
+        signer.sign("a.pdf");
+
+        verify(storage).presignGet("a.pdf", PresignedUrlSigner.URL_EXPIRY);
+    }
+
+    @Test
+    void constructor_rejectsCacheTtlNotBelowUrlExpiry() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new PresignedUrlSigner(storage, Duration.ofHours(2), 100));
+    }
+}
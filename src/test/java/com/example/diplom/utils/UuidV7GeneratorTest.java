@@ -0,0 +1,73 @@
+package com.example.diplom.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.assertj.core.api.Assertions.*;
+
+class UuidV7GeneratorTest {
+
+    private static int compareUnsigned(UUID a, UUID b) {
+        int byMsb = Long.compareUnsigned(a.getMostSignificantBits(), b.getMostSignificantBits());
+        return byMsb != 0 ? byMsb : Long.compareUnsigned(a.getLeastSignificantBits(), b.getLeastSignificantBits());
+    }
+
+    @Test
+    void next_setsVersionVariantAndTimestamp() {
+        long before = System.currentTimeMillis();
+        UUID id = UuidV7Generator.next();
+        long after = System.currentTimeMillis();
+
+        assertThat(id.version()).isEqualTo(7);
+        assertThat(id.variant()).isEqualTo(2);
+        assertThat(id.getMostSignificantBits() >>> 16).isBetween(before, after + 1);
+    }
+
+    @Test
+    void next_isStrictlyIncreasingWithinThread() {
+        UUID previous = UuidV7Generator.next();
+        for (int i = 0; i < 100_000; i++) {
+            UUID current = UuidV7Generator.next();
+            assertThat(compareUnsigned(previous, current)).isNegative();
+            previous = current;
+        }
+    }
+
+    @Test
+    void next_isUniqueAcrossThreads() throws Exception {
+        int threads = 8;
+        int perThread = 50_000;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<List<UUID>>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            futures.add(pool.submit(() -> {
+                List<UUID> ids = new ArrayList<>(perThread);
+                for (int i = 0; i < perThread; i++) {
+                    ids.add(UuidV7Generator.next());
+                }
+                return ids;
+            }));
+        }
+        Set<UUID> all = new HashSet<>();
+        for (Future<List<UUID>> future : futures) {
+            all.addAll(future.get(30, TimeUnit.SECONDS));
+        }
+        pool.shutdown();
+
+        assertThat(all).hasSize(threads * perThread);
+    }
+
+    @Test
+    void nextTimeAndCounter_rollsIntoNextMillisecondOnOverflow() {
+        long now = System.currentTimeMillis() + 60_000;
+        long value = UuidV7Generator.nextTimeAndCounter(now);
+        for (int i = 0; i < 4096; i++) {
+            long next = UuidV7Generator.nextTimeAndCounter(now);
+            assertThat(next).isGreaterThan(value);
+            value = next;
+        }
+        assertThat(value >>> 12).isGreaterThan(now);
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.diplom.utils;
+
+import com.example.diplom.models.*;
+import com.example.diplom.repositories.*;
+import com.example.diplom.services.dtos.ServiceRevenueDto;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+@DataJpaTest
+class VisitServicePriceBackfillTest {
+
+    @Autowired TestEntityManager entityManager;
+    @Autowired PlatformTransactionManager transactionManager;
+    @Autowired VisitServiceRepository visitServiceRepository;
+    @Autowired VisitRepository visitRepository;
+    @Autowired DoctorRepository doctorRepository;
+    @Autowired PatientRepository patientRepository;
+    @Autowired ServiceRepository serviceRepository;
+    @Autowired SpecializationRepository specializationRepository;
+
+    private Doctor doctor;
+    private Visit visit;
+    private Service consultation;
+
+    @BeforeEach
+    void setUp() {
+        doctor = new Doctor();
+        doctor.setEmail("backfill-doc@example.com");
+        doctor.setPassword("pass");
+        doctor.setPhone("5552220001");
+        doctor.setFullName("Dr. Backfill");
+        doctor.setSpecialization(specializationRepository.save(new Specialization("Backfill")));
+        doctor.setUniqueCode("2223334");
+        doctorRepository.save(doctor);
+
+        Patient patient = new Patient();
+        patient.setPhone("5552220002");
+        patient.setFullName("Backfill Patient");
+        patient.setBirthDate(LocalDate.of(1980, 1, 1));
+        patientRepository.save(patient);
+
+        visit = new Visit();
+        visit.setDoctor(doctor);
+        visit.setPatient(patient);
+        visit.setVisitDate(LocalDateTime.of(2025, 3, 3, 10, 0));
+        visit.setTotalCost(BigDecimal.ZERO);
+        visitRepository.save(visit);
+
+        consultation = new Service();
+        consultation.setName("Consultation");
+        consultation.setPrice(BigDecimal.valueOf(1200));
+        consultation.setDoctor(doctor);
+        serviceRepository.save(consultation);
+    }
+
+    @Test
+    void run_snapshotsCurrentPriceIntoLegacyLines() {
+        visitServiceRepository.save(new VisitService(visit, consultation, 2));
+        entityManager.flush();
+        entityManager.clear();
+
+        int updated = new VisitServicePriceBackfill(visitServiceRepository, transactionManager).run();
+        entityManager.flush();
+        entityManager.clear();
+
+        assertThat(updated).isEqualTo(1);
+        VisitService line = visitServiceRepository.findWithServiceByVisitId(visit.getId()).get(0);
+        assertThat(line.getUnitPrice()).isEqualByComparingTo("1200");
+        assertThat(line.getLineTotal()).isEqualByComparingTo("2400");
+        assertThat(visitServiceRepository.findWithoutPriceSnapshot(Limit.of(1))).isEmpty();
+    }
+
+    @Test
+    void sumRevenueByService_usesSnapshotNotCurrentPrice() {
+        // Цена услуги с тех пор выросла с 1000 до 1200.
+        VisitService line = new VisitService(visit, consultation, 2);
+        line.snapshotPrice(BigDecimal.valueOf(1000));
+        visitServiceRepository.save(line);
+        entityManager.flush();
+        entityManager.clear();
+
+        List<ServiceRevenueDto> revenue = visitServiceRepository.sumRevenueByService(doctor.getId(),
+                LocalDateTime.of(2025, 3, 1, 0, 0), LocalDateTime.of(2025, 3, 31, 23, 59));
+
+        assertThat(revenue).hasSize(1);
+        assertThat(revenue.get(0).name()).isEqualTo("Consultation");
+        assertThat(revenue.get(0).revenue()).isEqualByComparingTo("2000");
+    }
+}